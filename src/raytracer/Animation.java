@@ -0,0 +1,29 @@
+package raytracer;
+
+import raytracer.camera.Camera;
+
+/**
+ * This interface describes an animation which is rendered by a <code>SequenceRenderer</code>. For every frame the 
+ * animation moves the dynamic parts of the world, e.g. by setting new transformations to its nodes, and provides the 
+ * camera the frame is seen through.
+ * 
+ * @author Simon Lischka
+ *
+ */
+public interface Animation {
+	/**
+	 * Updates the world for the specified frame. The method is called before the frame is rendered and never while 
+	 * another frame is rendered.
+	 * 
+	 * @param frame	The number of the frame, starting with 0.
+	 */
+	public void update(final int frame);
+	
+	/**
+	 * Returns the camera for the specified frame.
+	 * 
+	 * @param frame	The number of the frame, starting with 0.
+	 * @return		The camera of the frame. Must not be <code>null</code>.
+	 */
+	public Camera cameraFor(final int frame);
+}
@@ -0,0 +1,107 @@
+package raytracer;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import raytracer.geometry.TriangleMesh;
+import raytracer.material.Material;
+import raytracer.parser.ObjLoader;
+
+/**
+ * This class loads the assets of scenes, i.e. the images of textures and the meshes of OBJ files, in the background.
+ * An asset is submitted as soon as a texture or shape referencing it is constructed and is returned as a
+ * <code>Future</code>, so the construction of a scene does not wait for the files and all of them are decoded and
+ * parsed concurrently. Only the first use of an asset, e.g. the first lookup of a texture, waits for it.
+ * <p>
+ * The assets are loaded by a bounded pool of daemon threads, one per processor.
+ *
+ * @author Simon Lischka
+ *
+ */
+public final class AssetLoader {
+	/**
+	 * The number of loader threads.
+	 */
+	public static final int THREADS = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * The pool of the loader threads.
+	 */
+	private static final ExecutorService POOL = Executors.newFixedThreadPool(THREADS, new ThreadFactory() {
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(final Runnable r) {
+			final Thread thread = new Thread(r, "Asset loader " + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	/**
+	 * This class is not meant to be instantiated.
+	 */
+	private AssetLoader() {
+	}
+
+	/**
+	 * Submits the loading of an asset.
+	 *
+	 * @param loader	The loading of the asset. Must not be <code>null</code>.
+	 * @return			The future of the asset.
+	 */
+	public static <T> Future<T> submit(final Callable<T> loader) {
+		if (loader == null) {
+			throw new IllegalArgumentException("The parameter 'loader' must not be null.");
+		}
+		return POOL.submit(loader);
+	}
+
+	/**
+	 * Submits the parsing of the mesh of an OBJ file.
+	 *
+	 * @param filename	The name of the OBJ file. Must not be <code>null</code>.
+	 * @param material	The material of the mesh. Must not be <code>null</code>.
+	 * @return			The future of the mesh.
+	 */
+	public static Future<TriangleMesh> mesh(final String filename, final Material material) {
+		if (filename == null || material == null) {
+			throw new IllegalArgumentException("The parameters must not be null.");
+		}
+		return submit(new Callable<TriangleMesh>() {
+			@Override
+			public TriangleMesh call() {
+				return new ObjLoader().load(filename, material);
+			}
+		});
+	}
+
+	/**
+	 * Waits for an asset. A failure of the loading is thrown again as the <code>RuntimeException</code> it was or
+	 * is wrapped in one.
+	 *
+	 * @param future	The future of the asset. Must not be <code>null</code>.
+	 * @return			The asset.
+	 */
+	public static <T> T await(final Future<T> future) {
+		if (future == null) {
+			throw new IllegalArgumentException("The parameter 'future' must not be null.");
+		}
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while waiting for an asset.", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new RuntimeException("Could not load an asset.", e.getCause());
+		}
+	}
+}
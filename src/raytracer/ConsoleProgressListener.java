@@ -0,0 +1,71 @@
+package raytracer;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * This class prints the progress of an activity as simple text progress bar with the estimated remaining time.
+ * 
+ * @author Simon Lischka
+ *
+ */
+public class ConsoleProgressListener implements ProgressListener {
+	/**
+	 * The width of the progress bar in characters, one character per 5 %.
+	 */
+	public static final int BAR_WIDTH = 20;
+	
+	/**
+	 * The name of the activity. Start with uppercase letter, please.
+	 */
+	private final String activity;
+	/**
+	 * The stream the progress is printed to.
+	 */
+	private final PrintStream out;
+	
+	/**
+	 * Constructs a new <code>ConsoleProgressListener</code> which prints to <code>System.out</code>.
+	 * 
+	 * @param activity	The name of the activity. Must not be <code>null</code>.
+	 */
+	public ConsoleProgressListener(final String activity) {
+		this(activity, System.out);
+	}
+	
+	/**
+	 * Constructs a new <code>ConsoleProgressListener</code>.
+	 * 
+	 * @param activity	The name of the activity. Must not be <code>null</code>.
+	 * @param out		The stream the progress is printed to. Must not be <code>null</code>.
+	 */
+	public ConsoleProgressListener(final String activity, final PrintStream out) {
+		if (activity == null || out == null) {
+			throw new IllegalArgumentException("The parameters must not be null.");
+		}
+		this.activity = activity;
+		this.out = out;
+		out.println(activity + "...");
+	}
+	
+	@Override
+	public void progressChanged(final long done, final long total, final long elapsedMillis, final long etaMillis) {
+		final int percent = (total > 0) ? (int) (done * 100 / total) : 100;
+		final char[] bar = new char[BAR_WIDTH];
+		Arrays.fill(bar, ' ');
+		Arrays.fill(bar, 0, Math.min(BAR_WIDTH, percent * BAR_WIDTH / 100), '|');
+		if (etaMillis < 0) {
+			out.printf("%3d%% [%s]%n", percent, new String(bar));
+		} else {
+			final long seconds = (etaMillis + 999) / 1000;
+			out.printf("%3d%% [%s] %02d:%02d remaining%n", percent, new String(bar), seconds / 60, seconds % 60);
+		}
+	}
+	
+	@Override
+	public void finished(final long done, final long total, final long elapsedMillis) {
+		final long seconds = elapsedMillis / 1000;
+		out.printf("Done %s after %02d min %02d sec %03d msec%n", activity.toLowerCase(), seconds / 60, 
+				seconds % 60, elapsedMillis % 1000);
+	}
+}
@@ -0,0 +1,256 @@
+package raytracer;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import raytracer.camera.Camera;
+import raytracer.sampling.Sampler;
+import raytracer.sampling.SingleSampler;
+
+/**
+ * This class represents a long-lived interactive preview of a world. 
+ * <p>
+ * The world, i.e. its geometries with their loaded meshes and textures, and the worker threads are kept for the whole 
+ * session. Whenever the camera is changed with <code>setCamera(Camera)</code>, the frame that is being rendered is 
+ * cancelled and a new frame is rendered progressively with a <code>ProgressiveRenderer</code>. Camera changes which 
+ * arrive while a frame is starting are coalesced, so only the latest camera is rendered.
+ * <p>
+ * The block size of the first pass of a frame is chosen from the measured render time of the previous frames, so 
+ * that the first pass takes about as long as the latency target of the session. Thus the time until a moved camera 
+ * shows a first image is bounded instead of being proportional to the time of a full quality render.
+ * 
+ * @author Simon Lischka
+ *
+ */
+public class InteractiveSession {
+	/**
+	 * The default latency target for the first pass of a frame in milliseconds.
+	 */
+	public static final long DEFAULT_LATENCY = 50;
+	/**
+	 * The block size of the first pass of the very first frame, for which no timing is known.
+	 */
+	public static final int FIRST_FRAME_BLOCK_SIZE = 16;
+	/**
+	 * The maximum block size of the first pass of a frame.
+	 */
+	public static final int MAX_BLOCK_SIZE = 64;
+	
+	/**
+	 * The world of this session.
+	 */
+	private final World world;
+	/**
+	 * The screen size of this session.
+	 */
+	private final Dimension size;
+	/**
+	 * The depth of recursion for recursive raytracing.
+	 */
+	private final int recursion;
+	/**
+	 * The sampler used for the full resolution pass of each frame.
+	 */
+	private final Sampler sampler;
+	/**
+	 * The latency target for the first pass of a frame in milliseconds.
+	 */
+	private final long latency;
+	/**
+	 * The worker threads shared by all frames.
+	 */
+	private final ExecutorService workers;
+	/**
+	 * The thread which starts the frames one after another.
+	 */
+	private final ExecutorService frames;
+	/**
+	 * The listeners of this session.
+	 */
+	private final List<RenderListener> listeners;
+	/**
+	 * The latest camera.
+	 */
+	private Camera camera;
+	/**
+	 * The renderer of the frame which is rendered at the moment.
+	 */
+	private ProgressiveRenderer current;
+	/**
+	 * The measured time for a single pixel of a first pass in nanoseconds, 0 if unknown.
+	 */
+	private volatile double nanosPerPixel;
+	
+	/**
+	 * Constructs a new <code>InteractiveSession</code> with the specified parameters. No frame is rendered until a 
+	 * camera is set.
+	 * 
+	 * @param world		The world of the session. Must not be <code>null</code>.
+	 * @param size		The screen size of the session. Must not be <code>null</code>.
+	 * @param recursion	The depth of recursion.
+	 * @param sampler	The sampler used for the full resolution pass of each frame. Must not be <code>null</code>.
+	 * @param latency	The latency target for the first pass of a frame in milliseconds. Must be greater than 0.
+	 */
+	public InteractiveSession(final World world, final Dimension size, final int recursion, final Sampler sampler, 
+			final long latency) {
+		if (world == null || size == null || sampler == null) {
+			throw new IllegalArgumentException("The parameters must not be null.");
+		}
+		if (latency <= 0) {
+			throw new IllegalArgumentException("The parameter 'latency' must be greater than 0.");
+		}
+		this.world = world;
+		this.size = size;
+		this.recursion = recursion;
+		this.sampler = sampler;
+		this.latency = latency;
+		workers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		frames = Executors.newSingleThreadExecutor();
+		listeners = new CopyOnWriteArrayList<RenderListener>();
+	}
+	
+	/**
+	 * Constructs a new <code>InteractiveSession</code> with the specified parameters, which traces one ray per pixel 
+	 * and has the default latency target.
+	 * 
+	 * @param world		The world of the session. Must not be <code>null</code>.
+	 * @param size		The screen size of the session. Must not be <code>null</code>.
+	 * @param recursion	The depth of recursion.
+	 */
+	public InteractiveSession(final World world, final Dimension size, final int recursion) {
+		this(world, size, recursion, new SingleSampler(), DEFAULT_LATENCY);
+	}
+	
+	/**
+	 * Adds a listener which is notified about the passes of all following frames.
+	 * 
+	 * @param listener	The listener to be added. Must not be <code>null</code>.
+	 */
+	public void addRenderListener(final RenderListener listener) {
+		if (listener == null) {
+			throw new IllegalArgumentException("The parameter 'listener' must not be null.");
+		}
+		listeners.add(listener);
+	}
+	
+	/**
+	 * Removes a listener from this session.
+	 * 
+	 * @param listener	The listener to be removed.
+	 */
+	public void removeRenderListener(final RenderListener listener) {
+		listeners.remove(listener);
+	}
+	
+	/**
+	 * Sets the camera of this session. The current frame is cancelled and a new frame is rendered with the specified 
+	 * camera. This method returns immediately.
+	 * 
+	 * @param cam	The new camera. Must not be <code>null</code>.
+	 */
+	public synchronized void setCamera(final Camera cam) {
+		if (cam == null) {
+			throw new IllegalArgumentException("The parameter 'cam' must not be null.");
+		}
+		camera = cam;
+		if (current != null) {
+			current.cancel();
+		}
+		frames.execute(new Runnable() {
+			@Override
+			public void run() {
+				renderFrame(cam);
+			}
+		});
+	}
+	
+	/**
+	 * @return	The latest camera of this session or <code>null</code> if no camera has been set.
+	 */
+	public synchronized Camera getCamera() {
+		return camera;
+	}
+	
+	/**
+	 * Cancels the current frame and stops all threads of this session.
+	 */
+	public synchronized void close() {
+		if (current != null) {
+			current.cancel();
+		}
+		frames.shutdownNow();
+		workers.shutdownNow();
+	}
+	
+	public Dimension getSize() {
+		return size;
+	}
+	
+	/**
+	 * Renders a frame with the specified camera unless the camera has been replaced in the meantime.
+	 * 
+	 * @param cam	The camera of the frame.
+	 */
+	private void renderFrame(final Camera cam) {
+		final int blockSize = initialBlockSize();
+		final ProgressiveRenderer renderer = new ProgressiveRenderer(world, cam, size, recursion, sampler, blockSize);
+		renderer.setExecutor(workers);
+		final long start = System.nanoTime();
+		renderer.addRenderListener(new RenderListener() {
+			@Override
+			public void passCompleted(final BufferedImage image, final int pass, final int blockSize) {
+				if (pass == 1) {
+					nanosPerPixel = (System.nanoTime() - start) / (double) pixels(blockSize);
+				}
+			}
+			
+			@Override
+			public void renderFinished(final BufferedImage image, final boolean complete) {
+			}
+		});
+		for (RenderListener listener : listeners) {
+			renderer.addRenderListener(listener);
+		}
+		synchronized (this) {
+			if (cam != camera || workers.isShutdown()) {
+				return;
+			}
+			current = renderer;
+		}
+		renderer.render();
+	}
+	
+	/**
+	 * Chooses the block size of the first pass of a frame, i.e. the smallest block size for which the first pass 
+	 * is expected to meet the latency target.
+	 * 
+	 * @return	The block size.
+	 */
+	private int initialBlockSize() {
+		final double nanos = nanosPerPixel;
+		if (nanos == 0) {
+			return FIRST_FRAME_BLOCK_SIZE;
+		}
+		int blockSize = 1;
+		while (blockSize < MAX_BLOCK_SIZE && pixels(blockSize) * nanos > latency * 1000000.0) {
+			blockSize *= 2;
+		}
+		return blockSize;
+	}
+	
+	/**
+	 * Calculates the number of pixels traced in a first pass with the specified block size.
+	 * 
+	 * @param blockSize	The block size.
+	 * @return			The number of traced pixels.
+	 */
+	private long pixels(final int blockSize) {
+		final long columns = (size.width + blockSize - 1) / blockSize;
+		final long rows = (size.height + blockSize - 1) / blockSize;
+		return columns * rows;
+	}
+}
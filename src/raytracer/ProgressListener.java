@@ -0,0 +1,31 @@
+package raytracer;
+
+/**
+ * This interface describes a listener which is notified about the progress of an activity tracked by a 
+ * <code>ProgressMonitor</code>, e.g. to show a progress bar in a user interface. The listeners are called from the 
+ * reporter thread of the monitor, not from the render threads.
+ * 
+ * @author Simon Lischka
+ *
+ */
+public interface ProgressListener {
+	/**
+	 * Called periodically while the activity is running.
+	 * 
+	 * @param done			The number of finished units, e.g. pixels.
+	 * @param total			The total number of units.
+	 * @param elapsedMillis	The milliseconds since the start of the activity.
+	 * @param etaMillis		The estimated milliseconds until the end of the activity, -1 if no estimation is 
+	 * 						possible yet.
+	 */
+	public void progressChanged(final long done, final long total, final long elapsedMillis, final long etaMillis);
+	
+	/**
+	 * Called once when the activity is finished.
+	 * 
+	 * @param done			The number of finished units, e.g. pixels.
+	 * @param total			The total number of units.
+	 * @param elapsedMillis	The milliseconds the activity took.
+	 */
+	public void finished(final long done, final long total, final long elapsedMillis);
+}
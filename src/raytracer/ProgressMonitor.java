@@ -1,83 +1,226 @@
 package raytracer;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class tracks the progress of an activity which is worked on by several threads, e.g. the pixels of a 
+ * rendering. The threads report finished units with <code>advance</code>, which only adds to a 
+ * <code>LongAdder</code> and therefore hardly contends. A single reporter thread notifies the registered 
+ * <code>ProgressListener</code>s in fixed intervals with the progress and the estimated remaining time.
+ * 
+ * @author Simon Lischka
+ *
+ */
 public class ProgressMonitor {
 	/**
-	 * The increment of the progress monitor in percent.
+	 * The default interval of the reports in milliseconds.
+	 */
+	public static final long REPORT_INTERVAL_MILLIS = 500;
+	
+	/**
+	 * The name of the activity. Start with uppercase letter, please.
+	 */
+	private final String activity;
+	/**
+	 * The total number of units of the activity.
+	 */
+	private final long total;
+	/**
+	 * The interval of the reports in milliseconds.
 	 */
-	public static final int PROGRESS_INCREMENT_PERCENT = 5;
+	private final long interval;
 	/**
-	 * The size of one step of the progress monitor.
+	 * The number of finished units.
 	 */
-	private int progressStep;
+	private final LongAdder done;
 	/**
-	 * The maximum value that will be set with the value parameter in the showProgress method
+	 * The listeners of this monitor.
 	 */
-	private int maximumValue;
+	private final List<ProgressListener> listeners;
 	/**
-	 * Start time of ProgressMonitor, generated when value is changed externally
+	 * Whether the activity has been finished and the listeners have been notified.
 	 */
-	private long startTime;
+	private final AtomicBoolean finished;
 	/**
-	 * Endtime, generated when value reaches indicated maximum
+	 * The thread which reports the progress, <code>null</code> before the start.
 	 */
-	private long endTime;
+	private ScheduledExecutorService reporter;
 	/**
-	 * Name of the activity. Start with uppercase letter, please.
+	 * The start time of the activity in milliseconds, -1 before the start.
 	 */
-	private String activity;
+	private volatile long startTime;
+	/**
+	 * The duration of the activity in milliseconds, -1 before the end.
+	 */
+	private volatile long endTime;
+	
+	/**
+	 * Constructs a new <code>ProgressMonitor</code> for the specified activity, which reports every 500 ms.
+	 * 
+	 * @param activity	The name of the activity. Must not be <code>null</code>.
+	 * @param total		The total number of units of the activity, e.g. pixels.
+	 */
+	public ProgressMonitor(final String activity, final long total) {
+		this(activity, total, REPORT_INTERVAL_MILLIS);
+	}
 	
-	public ProgressMonitor(String activity, int maximumValue, int progressStep) {
-		this.maximumValue = maximumValue;
-		this.progressStep = maximumValue * PROGRESS_INCREMENT_PERCENT / 100;
-		this.startTime = -1;
-		this.endTime = -1;
+	/**
+	 * Constructs a new <code>ProgressMonitor</code> for the specified activity.
+	 * 
+	 * @param activity	The name of the activity. Must not be <code>null</code>.
+	 * @param total		The total number of units of the activity, e.g. pixels.
+	 * @param interval	The interval of the reports in milliseconds.
+	 */
+	public ProgressMonitor(final String activity, final long total, final long interval) {
+		if (activity == null) {
+			throw new IllegalArgumentException("The parameter 'activity' must not be null.");
+		}
+		if (total < 0 || interval <= 0) {
+			throw new IllegalArgumentException("The total must not be negative and the interval must be positive.");
+		}
 		this.activity = activity;
+		this.total = total;
+		this.interval = interval;
+		done = new LongAdder();
+		listeners = new CopyOnWriteArrayList<ProgressListener>();
+		finished = new AtomicBoolean();
+		startTime = -1;
+		endTime = -1;
+	}
+	
+	/**
+	 * Adds a listener which is notified about the progress.
+	 * 
+	 * @param listener	The listener to be added. Must not be <code>null</code>.
+	 */
+	public void addProgressListener(final ProgressListener listener) {
+		if (listener == null) {
+			throw new IllegalArgumentException("The parameter 'listener' must not be null.");
+		}
+		listeners.add(listener);
 	}
 	
 	/**
-	 * Displays the current progress according to the specified 
-	 * value in a simple text progress bar.
+	 * Removes a listener.
 	 * 
-	 * @param value Current value e.g. of a loop. Used together with the specified <code>maximumValue</code>
-	 * to generate percentage of the ProgressBar.
+	 * @param listener	The listener to be removed.
+	 */
+	public void removeProgressListener(final ProgressListener listener) {
+		listeners.remove(listener);
+	}
+	
+	/**
+	 * Starts the activity and the reporter thread. Must be called once before the work is started.
 	 */
-	public void showProgress(final int value) {
-		if (value > 0 && startTime == -1) {
-			System.out.println(activity + "...");
-			startTime = System.currentTimeMillis();
+	public synchronized void start() {
+		if (startTime != -1) {
+			throw new IllegalStateException("The activity has already been started.");
 		}
-		
-		if (value % progressStep == 0 || value >= maximumValue) {
-			String progr = "|";
-			for (int i = 0; i < value / progressStep; i++) {
-				progr = progr + "|";
+		startTime = System.currentTimeMillis();
+		reporter = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable r) {
+				final Thread thread = new Thread(r, activity + " progress");
+				thread.setDaemon(true);
+				return thread;
 			}
-			System.out.printf("%3d%% %s%n", (value * PROGRESS_INCREMENT_PERCENT / progressStep + PROGRESS_INCREMENT_PERCENT), progr);
+		});
+		reporter.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				report();
+			}
+		}, interval, interval, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Reports finished units. This method can be called by several threads at the same time.
+	 * 
+	 * @param units	The number of units finished since the last call of the calling thread.
+	 */
+	public void advance(final long units) {
+		done.add(units);
+	}
+	
+	/**
+	 * Finishes the activity, stops the reporter thread and notifies the listeners. Only the first call has an 
+	 * effect.
+	 */
+	public void finish() {
+		if (!finished.compareAndSet(false, true)) {
+			return;
+		}
+		synchronized (this) {
+			if (reporter != null) {
+				reporter.shutdownNow();
+			}
+		}
+		final long start = (startTime != -1) ? startTime : System.currentTimeMillis();
+		endTime = System.currentTimeMillis() - start;
+		final long d = done.sum();
+		for (ProgressListener listener : listeners) {
+			listener.finished(d, total, endTime);
+		}
+	}
+	
+	/**
+	 * Notifies the listeners about the current progress. Called by the reporter thread.
+	 */
+	private void report() {
+		if (finished.get()) {
+			return;
 		}
-		
-		if (value >= maximumValue - 1) {
-			endTime = System.currentTimeMillis() - startTime;
-			final int timeSek = (int)(endTime / 1000);
-			System.out.printf("Done " + activity.toLowerCase() + " after %02d min %02d sec %02d msec%n", timeSek / 60, timeSek % 60, endTime % 1000);
+		final long d = done.sum();
+		final long elapsed = System.currentTimeMillis() - startTime;
+		final long eta = (d > 0) ? (long) (elapsed * (double) (total - d) / d) : -1;
+		for (ProgressListener listener : listeners) {
+			listener.progressChanged(d, total, elapsed, eta);
 		}
 	}
+	
+	/**
+	 * @return	The number of finished units.
+	 */
+	public long getDone() {
+		return done.sum();
+	}
+	
+	/**
+	 * @return	The total number of units.
+	 */
+	public long getTotal() {
+		return total;
+	}
+	
+	/**
+	 * @return	The name of the activity.
+	 */
+	public String getActivity() {
+		return activity;
+	}
 
 	/**
-	 * Time when progressBar receives first value > 0. 
+	 * Time when the activity was started. 
 	 * 
-	 * @return startTime Time stamp in milliseconds
+	 * @return startTime Time stamp in milliseconds, -1 before the start.
 	 */
 	public long getStartTime() {
 		return startTime;
 	}
 
 	/**
-	 * Time when progressBar reaches specified maximumValue.
-	 * @return endTime Time stamp in milliseconds.
+	 * Duration of the activity.
+	 * 
+	 * @return endTime Duration in milliseconds, -1 before the end.
 	 */
 	public long getEndTime() {
 		return endTime;
 	}
-	
-	
 }
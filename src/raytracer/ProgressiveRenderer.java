@@ -0,0 +1,447 @@
+package raytracer;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import raytracer.camera.Camera;
+import raytracer.image.ClampToneMapper;
+import raytracer.image.FrameBuffer;
+import raytracer.image.ToneMapper;
+import raytracer.metrics.CostMap;
+import raytracer.metrics.MetricsSnapshot;
+import raytracer.metrics.RenderMetrics;
+import raytracer.sampling.PacketSampler;
+import raytracer.sampling.Sampler;
+import raytracer.sampling.SingleSampler;
+
+/**
+ * This class represents a renderer which renders an image in several passes with increasing resolution. 
+ * <p>
+ * The first pass traces one ray per block of 8 x 8 pixels and fills the whole block with the resulting color. Each 
+ * following pass halves the block size and only traces the pixels which have not been traced before, until the last 
+ * pass renders the full resolution with the sampler of the renderer. After each pass the registered 
+ * <code>RenderListener</code>s are notified, so the image can be shown while it is refined.
+ * <p>
+ * The rendering can be stopped early: it can be cancelled from another thread, it can be given a time budget and it 
+ * can be given a quality target, i.e. it stops as soon as a pass changes the image by less than the target.
+ * <p>
+ * Besides the image, the colors are kept with their full range in a <code>FrameBuffer</code>. The pixels of the image 
+ * are mapped by the tone mapper of the renderer as they are rendered; the buffer of the last rendering can be mapped 
+ * again with another tone mapper or written to a floating point file.
+ * 
+ * @author Simon Lischka
+ *
+ */
+public class ProgressiveRenderer {
+	/**
+	 * The default edge length of the blocks of the first pass.
+	 */
+	public static final int DEFAULT_BLOCK_SIZE = 8;
+	
+	/**
+	 * The world of this renderer.
+	 */
+	private final World world;
+	/**
+	 * The camera of this renderer.
+	 */
+	private final Camera cam;
+	/**
+	 * The screen size of this renderer.
+	 */
+	private final Dimension size;
+	/**
+	 * The depth of recursion for recursive raytracing.
+	 */
+	private final int recursion;
+	/**
+	 * The sampler used for the last pass.
+	 */
+	private final Sampler sampler;
+	/**
+	 * The edge length of the blocks of the first pass. Always a power of two.
+	 */
+	private final int initialBlockSize;
+	/**
+	 * The listeners of this renderer.
+	 */
+	private final List<RenderListener> listeners;
+	/**
+	 * The maximum render time in milliseconds, 0 for no limit.
+	 */
+	private volatile long timeBudget;
+	/**
+	 * The mean change of luminance per traced pixel below which the rendering stops, 0 for no target.
+	 */
+	private volatile double qualityTarget;
+	/**
+	 * Set to <code>true</code> if the rendering is cancelled.
+	 */
+	private volatile boolean cancelled;
+	/**
+	 * The executor running the passes or <code>null</code> if a new thread pool is created for every render.
+	 */
+	private volatile ExecutorService executor;
+	/**
+	 * The map which records the cost of each pixel, <code>null</code> if the costs are not recorded.
+	 */
+	private volatile CostMap costMap;
+	/**
+	 * The tone mapper which maps the rendered colors to the image.
+	 */
+	private volatile ToneMapper toneMapper = new ClampToneMapper();
+	/**
+	 * The frame buffer of the last rendering, <code>null</code> before the first rendering.
+	 */
+	private volatile FrameBuffer frameBuffer;
+	
+	/**
+	 * Constructs a new <code>ProgressiveRenderer</code> with the specified parameters.
+	 * 
+	 * @param world				The world of the renderer. Must not be <code>null</code>.
+	 * @param cam				The camera of the renderer. Must not be <code>null</code>.
+	 * @param size				The screen size of the renderer. Must not be <code>null</code>.
+	 * @param recursion			The depth of recursion of the renderer.
+	 * @param sampler			The sampler used for the last pass. Must not be <code>null</code>.
+	 * @param initialBlockSize	The edge length of the blocks of the first pass. Must be a power of two.
+	 */
+	public ProgressiveRenderer(final World world, final Camera cam, final Dimension size, final int recursion, 
+			final Sampler sampler, final int initialBlockSize) {
+		if (world == null || cam == null || size == null || sampler == null) {
+			throw new IllegalArgumentException("The parameters must not be null.");
+		}
+		if (initialBlockSize < 1 || Integer.bitCount(initialBlockSize) != 1) {
+			throw new IllegalArgumentException("The parameter 'initialBlockSize' must be a power of two.");
+		}
+		this.world = world;
+		this.cam = cam;
+		this.size = size;
+		this.recursion = recursion;
+		this.sampler = sampler;
+		this.initialBlockSize = initialBlockSize;
+		listeners = new CopyOnWriteArrayList<RenderListener>();
+	}
+	
+	/**
+	 * Constructs a new <code>ProgressiveRenderer</code> with the specified parameters, which starts with blocks of 
+	 * 8 x 8 pixels.
+	 * 
+	 * @param world		The world of the renderer. Must not be <code>null</code>.
+	 * @param cam		The camera of the renderer. Must not be <code>null</code>.
+	 * @param size		The screen size of the renderer. Must not be <code>null</code>.
+	 * @param recursion	The depth of recursion of the renderer.
+	 * @param sampler	The sampler used for the last pass. Must not be <code>null</code>.
+	 */
+	public ProgressiveRenderer(final World world, final Camera cam, final Dimension size, final int recursion, 
+			final Sampler sampler) {
+		this(world, cam, size, recursion, sampler, DEFAULT_BLOCK_SIZE);
+	}
+	
+	/**
+	 * Constructs a new <code>ProgressiveRenderer</code> with the specified parameters, which traces one ray per pixel 
+	 * in the last pass.
+	 * 
+	 * @param world		The world of the renderer. Must not be <code>null</code>.
+	 * @param cam		The camera of the renderer. Must not be <code>null</code>.
+	 * @param size		The screen size of the renderer. Must not be <code>null</code>.
+	 * @param recursion	The depth of recursion of the renderer.
+	 */
+	public ProgressiveRenderer(final World world, final Camera cam, final Dimension size, final int recursion) {
+		this(world, cam, size, recursion, new SingleSampler());
+	}
+	
+	/**
+	 * Adds a listener which is notified about the passes of this renderer.
+	 * 
+	 * @param listener	The listener to be added. Must not be <code>null</code>.
+	 */
+	public void addRenderListener(final RenderListener listener) {
+		if (listener == null) {
+			throw new IllegalArgumentException("The parameter 'listener' must not be null.");
+		}
+		listeners.add(listener);
+	}
+	
+	/**
+	 * Removes a listener from this renderer.
+	 * 
+	 * @param listener	The listener to be removed.
+	 */
+	public void removeRenderListener(final RenderListener listener) {
+		listeners.remove(listener);
+	}
+	
+	/**
+	 * Sets the time budget of this renderer. The renderer stops when the budget is exhausted, even in the middle of a 
+	 * pass. The image then contains the finer blocks of the interrupted pass where they have been rendered and the 
+	 * coarser blocks of the previous pass everywhere else.
+	 * 
+	 * @param millis	The time budget in milliseconds, 0 for no limit.
+	 */
+	public void setTimeBudget(final long millis) {
+		if (millis < 0) {
+			throw new IllegalArgumentException("The parameter 'millis' must not be negative.");
+		}
+		timeBudget = millis;
+	}
+	
+	/**
+	 * Sets the quality target of this renderer. After each pass the mean change of luminance of the traced pixels 
+	 * compared to the previous pass is calculated. If it is below the target, the renderer stops.
+	 * 
+	 * @param target	The quality target in the range [0, 1], 0 for no target.
+	 */
+	public void setQualityTarget(final double target) {
+		if (target < 0 || 1 < target) {
+			throw new IllegalArgumentException("The parameter 'target' must be between 0 and 1 (including).");
+		}
+		qualityTarget = target;
+	}
+	
+	/**
+	 * Sets the executor which runs the passes of this renderer. Without an executor a new thread pool is created for 
+	 * every call of <code>render()</code>. An executor set with this method is not shut down by the renderer, so it 
+	 * can be shared by several renderers.
+	 * 
+	 * @param executor	The executor, <code>null</code> to create a new thread pool for every render.
+	 */
+	public void setExecutor(final ExecutorService executor) {
+		this.executor = executor;
+	}
+	
+	/**
+	 * Sets a map which records the cost of each pixel during the next renderings. The costs of all passes are 
+	 * accumulated. The size of the map must match the screen size of this renderer.
+	 * 
+	 * @param costMap	The cost map, <code>null</code> to not record the costs.
+	 */
+	public void setCostMap(final CostMap costMap) {
+		if (costMap != null && (costMap.width != size.width || costMap.height != size.height)) {
+			throw new IllegalArgumentException("The size of the cost map must match the screen size.");
+		}
+		this.costMap = costMap;
+	}
+	
+	/**
+	 * Sets the tone mapper which maps the rendered colors to the image. The default clamps the colors to 1.
+	 * 
+	 * @param toneMapper	The tone mapper. Must not be <code>null</code>.
+	 */
+	public void setToneMapper(final ToneMapper toneMapper) {
+		if (toneMapper == null) {
+			throw new IllegalArgumentException("The parameter 'toneMapper' must not be null.");
+		}
+		this.toneMapper = toneMapper;
+	}
+	
+	/**
+	 * @return	The frame buffer of the last rendering with the full range of the colors, <code>null</code> before the 
+	 * 			first rendering. The buffer of a rendering which is still running is incomplete.
+	 */
+	public FrameBuffer getFrameBuffer() {
+		return frameBuffer;
+	}
+	
+	/**
+	 * Cancels the rendering. The current pass is stopped as soon as possible and <code>render()</code> returns the 
+	 * image in its current state. A cancelled renderer can not be restarted.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+	
+	/**
+	 * @return	<code>true</code> if the rendering has been cancelled.
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+	
+	/**
+	 * Renders the scene progressively. This method blocks until all passes are rendered or the rendering is stopped 
+	 * early.
+	 * 
+	 * @return	The <code>BufferedImage</code> of the scene.
+	 */
+	public BufferedImage render() {
+		final BufferedImage image = new BufferedImage(size.width, size.height, BufferedImage.TYPE_INT_RGB);
+		final FrameBuffer frame = new FrameBuffer(size.width, size.height);
+		frameBuffer = frame;
+		final ToneMapper mapper = toneMapper;
+		final MetricsSnapshot metrics = RenderMetrics.snapshot();
+		final long deadline = (timeBudget > 0) ? System.currentTimeMillis() + timeBudget : Long.MAX_VALUE;
+		final double target = qualityTarget;
+		final CostMap costMap = this.costMap;
+		final ExecutorService sharedExecutor = this.executor;
+		final ExecutorService executor = (sharedExecutor != null) 
+				? sharedExecutor : Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		
+		boolean complete = false;
+		int pass = 0;
+		try {
+			for (int blockSize = initialBlockSize; blockSize >= 1; blockSize /= 2) {
+				final boolean first = blockSize == initialBlockSize;
+				final List<Callable<double[]>> tasks = new ArrayList<Callable<double[]>>();
+				// the last pass renders the rows of the tasks of a renderer, the other passes one row of blocks per task
+				final int rows = (blockSize == 1) ? RenderTask.ROWS_PER_TASK : blockSize;
+				for (int y = 0; y < size.height; y += rows) {
+					tasks.add(new PassTask(image, frame, mapper, y, Math.min(y + rows, size.height), blockSize, first, 
+							deadline, costMap));
+				}
+				double change = 0;
+				int traced = 0;
+				for (Future<double[]> future : executor.invokeAll(tasks)) {
+					final double[] result = future.get();
+					change += result[0];
+					traced += (int) result[1];
+				}
+				if (cancelled || System.currentTimeMillis() > deadline) {
+					break;
+				}
+				pass++;
+				for (RenderListener listener : listeners) {
+					listener.passCompleted(image, pass, blockSize);
+				}
+				if (blockSize == 1) {
+					complete = true;
+				} else if (!first && target > 0 && traced > 0 && change / traced < target) {
+					break;
+				}
+			}
+		} catch (InterruptedException e) {
+			System.err.println("Thread was interrupted.");
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Rendering failed.", e.getCause());
+		} finally {
+			if (executor != sharedExecutor) {
+				executor.shutdownNow();
+			}
+		}
+		RenderMetrics.frameFinished(metrics);
+		for (RenderListener listener : listeners) {
+			listener.renderFinished(image, complete);
+		}
+		return image;
+	}
+	
+	public Dimension getSize() {
+		return size;
+	}
+	
+	/**
+	 * Calculates the luminance of the specified pixel value of a <code>TYPE_INT_RGB</code> image.
+	 * 
+	 * @param rgb	The pixel value.
+	 * @return		The luminance in the range [0, 1].
+	 */
+	private static double luminance(final int rgb) {
+		return (((rgb >> 16) & 0xff) * 0.299 + ((rgb >> 8) & 0xff) * 0.587 + (rgb & 0xff) * 0.114) / 255;
+	}
+	
+	/**
+	 * This class renders one row of blocks of a pass, or in the last pass the rows of a <code>RenderTask</code>, so 
+	 * the sampler gets the same upper neighbors as in a <code>Renderer</code>. It returns the sum of the luminance 
+	 * changes of the traced pixels and the number of traced pixels.
+	 */
+	private class PassTask implements Callable<double[]> {
+		private final BufferedImage image;
+		private final FrameBuffer frame;
+		private final ToneMapper mapper;
+		private final int yStart;
+		private final int yEnd;
+		private final int blockSize;
+		private final boolean first;
+		private final long deadline;
+		private final CostMap costMap;
+		
+		PassTask(final BufferedImage image, final FrameBuffer frame, final ToneMapper mapper, final int yStart, 
+				final int yEnd, final int blockSize, final boolean first, final long deadline, 
+				final CostMap costMap) {
+			this.image = image;
+			this.frame = frame;
+			this.mapper = mapper;
+			this.yStart = yStart;
+			this.yEnd = yEnd;
+			this.blockSize = blockSize;
+			this.first = first;
+			this.deadline = deadline;
+			this.costMap = costMap;
+		}
+
+		@Override
+		public double[] call() {
+			if (cancelled || System.currentTimeMillis() > deadline) {
+				return new double[2];
+			}
+			final long start = System.nanoTime();
+			final Tracer tracer = new Tracer(recursion);
+			final boolean last = blockSize == 1;
+			// pixels traced by a coarser pass only need to be traced again if the last pass supersamples
+			final boolean retrace = last && !(sampler instanceof SingleSampler);
+			// a single full resolution pass traces whole rows, which a packet sampler traces in packets
+			final boolean packets = first && last && costMap == null && sampler instanceof PacketSampler;
+			// colors of the previous row of this task, used by the sampler to detect edges
+			Color[] previousLine = new Color[size.width];
+			Color[] currentLine = new Color[size.width];
+			double change = 0;
+			int traced = 0;
+			for (int y = yStart; y < yEnd; y += blockSize) {
+				if (cancelled || System.currentTimeMillis() > deadline) {
+					break;
+				}
+				tracer.setSeed(Tracer.DEFAULT_SEED + y);
+				final boolean oddRow = (y / blockSize) % 2 == 1;
+				if (packets) {
+					((PacketSampler) sampler).colorsFor(cam, world, tracer, size.width, size.height, 0, 
+							size.height - y, size.width, currentLine);
+				}
+				Color left = null;
+				for (int x = 0; x < size.width; x += blockSize) {
+					if (!first && !retrace && !oddRow && (x / blockSize) % 2 == 0) {
+						continue;
+					}
+					if (cancelled || System.currentTimeMillis() > deadline) {
+						break;
+					}
+					final long[] mark = (costMap != null) ? CostMap.mark() : null;
+					final Color color = packets ? currentLine[x] : last 
+							? sampler.colorFor(cam, world, tracer, size.width, size.height, x, size.height - y, left, 
+									previousLine[x]) 
+							: tracer.trace(cam.rayFor(size.width, size.height, x, size.height - y), world);
+					if (costMap != null) {
+						costMap.record(x, y, mark);
+					}
+					left = color;
+					currentLine[x] = color;
+					final int rgb = FrameBuffer.toRGB(mapper, color.r, color.g, color.b);
+					if (!first) {
+						change += Math.abs(luminance(rgb) - luminance(image.getRGB(x, y)));
+					}
+					traced++;
+					final int xEnd = Math.min(x + blockSize, size.width);
+					final int blockEnd = Math.min(y + blockSize, size.height);
+					for (int by = y; by < blockEnd; by++) {
+						for (int bx = x; bx < xEnd; bx++) {
+							image.setRGB(bx, by, rgb);
+							frame.set(bx, by, color);
+						}
+					}
+				}
+				final Color[] temp = previousLine;
+				previousLine = currentLine;
+				currentLine = temp;
+			}
+			RenderMetrics.counters().tile(System.nanoTime() - start);
+			return new double[] {change, traced};
+		}
+	}
+}
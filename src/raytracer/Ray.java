@@ -7,6 +7,10 @@ import raytracer.math.Vector3;
 /**
  * This immutable class represents a ray. It has has an origin o and a direction d.
  * <p> 
+ * A ray may also describe a cone around it, the footprint of a pixel: its width at the origin and how much the width 
+ * grows per unit of the parameter t. Textures use the width of the cone at a hit to pick the level of detail. A ray 
+ * of width and spread 0 is an infinitely thin ray, as for shadow rays.
+ * <p> 
  * It provides a method for calculating a specific point on a ray from a given parameter. It also has a method for 
  * calculating a parameter with which a given point can be generated.
  * 
@@ -22,20 +26,78 @@ public class Ray {
 	 * The direction of this <code>Ray</code>.
 	 */
 	public final Vector3 d;
+	/**
+	 * The width of the cone of this <code>Ray</code> at its origin.
+	 */
+	public final double width;
+	/**
+	 * The growth of the width of the cone of this <code>Ray</code> per unit of the parameter t.
+	 */
+	public final double spread;
 	
 	/**
+	 * Constructs a new infinitely thin <code>Ray</code>.
+	 * 
 	 * @param o	The origin of the ray. Must not be <code>null</code>.
 	 * @param d	The direction of the ray. Thus the null vector (0, 0, 0) is not allowed. Must not be <code>null</code>.
 	 */
 	public Ray(final Point3 o, final Vector3 d) {
+		this(o, d, 0, 0);
+	}
+	
+	/**
+	 * Constructs a new <code>Ray</code> with a cone of the specified width and spread.
+	 * 
+	 * @param o			The origin of the ray. Must not be <code>null</code>.
+	 * @param d			The direction of the ray. Thus the null vector (0, 0, 0) is not allowed. Must not be 
+	 * 					<code>null</code>.
+	 * @param width		The width of the cone at the origin. Must not be negative.
+	 * @param spread	The growth of the width per unit of the parameter t. Must not be negative.
+	 */
+	public Ray(final Point3 o, final Vector3 d, final double width, final double spread) {
 		if (o == null || d == null) {
 			throw new IllegalArgumentException("The parameters must not be null.");
 		}
 		if (d.magnitude == 0) {
 			throw new IllegalArgumentException("The null vector (0, 0, 0) is not a meaningful direction d.");
 		}
+		if (!(width >= 0) || !(spread >= 0)) {
+			throw new IllegalArgumentException("The parameters 'width' and 'spread' must not be negative.");
+		}
 		this.o = o;
 		this.d = d;
+		this.width = width;
+		this.spread = spread;
+	}
+	
+	/**
+	 * Calculates the width of the cone of this <code>Ray</code> at the specified parameter t.
+	 * 
+	 * @param t	The parameter.
+	 * @return	The width of the cone, 0 for an infinitely thin ray.
+	 */
+	public double widthAt(final double t) {
+		return width + spread * t;
+	}
+	
+	/**
+	 * Creates a <code>Ray</code> which continues the cone of this <code>Ray</code> from the specified parameter t in 
+	 * another direction, e.g. the reflection of this ray at a hit. The cone keeps its width and its spread per unit 
+	 * of length; the curvature of the surface is not taken into account.
+	 * 
+	 * @param t	The parameter of the point where the cone is continued.
+	 * @param o	The origin of the new ray. Must not be <code>null</code>.
+	 * @param d	The direction of the new ray. Must not be <code>null</code>.
+	 * @return	The new ray.
+	 */
+	public Ray continued(final double t, final Point3 o, final Vector3 d) {
+		if (width == 0 && spread == 0) {
+			return new Ray(o, d);
+		}
+		if (d == null) {
+			throw new IllegalArgumentException("The parameter 'd' must not be null.");
+		}
+		return new Ray(o, d, widthAt(t), spread * this.d.magnitude / d.magnitude);
 	}
 	
 	/**
@@ -0,0 +1,32 @@
+package raytracer;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * This interface represents a listener which is notified about the progress of a <code>ProgressiveRenderer</code>. 
+ * The methods are called from the rendering thread, so implementations which update a user interface must not block.
+ * 
+ * @author Simon Lischka
+ *
+ */
+public interface RenderListener {
+	
+	/**
+	 * Called after each pass of the renderer. The image contains the result of all passes so far and is updated in 
+	 * place by the following passes.
+	 * 
+	 * @param image		The current image.
+	 * @param pass		The number of the completed pass, starting with 1.
+	 * @param blockSize	The edge length of the pixel blocks the pass has filled, 1 for full resolution.
+	 */
+	public void passCompleted(final BufferedImage image, final int pass, final int blockSize);
+	
+	/**
+	 * Called once when the renderer stops.
+	 * 
+	 * @param image		The final image.
+	 * @param complete	<code>true</code> if all passes were rendered, <code>false</code> if the renderer was cancelled 
+	 * 					or stopped early because of its time budget or quality target.
+	 */
+	public void renderFinished(final BufferedImage image, final boolean complete);
+}
@@ -1,11 +1,14 @@
 package raytracer;
 
 import java.awt.Dimension;
-import java.awt.image.BufferedImage;
-import java.awt.image.WritableRaster;
 
 import raytracer.camera.Camera;
+import raytracer.image.FrameBuffer;
+import raytracer.metrics.CostMap;
+import raytracer.metrics.RenderMetrics;
 import raytracer.model.RenderTaskParameter;
+import raytracer.sampling.PacketSampler;
+import raytracer.sampling.Sampler;
 /**
  * This class represents a Runnable object which can be used by the
  * ExecutorService to generate a thread. It is a fragment of the image to be rendered and
@@ -20,6 +23,11 @@ import raytracer.model.RenderTaskParameter;
  *
  */
 public class RenderTask implements Runnable {
+	/**
+	 * The number of rows of a task. The tasks start at the multiples of this number, independent of the machine 
+	 * and of the strips, because the first row of a task has no upper neighbors for the sampler
+	 */
+	public static final int ROWS_PER_TASK = 8;
 	/**
 	 * Reference to the world used by the renderer
 	 */
@@ -29,8 +37,14 @@ public class RenderTask implements Runnable {
 	 */
 	private final Camera cam;
 
-	
-	private final BufferedImage image;
+	/**
+	 * The frame buffer the fragment is rendered into
+	 */
+	private final FrameBuffer frame;
+	/**
+	 * The row of the image the first row of the frame buffer belongs to
+	 */
+	private final int frameY;
 	/**
 	 * The size of the canvas to be drawn to
 	 */
@@ -39,6 +53,14 @@ public class RenderTask implements Runnable {
 	 * The recursion depth of the Tracer Object (e.g. used for reflections)
 	 */
 	private final int recursion;
+	/**
+	 * The sampler which computes the color of each pixel
+	 */
+	private final Sampler sampler;
+	/**
+	 * The map which records the cost of each pixel, <code>null</code> if the costs are not recorded
+	 */
+	private final CostMap costMap;
 	/**
 	 * Start position of the fragment that should be rendered
 	 */
@@ -47,6 +69,14 @@ public class RenderTask implements Runnable {
 	 * End position of the fragment that should be rendered
 	 */
 	private final int yEnd;
+	/**
+	 * The colors of the row above the fragment or <code>null</code> if the sampler gets no upper neighbors
+	 */
+	private final Color[] topLine;
+	/**
+	 * The array the colors of the last row of the fragment are copied to or <code>null</code>
+	 */
+	private final Color[] bottomLine;
 	/**
 	 * Creates a new RenderTask with the specified parameters.
 	 * @param parameterObject TODO
@@ -54,13 +84,18 @@ public class RenderTask implements Runnable {
 	private ProgressMonitor progressMonitor;
 	
 	public RenderTask(RenderTaskParameter parameterObject, ProgressMonitor progressMonitor) {
-		this.image = parameterObject.image;
+		this.frame = parameterObject.frame;
+		this.frameY = parameterObject.frameY;
 		this.cam = parameterObject.cam;
 		this.world = parameterObject.world;
 		this.size = parameterObject.screenSize;
 		this.recursion = parameterObject.recursion;
+		this.sampler = parameterObject.sampler;
+		this.costMap = parameterObject.costMap;
 		this.yStart = parameterObject.yStartOffset;
 		this.yEnd = parameterObject.yEndOffset;
+		this.topLine = parameterObject.topLine;
+		this.bottomLine = parameterObject.bottomLine;
 		this.progressMonitor = progressMonitor;
 	}
 	@Override
@@ -70,17 +105,40 @@ public class RenderTask implements Runnable {
 	 * enable various simultaneous threads.
 	 */
 	public void run() {
-		final WritableRaster raster = image.getRaster();
-		for (int y = yStart; y < yEnd; y++) {
-			for (int x = 0; x < size.width; x++) {		
-				final Ray ray = cam.rayFor(size.width, size.height, x, size.height - y);
-				raster.setDataElements(
-						x,
-						y,
-						new Tracer(recursion).trace(ray, world).createDataElements(image.getColorModel()) // Color value
-				);
+		final long start = System.nanoTime();
+		final Tracer tracer = new Tracer(recursion);
+		// colors of the previous line of this fragment, used by the sampler to detect edges
+		Color[] previousLine = (topLine != null) ? topLine.clone() : new Color[size.width];
+		Color[] currentLine = new Color[size.width];
+		// the cost map is recorded per pixel, so packets are only traced without it
+		final PacketSampler packets = (sampler instanceof PacketSampler && costMap == null) 
+				? (PacketSampler) sampler : null;
+		for (int y = yStart; y < yEnd && y < size.height; y++) {
+			tracer.setSeed(Tracer.DEFAULT_SEED + y);
+			if (packets != null) {
+				packets.colorsFor(cam, world, tracer, size.width, size.height, 0, size.height - y, size.width, 
+						currentLine);
 			}
-			progressMonitor.showProgress(y);
+			for (int x = 0; x < size.width; x++) {
+				if (packets == null) {
+					final long[] mark = (costMap != null) ? CostMap.mark() : null;
+					final Color left = (x > 0) ? currentLine[x - 1] : null;
+					currentLine[x] = sampler.colorFor(cam, world, tracer, size.width, size.height, x, size.height - y, 
+							left, previousLine[x]);
+					if (costMap != null) {
+						costMap.record(x, y, mark);
+					}
+				}
+				frame.set(x, y - frameY, currentLine[x]);
+			}
+			final Color[] temp = previousLine;
+			previousLine = currentLine;
+			currentLine = temp;
+			progressMonitor.advance(size.width);
+		}
+		if (bottomLine != null) {
+			System.arraycopy(previousLine, 0, bottomLine, 0, size.width);
 		}
+		RenderMetrics.counters().tile(System.nanoTime() - start);
 	}
 }
@@ -2,16 +2,38 @@ package raytracer;
 
 import java.awt.Dimension;
 import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import raytracer.camera.Camera;
+import raytracer.image.ClampToneMapper;
+import raytracer.image.FrameBuffer;
+import raytracer.image.StripWriter;
+import raytracer.image.ToneMapper;
+import raytracer.metrics.CostMap;
+import raytracer.metrics.MetricsSnapshot;
+import raytracer.metrics.RenderMetrics;
 import raytracer.model.RenderTaskParameter;
+import raytracer.sampling.Sampler;
+import raytracer.sampling.SingleSampler;
 
 /**
  * This class represents a renderer. It has a world, containing all the objects in a specific scene, a camera, a screen 
- * size and a field for the depth of recursion . The method <code>render()</code> returns a <code>BufferedImage</code>.
+ * size, a field for the depth of recursion and a sampler, which defines how many rays are traced per pixel. The 
+ * method <code>render()</code> returns a <code>BufferedImage</code>.
+ * <p>
+ * The colors are rendered into a <code>FrameBuffer</code> with their full range, which is mapped to the image by the 
+ * tone mapper of the renderer in a parallel pass after all pixels are rendered. The buffer of the last rendering can 
+ * be mapped again with another tone mapper without rendering again.
  * 
  * @author Simon Lischka
  *
@@ -46,6 +68,30 @@ public class Renderer {
 	 * The depth of recursion for recursive raytracing.
 	 */
 	private final int recursion;
+	/**
+	 * The sampler which computes the color of each pixel.
+	 */
+	private final Sampler sampler;
+	/**
+	 * The map which records the cost of each pixel, <code>null</code> if the costs are not recorded.
+	 */
+	private volatile CostMap costMap;
+	/**
+	 * The tone mapper which maps the rendered colors to the image.
+	 */
+	private volatile ToneMapper toneMapper = new ClampToneMapper();
+	/**
+	 * The frame buffer of the last rendering, <code>null</code> before the first rendering.
+	 */
+	private volatile FrameBuffer frameBuffer;
+	/**
+	 * The number of threads the renderings run in.
+	 */
+	private volatile int threads = Runtime.getRuntime().availableProcessors();
+	/**
+	 * The listeners which are notified about the progress of the renderings, in addition to the console output.
+	 */
+	private final List<ProgressListener> progressListeners = new CopyOnWriteArrayList<ProgressListener>();
 	
 	/**
 	 * Constructs a new <code>Renderer</code> with the specified parameters.
@@ -54,15 +100,31 @@ public class Renderer {
 	 * @param cam		The camera of the <code>Renderer</code>.
 	 * @param size		The screen size of the <code>Renderer</code>.
 	 * @param recursion	The depth of recursion of the <code>Renderer</code>.
+	 * @param sampler	The sampler of the <code>Renderer</code>, e.g. an <code>AdaptiveSampler</code> for 
+	 * 					anti-aliasing.
 	 */
-	public Renderer(final World world, final Camera cam, final Dimension size, final int recursion) {
-		if (world == null || cam == null || size == null) {
+	public Renderer(final World world, final Camera cam, final Dimension size, final int recursion, 
+			final Sampler sampler) {
+		if (world == null || cam == null || size == null || sampler == null) {
 			throw new IllegalArgumentException("The parameters must not be null.");
 		}
 		this.world = world;
 		this.cam = cam;
 		this.size = size;
 		this.recursion = recursion;
+		this.sampler = sampler;
+	}
+	
+	/**
+	 * Constructs a new <code>Renderer</code> with the specified parameters, which traces one ray per pixel.
+	 * 
+	 * @param world		The world of the <code>Renderer</code>.
+	 * @param cam		The camera of the <code>Renderer</code>.
+	 * @param size		The screen size of the <code>Renderer</code>.
+	 * @param recursion	The depth of recursion of the <code>Renderer</code>.
+	 */
+	public Renderer(final World world, final Camera cam, final Dimension size, final int recursion) {
+		this(world, cam, size, recursion, new SingleSampler());
 	}
 	
 	/**
@@ -87,6 +149,79 @@ public class Renderer {
 		this(world, cam, new Dimension(WIDTH, HEIGHT), 2);
 	}
 	
+	/**
+	 * Sets a map which records the cost of each pixel during the next renderings, e.g. to find the expensive parts of 
+	 * a scene. The size of the map must match the screen size of this renderer.
+	 * 
+	 * @param costMap	The cost map, <code>null</code> to not record the costs.
+	 */
+	public void setCostMap(final CostMap costMap) {
+		if (costMap != null && (costMap.width != size.width || costMap.height != size.height)) {
+			throw new IllegalArgumentException("The size of the cost map must match the screen size.");
+		}
+		this.costMap = costMap;
+	}
+	
+	/**
+	 * Sets the tone mapper which maps the rendered colors to the image. The default clamps the colors to 1.
+	 * 
+	 * @param toneMapper	The tone mapper. Must not be <code>null</code>.
+	 */
+	public void setToneMapper(final ToneMapper toneMapper) {
+		if (toneMapper == null) {
+			throw new IllegalArgumentException("The parameter 'toneMapper' must not be null.");
+		}
+		this.toneMapper = toneMapper;
+	}
+	
+	/**
+	 * Sets the number of threads the renderings run in. The default is the number of processors.
+	 * 
+	 * @param threads	The number of threads. Must be positive.
+	 */
+	public void setThreads(final int threads) {
+		if (threads <= 0) {
+			throw new IllegalArgumentException("The parameter 'threads' must be positive.");
+		}
+		this.threads = threads;
+	}
+	
+	/**
+	 * @return	The number of threads the renderings run in.
+	 */
+	public int getThreads() {
+		return threads;
+	}
+	
+	/**
+	 * @return	The frame buffer of the last rendering with the full range of the colors, <code>null</code> before the 
+	 * 			first rendering.
+	 */
+	public FrameBuffer getFrameBuffer() {
+		return frameBuffer;
+	}
+	
+	/**
+	 * Adds a listener which is notified about the progress of the renderings, e.g. to show a progress bar.
+	 * 
+	 * @param listener	The listener to be added. Must not be <code>null</code>.
+	 */
+	public void addProgressListener(final ProgressListener listener) {
+		if (listener == null) {
+			throw new IllegalArgumentException("The parameter 'listener' must not be null.");
+		}
+		progressListeners.add(listener);
+	}
+	
+	/**
+	 * Removes a progress listener.
+	 * 
+	 * @param listener	The listener to be removed.
+	 */
+	public void removeProgressListener(final ProgressListener listener) {
+		progressListeners.remove(listener);
+	}
+	
 	/**
 	 * Returns a <code>BufferedImage</code> of a scene as defined by this world, this camera and this size.
 	 * 
@@ -94,42 +229,172 @@ public class Renderer {
 	 */
 	public BufferedImage render() {
 		final BufferedImage image = new BufferedImage(size.width, size.height, BufferedImage.TYPE_INT_RGB);
+		final FrameBuffer frame = new FrameBuffer(size.width, size.height);
 //		PixelGrabber grabber = new PixelGrabber(image, 0, 0, size.width, size.height, true);
-		final int nThreads = Runtime.getRuntime().availableProcessors();
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		final MetricsSnapshot metrics = RenderMetrics.snapshot();
+		final ProgressMonitor progressMonitor = startProgress();
+		final List<Future<?>> workers = submit(executor, frame, 0, null, null, progressMonitor);
 		
-		final ExecutorService executor = Executors.newFixedThreadPool(nThreads);
-		final int interval = nThreads;
-		
-		final ProgressMonitor progressMonitor = new ProgressMonitor("Rendering", size.height, 5);
-		
-		for (int y = 0; y < size.height; y+= interval) {
-			
-			final Runnable worker = new Thread(
-					new RenderTask(
-							new RenderTaskParameter(
-									y,
-									y + interval,
-									size,
-									world,
-									cam, 
-									image, 
-									recursion
-							),
-							progressMonitor
-					)
+		final long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(MAX_RENDER_TIME_MINUTES);
+		try {
+			await(workers, deadline);
+			frame.writeTo(image, toneMapper, executor);
+		} catch (InterruptedException e) {
+			System.err.println("Thread was interrupted.");
+			Thread.currentThread().interrupt();
+		} catch (TimeoutException e) {
+			System.err.println("The rendering exceeded " + MAX_RENDER_TIME_MINUTES + " minutes.");
+		} finally {
+			executor.shutdown();
+		}
+		frameBuffer = frame;
+		progressMonitor.finish();
+		RenderMetrics.frameFinished(metrics);
+		return image;
+	}
+	
+	/**
+	 * Renders the scene in strips of the specified height and writes each strip to the files as soon as it is 
+	 * rendered, so images larger than the memory can be rendered. Only the strip which is rendered and the strip 
+	 * which is written are held in memory. The rows of a strip are rendered in parallel, the strips one after the 
+	 * other from the top to the bottom of the image.
+	 * <p>
+	 * The formats are chosen by the extensions of the file names, as supported by <code>StripWriter</code>. The 
+	 * frame buffer of this renderer is not updated.
+	 * 
+	 * @param stripHeight	The number of rows of a strip. Must be positive.
+	 * @param files			The files the image is written to. Must not be <code>null</code> or empty.
+	 * @throws IOException	If a file can not be written.
+	 */
+	public void render(final int stripHeight, final File... files) throws IOException {
+		if (files == null || files.length == 0) {
+			throw new IllegalArgumentException("The parameter 'files' must not be null or empty.");
+		}
+		if (stripHeight <= 0) {
+			throw new IllegalArgumentException("The parameter 'stripHeight' must be positive.");
+		}
+		final List<StripWriter> writers = new ArrayList<StripWriter>();
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		final MetricsSnapshot metrics = RenderMetrics.snapshot();
+		final ProgressMonitor progressMonitor = startProgress();
+		final long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(MAX_RENDER_TIME_MINUTES);
+		try {
+			for (File file : files) {
+				writers.add(StripWriter.open(file, size.width, size.height, toneMapper));
+			}
+			FrameBuffer previous = null;
+			Color[] topLine = null;
+			for (int y = 0; y < size.height; y += stripHeight) {
+				final FrameBuffer strip = new FrameBuffer(size.width, Math.min(stripHeight, size.height - y));
+				final Color[] bottomLine = new Color[size.width];
+				final List<Future<?>> workers = submit(executor, strip, y, topLine, bottomLine, progressMonitor);
+				// the previous strip is written while this one is rendered
+				if (previous != null) {
+					for (StripWriter writer : writers) {
+						writer.write(previous);
+					}
+				}
+				await(workers, deadline);
+				previous = strip;
+				topLine = bottomLine;
+			}
+			for (StripWriter writer : writers) {
+				writer.write(previous);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while rendering.", e);
+		} catch (TimeoutException e) {
+			throw new IOException("The rendering exceeded " + MAX_RENDER_TIME_MINUTES + " minutes.", e);
+		} finally {
+			executor.shutdownNow();
+			for (StripWriter writer : writers) {
+				writer.close();
+			}
+		}
+		progressMonitor.finish();
+		RenderMetrics.frameFinished(metrics);
+	}
+	
+	/**
+	 * Creates and starts the progress monitor of a rendering.
+	 * 
+	 * @return	The progress monitor.
+	 */
+	private ProgressMonitor startProgress() {
+		final ProgressMonitor progressMonitor = new ProgressMonitor("Rendering", (long) size.width * size.height);
+		progressMonitor.addProgressListener(new ConsoleProgressListener("Rendering"));
+		for (ProgressListener listener : progressListeners) {
+			progressMonitor.addProgressListener(listener);
+		}
+		progressMonitor.start();
+		return progressMonitor;
+	}
+	
+	/**
+	 * Submits the tasks which render the rows of the specified frame buffer. The tasks start at the multiples of 
+	 * <code>RenderTask.ROWS_PER_TASK</code>, so the image does not depend on the machine or on the strips.
+	 * 
+	 * @param executor			The executor of the tasks.
+	 * @param frame				The frame buffer.
+	 * @param frameY			The row of the image the first row of the frame buffer belongs to.
+	 * @param topLine			The colors of the row above the frame buffer, <code>null</code> if there is none.
+	 * @param bottomLine		The array the colors of the last row of the frame buffer are copied to or 
+	 * 							<code>null</code>.
+	 * @param progressMonitor	The progress monitor of the rendering.
+	 * @return					The futures of the tasks.
+	 */
+	private List<Future<?>> submit(final ExecutorService executor, final FrameBuffer frame, final int frameY, 
+			final Color[] topLine, final Color[] bottomLine, final ProgressMonitor progressMonitor) {
+		final int frameEnd = frameY + frame.height;
+		final List<Future<?>> workers = new ArrayList<Future<?>>();
+		for (int y = frameY; y < frameEnd; y = (y / RenderTask.ROWS_PER_TASK + 1) * RenderTask.ROWS_PER_TASK) {
+			final int yEnd = Math.min((y / RenderTask.ROWS_PER_TASK + 1) * RenderTask.ROWS_PER_TASK, frameEnd);
+			final RenderTaskParameter parameter = new RenderTaskParameter(
+					y,
+					yEnd,
+					size,
+					world,
+					cam, 
+					frame, 
+					frameY,
+					recursion,
+					sampler,
+					costMap
 			);
+			// a task continued from the previous strip starts with the last row of that strip
+			if (y == frameY && y % RenderTask.ROWS_PER_TASK != 0) {
+				parameter.topLine = topLine;
+			}
+			if (yEnd == frameEnd) {
+				parameter.bottomLine = bottomLine;
+			}
+			
+			final Runnable worker = new Thread(new RenderTask(parameter, progressMonitor));
 			
-			executor.execute(worker);
+			workers.add(executor.submit(worker));
 		
 		}
-		
-		executor.shutdown();
+		return workers;
+	}
+	
+	/**
+	 * Waits until the tasks are completed. A failure of a task is thrown again wrapped in a 
+	 * <code>RuntimeException</code>.
+	 * 
+	 * @param workers	The futures of the tasks.
+	 * @param deadline	The value of <code>System.nanoTime()</code> the tasks must be completed by.
+	 */
+	private static void await(final List<Future<?>> workers, final long deadline) 
+			throws InterruptedException, TimeoutException {
 		try {
-			executor.awaitTermination(MAX_RENDER_TIME_MINUTES, TimeUnit.MINUTES);
-		} catch (InterruptedException e) {
-			System.err.println("Thread was interrupted.");
+			for (Future<?> future : workers) {
+				future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+			}
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Rendering failed.", e.getCause());
 		}
-		return image;
 	}
 	
 	public Dimension getSize() {
@@ -0,0 +1,161 @@
+package raytracer;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+
+import raytracer.image.PngWriter;
+import raytracer.sampling.Sampler;
+import raytracer.sampling.SingleSampler;
+
+/**
+ * This class renders a sequence of frames of an animation to PNG files. 
+ * <p>
+ * All frames are rendered from the same world, so meshes, textures and other static structures are loaded only 
+ * once. The dynamic parts of the world are moved by the <code>Animation</code> between two frames. The worker 
+ * threads are shared by all frames and each frame is encoded and written on a separate thread while the next frame 
+ * is traced.
+ * 
+ * @author Simon Lischka
+ *
+ */
+public class SequenceRenderer {
+	/**
+	 * The world of this renderer.
+	 */
+	private final World world;
+	/**
+	 * The screen size of this renderer.
+	 */
+	private final Dimension size;
+	/**
+	 * The depth of recursion for recursive raytracing.
+	 */
+	private final int recursion;
+	/**
+	 * The sampler which computes the color of each pixel.
+	 */
+	private final Sampler sampler;
+	
+	/**
+	 * Constructs a new <code>SequenceRenderer</code> with the specified parameters.
+	 * 
+	 * @param world		The world of the <code>SequenceRenderer</code>.
+	 * @param size		The screen size of the <code>SequenceRenderer</code>.
+	 * @param recursion	The depth of recursion of the <code>SequenceRenderer</code>.
+	 * @param sampler	The sampler of the <code>SequenceRenderer</code>.
+	 */
+	public SequenceRenderer(final World world, final Dimension size, final int recursion, final Sampler sampler) {
+		if (world == null || size == null || sampler == null) {
+			throw new IllegalArgumentException("The parameters must not be null.");
+		}
+		this.world = world;
+		this.size = size;
+		this.recursion = recursion;
+		this.sampler = sampler;
+	}
+	
+	/**
+	 * Constructs a new <code>SequenceRenderer</code> with the specified parameters, which traces one ray per pixel.
+	 * 
+	 * @param world		The world of the <code>SequenceRenderer</code>.
+	 * @param size		The screen size of the <code>SequenceRenderer</code>.
+	 * @param recursion	The depth of recursion of the <code>SequenceRenderer</code>.
+	 */
+	public SequenceRenderer(final World world, final Dimension size, final int recursion) {
+		this(world, size, recursion, new SingleSampler());
+	}
+	
+	/**
+	 * Renders the specified number of frames of the animation into the directory. The files are named after the 
+	 * prefix and the number of the frame, e.g. <code>frame0007.png</code>. This method blocks until all frames are 
+	 * written.
+	 * 
+	 * @param animation		The animation to be rendered. Must not be <code>null</code>.
+	 * @param frames		The number of frames.
+	 * @param directory		The directory the frames are written to. Must not be <code>null</code>.
+	 * @param prefix		The prefix of the file names. Must not be <code>null</code>.
+	 * @throws IOException	If a frame can not be written.
+	 */
+	public void render(final Animation animation, final int frames, final File directory, final String prefix) 
+			throws IOException {
+		if (animation == null || directory == null || prefix == null) {
+			throw new IllegalArgumentException("The parameters must not be null.");
+		}
+		if (frames < 0) {
+			throw new IllegalArgumentException("The parameter 'frames' must not be negative.");
+		}
+		final ExecutorService workers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		final ExecutorService writer = Executors.newSingleThreadExecutor();
+		Future<Void> pending = null;
+		try {
+			for (int frame = 0; frame < frames; frame++) {
+				animation.update(frame);
+				final ProgressiveRenderer renderer = new ProgressiveRenderer(
+						world, animation.cameraFor(frame), size, recursion, sampler, 1);
+				renderer.setExecutor(workers);
+				final BufferedImage image = renderer.render();
+				// at most one frame waits for being written, so the images do not pile up in memory
+				if (pending != null) {
+					pending.get();
+				}
+				pending = writer.submit(new WriteTask(image, new File(directory, fileName(prefix, frame))));
+			}
+			if (pending != null) {
+				pending.get();
+			}
+		} catch (InterruptedException e) {
+			System.err.println("Thread was interrupted.");
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new RuntimeException("Writing a frame failed.", e.getCause());
+		} finally {
+			workers.shutdownNow();
+			writer.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Returns the file name of the specified frame.
+	 * 
+	 * @param prefix	The prefix of the file name.
+	 * @param frame		The number of the frame.
+	 * @return			The file name.
+	 */
+	public static String fileName(final String prefix, final int frame) {
+		return String.format("%s%04d.png", prefix, frame);
+	}
+	
+	public Dimension getSize() {
+		return size;
+	}
+	
+	/**
+	 * This task encodes a frame as PNG and writes it to a file.
+	 */
+	private static class WriteTask implements Callable<Void> {
+		private final BufferedImage image;
+		private final File file;
+		
+		public WriteTask(final BufferedImage image, final File file) {
+			this.image = image;
+			this.file = file;
+		}
+		
+		@Override
+		public Void call() throws IOException {
+			PngWriter.write(image, file);
+			return null;
+		}
+	}
+}
@@ -1,44 +1,336 @@
 package raytracer;
 
 import raytracer.geometry.Hit;
+import raytracer.geometry.RayPacket;
+import raytracer.material.Material;
+import raytracer.metrics.MetricCounters;
+import raytracer.metrics.RenderMetrics;
 
 /**
- *  This class represents a tracer object to enable 
- *  recursive raytracing. It generates new tracer objects until the
- *  recursion depth specified in the constructor is reached.
+ *  This class represents a tracer object to enable
+ *  recursive raytracing without recursive method calls. Rays which are
+ *  still to be traced are kept on an explicit stack together with their
+ *  weight, i.e. the share they contribute to the color of the traced ray,
+ *  and their depth.
  *  <br>
- *  It calls the colorFor method with its parents hit object and is used e.g. 
- *  for reflections.
- * 
+ *  Materials shade a hit with <code>Material.shade</code> and spawn
+ *  secondary rays, e.g. for reflections, with <code>spawn</code>. Branches
+ *  whose contribution to the pixel falls below a threshold are dropped and
+ *  deep branches are terminated by russian roulette.
+ *  <br>
+ *  A tracer is not thread-safe, every render thread needs its own tracer.
+ *
  * @author Sebastian Dass&eacute;
  */
 public class Tracer {
-	/** 
+	/**
+	 * The default contribution below which a branch is dropped
+	 */
+	public static final double DEFAULT_CONTRIBUTION_THRESHOLD = 1.0 / 512.0;
+	/**
+	 * The default depth from which on branches are terminated by russian roulette
+	 */
+	public static final int DEFAULT_ROULETTE_DEPTH = 6;
+	/**
+	 * The default seed of the random numbers, so renders are reproducible
+	 */
+	public static final long DEFAULT_SEED = 0x5DEECE66DL;
+	/**
+	 * The minimum probability with which a branch survives the russian roulette
+	 */
+	private static final double MIN_SURVIVAL = 0.05;
+	/**
+	 * The initial capacity of the ray stack
+	 */
+	private static final int INITIAL_CAPACITY = 32;
+
+	/**
 	 * Recursion depth
 	 */
-	private int recursions;
+	private final int recursions;
+	/**
+	 * The contribution below which a branch is dropped
+	 */
+	private final double contributionThreshold;
+	/**
+	 * The depth from which on branches are terminated by russian roulette
+	 */
+	private final int rouletteDepth;
+	/**
+	 * The rays on the stack
+	 */
+	private Ray[] rays;
+	/**
+	 * The weights of the rays on the stack, three components per ray
+	 */
+	private double[] weights;
+	/**
+	 * The contributions of the rays on the stack to the pixel
+	 */
+	private double[] contributions;
+	/**
+	 * The depths of the rays on the stack
+	 */
+	private int[] depths;
+	/**
+	 * The number of rays on the stack
+	 */
+	private int size;
+	/**
+	 * The weight of the ray whose hit is currently shaded, three components
+	 */
+	private final double[] weight;
+	/**
+	 * The contribution to the pixel of the ray whose hit is currently shaded
+	 */
+	private double contribution;
+	/**
+	 * The depth of the ray whose hit is currently shaded, -1 if no hit is shaded
+	 */
+	private int depth;
+	/**
+	 * The state of the random numbers of the russian roulette and the light selection
+	 */
+	private long random;
+
     /**
      * Constructor of the tracer object, recursion depth is specified
      * @param recursions The recursion depth of the tracer object
      */
 	public Tracer(final int recursions) {
+		this(recursions, DEFAULT_CONTRIBUTION_THRESHOLD, DEFAULT_ROULETTE_DEPTH);
+	}
+	/**
+	 * Constructor of the tracer object
+	 * @param recursions            The recursion depth of the tracer object
+	 * @param contributionThreshold The contribution below which a branch is dropped, 0 to trace all branches
+	 * @param rouletteDepth         The depth from which on branches are terminated by russian roulette,
+	 *                              <code>Integer.MAX_VALUE</code> to disable the roulette
+	 */
+	public Tracer(final int recursions, final double contributionThreshold, final int rouletteDepth) {
+		if (contributionThreshold < 0 || rouletteDepth < 1) {
+			throw new IllegalArgumentException("The threshold must not be negative and the depth must be positive.");
+		}
 		this.recursions = recursions;
+		this.contributionThreshold = contributionThreshold;
+		this.rouletteDepth = rouletteDepth;
+		rays = new Ray[INITIAL_CAPACITY];
+		weights = new double[INITIAL_CAPACITY * 3];
+		contributions = new double[INITIAL_CAPACITY];
+		depths = new int[INITIAL_CAPACITY];
+		weight = new double[3];
+		depth = -1;
+		setSeed(DEFAULT_SEED);
 	}
 	/**
      * Trace method, generates a hit using the world's hit function and
-     * uses the resulting hit to generate new Tracer objects.
+     * shades it with the material of the hit geometry, including all
+     * secondary rays spawned by the materials.
+     * <br>
+     * If it is called while a hit is shaded, e.g. by a material which
+     * still traces its secondary rays itself, the ray is traced one level
+     * deeper than the shaded hit.
      * @param ray    Input ray to be ray traced
      * @param world  World used for generating hits
+     * @return       The color of the ray
      */
 	public Color trace(final Ray ray, final World world) {
-		if (recursions < 0) {
-			return world.backgroundColor;
+		final int base = size;
+		push(ray, 1, 1, 1, (depth < 0) ? 1 : contribution, depth + 1);
+		final double[] rgb = new double[3];
+		traceStack(base, world, rgb);
+		return new Color(rgb);
+	}
+	/**
+	 * Traces a packet of primary rays. The rays are intersected with the
+	 * world together, then each hit is shaded like a hit of <code>trace</code>,
+	 * including all secondary rays, which are traced one by one.
+	 * @param packet The packet of primary rays
+	 * @param world  World used for generating hits
+	 * @param colors The array the colors of the rays are stored in, in the order of the packet
+	 */
+	public void trace(final RayPacket packet, final World world, final Color[] colors) {
+		if (depth >= 0) {
+			throw new IllegalStateException("Packets can only be traced as primary rays.");
 		}
-		final Hit hit = world.hit(ray);
-		if (hit == null) {
-			return world.backgroundColor;
+		world.hit(packet);
+		final MetricCounters counters = RenderMetrics.counters();
+		final int n = packet.size();
+		for (int i = 0; i < n; i++) {
+			counters.primaryRay();
+			final Hit hit = packet.getHit(i);
+			colors[i] = (hit == null || recursions < 0) ? world.backgroundColor : shade(hit.geo.material, hit, world);
 		}
-		return hit.geo.material.colorFor(hit, world, new Tracer(recursions - 1));
 	}
-
+	/**
+	 * Shades a hit with the specified material including all secondary
+	 * rays the material spawns. This is used by materials which are asked
+	 * for their complete color with <code>colorFor</code>.
+	 * @param material The material
+	 * @param hit      The hit to be shaded
+	 * @param world    The world
+	 * @return         The color of the hit
+	 */
+	public Color shade(final Material material, final Hit hit, final World world) {
+		final int base = size;
+		final double wr = weight[0];
+		final double wg = weight[1];
+		final double wb = weight[2];
+		final double c = contribution;
+		final int d = depth;
+		if (depth < 0) {
+			contribution = 1;
+			depth = 0;
+		}
+		weight[0] = weight[1] = weight[2] = 1;
+		final Color local = material.shade(hit, world, this);
+		final double[] rgb = new double[] {local.r, local.g, local.b};
+		traceStack(base, world, rgb);
+		weight[0] = wr;
+		weight[1] = wg;
+		weight[2] = wb;
+		contribution = c;
+		depth = d;
+		return new Color(rgb);
+	}
+	/**
+	 * Spawns a secondary ray from the hit which is currently shaded. The
+	 * color of the ray is multiplied by the specified weight and added to
+	 * the color of the shaded hit. The ray is dropped if its contribution
+	 * to the pixel is too small.
+	 * @param ray    The secondary ray
+	 * @param weight The weight of the secondary ray, e.g. the color of a reflection
+	 * @return       <code>true</code> if the ray is traced, <code>false</code> if it is dropped
+	 */
+	public boolean spawn(final Ray ray, final Color weight) {
+		if (!contributes(weight)) {
+			return false;
+		}
+		final double c = contribution * Math.max(weight.r, Math.max(weight.g, weight.b));
+		double scale = 1;
+		if (depth + 1 >= rouletteDepth && c < 1) {
+			final double survival = Math.max(c, MIN_SURVIVAL);
+			if (nextRandom() >= survival) {
+				return false;
+			}
+			scale = 1 / survival;
+		}
+		push(ray, this.weight[0] * weight.r * scale, this.weight[1] * weight.g * scale,
+				this.weight[2] * weight.b * scale, c, depth + 1);
+		return true;
+	}
+	/**
+	 * Tests whether a secondary ray with the specified weight, spawned from
+	 * the hit which is currently shaded, would contribute to the pixel. The
+	 * maximum possible contribution of the ray is the product of the largest
+	 * components of all weights on its path. Materials use this to skip
+	 * building rays which <code>spawn</code> would drop anyway.
+	 * @param weight The weight of the secondary ray
+	 * @return       <code>true</code> if the ray would be traced
+	 */
+	public boolean contributes(final Color weight) {
+		if (depth < 0) {
+			throw new IllegalStateException("Rays can only be spawned while a hit is shaded.");
+		}
+		final double c = contribution * Math.max(weight.r, Math.max(weight.g, weight.b));
+		return c >= contributionThreshold && c > 0;
+	}
+	/**
+	 * Traces all rays above the specified base of the stack and adds their
+	 * weighted colors to the specified components.
+	 * @param base  The size of the stack which is left
+	 * @param world The world
+	 * @param rgb   The components the colors are added to
+	 */
+	private void traceStack(final int base, final World world, final double[] rgb) {
+		final double wr = weight[0];
+		final double wg = weight[1];
+		final double wb = weight[2];
+		final double c = contribution;
+		final int d = depth;
+		while (size > base) {
+			size--;
+			final Ray ray = rays[size];
+			rays[size] = null;
+			final int i = size * 3;
+			final double r = weights[i];
+			final double g = weights[i + 1];
+			final double b = weights[i + 2];
+			Color color = world.backgroundColor;
+			if (depths[size] <= recursions) {
+				if (depths[size] == 0) {
+					RenderMetrics.counters().primaryRay();
+				}
+				final Hit hit = world.hit(ray);
+				if (hit != null) {
+					weight[0] = r;
+					weight[1] = g;
+					weight[2] = b;
+					contribution = contributions[size];
+					depth = depths[size];
+					color = hit.geo.material.shade(hit, world, this);
+				}
+			}
+			rgb[0] += r * color.r;
+			rgb[1] += g * color.g;
+			rgb[2] += b * color.b;
+		}
+		weight[0] = wr;
+		weight[1] = wg;
+		weight[2] = wb;
+		contribution = c;
+		depth = d;
+	}
+	/**
+	 * Pushes a ray on the stack.
+	 */
+	private void push(final Ray ray, final double r, final double g, final double b, final double c, final int d) {
+		if (size == rays.length) {
+			final int capacity = size * 2;
+			final Ray[] newRays = new Ray[capacity];
+			System.arraycopy(rays, 0, newRays, 0, size);
+			rays = newRays;
+			final double[] newWeights = new double[capacity * 3];
+			System.arraycopy(weights, 0, newWeights, 0, size * 3);
+			weights = newWeights;
+			final double[] newContributions = new double[capacity];
+			System.arraycopy(contributions, 0, newContributions, 0, size);
+			contributions = newContributions;
+			final int[] newDepths = new int[capacity];
+			System.arraycopy(depths, 0, newDepths, 0, size);
+			depths = newDepths;
+		}
+		rays[size] = ray;
+		weights[size * 3] = r;
+		weights[size * 3 + 1] = g;
+		weights[size * 3 + 2] = b;
+		contributions[size] = c;
+		depths[size] = d;
+		size++;
+	}
+	/**
+	 * Sets the seed of the random numbers of this tracer. The renderers reseed
+	 * the tracer per row, so a row gets the same numbers independent of the
+	 * thread that traces it.
+	 * @param seed The seed of the random numbers
+	 */
+	public void setSeed(final long seed) {
+		// mixes the seed, so consecutive seeds start with uncorrelated numbers
+		long z = seed + 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		random = (z ^ (z >>> 31)) | 1;
+	}
+	/**
+	 * Returns the next random number of this tracer, e.g. for the russian
+	 * roulette or to select lights. A tracer is used by a single thread, so
+	 * the numbers need no synchronization.
+	 * @return A random number between 0 (including) and 1 (excluding)
+	 */
+	public double nextRandom() {
+		random ^= random << 13;
+		random ^= random >>> 7;
+		random ^= random << 17;
+		return (random >>> 11) * 0x1.0p-53;
+	}
 }
@@ -1,10 +1,21 @@
 package raytracer;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
+import java.util.List;
 
+import raytracer.geometry.BoundingVolumeHierarchy;
+import raytracer.geometry.Bounds;
 import raytracer.geometry.Geometry;
 import raytracer.geometry.Hit;
+import raytracer.geometry.Node;
+import raytracer.geometry.RayPacket;
 import raytracer.light.Light;
+import raytracer.light.LightSelection;
+import raytracer.light.LightTree;
+import raytracer.math.Normal3;
+import raytracer.math.Point3;
 
 /**
  * This class contains all <code>Geometry</code> objects of a scene. Those objects are stored in a list and can be 
@@ -37,6 +48,26 @@ public class World {
 	 * The index of refraction of this world.
 	 */
 	public final double indexOfRefraction;
+	/**
+	 * The factor by which the estimated cost of a refitted hierarchy may exceed the cost of the hierarchy when it 
+	 * was built, before it is built again.
+	 */
+	private static final double REBUILD_COST = 1.5;
+	/**
+	 * The bounding volume hierarchy over the elements of this world, built on the first hit and again after 
+	 * elements were added or removed. It is refitted after nodes changed.
+	 */
+	private volatile TopLevel topLevel;
+	/**
+	 * The number of lights selected per shaded point. Worlds with no more lights than this shade every point with 
+	 * all lights.
+	 */
+	private volatile int lightSamples = LightTree.DEFAULT_SAMPLES;
+	/**
+	 * The lights of this world as they are shaded, taken on the first selection and again after lights were added 
+	 * or removed.
+	 */
+	private volatile LightSnapshot lightSnapshot;
 	
 	/**
 	 * Creates a new <code>World</code> with the specified background color, ambient light color and index of refraction.
@@ -67,6 +98,7 @@ public class World {
 	@Deprecated
 	public void addElement(final Geometry g) {
 		elements.add(g);
+		topLevel = null;
 	}
 	
 	/**
@@ -83,6 +115,7 @@ public class World {
 		for (Geometry g : gg) {
 			elements.add(g);
 		}
+		topLevel = null;
 	}
 	
 	/**
@@ -92,6 +125,7 @@ public class World {
 	 */
 	public void removeElement(final Light l) {
 		elements.remove(l);
+		topLevel = null;
 	}
 	
 	/**
@@ -102,6 +136,7 @@ public class World {
 	@Deprecated
 	public void addLight(final Light l) {
 		lights.add(l);
+		lightSnapshot = null;
 	}
 	
 	/**
@@ -113,6 +148,7 @@ public class World {
 		for (Light l : ll) {
 			lights.add(l);
 		}
+		lightSnapshot = null;
 	}
 	
 	/**
@@ -122,13 +158,78 @@ public class World {
 	 */
 	public void removeLight(final Light l) {
 		lights.remove(l);
+		lightSnapshot = null;
 	}
 	
 	/**
 	 * @return	An array containing all the <code>Light</code>s in this world.
 	 */
 	public Light[] getLights() {
-		return lights.toArray(new Light[lights.size()]);
+		return lightSnapshot().lights.clone();
+	}
+	
+	/**
+	 * Sets the number of lights selected per shaded point. A world with more lights shades every point with this 
+	 * number of lights chosen by their importance for the point, a world with fewer lights with all of them.
+	 * 
+	 * @param samples	The number of lights. Must be positive.
+	 */
+	public void setLightSamples(final int samples) {
+		if (samples <= 0) {
+			throw new IllegalArgumentException("The parameter 'samples' must be positive.");
+		}
+		lightSamples = samples;
+	}
+	
+	/**
+	 * @return	The number of lights selected per shaded point.
+	 */
+	public int getLightSamples() {
+		return lightSamples;
+	}
+	
+	/**
+	 * Selects the lights to shade the specified point. If this world has no more lights than 
+	 * <code>getLightSamples()</code>, all lights are selected with the weight 1. Otherwise a <code>LightTree</code> 
+	 * selects the lights by their importance for the point and weights them so the weighted sum of their 
+	 * contributions estimates the sum over all lights.
+	 * 
+	 * @param p			The point to be shaded. Must not be <code>null</code>.
+	 * @param n			The normal of the surface at the point. Must not be <code>null</code>.
+	 * @param tracer	The tracer which provides the random numbers, <code>null</code> to use the random numbers of 
+	 * 					the thread.
+	 * @return			The selected lights.
+	 */
+	public LightSelection selectLights(final Point3 p, final Normal3 n, final Tracer tracer) {
+		if (p == null || n == null) {
+			throw new IllegalArgumentException("The parameters must not be null.");
+		}
+		final LightSnapshot snapshot = lightSnapshot();
+		final int samples = lightSamples;
+		if (snapshot.lights.length <= samples) {
+			return snapshot.all;
+		}
+		return snapshot.tree().select(p, n, samples, tracer);
+	}
+	
+	/**
+	 * Returns the snapshot of the lights of this world. It is taken again if lights were added or removed since it 
+	 * was taken.
+	 * 
+	 * @return	The snapshot.
+	 */
+	private LightSnapshot lightSnapshot() {
+		LightSnapshot snapshot = lightSnapshot;
+		if (snapshot == null) {
+			synchronized (this) {
+				snapshot = lightSnapshot;
+				if (snapshot == null) {
+					snapshot = new LightSnapshot(lights.toArray(new Light[lights.size()]));
+					lightSnapshot = snapshot;
+				}
+			}
+		}
+		return snapshot;
 	}
 	
 	/**
@@ -144,8 +245,9 @@ public class World {
 		if (ray == null) {
 			throw new IllegalArgumentException("The parameter 'ray' must not be null.");
 		}
+		final TopLevel top = topLevel();
 		Hit minHit = null;
-		for (final Geometry element : elements) {
+		for (final Geometry element : top.unbounded) {
 			final Hit hit = element.hit(ray);
 			if (hit == null) {
 				continue;
@@ -154,6 +256,268 @@ public class World {
 				minHit = hit;
 			}
 		}
-		return minHit;
+		return top.hit(ray, minHit);
+	}
+	
+	/**
+	 * Intersects all rays of the specified packet with this <code>World</code>. Afterwards the packet holds the 
+	 * closest hit of each ray, as <code>hit(Ray)</code> would return it.
+	 * 
+	 * @param packet	The packet of rays. Must not be <code>null</code>.
+	 */
+	public void hit(final RayPacket packet) {
+		if (packet == null) {
+			throw new IllegalArgumentException("The parameter 'packet' must not be null.");
+		}
+		final TopLevel top = topLevel();
+		for (final Geometry element : top.unbounded) {
+			element.hit(packet);
+		}
+		top.hit(packet);
+	}
+	
+	/**
+	 * Returns the bounding volume hierarchy over the elements of this world. It is built again if elements were 
+	 * added or removed since it was built. If only the transformations or geometries of nodes changed, e.g. between 
+	 * two frames of an animation, it is refitted to the new bounds of these nodes instead.
+	 * 
+	 * @return	The hierarchy.
+	 */
+	private TopLevel topLevel() {
+		final long modifications = Node.getModifications();
+		TopLevel top = topLevel;
+		if (top == null || top.modifications != modifications) {
+			synchronized (this) {
+				top = topLevel;
+				if (top == null || top.modifications != modifications) {
+					top = (top == null) ? new TopLevel(elements, modifications) : top.update(elements, modifications);
+					topLevel = top;
+				}
+			}
+		}
+		return top;
+	}
+	
+	/**
+	 * This class holds the lights of a world as an array, so shading does not copy the list of lights for every 
+	 * point. The selection of all lights is shared by all points, the light tree is built on its first use.
+	 */
+	private static class LightSnapshot {
+		private final Light[] lights;
+		private final LightSelection all;
+		private volatile LightTree tree;
+		
+		LightSnapshot(final Light[] lights) {
+			this.lights = lights;
+			all = new LightSelection(lights);
+		}
+		
+		/**
+		 * @return	The tree over the lights.
+		 */
+		LightTree tree() {
+			LightTree t = tree;
+			if (t == null) {
+				synchronized (this) {
+					t = tree;
+					if (t == null) {
+						t = new LightTree(lights);
+						tree = t;
+					}
+				}
+			}
+			return t;
+		}
+	}
+	
+	/**
+	 * This immutable class holds the bounding volume hierarchy over the bounded elements of a world and the 
+	 * unbounded elements, e.g. planes, which are tested against every ray.
+	 */
+	private static class TopLevel {
+		private final Geometry[] bounded;
+		private final Geometry[] unbounded;
+		private final double[] boxes;
+		private final long[] versions;
+		private final BoundingVolumeHierarchy hierarchy;
+		private final double builtCost;
+		private final long modifications;
+		
+		TopLevel(final List<Geometry> elements, final long modifications) {
+			final List<Geometry> bounded = new ArrayList<Geometry>();
+			final List<Bounds> bounds = new ArrayList<Bounds>();
+			final List<Geometry> unbounded = new ArrayList<Geometry>();
+			for (Geometry element : elements) {
+				final Bounds b = element.getBounds();
+				if (b == null) {
+					unbounded.add(element);
+				} else {
+					bounded.add(element);
+					bounds.add(b);
+				}
+			}
+			this.bounded = bounded.toArray(new Geometry[bounded.size()]);
+			this.unbounded = unbounded.toArray(new Geometry[unbounded.size()]);
+			boxes = BoundingVolumeHierarchy.boxesOf(bounds.toArray(new Bounds[bounds.size()]));
+			versions = new long[this.bounded.length + this.unbounded.length];
+			for (int i = 0; i < versions.length; i++) {
+				versions[i] = versionOf(elementAt(i));
+			}
+			hierarchy = new BoundingVolumeHierarchy(boxes);
+			builtCost = hierarchy.cost();
+			this.modifications = modifications;
+		}
+		
+		TopLevel(final TopLevel top, final double[] boxes, final long[] versions, 
+				final BoundingVolumeHierarchy hierarchy, final long modifications) {
+			bounded = top.bounded;
+			unbounded = top.unbounded;
+			this.boxes = boxes;
+			this.versions = versions;
+			this.hierarchy = hierarchy;
+			builtCost = top.builtCost;
+			this.modifications = modifications;
+		}
+		
+		/**
+		 * Refits the hierarchy to the new bounds of the nodes which changed since it was built. It is built again if 
+		 * a node became unbounded or bounded or the refitted hierarchy costs too much more than a new one.
+		 * 
+		 * @param elements		The elements of the world.
+		 * @param modifications	The number of changes of all nodes.
+		 * @return				The refitted or a new hierarchy.
+		 */
+		TopLevel update(final List<Geometry> elements, final long modifications) {
+			final double[] newBoxes = boxes.clone();
+			final long[] newVersions = versions.clone();
+			final int[] changed = new int[bounded.length];
+			int count = 0;
+			for (int i = 0; i < versions.length; i++) {
+				final Geometry element = elementAt(i);
+				final long version = versionOf(element);
+				if (version == versions[i]) {
+					continue;
+				}
+				newVersions[i] = version;
+				final Bounds b = element.getBounds();
+				if (i >= bounded.length) {
+					if (b != null) {
+						return new TopLevel(elements, modifications);
+					}
+					continue;
+				}
+				if (b == null) {
+					return new TopLevel(elements, modifications);
+				}
+				final double[] box = BoundingVolumeHierarchy.boxesOf(new Bounds[] {b});
+				System.arraycopy(box, 0, newBoxes, i * 6, 6);
+				changed[count++] = i;
+			}
+			final BoundingVolumeHierarchy refitted = hierarchy.refit(newBoxes, Arrays.copyOf(changed, count));
+			if (refitted.cost() > builtCost * REBUILD_COST) {
+				return new TopLevel(elements, modifications);
+			}
+			return new TopLevel(this, newBoxes, newVersions, refitted, modifications);
+		}
+		
+		/**
+		 * @return	The bounded element with the specified index, or the unbounded element after them.
+		 */
+		private Geometry elementAt(final int i) {
+			return (i < bounded.length) ? bounded[i] : unbounded[i - bounded.length];
+		}
+		
+		/**
+		 * @return	The version of the element if it is a node, otherwise 0 as other geometries never change.
+		 */
+		private static long versionOf(final Geometry element) {
+			return (element instanceof Node) ? ((Node) element).getVersion() : 0;
+		}
+		
+		/**
+		 * Finds the closest hit of the ray with the bounded elements.
+		 * 
+		 * @param ray		The ray.
+		 * @param minHit	The closest hit known so far or <code>null</code>.
+		 * @return			The closest hit, <code>minHit</code> if no bounded element is hit closer.
+		 */
+		Hit hit(final Ray ray, final Hit minHit) {
+			final ElementIntersector intersector = new ElementIntersector(bounded, ray, minHit);
+			hierarchy.traverse(ray.o.x, ray.o.y, ray.o.z, ray.d.x, ray.d.y, ray.d.z, 0, 
+					(minHit == null) ? Double.POSITIVE_INFINITY : minHit.t, intersector);
+			return intersector.minHit;
+		}
+		
+		/**
+		 * Finds the closest hits of the rays of the packet with the bounded elements. The rays traverse the 
+		 * hierarchy together, so an element is intersected once with all rays reaching it.
+		 * 
+		 * @param packet	The packet, which keeps the closest hits.
+		 */
+		void hit(final RayPacket packet) {
+			final ElementPacketIntersector intersector = new ElementPacketIntersector(bounded, packet);
+			hierarchy.traverse(packet, 0, Arrays.copyOf(packet.t, packet.size()), intersector);
+		}
+	}
+	
+	/**
+	 * This class intersects the rays of a packet with the elements of a world. The rays reaching an element are 
+	 * gathered in a packet of their own, so meshes inside of the element are traced as packets too.
+	 */
+	private static class ElementPacketIntersector implements BoundingVolumeHierarchy.PacketIntersector {
+		private final Geometry[] elements;
+		private final RayPacket packet;
+		private final RayPacket rays;
+		private final int[] indices;
+		
+		ElementPacketIntersector(final Geometry[] elements, final RayPacket packet) {
+			this.elements = elements;
+			this.packet = packet;
+			final int width = Math.max(1, Math.min(packet.size(), BoundingVolumeHierarchy.PACKET_WIDTH));
+			rays = new RayPacket(width);
+			indices = new int[width];
+		}
+		
+		@Override
+		public void intersect(final int primitive, final int first, final long mask, final double[] tMax) {
+			rays.clear();
+			for (long m = mask; m != 0; m &= m - 1) {
+				final int r = first + Long.numberOfTrailingZeros(m);
+				indices[rays.size()] = r;
+				rays.add(packet.getRay(r), tMax[r]);
+			}
+			elements[primitive].hit(rays);
+			for (int i = 0; i < rays.size(); i++) {
+				final Hit hit = rays.getHit(i);
+				if (hit != null && packet.offer(indices[i], hit)) {
+					tMax[indices[i]] = hit.t;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * This class intersects a single ray with the elements of a world and keeps the closest hit.
+	 */
+	private static class ElementIntersector implements BoundingVolumeHierarchy.Intersector {
+		private final Geometry[] elements;
+		private final Ray ray;
+		private Hit minHit;
+		
+		ElementIntersector(final Geometry[] elements, final Ray ray, final Hit minHit) {
+			this.elements = elements;
+			this.ray = ray;
+			this.minHit = minHit;
+		}
+		
+		@Override
+		public double intersect(final int primitive, final double tMax) {
+			final Hit hit = elements[primitive].hit(ray);
+			if (hit == null || hit.t >= tMax) {
+				return tMax;
+			}
+			minHit = hit;
+			return hit.t;
+		}
 	}
 }
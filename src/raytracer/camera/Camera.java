@@ -69,7 +69,21 @@ public abstract class Camera {
 	 * @param y			The y coordinate of the pixel.
 	 * @return          The <code>Ray</code> for the specified pixel.
 	 */
-	public abstract Ray rayFor(final int width, final int height, final int x, final int y);
+	public Ray rayFor(final int width, final int height, final int x, final int y) {
+		return rayFor(width, height, (double) x, (double) y);
+	}
+	
+	/**
+	 * Generates a <code>Ray</code> for the specified sub-pixel position on a screen with the specified resolution. 
+	 * Integer coordinates address the centers of the pixels, so a pixel covers the range from x - 0.5 to x + 0.5.
+	 * 
+	 * @param width		The screen width in pixels.
+	 * @param height	The screen height in pixels.
+	 * @param x			The x coordinate of the sample position.
+	 * @param y			The y coordinate of the sample position.
+	 * @return          The <code>Ray</code> for the specified sample position.
+	 */
+	public abstract Ray rayFor(final int width, final int height, final double x, final double y);
 	
 	@Override
 	public int hashCode() {
@@ -36,12 +36,13 @@ public class OrthographicCamera extends Camera{
 	}
 	
 	@Override
-	public Ray rayFor(final int width, final int height, final int x, final int y) {
+	public Ray rayFor(final int width, final int height, final double x, final double y) {
 		final double ratio = (double) width / height;
 		final double f1 = ratio * s * (x - (width  - 1.0) / 2.0) / (width  - 1.0);
 		final double f2 =         s * (y - (height - 1.0) / 2.0) / (height - 1.0);
 		final Point3 o = e.add(u.mul(f1).add(v.mul(f2)));
-		return new Ray(o, w.mul(-1));
+		// the cone of the pixel is as wide as the pixel and does not spread
+		return new Ray(o, w.mul(-1), s / (height - 1.0), 0);
 	}
 	
 	@Override
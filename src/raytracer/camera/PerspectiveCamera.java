@@ -36,12 +36,13 @@ public class PerspectiveCamera extends Camera{
 	}
 	
 	@Override
-	public Ray rayFor(final int width, final int height, final int x, final int y) {
+	public Ray rayFor(final int width, final int height, final double x, final double y) {
 		final double f1 = height / (-2.0 * Math.tan(angle));
 		final double f2 = x - (width  - 1.0) / 2.0;
 		final double f3 = y - (height - 1.0) / 2.0;
 		final Vector3 r = w.mul(f1).add(u.mul(f2).add(v.mul(f3)));
-		return new Ray(e, r.normalized());
+		// r is measured in pixels, so the cone of the pixel spreads by one pixel per length of r
+		return new Ray(e, r.normalized(), 0, 1 / r.magnitude);
 	}
 	
 	@Override
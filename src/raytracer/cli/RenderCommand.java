@@ -0,0 +1,428 @@
+package raytracer.cli;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import raytracer.ProgressiveRenderer;
+import raytracer.Renderer;
+import raytracer.geometry.BoundingVolumeHierarchy;
+import raytracer.image.AcesToneMapper;
+import raytracer.image.ClampToneMapper;
+import raytracer.image.ExposureToneMapper;
+import raytracer.image.ImageFiles;
+import raytracer.image.ReinhardToneMapper;
+import raytracer.image.ToneMapper;
+import raytracer.light.LightTree;
+import raytracer.metrics.CostMap;
+import raytracer.metrics.MetricsSnapshot;
+import raytracer.metrics.RenderMetrics;
+import raytracer.sampling.AdaptiveSampler;
+import raytracer.sampling.HaltonPattern;
+import raytracer.sampling.PacketSampler;
+import raytracer.sampling.RotatedGridPattern;
+import raytracer.sampling.SamplePattern;
+import raytracer.sampling.Sampler;
+import raytracer.sampling.SingleSampler;
+import raytracer.sampling.StratifiedPattern;
+import raytracer.texture.TextureManager;
+
+/**
+ * This class renders a predefined scene from the command line without opening a window, so it can run on machines 
+ * without a display. The image is written to one or more files and a summary of the timings is printed.
+ * <p>
+ * Usage: <code>java raytracer.cli.RenderCommand [options]</code>, run with <code>--help</code> for the options.
+ * 
+ * @author Simon Lischka
+ *
+ */
+public class RenderCommand {
+	/**
+	 * The name of the scene to be rendered.
+	 */
+	private String scene = "spheres";
+	/**
+	 * The width of the image.
+	 */
+	private int width = Renderer.WIDTH;
+	/**
+	 * The height of the image.
+	 */
+	private int height = Renderer.HEIGHT;
+	/**
+	 * The depth of recursion.
+	 */
+	private int recursion = 4;
+	/**
+	 * The number of worker threads.
+	 */
+	private int threads = Runtime.getRuntime().availableProcessors();
+	/**
+	 * The name of the sampler, <code>single</code>, <code>packet</code> or <code>adaptive</code>.
+	 */
+	private String sampler = "single";
+	/**
+	 * The name of the sample pattern of the adaptive sampler.
+	 */
+	private String pattern = "stratified";
+	/**
+	 * The number of samples the adaptive sampler starts with.
+	 */
+	private int samples = AdaptiveSampler.DEFAULT_INITIAL_SAMPLES;
+	/**
+	 * The maximum number of samples of the adaptive sampler.
+	 */
+	private int maxSamples = AdaptiveSampler.DEFAULT_MAX_SAMPLES;
+	/**
+	 * The contrast threshold of the adaptive sampler.
+	 */
+	private double contrast = AdaptiveSampler.DEFAULT_CONTRAST_THRESHOLD;
+	/**
+	 * The build method of the bounding volume hierarchies, <code>sah</code> or <code>lbvh</code>.
+	 */
+	private String bvh = "sah";
+	/**
+	 * The memory budget of the texture tiles in megabytes.
+	 */
+	private int textureBudget = (int) (TextureManager.DEFAULT_BUDGET >> 20);
+	/**
+	 * The number of lights selected per shaded point.
+	 */
+	private int lightSamples = LightTree.DEFAULT_SAMPLES;
+	/**
+	 * The name of the tone mapper, <code>clamp</code>, <code>reinhard</code> or <code>aces</code>.
+	 */
+	private String toneMapper = "clamp";
+	/**
+	 * The exposure of the image in stops.
+	 */
+	private double exposure;
+	/**
+	 * The number of rows of the strips which are written while they are rendered, 0 to render the whole image first.
+	 */
+	private int strips;
+	/**
+	 * The file the metrics of the frame are written to, <code>null</code> to not write them.
+	 */
+	private File metrics;
+	/**
+	 * Whether heat maps of the cost of each pixel are written next to the image.
+	 */
+	private boolean heatmaps;
+	/**
+	 * The files the image is written to.
+	 */
+	private final List<File> outputs = new ArrayList<File>();
+	
+	/**
+	 * Renders a scene as specified by the command line arguments.
+	 * 
+	 * @param args	The command line arguments.
+	 */
+	public static void main(final String[] args) {
+		System.setProperty("java.awt.headless", "true");
+		final RenderCommand command = new RenderCommand();
+		try {
+			if (!command.parse(args)) {
+				printUsage();
+				return;
+			}
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			printUsage();
+			System.exit(1);
+		}
+		try {
+			command.run();
+		} catch (IOException e) {
+			System.err.println("An error occured during writing: " + e.getMessage());
+			System.exit(2);
+		}
+	}
+	
+	/**
+	 * Parses the command line arguments.
+	 * 
+	 * @param args	The command line arguments.
+	 * @return		<code>false</code> if only the usage has been requested.
+	 */
+	private boolean parse(final String[] args) {
+		for (int i = 0; i < args.length; i++) {
+			final String option = args[i];
+			if (option.equals("--help") || option.equals("-h")) {
+				return false;
+			}
+			if (option.equals("--heatmaps")) {
+				heatmaps = true;
+				continue;
+			}
+			if (i + 1 == args.length) {
+				throw new IllegalArgumentException("The option '" + option + "' needs a value.");
+			}
+			final String value = args[++i];
+			if (option.equals("--scene")) {
+				scene = value;
+			} else if (option.equals("--size")) {
+				final String[] parts = value.split("x");
+				if (parts.length != 2) {
+					throw new IllegalArgumentException("The size must be given as WIDTHxHEIGHT.");
+				}
+				width = positive(option, parts[0]);
+				height = positive(option, parts[1]);
+			} else if (option.equals("--recursion")) {
+				recursion = nonNegative(option, value);
+			} else if (option.equals("--threads")) {
+				threads = positive(option, value);
+			} else if (option.equals("--sampler")) {
+				sampler = value;
+			} else if (option.equals("--pattern")) {
+				pattern = value;
+			} else if (option.equals("--samples")) {
+				samples = positive(option, value);
+			} else if (option.equals("--max-samples")) {
+				maxSamples = positive(option, value);
+			} else if (option.equals("--contrast")) {
+				contrast = Double.parseDouble(value);
+			} else if (option.equals("--bvh")) {
+				bvh = value;
+			} else if (option.equals("--texture-budget")) {
+				textureBudget = positive(option, value);
+			} else if (option.equals("--light-samples")) {
+				lightSamples = positive(option, value);
+			} else if (option.equals("--tone-mapper")) {
+				toneMapper = value;
+			} else if (option.equals("--exposure")) {
+				exposure = Double.parseDouble(value);
+			} else if (option.equals("--strips")) {
+				strips = positive(option, value);
+			} else if (option.equals("--metrics")) {
+				metrics = new File(value);
+			} else if (option.equals("--output") || option.equals("-o")) {
+				outputs.add(new File(value));
+			} else {
+				throw new IllegalArgumentException("The option '" + option + "' is unknown.");
+			}
+		}
+		if (!Arrays.asList(ScenePresets.NAMES).contains(scene)) {
+			throw new IllegalArgumentException("The scene '" + scene + "' does not exist.");
+		}
+		if (outputs.isEmpty()) {
+			outputs.add(new File(scene + ".png"));
+		}
+		createSampler();
+		createToneMapper();
+		if (!bvh.equals("sah") && !bvh.equals("lbvh")) {
+			throw new IllegalArgumentException("The bounding volume hierarchy '" + bvh + "' does not exist.");
+		}
+		return true;
+	}
+	
+	/**
+	 * Renders the scene, writes the image and prints the timings.
+	 * 
+	 * @throws IOException	If the image can not be written.
+	 */
+	private void run() throws IOException {
+		BoundingVolumeHierarchy.setDefaultMethod(bvh.equals("lbvh") ? BoundingVolumeHierarchy.LBVH 
+				: BoundingVolumeHierarchy.SAH);
+		TextureManager.setBudget((long) textureBudget << 20);
+		long start = System.nanoTime();
+		final Scene s = ScenePresets.create(scene);
+		s.world.setLightSamples(lightSamples);
+		final double buildTime = seconds(start);
+		
+		final CostMap costMap = heatmaps ? new CostMap(width, height) : null;
+		final double renderTime;
+		if (strips > 0) {
+			// the strips are written while they are rendered
+			final Renderer renderer = new Renderer(s.world, s.camera, new Dimension(width, height), recursion, 
+					createSampler());
+			renderer.setThreads(threads);
+			renderer.setCostMap(costMap);
+			renderer.setToneMapper(createToneMapper());
+			start = System.nanoTime();
+			renderer.render(strips, outputs.toArray(new File[outputs.size()]));
+			renderTime = seconds(start);
+			start = System.nanoTime();
+		} else {
+			final ProgressiveRenderer renderer = new ProgressiveRenderer(s.world, s.camera, 
+					new Dimension(width, height), recursion, createSampler(), 1);
+			final ExecutorService executor = Executors.newFixedThreadPool(threads);
+			renderer.setExecutor(executor);
+			renderer.setCostMap(costMap);
+			renderer.setToneMapper(createToneMapper());
+			start = System.nanoTime();
+			final BufferedImage image;
+			try {
+				image = renderer.render();
+			} finally {
+				executor.shutdown();
+			}
+			renderTime = seconds(start);
+			
+			start = System.nanoTime();
+			for (File output : outputs) {
+				ImageFiles.write(image, renderer.getFrameBuffer(), output);
+			}
+		}
+		final MetricsSnapshot frame = RenderMetrics.getLastFrame();
+		if (costMap != null) {
+			costMap.writeHeatmaps(outputs.get(0));
+		}
+		if (metrics != null) {
+			final Writer writer = new OutputStreamWriter(new FileOutputStream(metrics), "UTF-8");
+			try {
+				writer.write(frame.toJson());
+			} finally {
+				writer.close();
+			}
+		}
+		final double writeTime = seconds(start);
+		
+		System.out.printf("scene:     %s (%d x %d, recursion %d, %s sampler)%n", 
+				scene, width, height, recursion, sampler);
+		System.out.printf("threads:   %d%n", threads);
+		System.out.printf("build:     %.3f s%n", buildTime);
+		System.out.printf("render:    %.3f s (%.0f pixels/s)%n", renderTime, width * height / renderTime);
+		System.out.printf("rays:      %d (%.0f rays/s)%n", frame.getRays(), frame.getRaysPerSecond());
+		System.out.printf("textures:  %d tiles read, %.1f MB in memory%n", TextureManager.getReads(), 
+				TextureManager.getResidentBytes() / 1048576.0);
+		System.out.printf("write:     %.3f s %s%n", writeTime, outputs);
+		TextureManager.releaseAll();
+	}
+	
+	/**
+	 * Creates the sampler as specified by the options.
+	 * 
+	 * @return	The sampler.
+	 */
+	private Sampler createSampler() {
+		if (sampler.equals("single")) {
+			return new SingleSampler();
+		}
+		if (sampler.equals("packet")) {
+			return new PacketSampler();
+		}
+		if (!sampler.equals("adaptive")) {
+			throw new IllegalArgumentException("The sampler '" + sampler + "' does not exist.");
+		}
+		final SamplePattern samplePattern;
+		if (pattern.equals("stratified")) {
+			samplePattern = new StratifiedPattern();
+		} else if (pattern.equals("halton")) {
+			samplePattern = new HaltonPattern();
+		} else if (pattern.equals("rotated")) {
+			samplePattern = new RotatedGridPattern();
+		} else {
+			throw new IllegalArgumentException("The pattern '" + pattern + "' does not exist.");
+		}
+		return new AdaptiveSampler(samplePattern, samples, maxSamples, contrast, 
+				AdaptiveSampler.DEFAULT_VARIANCE_THRESHOLD);
+	}
+	
+	/**
+	 * Creates the tone mapper as specified by the options.
+	 * 
+	 * @return	The tone mapper.
+	 */
+	private ToneMapper createToneMapper() {
+		final ToneMapper mapper;
+		if (toneMapper.equals("clamp")) {
+			mapper = new ClampToneMapper();
+		} else if (toneMapper.equals("reinhard")) {
+			mapper = new ReinhardToneMapper();
+		} else if (toneMapper.equals("aces")) {
+			mapper = new AcesToneMapper();
+		} else {
+			throw new IllegalArgumentException("The tone mapper '" + toneMapper + "' does not exist.");
+		}
+		return (exposure == 0) ? mapper : new ExposureToneMapper(exposure, mapper);
+	}
+	
+	/**
+	 * Parses a positive integer value of an option.
+	 * 
+	 * @param option	The option.
+	 * @param value		The value.
+	 * @return			The integer value.
+	 */
+	private static int positive(final String option, final String value) {
+		final int i;
+		try {
+			i = Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("The value of '" + option + "' must be an integer.");
+		}
+		if (i <= 0) {
+			throw new IllegalArgumentException("The value of '" + option + "' must be positive.");
+		}
+		return i;
+	}
+	
+	/**
+	 * Parses a non-negative integer value of an option.
+	 * 
+	 * @param option	The option.
+	 * @param value		The value.
+	 * @return			The integer value.
+	 */
+	private static int nonNegative(final String option, final String value) {
+		final int i;
+		try {
+			i = Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("The value of '" + option + "' must be an integer.");
+		}
+		if (i < 0) {
+			throw new IllegalArgumentException("The value of '" + option + "' must not be negative.");
+		}
+		return i;
+	}
+	
+	/**
+	 * Returns the seconds passed since the specified time.
+	 * 
+	 * @param start	The start time in nanoseconds.
+	 * @return		The seconds.
+	 */
+	private static double seconds(final long start) {
+		return (System.nanoTime() - start) / 1e9;
+	}
+	
+	/**
+	 * Prints the options of the command.
+	 */
+	private static void printUsage() {
+		System.out.println("Usage: java raytracer.cli.RenderCommand [options]");
+		System.out.println("  --scene NAME          one of " + Arrays.toString(ScenePresets.NAMES) + ", default spheres");
+		System.out.println("  --size WxH            the size of the image, default 800x600");
+		System.out.println("  --recursion N         the depth of recursion, 0 for primary rays only, default 4");
+		System.out.println("  --threads N           the number of worker threads, default the number of processors");
+		System.out.println("  --sampler NAME        single, packet or adaptive, default single");
+		System.out.println("  --pattern NAME        stratified, halton or rotated, default stratified");
+		System.out.println("  --samples N           the initial number of adaptive samples, default 4");
+		System.out.println("  --max-samples N       the maximum number of adaptive samples, default 20");
+		System.out.println("  --contrast T          the contrast threshold of the adaptive sampler, default 0.2");
+		System.out.println("  --bvh NAME            the build of the hierarchies, sah or faster lbvh, default sah");
+		System.out.println("  --texture-budget MB   the memory of the texture tiles, default 256");
+		System.out.println("  --light-samples N     the number of lights selected per point of scenes with more");
+		System.out.println("                        lights, default " + LightTree.DEFAULT_SAMPLES);
+		System.out.println("  --tone-mapper NAME    clamp, reinhard or aces, default clamp");
+		System.out.println("  --exposure STOPS      the exposure of the image in stops, default 0");
+		System.out.println("  -o, --output FILE     the output file (.png, .pfm or .exr), can be repeated");
+		System.out.println("                        .pfm and .exr keep the full range without tone mapping");
+		System.out.println("  --strips ROWS         renders strips of ROWS rows and writes them to the outputs while");
+		System.out.println("                        rendering, for images larger than memory");
+		System.out.println("  --metrics FILE        the file the render metrics are written to as JSON");
+		System.out.println("  --heatmaps            writes heat maps of rays, intersection tests and time per pixel");
+	}
+}
@@ -0,0 +1,35 @@
+package raytracer.cli;
+
+import raytracer.World;
+import raytracer.camera.Camera;
+
+/**
+ * This immutable class represents a scene which can be rendered, i.e. a world and the camera it is seen through.
+ * 
+ * @author Simon Lischka
+ *
+ */
+public class Scene {
+	/**
+	 * The world of this scene.
+	 */
+	public final World world;
+	/**
+	 * The camera of this scene.
+	 */
+	public final Camera camera;
+	
+	/**
+	 * Constructs a new <code>Scene</code> with the specified world and camera.
+	 * 
+	 * @param world		The world of the scene. Must not be <code>null</code>.
+	 * @param camera	The camera of the scene. Must not be <code>null</code>.
+	 */
+	public Scene(final World world, final Camera camera) {
+		if (world == null || camera == null) {
+			throw new IllegalArgumentException("The parameters must not be null.");
+		}
+		this.world = world;
+		this.camera = camera;
+	}
+}
@@ -0,0 +1,243 @@
+package raytracer.cli;
+
+import raytracer.Color;
+import raytracer.Constants;
+import raytracer.World;
+import raytracer.camera.Camera;
+import raytracer.camera.PerspectiveCamera;
+import raytracer.geometry.AxisAlignedBox;
+import raytracer.geometry.Node;
+import raytracer.geometry.Plane;
+import raytracer.geometry.ShapeFromFile;
+import raytracer.geometry.Sphere;
+import raytracer.light.DirectionalLight;
+import raytracer.light.PointLight;
+import raytracer.light.SpotLight;
+import raytracer.material.LambertMaterial;
+import raytracer.material.Material;
+import raytracer.material.PhongMaterial;
+import raytracer.material.ReflectiveMaterial;
+import raytracer.material.TransparentMaterial;
+import raytracer.math.Point3;
+import raytracer.math.Transform;
+import raytracer.math.Vector3;
+import raytracer.texture.ImageTexture;
+import raytracer.texture.SingleColorTexture;
+
+/**
+ * This class provides the predefined scenes of the command line renderer. Models and textures are loaded relative to 
+ * the working directory, like in the graphical demo scenes.
+ * 
+ * @author Simon Lischka
+ *
+ */
+public final class ScenePresets {
+	/**
+	 * The names of all predefined scenes.
+	 */
+	public static final String[] NAMES = {"spheres", "earth", "teddy", "bunny", "showcase", "lights"};
+	
+	/**
+	 * This class is not meant to be instantiated.
+	 */
+	private ScenePresets() {
+	}
+	
+	/**
+	 * Creates the predefined scene with the specified name.
+	 * 
+	 * @param name	The name of the scene, one of <code>NAMES</code>. Must not be <code>null</code>.
+	 * @return		The scene.
+	 */
+	public static Scene create(final String name) {
+		if (name == null) {
+			throw new IllegalArgumentException("The parameter 'name' must not be null.");
+		}
+		if (name.equals("spheres")) {
+			return spheres();
+		} else if (name.equals("earth")) {
+			return earth();
+		} else if (name.equals("teddy")) {
+			return model("models/teddy.obj", new Point3(0, 0, 50), new Point3(0, 0, 0));
+		} else if (name.equals("bunny")) {
+			return model("models/bunny.obj", new Point3(0, 0.1, 0.25), new Point3(0, 0.1, 0));
+		} else if (name.equals("showcase")) {
+			return showcase();
+		} else if (name.equals("lights")) {
+			return lights();
+		}
+		throw new IllegalArgumentException("The scene '" + name + "' does not exist.");
+	}
+	
+	/**
+	 * Creates a scene with a phong, a transparent and a reflective sphere as well as a box on a reflective plane.
+	 * 
+	 * @return	The scene.
+	 */
+	private static Scene spheres() {
+		final World world = new World(new Color(0, 0, 0), new Color(0.1, 0.1, 0.1), 
+				Constants.INDEX_OF_REFRACTION_VACUUM);
+		world.addElements(
+				new Node(new Plane(reflective(new Color(0.5, 0.5, 0.5), new Color(0.3, 0.3, 0.3))), new Transform()), 
+				new Node(
+						new Sphere(new PhongMaterial(
+								new SingleColorTexture(new Color(1, 0, 0)), 
+								new SingleColorTexture(new Color(1, 1, 1)), 
+								64)), 
+						new Transform().translate(-2, 1, 0)), 
+				new Node(
+						new Sphere(new TransparentMaterial(Constants.INDEX_OF_REFRACTION_GLASS)), 
+						new Transform().translate(0, 1, 1)), 
+				new Node(
+						new Sphere(reflective(new Color(0, 0, 1), new Color(0.5, 0.5, 0.5))), 
+						new Transform().translate(2, 1, 0)), 
+				new Node(
+						new AxisAlignedBox(new LambertMaterial(new SingleColorTexture(new Color(0, 1, 0)))), 
+						new Transform().translate(0, 0.5, -2)));
+		world.addLights(
+				new PointLight(new Color(0.8, 0.8, 0.8), new Point3(5, 5, 5), true), 
+				new SpotLight(new Color(0.5, 0.5, 0.5), new Point3(0, 6, 0), new Vector3(0, -1, 0), Math.PI / 6.0, true));
+		final Camera camera = new PerspectiveCamera(new Point3(0, 3, 8), new Vector3(0, -0.3, -1), 
+				new Vector3(0, 1, 0), Math.PI / 4.0);
+		return new Scene(world, camera);
+	}
+	
+	/**
+	 * Creates a scene showing the earth with a high-resolution texture.
+	 * 
+	 * @return	The scene.
+	 */
+	private static Scene earth() {
+		final World world = new World(new Color(0, 0, 0), new Color(0, 0, 0), Constants.INDEX_OF_REFRACTION_VACUUM);
+		world.addElements(
+				new Node(new Sphere(new LambertMaterial(new ImageTexture("textures/earthDay.jpg"))), new Transform()));
+		world.addLights(new PointLight(new Color(1, 1, 1), new Point3(3, 3, 3), false));
+		final Camera camera = new PerspectiveCamera(new Point3(2, 2, 2), new Vector3(-1, -1, -1), 
+				new Vector3(0, 1, 0), Math.PI / 4.0);
+		return new Scene(world, camera);
+	}
+	
+	/**
+	 * Creates a scene showing a model loaded from an OBJ file.
+	 * 
+	 * @param filename	The name of the OBJ file.
+	 * @param eye		The position of the camera.
+	 * @param target	The point the camera looks at.
+	 * @return			The scene.
+	 */
+	private static Scene model(final String filename, final Point3 eye, final Point3 target) {
+		final World world = new World(new Color(0.1, 0.1, 0.1), new Color(0.2, 0.2, 0.2), 
+				Constants.INDEX_OF_REFRACTION_VACUUM);
+		world.addElements(
+				new ShapeFromFile(filename, new PhongMaterial(
+						new SingleColorTexture(new Color(1, 0.6, 0.2)), 
+						new SingleColorTexture(new Color(1, 1, 1)), 
+						32)));
+		world.addLights(new DirectionalLight(new Color(0.8, 0.8, 0.8), new Vector3(-1, -1, -1), false));
+		final Camera camera = new PerspectiveCamera(eye, target.sub(eye), new Vector3(0, 1, 0), Math.PI / 4.0);
+		return new Scene(world, camera);
+	}
+	
+	/**
+	 * Creates the free scene of task 6: a reflective box surrounded by transparent spheres, carrying four teddies 
+	 * and the earth.
+	 * 
+	 * @return	The scene.
+	 */
+	private static Scene showcase() {
+		final Material sphereReflective = new ReflectiveMaterial(
+				new SingleColorTexture(new Color(0, 0, 1)), 
+				new SingleColorTexture(new Color(1, 1, 1)), 
+				10, 
+				new SingleColorTexture(new Color(1, 0.5, 0.5)));
+		final Material sphereTransparent = new TransparentMaterial(Constants.INDEX_OF_REFRACTION_WATER);
+		final Material boxReflected = new ReflectiveMaterial(
+				new SingleColorTexture(new Color(1, 0, 1)), 
+				new SingleColorTexture(new Color(1, 1, 1)), 
+				10, 
+				new SingleColorTexture(new Color(1, 0.5, 0.5)));
+		final ShapeFromFile teddy = new ShapeFromFile("models/teddy.obj", new PhongMaterial(
+				new SingleColorTexture(new Color(1, 0, 0)), 
+				new SingleColorTexture(new Color(1, 1, 1)), 
+				64));
+		
+		final World world = new World(new Color(0, 0, 0), new Color(0.3, 0.3, 0.3), 
+				Constants.INDEX_OF_REFRACTION_VACUUM);
+		world.addElements(
+				new Node(new Plane(reflective(new Color(0.8, 0.8, 0.8), new Color(1, 1, 1))), new Transform()), 
+				new Node(new AxisAlignedBox(boxReflected), new Transform().translate(4.5, 1, 4.5).scale(2, 2, 2)), 
+				new Node(new Sphere(sphereTransparent), new Transform().translate(4.5, 4, 4.5).scale(1.6, 0.1, 1.6)), 
+				new Node(new Sphere(sphereReflective), new Transform().translate(4.5, 4, 4.5).scale(1.28, 0.05, 1.28)), 
+				new Node(
+						new Sphere(new LambertMaterial(new ImageTexture("textures/earthDay.jpg"))), 
+						new Transform().translate(4.5, 5.2, 4.5).rotateY(Math.PI)));
+		final double[][] spheres = {{4.5, 2.7}, {4.5, 6.4}, {2.7, 4.5}, {6.5, 4.5}};
+		for (double[] s : spheres) {
+			world.addElements(
+					new Node(new Sphere(sphereTransparent), new Transform().translate(s[0], 2, s[1]).scale(0.6, 0.6, 0.6)), 
+					new Node(new Sphere(sphereReflective), new Transform().translate(s[0], 2, s[1]).scale(0.15, 0.15, 0.15)));
+		}
+		final double[][] teddies = {{3.5, 5.1, 0.6}, {4.9, 3.5, Math.PI + 0.8}, {5.0, 5.0, Math.PI + 2.3}, 
+				{3.5, 3.5, Math.PI - 0.8}};
+		for (double[] t : teddies) {
+			world.addElements(new Node(teddy, new Transform().translate(t[0], 2.9, t[1]).rotateY(t[2])));
+		}
+		world.addLights(
+				new PointLight(new Color(0.1, 0.1, 0.1), new Point3(3, 3, 3), true), 
+				new PointLight(new Color(0.3, 0.3, 0.3), new Point3(5, 5, -10), true), 
+				new PointLight(new Color(0.3, 0.3, 0.3), new Point3(5, 5, 10), true), 
+				new DirectionalLight(new Color(0.1, 0.1, 0.1), new Vector3(1, -1, 0)));
+		final Camera camera = new PerspectiveCamera(new Point3(10, 5, 8), new Vector3(-1, -1, -1), 
+				new Vector3(0, 1, 0), Math.PI / 2.0);
+		return new Scene(world, camera);
+	}
+	
+	/**
+	 * Creates a hall lit by a grid of 400 dim spot lights below its ceiling and a few point lights, with spheres on 
+	 * a reflective floor. Every point is shaded with a selection of the lights.
+	 * 
+	 * @return	The scene.
+	 */
+	private static Scene lights() {
+		final World world = new World(new Color(0, 0, 0), new Color(0.05, 0.05, 0.05), 
+				Constants.INDEX_OF_REFRACTION_VACUUM);
+		world.addElements(new Node(new Plane(reflective(new Color(0.5, 0.5, 0.5), new Color(0.2, 0.2, 0.2))), 
+				new Transform()));
+		for (int i = 0; i < 5; i++) {
+			world.addElements(new Node(
+					new Sphere(new PhongMaterial(
+							new SingleColorTexture(new Color(0.2 * i, 1 - 0.2 * i, 0.5)), 
+							new SingleColorTexture(new Color(1, 1, 1)), 
+							32)), 
+					new Transform().translate(-8 + 4 * i, 1, -2 * (i % 2))));
+		}
+		for (int x = 0; x < 20; x++) {
+			for (int z = 0; z < 20; z++) {
+				final Color color = new Color(0.002 * (1 + x % 3), 0.004, 0.002 * (1 + z % 3));
+				world.addLights(new SpotLight(color, new Point3(-19 + 2 * x, 8, -19 + 2 * z), 
+						new Vector3(0, -1, 0), Math.PI / 8.0, true));
+			}
+		}
+		world.addLights(
+				new PointLight(new Color(0.2, 0.2, 0.2), new Point3(-10, 4, 10), true), 
+				new PointLight(new Color(0.2, 0.2, 0.2), new Point3(10, 4, 10), true));
+		final Camera camera = new PerspectiveCamera(new Point3(0, 6, 16), new Vector3(0, -0.4, -1), 
+				new Vector3(0, 1, 0), Math.PI / 3.0);
+		return new Scene(world, camera);
+	}
+	
+	/**
+	 * Creates a reflective material with white highlights.
+	 * 
+	 * @param diffuse		The diffuse color.
+	 * @param reflection	The color of the reflection.
+	 * @return				The material.
+	 */
+	private static Material reflective(final Color diffuse, final Color reflection) {
+		return new ReflectiveMaterial(
+				new SingleColorTexture(diffuse), 
+				new SingleColorTexture(new Color(1, 1, 1)), 
+				10, 
+				new SingleColorTexture(reflection));
+	}
+}
@@ -8,6 +8,7 @@ import raytracer.material.Material;
 import raytracer.material.SingleColorMaterial;
 import raytracer.math.Point3;
 import raytracer.math.Transform;
+import raytracer.metrics.RenderMetrics;
 import raytracer.texture.SingleColorTexture;
 
 /**
@@ -69,6 +70,7 @@ public class AxisAlignedBoundingBox {
 	 * @return		<code>true</code> if the bounding box was hit, otherwise <code>false</code>.
 	 */
 	public boolean isHit(final Ray ray) {
+		RenderMetrics.counters().boundingVolumeTest();
 		final LinkedList<Hit> hitsOnPlane = new LinkedList<Hit>();
 		final Hit rightHit = right.hit(ray);
 		final Hit leftHit = left.hit(ray);
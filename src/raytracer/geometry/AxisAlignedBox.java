@@ -6,6 +6,7 @@ import raytracer.Ray;
 import raytracer.material.Material;
 import raytracer.math.Point3;
 import raytracer.math.Transform;
+import raytracer.metrics.RenderMetrics;
 
 /**
  * This immutable class represents an axis aligned box in three-dimensional space. It has a default width, height and 
@@ -54,6 +55,7 @@ public class AxisAlignedBox extends Geometry {
 	
 	@Override
 	public Hit hit(final Ray ray) {
+		RenderMetrics.counters().intersectionTest(RenderMetrics.BOX);
 		final LinkedList<Hit> hits = new LinkedList<Hit>();
 		final LinkedList<Hit> hitsOnPlane = new LinkedList<Hit>();
 		final Hit rightHit = right.hit(ray);
@@ -113,4 +115,9 @@ public class AxisAlignedBox extends Geometry {
 		}
 		return nearestHit;
 	}
+
+	@Override
+	public Bounds getBounds() {
+		return new Bounds(lbf, run);
+	}
 }
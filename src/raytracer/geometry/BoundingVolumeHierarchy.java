@@ -0,0 +1,1154 @@
+package raytracer.geometry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import raytracer.metrics.RenderMetrics;
+
+/**
+ * This immutable class represents a bounding volume hierarchy with four children per node (BVH4) over a number of
+ * primitives, e.g. the faces of a triangle mesh or the geometries of a world. The hierarchy does not know the
+ * primitives themselves, it only knows their bounds and calls an <code>Intersector</code> for the primitives of the
+ * leaves a ray reaches.
+ * <p>
+ * The nodes are stored in flat arrays instead of node objects. The bounds of the four children of a node lie next to
+ * each other component by component (all minimum x, then all minimum y, ...), so one node test checks all children
+ * of a node. The bounds are stored as <code>float</code> values, rounded outwards, to halve the memory traffic.
+ * <p>
+ * The children of a node are visited front to back as given by the signs of the ray direction along the split axes
+ * of the node, so closer hits are found early and shorten the ray for the remaining tests.
+ * <p>
+ * The hierarchy is built with the surface area heuristic (<code>SAH</code>) or from Morton codes (<code>LBVH</code>)
+ * in a fork/join pool. Subtrees of large ranges of primitives are built by forked tasks, and the centers of the
+ * primitives of the upper levels are binned in parallel.
+ * <p>
+ * If the primitives move, e.g. the nodes of an animated world, <code>refit</code> returns a hierarchy with the same
+ * tree whose bounds are updated bottom-up from the leaves of the moved primitives. The tree gets worse the further
+ * the primitives move, <code>cost</code> tells when it is time to build a new one.
+ *
+ * @author Sebastian Dass&eacute;
+ *
+ */
+public class BoundingVolumeHierarchy {
+	/**
+	 * The build method which splits the primitives where the surface area heuristic estimates the lowest cost of
+	 * tracing a ray, evaluated at the borders of <code>BINS</code> bins per axis. It gives the fastest traversal.
+	 */
+	public static final int SAH = 0;
+	/**
+	 * The build method which sorts the primitives by the Morton codes of their centers and splits them where the
+	 * codes differ in the highest bit (linear BVH). It builds much faster than <code>SAH</code> but gives a slower
+	 * traversal, e.g. for interactive previews.
+	 */
+	public static final int LBVH = 1;
+	/**
+	 * The maximum number of primitives in a leaf.
+	 */
+	public static final int LEAF_SIZE = 4;
+	/**
+	 * The number of bins per axis of the surface area heuristic.
+	 */
+	public static final int BINS = 16;
+	/**
+	 * The number of primitives from which on subtrees are built and bins are filled by parallel tasks.
+	 */
+	public static final int PARALLEL_THRESHOLD = 4096;
+	/**
+	 * The maximum number of rays traversing the hierarchy together, the number of bits of a mask.
+	 */
+	public static final int PACKET_WIDTH = 64;
+	/**
+	 * The number of children of a node.
+	 */
+	private static final int WIDTH = 4;
+	/**
+	 * The number of values per node in <code>bounds</code>.
+	 */
+	private static final int NODE_BOUNDS = 6 * WIDTH;
+	/**
+	 * The count of a child that is an inner node.
+	 */
+	private static final int INNER = -1;
+	/**
+	 * The initial size of the traversal stack.
+	 */
+	private static final int STACK_SIZE = 64;
+
+	/**
+	 * This interface is implemented by the users of a hierarchy to intersect a ray with a single primitive.
+	 */
+	public interface Intersector {
+		/**
+		 * Intersects the ray of the traversal with the specified primitive.
+		 *
+		 * @param primitive	The index of the primitive.
+		 * @param tMax		The parameter of the closest hit found so far.
+		 * @return			The parameter of the hit if it is closer than <code>tMax</code>, otherwise
+		 * 					<code>tMax</code>.
+		 */
+		public double intersect(final int primitive, final double tMax);
+	}
+
+	/**
+	 * This interface is implemented by the users of a hierarchy to intersect several rays of a packet with a single
+	 * primitive.
+	 */
+	public interface PacketIntersector {
+		/**
+		 * Intersects the rays of the packet of the traversal whose bits are set in the mask with the specified
+		 * primitive. The parameter of the closest hit of a ray is lowered if the ray hits the primitive closer.
+		 *
+		 * @param primitive	The index of the primitive.
+		 * @param first		The index of the ray of bit 0 of the mask.
+		 * @param mask		The rays to intersect, bit <code>i</code> stands for the ray <code>first + i</code>.
+		 * @param tMax		The parameters of the closest hits found so far, one per ray of the packet.
+		 */
+		public void intersect(final int primitive, final int first, final long mask, final double[] tMax);
+	}
+
+	/**
+	 * The build method of hierarchies built without an explicit method, e.g. the hierarchies of triangle meshes.
+	 */
+	private static volatile int defaultMethod = SAH;
+
+	/**
+	 * The bounds of the children of all nodes: for node n and child c the value of component k (minimum x, y, z,
+	 * maximum x, y, z) is stored at <code>n * 24 + k * 4 + c</code>.
+	 */
+	private float[] bounds;
+	/**
+	 * The children of all nodes at <code>n * 4 + c</code>: the index of the node for inner nodes, the index of the
+	 * first primitive in <code>primitives</code> for leaves.
+	 */
+	private int[] children;
+	/**
+	 * The number of primitives of the children of all nodes, <code>INNER</code> for inner nodes and 0 for unused
+	 * children.
+	 */
+	private int[] counts;
+	/**
+	 * The split axes of all nodes: bits 0-1 the axis splitting children 0, 1 from 2, 3, bits 2-3 the axis splitting
+	 * child 0 from 1 and bits 4-5 the axis splitting child 2 from 3.
+	 */
+	private int[] axes;
+	/**
+	 * The indices of the primitives in the order of the leaves.
+	 */
+	private final int[] primitives;
+	/**
+	 * The number of nodes.
+	 */
+	private int nodes;
+	/**
+	 * The slot <code>n * 4 + c</code> of the parent of each node, -1 for the root.
+	 */
+	private int[] parents;
+	/**
+	 * The slot <code>n * 4 + c</code> of the leaf of each primitive.
+	 */
+	private int[] leaves;
+
+	/**
+	 * Builds a new <code>BoundingVolumeHierarchy</code> over primitives with the specified bounds with the default
+	 * method in the common fork/join pool.
+	 *
+	 * @param boxes	The bounds of the primitives, six values per primitive: minimum x, y, z and maximum x, y, z.
+	 * 				Must not be <code>null</code>.
+	 */
+	public BoundingVolumeHierarchy(final double[] boxes) {
+		this(boxes, defaultMethod);
+	}
+
+	/**
+	 * Builds a new <code>BoundingVolumeHierarchy</code> over primitives with the specified bounds with the specified
+	 * method in the common fork/join pool.
+	 *
+	 * @param boxes		The bounds of the primitives, six values per primitive: minimum x, y, z and maximum x, y, z.
+	 * 					Must not be <code>null</code>.
+	 * @param method	The build method, <code>SAH</code> or <code>LBVH</code>.
+	 */
+	public BoundingVolumeHierarchy(final double[] boxes, final int method) {
+		this(boxes, method, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Builds a new <code>BoundingVolumeHierarchy</code> over primitives with the specified bounds with the specified
+	 * method. Large ranges of primitives are binned and their subtrees are built as tasks of the specified pool.
+	 *
+	 * @param boxes		The bounds of the primitives, six values per primitive: minimum x, y, z and maximum x, y, z.
+	 * 					Must not be <code>null</code>.
+	 * @param method	The build method, <code>SAH</code> or <code>LBVH</code>.
+	 * @param pool		The pool the build runs in. Must not be <code>null</code>.
+	 */
+	public BoundingVolumeHierarchy(final double[] boxes, final int method, final ForkJoinPool pool) {
+		if (boxes == null || boxes.length % 6 != 0) {
+			throw new IllegalArgumentException("The parameter 'boxes' must hold six values per primitive.");
+		}
+		if (method != SAH && method != LBVH) {
+			throw new IllegalArgumentException("The parameter 'method' must be SAH or LBVH.");
+		}
+		if (pool == null) {
+			throw new IllegalArgumentException("The parameter 'pool' must not be null.");
+		}
+		final int n = boxes.length / 6;
+		final int capacity = Math.max(1, n);
+		bounds = new float[capacity * NODE_BOUNDS];
+		children = new int[capacity * WIDTH];
+		counts = new int[capacity * WIDTH];
+		axes = new int[capacity];
+		primitives = new int[n];
+		final Builder builder = (method == SAH) ? new SurfaceAreaBuilder(boxes) : new MortonBuilder(boxes, pool);
+		pool.invoke(builder.new NodeTask(0, n));
+		nodes = builder.getNodes();
+		bounds = Arrays.copyOf(bounds, nodes * NODE_BOUNDS);
+		children = Arrays.copyOf(children, nodes * WIDTH);
+		counts = Arrays.copyOf(counts, nodes * WIDTH);
+		axes = Arrays.copyOf(axes, nodes);
+		parents = new int[nodes];
+		leaves = new int[n];
+		Arrays.fill(parents, -1);
+		for (int slot = 0; slot < counts.length; slot++) {
+			if (counts[slot] == INNER) {
+				parents[children[slot]] = slot;
+			} else {
+				for (int i = children[slot]; i < children[slot] + counts[slot]; i++) {
+					leaves[primitives[i]] = slot;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Constructs a copy of the specified hierarchy with other bounds.
+	 *
+	 * @param hierarchy	The hierarchy whose tree is shared.
+	 * @param bounds	The bounds of the children of all nodes.
+	 */
+	private BoundingVolumeHierarchy(final BoundingVolumeHierarchy hierarchy, final float[] bounds) {
+		this.bounds = bounds;
+		children = hierarchy.children;
+		counts = hierarchy.counts;
+		axes = hierarchy.axes;
+		primitives = hierarchy.primitives;
+		nodes = hierarchy.nodes;
+		parents = hierarchy.parents;
+		leaves = hierarchy.leaves;
+	}
+
+	/**
+	 * Sets the build method of hierarchies built without an explicit method, e.g. <code>LBVH</code> for interactive
+	 * previews. The default is <code>SAH</code>.
+	 *
+	 * @param method	The build method, <code>SAH</code> or <code>LBVH</code>.
+	 */
+	public static void setDefaultMethod(final int method) {
+		if (method != SAH && method != LBVH) {
+			throw new IllegalArgumentException("The parameter 'method' must be SAH or LBVH.");
+		}
+		defaultMethod = method;
+	}
+
+	/**
+	 * @return	The build method of hierarchies built without an explicit method.
+	 */
+	public static int getDefaultMethod() {
+		return defaultMethod;
+	}
+
+	/**
+	 * Converts the specified bounds to the array expected by the constructor.
+	 *
+	 * @param bounds	The bounds of the primitives. Must not be <code>null</code>.
+	 * @return			The bounds as six values per primitive.
+	 */
+	public static double[] boxesOf(final Bounds[] bounds) {
+		final double[] boxes = new double[bounds.length * 6];
+		for (int i = 0; i < bounds.length; i++) {
+			final Bounds b = bounds[i];
+			boxes[i * 6] = b.min.x;
+			boxes[i * 6 + 1] = b.min.y;
+			boxes[i * 6 + 2] = b.min.z;
+			boxes[i * 6 + 3] = b.max.x;
+			boxes[i * 6 + 4] = b.max.y;
+			boxes[i * 6 + 5] = b.max.z;
+		}
+		return boxes;
+	}
+
+	/**
+	 * This class builds the nodes of the hierarchy. Subclasses decide where a range of primitives is split in two,
+	 * two levels of binary splits give the up to four children of a node.
+	 */
+	private abstract class Builder {
+		/**
+		 * The bounds of the primitives.
+		 */
+		protected final double[] boxes;
+		/**
+		 * The centers of the bounds of the primitives, three values per primitive.
+		 */
+		protected final double[] centers;
+		/**
+		 * The next free node index.
+		 */
+		private final AtomicInteger next = new AtomicInteger();
+
+		Builder(final double[] boxes) {
+			this.boxes = boxes;
+			final int n = boxes.length / 6;
+			centers = new double[n * 3];
+			for (int i = 0; i < n; i++) {
+				primitives[i] = i;
+				for (int k = 0; k < 3; k++) {
+					centers[i * 3 + k] = (boxes[i * 6 + k] + boxes[i * 6 + 3 + k]) / 2;
+				}
+			}
+		}
+
+		/**
+		 * Splits the primitives in the specified range of <code>primitives</code> in two and reorders them, so each
+		 * part is a contiguous range.
+		 *
+		 * @return	The index of the first primitive of the second part and the split axis.
+		 */
+		protected abstract int[] split(final int start, final int end);
+
+		/**
+		 * Reorders the primitives in the range so the primitives before the returned middle have centers not
+		 * greater than the centers of the primitives after it along the specified axis (quickselect).
+		 *
+		 * @return	The middle of the range.
+		 */
+		protected int median(final int start, final int end, final int axis) {
+			final int middle = (start + end) >>> 1;
+			int left = start;
+			int right = end - 1;
+			while (left < right) {
+				final double pivot = centers[primitives[(left + right) >>> 1] * 3 + axis];
+				int i = left;
+				int j = right;
+				while (i <= j) {
+					while (centers[primitives[i] * 3 + axis] < pivot) {
+						i++;
+					}
+					while (centers[primitives[j] * 3 + axis] > pivot) {
+						j--;
+					}
+					if (i <= j) {
+						final int temp = primitives[i];
+						primitives[i] = primitives[j];
+						primitives[j] = temp;
+						i++;
+						j--;
+					}
+				}
+				if (middle <= j) {
+					right = j;
+				} else if (middle >= i) {
+					left = i;
+				} else {
+					break;
+				}
+			}
+			return middle;
+		}
+
+		/**
+		 * @return	The number of nodes built so far.
+		 */
+		int getNodes() {
+			return next.get();
+		}
+
+		/**
+		 * This class builds the node for a range of primitives and returns its index. Children with more than
+		 * <code>PARALLEL_THRESHOLD</code> primitives are built as forked tasks.
+		 */
+		private class NodeTask extends RecursiveTask<Integer> {
+			private static final long serialVersionUID = 1L;
+
+			private final int start;
+			private final int end;
+
+			NodeTask(final int start, final int end) {
+				this.start = start;
+				this.end = end;
+			}
+
+			@Override
+			protected Integer compute() {
+				return build(start, end);
+			}
+
+			/**
+			 * Builds the node for the primitives in the range.
+			 *
+			 * @return	The index of the node.
+			 */
+			private int build(final int start, final int end) {
+				final int node = next.getAndIncrement();
+				final int[] ranges = new int[WIDTH + 1];
+				final int[] split0 = split(start, end);
+				final int[] split1 = split(start, split0[0]);
+				final int[] split2 = split(split0[0], end);
+				ranges[0] = start;
+				ranges[1] = split1[0];
+				ranges[2] = split0[0];
+				ranges[3] = split2[0];
+				ranges[4] = end;
+				axes[node] = split0[1] | split1[1] << 2 | split2[1] << 4;
+				final List<NodeTask> forked = new ArrayList<NodeTask>();
+				final int[] slots = new int[WIDTH];
+				for (int c = 0; c < WIDTH; c++) {
+					final int from = ranges[c];
+					final int to = ranges[c + 1];
+					final int slot = node * WIDTH + c;
+					if (from == to) {
+						// unused children have inverted bounds, so they are never hit
+						for (int k = 0; k < 3; k++) {
+							bounds[node * NODE_BOUNDS + k * WIDTH + c] = Float.POSITIVE_INFINITY;
+							bounds[node * NODE_BOUNDS + (k + 3) * WIDTH + c] = Float.NEGATIVE_INFINITY;
+						}
+						counts[slot] = 0;
+						continue;
+					}
+					for (int k = 0; k < 3; k++) {
+						double min = Double.POSITIVE_INFINITY;
+						double max = Double.NEGATIVE_INFINITY;
+						for (int i = from; i < to; i++) {
+							min = Math.min(min, boxes[primitives[i] * 6 + k]);
+							max = Math.max(max, boxes[primitives[i] * 6 + 3 + k]);
+						}
+						bounds[node * NODE_BOUNDS + k * WIDTH + c] = roundDown(min);
+						bounds[node * NODE_BOUNDS + (k + 3) * WIDTH + c] = roundUp(max);
+					}
+					if (to - from <= LEAF_SIZE || (from == start && to == end)) {
+						children[slot] = from;
+						counts[slot] = to - from;
+					} else if (to - from > PARALLEL_THRESHOLD) {
+						final NodeTask task = new NodeTask(from, to);
+						task.fork();
+						forked.add(task);
+						slots[forked.size() - 1] = slot;
+						counts[slot] = INNER;
+					} else {
+						children[slot] = build(from, to);
+						counts[slot] = INNER;
+					}
+				}
+				for (int f = 0; f < forked.size(); f++) {
+					children[slots[f]] = forked.get(f).join();
+				}
+				return node;
+			}
+		}
+	}
+	/**
+	 * This class splits the primitives with the surface area heuristic. The centers of the primitives are sorted
+	 * into bins along each axis, and the range is split at the bin border with the lowest sum of the surface areas
+	 * of both parts, weighted by their numbers of primitives.
+	 */
+	private class SurfaceAreaBuilder extends Builder {
+
+		SurfaceAreaBuilder(final double[] boxes) {
+			super(boxes);
+		}
+
+		@Override
+		protected int[] split(final int start, final int end) {
+			final int middle = (start + end) >>> 1;
+			if (end - start <= 2) {
+				return new int[] {middle, 0};
+			}
+			final double[] centerBounds = (end - start > PARALLEL_THRESHOLD)
+					? new CenterBoundsTask(start, end).invoke() : centerBounds(start, end);
+			final double[] bins = (end - start > PARALLEL_THRESHOLD)
+					? new BinTask(start, end, centerBounds).invoke() : bins(start, end, centerBounds);
+			int bestAxis = -1;
+			int bestBin = 0;
+			double bestCost = Double.POSITIVE_INFINITY;
+			final double[] rightArea = new double[BINS];
+			final int[] rightCount = new int[BINS];
+			for (int k = 0; k < 3; k++) {
+				if (centerBounds[k + 3] <= centerBounds[k]) {
+					continue;
+				}
+				// sweep from the right to get the areas and counts right of each border
+				final double[] box = emptyBox();
+				int count = 0;
+				for (int bin = BINS - 1; bin > 0; bin--) {
+					count += grow(box, bins, k, bin);
+					rightArea[bin] = area(box);
+					rightCount[bin] = count;
+				}
+				// sweep from the left and evaluate the border right of each bin
+				final double[] left = emptyBox();
+				int leftCount = 0;
+				for (int bin = 0; bin < BINS - 1; bin++) {
+					leftCount += grow(left, bins, k, bin);
+					if (leftCount == 0 || rightCount[bin + 1] == 0) {
+						continue;
+					}
+					final double cost = area(left) * leftCount + rightArea[bin + 1] * rightCount[bin + 1];
+					if (cost < bestCost) {
+						bestCost = cost;
+						bestAxis = k;
+						bestBin = bin;
+					}
+				}
+			}
+			if (bestAxis < 0) {
+				// all centers coincide, any split is as good as any other
+				return new int[] {middle, 0};
+			}
+			int i = start;
+			int j = end - 1;
+			while (i <= j) {
+				if (binOf(centers[primitives[i] * 3 + bestAxis], centerBounds, bestAxis) <= bestBin) {
+					i++;
+				} else {
+					final int temp = primitives[i];
+					primitives[i] = primitives[j];
+					primitives[j] = temp;
+					j--;
+				}
+			}
+			if (i == start || i == end) {
+				return new int[] {median(start, end, bestAxis), bestAxis};
+			}
+			return new int[] {i, bestAxis};
+		}
+
+		/**
+		 * @return	The minimum and maximum x, y, z coordinates of the centers of the primitives in the range.
+		 */
+		private double[] centerBounds(final int start, final int end) {
+			final double[] box = emptyBox();
+			for (int i = start; i < end; i++) {
+				for (int k = 0; k < 3; k++) {
+					final double c = centers[primitives[i] * 3 + k];
+					box[k] = Math.min(box[k], c);
+					box[k + 3] = Math.max(box[k + 3], c);
+				}
+			}
+			return box;
+		}
+
+		/**
+		 * Sorts the primitives in the range into the bins of all three axes.
+		 *
+		 * @return	The number of primitives and the bounds of each bin: seven values per bin, <code>BINS</code> bins
+		 * 			per axis.
+		 */
+		private double[] bins(final int start, final int end, final double[] centerBounds) {
+			final double[] bins = new double[3 * BINS * 7];
+			for (int b = 0; b < 3 * BINS; b++) {
+				System.arraycopy(emptyBox(), 0, bins, b * 7 + 1, 6);
+			}
+			for (int i = start; i < end; i++) {
+				final int p = primitives[i];
+				for (int k = 0; k < 3; k++) {
+					final int b = (k * BINS + binOf(centers[p * 3 + k], centerBounds, k)) * 7;
+					bins[b]++;
+					for (int m = 0; m < 3; m++) {
+						bins[b + 1 + m] = Math.min(bins[b + 1 + m], boxes[p * 6 + m]);
+						bins[b + 4 + m] = Math.max(bins[b + 4 + m], boxes[p * 6 + 3 + m]);
+					}
+				}
+			}
+			return bins;
+		}
+
+		/**
+		 * This class computes the bounds of the centers of a large range of primitives in parallel.
+		 */
+		private class CenterBoundsTask extends RecursiveTask<double[]> {
+			private static final long serialVersionUID = 1L;
+
+			private final int start;
+			private final int end;
+
+			CenterBoundsTask(final int start, final int end) {
+				this.start = start;
+				this.end = end;
+			}
+
+			@Override
+			protected double[] compute() {
+				if (end - start <= PARALLEL_THRESHOLD) {
+					return centerBounds(start, end);
+				}
+				final int middle = (start + end) >>> 1;
+				final CenterBoundsTask left = new CenterBoundsTask(start, middle);
+				left.fork();
+				final double[] box = new CenterBoundsTask(middle, end).compute();
+				final double[] other = left.join();
+				for (int k = 0; k < 3; k++) {
+					box[k] = Math.min(box[k], other[k]);
+					box[k + 3] = Math.max(box[k + 3], other[k + 3]);
+				}
+				return box;
+			}
+		}
+
+		/**
+		 * This class sorts a large range of primitives into bins in parallel.
+		 */
+		private class BinTask extends RecursiveTask<double[]> {
+			private static final long serialVersionUID = 1L;
+
+			private final int start;
+			private final int end;
+			private final double[] centerBounds;
+
+			BinTask(final int start, final int end, final double[] centerBounds) {
+				this.start = start;
+				this.end = end;
+				this.centerBounds = centerBounds;
+			}
+
+			@Override
+			protected double[] compute() {
+				if (end - start <= PARALLEL_THRESHOLD) {
+					return bins(start, end, centerBounds);
+				}
+				final int middle = (start + end) >>> 1;
+				final BinTask left = new BinTask(start, middle, centerBounds);
+				left.fork();
+				final double[] bins = new BinTask(middle, end, centerBounds).compute();
+				final double[] other = left.join();
+				for (int b = 0; b < 3 * BINS; b++) {
+					bins[b * 7] += other[b * 7];
+					for (int m = 1; m < 4; m++) {
+						bins[b * 7 + m] = Math.min(bins[b * 7 + m], other[b * 7 + m]);
+						bins[b * 7 + m + 3] = Math.max(bins[b * 7 + m + 3], other[b * 7 + m + 3]);
+					}
+				}
+				return bins;
+			}
+		}
+	}
+
+	/**
+	 * This class splits the primitives by their Morton codes. The codes interleave the bits of the quantized x, y, z
+	 * coordinates of the centers, so sorting by code orders the primitives along a space-filling curve and every
+	 * range of primitives sharing a code prefix is a cell of an octree-like subdivision.
+	 */
+	private class MortonBuilder extends Builder {
+		/**
+		 * The number of bits per axis of a Morton code.
+		 */
+		private static final int BITS = 10;
+		/**
+		 * The Morton codes of the primitives in the order of <code>primitives</code>.
+		 */
+		private final int[] codes;
+
+		MortonBuilder(final double[] boxes, final ForkJoinPool pool) {
+			super(boxes);
+			final int n = primitives.length;
+			final double[] box = emptyBox();
+			for (int i = 0; i < n; i++) {
+				for (int k = 0; k < 3; k++) {
+					box[k] = Math.min(box[k], centers[i * 3 + k]);
+					box[k + 3] = Math.max(box[k + 3], centers[i * 3 + k]);
+				}
+			}
+			// the codes are sorted together with the primitive indices, code in the high, index in the low bits
+			final long[] keys = new long[n];
+			final int scale = (1 << BITS) - 1;
+			for (int i = 0; i < n; i++) {
+				int code = 0;
+				for (int k = 0; k < 3; k++) {
+					final double extent = box[k + 3] - box[k];
+					final int q = (extent > 0) ? (int) ((centers[i * 3 + k] - box[k]) / extent * scale) : 0;
+					code |= expand(q) << (2 - k);
+				}
+				keys[i] = (long) code << 32 | i;
+			}
+			pool.invoke(new SortTask(keys, 0, n));
+			codes = new int[n];
+			for (int i = 0; i < n; i++) {
+				primitives[i] = (int) keys[i];
+				codes[i] = (int) (keys[i] >>> 32);
+			}
+		}
+
+		@Override
+		protected int[] split(final int start, final int end) {
+			final int middle = (start + end) >>> 1;
+			if (end - start <= 2 || codes[start] == codes[end - 1]) {
+				return new int[] {middle, 0};
+			}
+			// the highest bit in which the codes of the range differ, the first code with this bit set
+			final int bit = 31 - Integer.numberOfLeadingZeros(codes[start] ^ codes[end - 1]);
+			int low = start;
+			int high = end - 1;
+			while (low < high) {
+				final int m = (low + high) >>> 1;
+				if ((codes[m] >>> bit & 1) == 0) {
+					low = m + 1;
+				} else {
+					high = m;
+				}
+			}
+			return new int[] {low, 2 - bit % 3};
+		}
+
+		/**
+		 * Spreads the lower ten bits of the value, so two zero bits follow each bit.
+		 */
+		private int expand(final int value) {
+			int v = value & 0x3ff;
+			v = (v | v << 16) & 0x030000ff;
+			v = (v | v << 8) & 0x0300f00f;
+			v = (v | v << 4) & 0x030c30c3;
+			v = (v | v << 2) & 0x09249249;
+			return v;
+		}
+	}
+
+	/**
+	 * This class sorts a range of keys, large ranges are split and merged in parallel.
+	 */
+	private static class SortTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final long[] keys;
+		private final int start;
+		private final int end;
+
+		SortTask(final long[] keys, final int start, final int end) {
+			this.keys = keys;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute() {
+			if (end - start <= PARALLEL_THRESHOLD) {
+				Arrays.sort(keys, start, end);
+				return;
+			}
+			final int middle = (start + end) >>> 1;
+			invokeAll(new SortTask(keys, start, middle), new SortTask(keys, middle, end));
+			final long[] left = Arrays.copyOfRange(keys, start, middle);
+			int i = 0;
+			int j = middle;
+			int k = start;
+			while (i < left.length && j < end) {
+				keys[k++] = (left[i] <= keys[j]) ? left[i++] : keys[j++];
+			}
+			while (i < left.length) {
+				keys[k++] = left[i++];
+			}
+		}
+	}
+
+	/**
+	 * @return	A box with inverted bounds, which grows to the first bounds added to it.
+	 */
+	private static double[] emptyBox() {
+		return new double[] {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+				Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+	}
+
+	/**
+	 * Grows the box by the bounds of the specified bin.
+	 *
+	 * @return	The number of primitives of the bin.
+	 */
+	private static int grow(final double[] box, final double[] bins, final int axis, final int bin) {
+		final int b = (axis * BINS + bin) * 7;
+		for (int m = 0; m < 3; m++) {
+			box[m] = Math.min(box[m], bins[b + 1 + m]);
+			box[m + 3] = Math.max(box[m + 3], bins[b + 4 + m]);
+		}
+		return (int) bins[b];
+	}
+
+	/**
+	 * @return	The surface area of the box, 0 for an empty box.
+	 */
+	private static double area(final double[] box) {
+		if (box[3] < box[0]) {
+			return 0;
+		}
+		final double x = box[3] - box[0];
+		final double y = box[4] - box[1];
+		final double z = box[5] - box[2];
+		return 2 * (x * y + y * z + z * x);
+	}
+
+	/**
+	 * @return	The bin of the center coordinate along the axis.
+	 */
+	private static int binOf(final double center, final double[] centerBounds, final int axis) {
+		final int bin = (int) ((center - centerBounds[axis]) / (centerBounds[axis + 3] - centerBounds[axis]) * BINS);
+		return Math.max(0, Math.min(BINS - 1, bin));
+	}
+
+	/**
+	 * @return	The largest <code>float</code> not greater than the specified value.
+	 */
+	private static float roundDown(final double value) {
+		final float f = (float) value;
+		return (f > value) ? Math.nextDown(f) : f;
+	}
+
+	/**
+	 * @return	The smallest <code>float</code> not less than the specified value.
+	 */
+	private static float roundUp(final double value) {
+		final float f = (float) value;
+		return (f < value) ? Math.nextUp(f) : f;
+	}
+
+	/**
+	 * Traverses this hierarchy with the specified ray and calls the intersector for the primitives of all leaves
+	 * the ray reaches before its closest hit.
+	 *
+	 * @param ox			The x coordinate of the origin of the ray.
+	 * @param oy			The y coordinate of the origin of the ray.
+	 * @param oz			The z coordinate of the origin of the ray.
+	 * @param dx			The x coordinate of the direction of the ray.
+	 * @param dy			The y coordinate of the direction of the ray.
+	 * @param dz			The z coordinate of the direction of the ray.
+	 * @param tMin			The smallest parameter of a hit.
+	 * @param tMax			The parameter of the closest hit known so far.
+	 * @param intersector	The intersector of the primitives. Must not be <code>null</code>.
+	 * @return				The parameter of the closest hit, <code>tMax</code> if no closer hit was found.
+	 */
+	public double traverse(final double ox, final double oy, final double oz, final double dx, final double dy,
+			final double dz, final double tMin, final double tMax, final Intersector intersector) {
+		if (primitives.length == 0) {
+			return tMax;
+		}
+		// a zero component gives an infinite slab, a huge factor instead of infinity avoids 0 * infinity
+		final double ix = (dx == 0) ? Double.MAX_VALUE : 1 / dx;
+		final double iy = (dy == 0) ? Double.MAX_VALUE : 1 / dy;
+		final double iz = (dz == 0) ? Double.MAX_VALUE : 1 / dz;
+		final boolean[] negative = {dx < 0, dy < 0, dz < 0};
+		int[] stack = new int[STACK_SIZE];
+		final int[] order = new int[WIDTH];
+		final int[] hit = new int[WIDTH];
+		int size = 0;
+		stack[size++] = 0;
+		double t = tMax;
+		int tests = 0;
+		while (size > 0) {
+			final int node = stack[--size];
+			tests++;
+			final int b = node * NODE_BOUNDS;
+			final int axis = axes[node];
+			// children in the order front to back along the direction of the ray
+			final int low = negative[axis >> 2 & 3] ? 1 : 0;
+			final int high = negative[axis >> 4 & 3] ? 1 : 0;
+			if (negative[axis & 3]) {
+				order[0] = 2 + high;
+				order[1] = 3 - high;
+				order[2] = low;
+				order[3] = 1 - low;
+			} else {
+				order[0] = low;
+				order[1] = 1 - low;
+				order[2] = 2 + high;
+				order[3] = 3 - high;
+			}
+			// leaves are intersected at once, so their hits cull the children behind them, inner children are 
+			// pushed back to front, so the front child is popped first
+			int inner = 0;
+			for (int o = 0; o < WIDTH; o++) {
+				final int c = order[o];
+				final int slot = node * WIDTH + c;
+				final int count = counts[slot];
+				if (count == 0) {
+					continue;
+				}
+				final double x1 = (bounds[b + c] - ox) * ix;
+				final double x2 = (bounds[b + 3 * WIDTH + c] - ox) * ix;
+				final double y1 = (bounds[b + WIDTH + c] - oy) * iy;
+				final double y2 = (bounds[b + 4 * WIDTH + c] - oy) * iy;
+				final double z1 = (bounds[b + 2 * WIDTH + c] - oz) * iz;
+				final double z2 = (bounds[b + 5 * WIDTH + c] - oz) * iz;
+				final double near = Math.max(Math.max(tMin, Math.min(x1, x2)), 
+						Math.max(Math.min(y1, y2), Math.min(z1, z2)));
+				final double far = Math.min(Math.min(t, Math.max(x1, x2)), 
+						Math.min(Math.max(y1, y2), Math.max(z1, z2)));
+				if (near > far) {
+					continue;
+				}
+				if (count == INNER) {
+					hit[inner++] = children[slot];
+				} else {
+					final int start = children[slot];
+					for (int i = start; i < start + count; i++) {
+						t = intersector.intersect(primitives[i], t);
+					}
+				}
+			}
+			if (size + inner > stack.length) {
+				stack = Arrays.copyOf(stack, stack.length * 2);
+			}
+			while (inner > 0) {
+				stack[size++] = hit[--inner];
+			}
+		}
+		RenderMetrics.counters().boundingVolumeTests(tests);
+		return t;
+	}
+
+	/**
+	 * Traverses this hierarchy with the rays of the specified packet together and calls the intersector for the
+	 * primitives of all leaves the rays reach before their closest hits. Every node is visited once by all rays which
+	 * reach it, a mask tells which rays these are. The children are ordered by the direction of the first of them,
+	 * which is the order of all rays of a coherent packet. Packets of more than 64 rays traverse in groups of 64.
+	 *
+	 * @param packet		The packet of rays. Must not be <code>null</code>.
+	 * @param tMin			The smallest parameter of a hit.
+	 * @param tMax			The parameters of the closest hits known so far, one per ray of the packet. They are
+	 * 						lowered to the parameters of the closest hits found. Must not be <code>null</code>.
+	 * @param intersector	The intersector of the primitives. Must not be <code>null</code>.
+	 */
+	public void traverse(final RayPacket packet, final double tMin, final double[] tMax,
+			final PacketIntersector intersector) {
+		if (packet == null || tMax == null || intersector == null) {
+			throw new IllegalArgumentException("The parameters must not be null.");
+		}
+		final int size = packet.size();
+		if (primitives.length == 0 || size == 0) {
+			return;
+		}
+		// a zero component gives an infinite slab, a huge factor instead of infinity avoids 0 * infinity
+		final double[] ix = new double[size];
+		final double[] iy = new double[size];
+		final double[] iz = new double[size];
+		for (int r = 0; r < size; r++) {
+			ix[r] = (packet.dx[r] == 0) ? Double.MAX_VALUE : 1 / packet.dx[r];
+			iy[r] = (packet.dy[r] == 0) ? Double.MAX_VALUE : 1 / packet.dy[r];
+			iz[r] = (packet.dz[r] == 0) ? Double.MAX_VALUE : 1 / packet.dz[r];
+		}
+		for (int first = 0; first < size; first += PACKET_WIDTH) {
+			final int n = Math.min(PACKET_WIDTH, size - first);
+			traverse(packet, first, (n == PACKET_WIDTH) ? -1L : (1L << n) - 1, ix, iy, iz, tMin, tMax, intersector);
+		}
+	}
+
+	/**
+	 * Traverses this hierarchy with up to 64 rays of a packet.
+	 *
+	 * @param first	The index of the ray of bit 0 of the masks.
+	 * @param all	The mask of the rays.
+	 */
+	private void traverse(final RayPacket packet, final int first, final long all, final double[] ix,
+			final double[] iy, final double[] iz, final double tMin, final double[] tMax,
+			final PacketIntersector intersector) {
+		int[] stack = new int[STACK_SIZE];
+		long[] masks = new long[STACK_SIZE];
+		final int[] order = new int[WIDTH];
+		final int[] hit = new int[WIDTH];
+		final long[] hitMasks = new long[WIDTH];
+		final boolean[] negative = new boolean[3];
+		int size = 0;
+		stack[size] = 0;
+		masks[size++] = all;
+		int tests = 0;
+		while (size > 0) {
+			final int node = stack[--size];
+			final long mask = masks[size];
+			tests += Long.bitCount(mask);
+			final int b = node * NODE_BOUNDS;
+			final int axis = axes[node];
+			final int lead = first + Long.numberOfTrailingZeros(mask);
+			negative[0] = packet.dx[lead] < 0;
+			negative[1] = packet.dy[lead] < 0;
+			negative[2] = packet.dz[lead] < 0;
+			final int low = negative[axis >> 2 & 3] ? 1 : 0;
+			final int high = negative[axis >> 4 & 3] ? 1 : 0;
+			if (negative[axis & 3]) {
+				order[0] = 2 + high;
+				order[1] = 3 - high;
+				order[2] = low;
+				order[3] = 1 - low;
+			} else {
+				order[0] = low;
+				order[1] = 1 - low;
+				order[2] = 2 + high;
+				order[3] = 3 - high;
+			}
+			int inner = 0;
+			for (int o = 0; o < WIDTH; o++) {
+				final int c = order[o];
+				final int slot = node * WIDTH + c;
+				final int count = counts[slot];
+				if (count == 0) {
+					continue;
+				}
+				final float minX = bounds[b + c];
+				final float minY = bounds[b + WIDTH + c];
+				final float minZ = bounds[b + 2 * WIDTH + c];
+				final float maxX = bounds[b + 3 * WIDTH + c];
+				final float maxY = bounds[b + 4 * WIDTH + c];
+				final float maxZ = bounds[b + 5 * WIDTH + c];
+				// the child is tested against all rays of the node, its mask keeps the rays which reach it
+				long childMask = 0;
+				for (long m = mask; m != 0; m &= m - 1) {
+					final int r = first + Long.numberOfTrailingZeros(m);
+					final double x1 = (minX - packet.ox[r]) * ix[r];
+					final double x2 = (maxX - packet.ox[r]) * ix[r];
+					final double y1 = (minY - packet.oy[r]) * iy[r];
+					final double y2 = (maxY - packet.oy[r]) * iy[r];
+					final double z1 = (minZ - packet.oz[r]) * iz[r];
+					final double z2 = (maxZ - packet.oz[r]) * iz[r];
+					final double near = Math.max(Math.max(tMin, Math.min(x1, x2)), 
+							Math.max(Math.min(y1, y2), Math.min(z1, z2)));
+					final double far = Math.min(Math.min(tMax[r], Math.max(x1, x2)), 
+							Math.min(Math.max(y1, y2), Math.max(z1, z2)));
+					if (near <= far) {
+						childMask |= m & -m;
+					}
+				}
+				if (childMask == 0) {
+					continue;
+				}
+				if (count == INNER) {
+					hit[inner] = children[slot];
+					hitMasks[inner++] = childMask;
+				} else {
+					final int start = children[slot];
+					for (int i = start; i < start + count; i++) {
+						intersector.intersect(primitives[i], first, childMask, tMax);
+					}
+				}
+			}
+			if (size + inner > stack.length) {
+				stack = Arrays.copyOf(stack, stack.length * 2);
+				masks = Arrays.copyOf(masks, masks.length * 2);
+			}
+			while (inner > 0) {
+				stack[size] = hit[--inner];
+				masks[size++] = hitMasks[inner];
+			}
+		}
+		RenderMetrics.counters().boundingVolumeTests(tests);
+	}
+
+	/**
+	 * Returns a hierarchy with the tree of this hierarchy, fitted to the new bounds of the specified primitives. Only
+	 * the leaves of these primitives and their ancestors are updated, bottom-up until a node keeps its bounds. This
+	 * hierarchy is not changed, so rays may still traverse it.
+	 *
+	 * @param boxes		The bounds of all primitives, six values per primitive: minimum x, y, z and maximum x, y, z.
+	 * 					Must not be <code>null</code>.
+	 * @param changed	The indices of the primitives whose bounds changed. Must not be <code>null</code>.
+	 * @return			The refitted hierarchy.
+	 */
+	public BoundingVolumeHierarchy refit(final double[] boxes, final int[] changed) {
+		if (boxes == null || boxes.length != primitives.length * 6) {
+			throw new IllegalArgumentException("The parameter 'boxes' must hold six values per primitive.");
+		}
+		if (changed == null) {
+			throw new IllegalArgumentException("The parameter 'changed' must not be null.");
+		}
+		final BoundingVolumeHierarchy refitted = new BoundingVolumeHierarchy(this, bounds.clone());
+		for (final int primitive : changed) {
+			final int leaf = leaves[primitive];
+			final double[] box = emptyBox();
+			for (int i = children[leaf]; i < children[leaf] + counts[leaf]; i++) {
+				for (int k = 0; k < 3; k++) {
+					box[k] = Math.min(box[k], boxes[primitives[i] * 6 + k]);
+					box[k + 3] = Math.max(box[k + 3], boxes[primitives[i] * 6 + 3 + k]);
+				}
+			}
+			int slot = leaf;
+			while (refitted.fit(slot, box) && parents[slot / WIDTH] >= 0) {
+				final int node = slot / WIDTH;
+				for (int k = 0; k < 3; k++) {
+					box[k] = Double.POSITIVE_INFINITY;
+					box[k + 3] = Double.NEGATIVE_INFINITY;
+					for (int c = 0; c < WIDTH; c++) {
+						box[k] = Math.min(box[k], refitted.bounds[node * NODE_BOUNDS + k * WIDTH + c]);
+						box[k + 3] = Math.max(box[k + 3], refitted.bounds[node * NODE_BOUNDS + (k + 3) * WIDTH + c]);
+					}
+				}
+				slot = parents[node];
+			}
+		}
+		return refitted;
+	}
+
+	/**
+	 * Sets the bounds of the specified slot to the box.
+	 *
+	 * @return	<code>false</code> if the slot already had these bounds.
+	 */
+	private boolean fit(final int slot, final double[] box) {
+		final int b = (slot / WIDTH) * NODE_BOUNDS + slot % WIDTH;
+		boolean changed = false;
+		for (int k = 0; k < 3; k++) {
+			final float min = roundDown(box[k]);
+			final float max = roundUp(box[k + 3]);
+			if (bounds[b + k * WIDTH] != min || bounds[b + (k + 3) * WIDTH] != max) {
+				bounds[b + k * WIDTH] = min;
+				bounds[b + (k + 3) * WIDTH] = max;
+				changed = true;
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Estimates the cost of tracing a ray through this hierarchy with the surface area heuristic: the surface areas
+	 * of the inner nodes plus the surface areas of the leaves weighted by their numbers of primitives, relative to
+	 * the surface area of the root. A refitted hierarchy costs more than a new one as its nodes overlap more.
+	 *
+	 * @return	The estimated cost, 0 for an empty hierarchy.
+	 */
+	public double cost() {
+		final double[] root = emptyBox();
+		double sum = 0;
+		for (int slot = 0; slot < nodes * WIDTH; slot++) {
+			if (counts[slot] == 0) {
+				continue;
+			}
+			final int b = (slot / WIDTH) * NODE_BOUNDS + slot % WIDTH;
+			final double[] box = new double[6];
+			for (int k = 0; k < 6; k++) {
+				box[k] = bounds[b + k * WIDTH];
+			}
+			if (slot < WIDTH) {
+				for (int k = 0; k < 3; k++) {
+					root[k] = Math.min(root[k], box[k]);
+					root[k + 3] = Math.max(root[k + 3], box[k + 3]);
+				}
+			}
+			sum += area(box) * (counts[slot] == INNER ? 1 : counts[slot]);
+		}
+		final double rootArea = area(root);
+		return (rootArea > 0) ? 1 + sum / rootArea : 0;
+	}
+
+	/**
+	 * @return	The number of primitives of this hierarchy.
+	 */
+	public int size() {
+		return primitives.length;
+	}
+
+	/**
+	 * @return	The number of nodes of this hierarchy.
+	 */
+	public int getNodes() {
+		return nodes;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[primitives = " + primitives.length + ", nodes = " + nodes + "]";
+	}
+}
@@ -0,0 +1,142 @@
+package raytracer.geometry;
+
+import raytracer.math.Mat4x4;
+import raytracer.math.Point3;
+
+/**
+ * This immutable class represents the axis aligned bounds of a geometry, defined through the minimum and the maximum
+ * x, y, z coordinates. The bounds are used to build bounding volume hierarchies, unlike the
+ * <code>AxisAlignedBoundingBox</code> they are not meant to be hit by rays themselves.
+ *
+ * @author Sebastian Dass&eacute;
+ *
+ */
+public class Bounds {
+	/**
+	 * The minimum x, y, z coordinates.
+	 */
+	public final Point3 min;
+	/**
+	 * The maximum x, y, z coordinates.
+	 */
+	public final Point3 max;
+
+	/**
+	 * Constructs new <code>Bounds</code> with the specified minimum and maximum coordinates.
+	 *
+	 * @param min	The minimum x, y, z coordinates. Must not be <code>null</code>.
+	 * @param max	The maximum x, y, z coordinates. Must not be <code>null</code>.
+	 */
+	public Bounds(final Point3 min, final Point3 max) {
+		if (min == null || max == null) {
+			throw new IllegalArgumentException("The parameters must not be null.");
+		}
+		this.min = min;
+		this.max = max;
+	}
+
+	/**
+	 * Creates the smallest bounds enclosing the specified points.
+	 *
+	 * @param points	The points. Must not be empty.
+	 * @return			The bounds.
+	 */
+	public static Bounds of(final Point3... points) {
+		if (points.length == 0) {
+			throw new IllegalArgumentException("The parameter 'points' must not be empty.");
+		}
+		double minX = Double.POSITIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		double minZ = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		double maxZ = Double.NEGATIVE_INFINITY;
+		for (Point3 p : points) {
+			minX = Math.min(minX, p.x);
+			minY = Math.min(minY, p.y);
+			minZ = Math.min(minZ, p.z);
+			maxX = Math.max(maxX, p.x);
+			maxY = Math.max(maxY, p.y);
+			maxZ = Math.max(maxZ, p.z);
+		}
+		return new Bounds(new Point3(minX, minY, minZ), new Point3(maxX, maxY, maxZ));
+	}
+
+	/**
+	 * Creates the smallest bounds enclosing these and the specified bounds.
+	 *
+	 * @param b	The other bounds. Must not be <code>null</code>.
+	 * @return	The union of both bounds.
+	 */
+	public Bounds union(final Bounds b) {
+		if (b == null) {
+			throw new IllegalArgumentException("The parameter 'b' must not be null.");
+		}
+		return Bounds.of(min, max, b.min, b.max);
+	}
+
+	/**
+	 * Transforms these bounds with the specified matrix. The result encloses all eight transformed corners, so it
+	 * may be larger than the transformed geometry.
+	 *
+	 * @param m	The transformation matrix, e.g. the matrix <code>m</code> of a <code>Transform</code>. Must not be
+	 * 			<code>null</code>.
+	 * @return	The transformed bounds.
+	 */
+	public Bounds mul(final Mat4x4 m) {
+		if (m == null) {
+			throw new IllegalArgumentException("The parameter 'm' must not be null.");
+		}
+		final Point3[] corners = new Point3[8];
+		for (int i = 0; i < corners.length; i++) {
+			corners[i] = m.mul(new Point3(
+					(i & 1) == 0 ? min.x : max.x,
+					(i & 2) == 0 ? min.y : max.y,
+					(i & 4) == 0 ? min.z : max.z));
+		}
+		return Bounds.of(corners);
+	}
+
+	/**
+	 * @return	The center of these bounds.
+	 */
+	public Point3 center() {
+		return new Point3((min.x + max.x) / 2, (min.y + max.y) / 2, (min.z + max.z) / 2);
+	}
+
+	/**
+	 * @return	The surface area of these bounds.
+	 */
+	public double area() {
+		final double x = max.x - min.x;
+		final double y = max.y - min.y;
+		final double z = max.z - min.z;
+		return 2 * (x * y + y * z + z * x);
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + max.hashCode();
+		result = prime * result + min.hashCode();
+		return result;
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		final Bounds other = (Bounds) obj;
+		return min.equals(other.min) && max.equals(other.max);
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[min = " + min + ", max = " + max + "]";
+	}
+}
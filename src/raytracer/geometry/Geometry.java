@@ -2,6 +2,7 @@ package raytracer.geometry;
 
 import raytracer.Ray;
 import raytracer.material.Material;
+import raytracer.math.Normal3;
 
 /**
  * This abstract base class represents a geometric object in three-dimensional space. 
@@ -13,6 +14,11 @@ import raytracer.material.Material;
  *
  */
 public abstract class Geometry {
+	/**
+	 * The smallest cosine of the angle between a ray and a surface used for footprints. The footprint is a single 
+	 * width, so it is only stretched this much at grazing angles lest the texture of the whole surface blurs.
+	 */
+	private static final double MIN_FOOTPRINT_COSINE = 0.125;
 	/**
 	 * The material of the <code>Geometry</code>.
 	 */
@@ -44,6 +50,52 @@ public abstract class Geometry {
 	 */
 	public abstract Hit hit(final Ray ray);
 	
+	/**
+	 * Returns the bounds of this <code>Geometry</code>, which are used to place it in a bounding volume hierarchy. 
+	 * This implementation returns <code>null</code>, i.e. the geometry is unbounded, like a plane, and is tested 
+	 * against every ray. Bounded geometries override it.
+	 * 
+	 * @return	The bounds or <code>null</code> if the geometry is unbounded.
+	 */
+	public Bounds getBounds() {
+		return null;
+	}
+	
+	/**
+	 * Calculates the footprint of the cone of a ray on a surface in texture coordinates for the constructor of a 
+	 * <code>Hit</code>.
+	 * 
+	 * @param ray		The ray which hit the surface.
+	 * @param t			The parameter of the hit point.
+	 * @param normal	The normalized normal of the surface at the hit point.
+	 * @param scale		The change of the texture coordinates per unit of length on the surface.
+	 * @return			The width of the footprint in texture coordinates, 0 for an infinitely thin ray.
+	 */
+	protected static double footprint(final Ray ray, final double t, final Normal3 normal, final double scale) {
+		final double width = ray.widthAt(t);
+		if (width == 0) {
+			return 0;
+		}
+		final double cosine = Math.abs(normal.dot(ray.d)) / ray.d.magnitude;
+		return width * scale / Math.max(cosine, MIN_FOOTPRINT_COSINE);
+	}
+	
+	/**
+	 * Intersects all rays of the specified packet with this <code>Geometry</code> and offers the hits to the packet, 
+	 * which keeps the closest hit of each ray.
+	 * <p>
+	 * This implementation tests the rays one by one with <code>hit(Ray)</code>. Geometries which can test a whole 
+	 * packet faster, e.g. triangle meshes, override it.
+	 * 
+	 * @param packet	The packet of rays. Must not be <code>null</code>.
+	 */
+	public void hit(final RayPacket packet) {
+		final int size = packet.size();
+		for (int i = 0; i < size; i++) {
+			packet.offer(i, hit(packet.getRay(i)));
+		}
+	}
+	
 	@Override
 	public int hashCode() {
 		final int prime = 31;
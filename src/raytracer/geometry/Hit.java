@@ -34,6 +34,10 @@ public class Hit /*implements Comparable<Hit>*/ {
 	 * The texture coordinates of this hit.
 	 */
 	public final TexCoord2 texcoord;
+	/**
+	 * The width of the footprint of the ray cone at this hit in texture coordinates, 0 for an infinitely thin ray.
+	 */
+	public final double footprint;
 	
 	/**
 	 * Constructs a new <code>Hit</code> object with the specified parameters.
@@ -45,6 +49,21 @@ public class Hit /*implements Comparable<Hit>*/ {
 	 * @param texcoord	The texture coordinates of the hit point. Most not be <code>null</code>.
 	 */
 	public Hit(final double t, final Ray ray, final Geometry geo, final Normal3 normal, final TexCoord2 texcoord) {
+		this(t, ray, geo, normal, texcoord, 0);
+	}
+	
+	/**
+	 * Constructs a new <code>Hit</code> object with the specified parameters and footprint.
+	 * 
+	 * @param t			The parameter for the hit point. Must be a positive double value other than Infinity or NaN.
+	 * @param ray		The <code>Ray</code> that hit the <code>Geometry</code>. Must not be <code>null</code>.
+	 * @param geo		The <code>Geometry</code> that was hit. Must not be <code>null</code>.
+	 * @param normal	The normal of the hit point. Must not be <code>null</code>.
+	 * @param texcoord	The texture coordinates of the hit point. Most not be <code>null</code>.
+	 * @param footprint	The width of the footprint of the ray cone in texture coordinates.
+	 */
+	public Hit(final double t, final Ray ray, final Geometry geo, final Normal3 normal, final TexCoord2 texcoord, 
+			final double footprint) {
 		if (ray == null || geo == null || normal == null || texcoord == null) {
 			throw new IllegalArgumentException("The parameters must not be null.");
 		}
@@ -53,6 +72,7 @@ public class Hit /*implements Comparable<Hit>*/ {
 		this.geo = geo;
 		this.normal = normal;
 		this.texcoord = texcoord;
+		this.footprint = footprint;
 	}
 	
 	@Override
@@ -2,11 +2,13 @@ package raytracer.geometry;
 
 import java.util.Collection;
 import java.util.LinkedList;
+import java.util.concurrent.atomic.AtomicLong;
 
 import raytracer.Color;
 import raytracer.Ray;
 import raytracer.material.SingleColorMaterial;
 import raytracer.math.Transform;
+import raytracer.metrics.RenderMetrics;
 import raytracer.texture.SingleColorTexture;
 
 /**
@@ -17,14 +19,23 @@ import raytracer.texture.SingleColorTexture;
  *
  */
 public class Node extends Geometry {
+	/**
+	 * The number of changes of the transformations and geometries of all nodes. Structures built over the bounds of 
+	 * nodes compare it to detect that bounds may have changed.
+	 */
+	private static final AtomicLong modifications = new AtomicLong();
 	/**
 	 * The geometries of this node.
 	 */
 	private final Collection <Geometry> geos;
 	/**
-	 * The transformation of this node.
+	 * The transformation of this node. It may be replaced between two frames of an animation.
+	 */
+	private volatile Transform transform;
+	/**
+	 * The value of <code>modifications</code> after the last change of this node, 0 if it never changed.
 	 */
-	private final Transform transform;
+	private volatile long version;
 
 	/**
 	 * Constructs a new <code>Node</code> comprising the specified geometries with the specified transformation.
@@ -65,6 +76,7 @@ public class Node extends Geometry {
 	 */
 	public void add(final Geometry geo) {
 		geos.add(geo);
+		version = modifications.incrementAndGet();
 	}
 	
 	/**
@@ -74,6 +86,7 @@ public class Node extends Geometry {
 	 */
 	public void addAll(final Collection<Geometry> geos) {
 		geos.addAll(geos);
+		version = modifications.incrementAndGet();
 	}
 	
 	/**
@@ -83,6 +96,7 @@ public class Node extends Geometry {
 	 */
 	public void remove(final Geometry geo) {
 		geos.remove(geo);
+		version = modifications.incrementAndGet();
 	}
 	
 	/**
@@ -92,10 +106,63 @@ public class Node extends Geometry {
 	 */
 	public void removeAll(final Collection<Geometry> geos) {
 		geos.removeAll(geos);
+		version = modifications.incrementAndGet();
+	}
+	
+	/**
+	 * Returns the transformation of this node.
+	 * 
+	 * @return	The transformation of this node.
+	 */
+	public Transform getTransform() {
+		return transform;
+	}
+	
+	/**
+	 * Replaces the transformation of this node, e.g. to move the geometries of this node between two frames of an 
+	 * animation. The geometries themselves are kept, so they need not be loaded or built again.
+	 * 
+	 * @param transform	The new transformation of the node. Must not be <code>null</code>.
+	 */
+	public void setTransform(final Transform transform) {
+		if (transform == null) {
+			throw new IllegalArgumentException("The parameter 'transform' must not be null.");
+		}
+		this.transform = transform;
+		version = modifications.incrementAndGet();
+	}
+	
+	/**
+	 * Returns the number of changes of the transformations and geometries of all nodes so far, e.g. to detect that 
+	 * a bounding volume hierarchy over nodes is out of date.
+	 * 
+	 * @return	The number of changes.
+	 */
+	public static long getModifications() {
+		return modifications.get();
+	}
+	
+	/**
+	 * Returns the version of this node and the nodes below it. It is greater than before whenever this node or one 
+	 * of the nodes below it changed, so structures built over the bounds of several nodes can tell which of them 
+	 * moved.
+	 * 
+	 * @return	The version.
+	 */
+	public long getVersion() {
+		long v = version;
+		for (Geometry geo : geos) {
+			if (geo instanceof Node) {
+				v = Math.max(v, ((Node) geo).getVersion());
+			}
+		}
+		return v;
 	}
 	
 	@Override
 	public Hit hit(final Ray ray) {
+		RenderMetrics.counters().intersectionTest(RenderMetrics.NODE);
+		final Transform transform = this.transform;
 		final Ray processedRay = transform.mul(ray);
 		double t = Double.POSITIVE_INFINITY;
 		Hit nearestHit = null;
@@ -109,7 +176,51 @@ public class Node extends Geometry {
 		if (nearestHit == null) {
 			return null;
 		}
-		return new Hit(t, ray, nearestHit.geo, transform.mul(nearestHit.normal), nearestHit.texcoord);
+		return new Hit(t, ray, nearestHit.geo, transform.mul(nearestHit.normal), nearestHit.texcoord, 
+				nearestHit.footprint);
+	}
+	
+	/**
+	 * Transforms all rays of the packet into the coordinate system of this node and intersects them with the 
+	 * geometries of this node as a packet. The transformation keeps the parameter t of the rays, so the closest hits 
+	 * found so far limit the search in the geometries.
+	 */
+	@Override
+	public void hit(final RayPacket packet) {
+		final int size = packet.size();
+		RenderMetrics.counters().intersectionTests(RenderMetrics.NODE, size);
+		final Transform transform = this.transform;
+		final RayPacket processed = new RayPacket(size);
+		for (int i = 0; i < size; i++) {
+			processed.add(transform.mul(packet.getRay(i)), packet.t[i]);
+		}
+		for (Geometry geo : geos) {
+			geo.hit(processed);
+		}
+		for (int i = 0; i < size; i++) {
+			final Hit hit = processed.getHit(i);
+			if (hit != null) {
+				packet.offer(i, new Hit(hit.t, packet.getRay(i), hit.geo, transform.mul(hit.normal), hit.texcoord, 
+						hit.footprint));
+			}
+		}
+	}
+	
+	/**
+	 * Returns the bounds of the geometries of this node, transformed into the coordinate system of the parent. 
+	 * Returns <code>null</code> if the node is empty or any of its geometries is unbounded.
+	 */
+	@Override
+	public Bounds getBounds() {
+		Bounds bounds = null;
+		for (Geometry geo : geos) {
+			final Bounds b = geo.getBounds();
+			if (b == null) {
+				return null;
+			}
+			bounds = (bounds == null) ? b : bounds.union(b);
+		}
+		return (bounds == null) ? null : bounds.mul(transform.m);
 	}
 	
 	@Override
@@ -5,6 +5,7 @@ import raytracer.Ray;
 import raytracer.material.Material;
 import raytracer.math.Normal3;
 import raytracer.math.Point3;
+import raytracer.metrics.RenderMetrics;
 import raytracer.texture.TexCoord2;
 
 /**
@@ -38,6 +39,7 @@ public class Plane extends Geometry {
 		if (ray == null) {
 			throw new IllegalArgumentException("The parameter 'ray' must not be null.");
 		}
+		RenderMetrics.counters().intersectionTest(RenderMetrics.PLANE);
 		// Formula: t = <a - o, n> / <d, n>,  a = 0  =>  <a - o, n> = <-o, n> = <o, -n>
 		final double denominator = ray.d.dot(n);
 		if (denominator == 0) { // not hit
@@ -46,6 +48,7 @@ public class Plane extends Geometry {
 		final double t = origin.sub(ray.o).dot(n) / denominator;
 		final Normal3 normal = n.asVector().normalized().asNormal(); // normalized normal
 		final Point3 p = ray.at(t); 
-		return (t < Constants.EPSILON) ? null : new Hit(t, ray, this, normal, new TexCoord2(p.x, -p.z));
+		return (t < Constants.EPSILON) ? null 
+				: new Hit(t, ray, this, normal, new TexCoord2(p.x, -p.z), footprint(ray, t, normal, 1));
 	}
 }
@@ -0,0 +1,177 @@
+package raytracer.geometry;
+
+import raytracer.Ray;
+
+/**
+ * This class represents a packet of coherent rays, e.g. the primary rays of neighboring pixels, which are intersected
+ * with the geometries of a world together. The origins and directions of the rays are stored component-wise in
+ * separate arrays (structure of arrays), so geometries can test all rays of the packet in tight loops over
+ * primitive arrays instead of one virtual <code>hit</code> call per ray.
+ * <p>
+ * For every ray the packet keeps the closest hit found so far. Geometries offer their hits with <code>offer</code>,
+ * which only keeps a hit if it is closer than the current one.
+ * <p>
+ * A packet is not thread-safe and is meant to be reused by a single render thread.
+ *
+ * @author Sebastian Dass&eacute;
+ *
+ */
+public class RayPacket {
+	/**
+	 * The default number of rays in a packet.
+	 */
+	public static final int DEFAULT_WIDTH = 16;
+
+	/**
+	 * The x components of the origins of the rays.
+	 */
+	public final double[] ox;
+	/**
+	 * The y components of the origins of the rays.
+	 */
+	public final double[] oy;
+	/**
+	 * The z components of the origins of the rays.
+	 */
+	public final double[] oz;
+	/**
+	 * The x components of the directions of the rays.
+	 */
+	public final double[] dx;
+	/**
+	 * The y components of the directions of the rays.
+	 */
+	public final double[] dy;
+	/**
+	 * The z components of the directions of the rays.
+	 */
+	public final double[] dz;
+	/**
+	 * The parameters t of the closest hits found so far, <code>Double.POSITIVE_INFINITY</code> for no hit.
+	 */
+	public final double[] t;
+	/**
+	 * The rays of this packet.
+	 */
+	private final Ray[] rays;
+	/**
+	 * The closest hits found so far.
+	 */
+	private final Hit[] hits;
+	/**
+	 * The number of rays in this packet.
+	 */
+	private int size;
+
+	/**
+	 * Constructs a new empty <code>RayPacket</code> with the specified capacity.
+	 *
+	 * @param capacity	The maximum number of rays in the packet. Must be positive.
+	 */
+	public RayPacket(final int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("The parameter 'capacity' must be positive.");
+		}
+		ox = new double[capacity];
+		oy = new double[capacity];
+		oz = new double[capacity];
+		dx = new double[capacity];
+		dy = new double[capacity];
+		dz = new double[capacity];
+		t = new double[capacity];
+		rays = new Ray[capacity];
+		hits = new Hit[capacity];
+	}
+
+	/**
+	 * Adds a ray to this packet.
+	 *
+	 * @param ray	The ray. Must not be <code>null</code>.
+	 */
+	public void add(final Ray ray) {
+		add(ray, Double.POSITIVE_INFINITY);
+	}
+
+	/**
+	 * Adds a ray to this packet which only looks for hits closer than the specified parameter.
+	 *
+	 * @param ray	The ray. Must not be <code>null</code>.
+	 * @param tMax	The parameter of the closest hit known so far.
+	 */
+	public void add(final Ray ray, final double tMax) {
+		if (ray == null) {
+			throw new IllegalArgumentException("The parameter 'ray' must not be null.");
+		}
+		if (size == rays.length) {
+			throw new IllegalStateException("The packet is full.");
+		}
+		ox[size] = ray.o.x;
+		oy[size] = ray.o.y;
+		oz[size] = ray.o.z;
+		dx[size] = ray.d.x;
+		dy[size] = ray.d.y;
+		dz[size] = ray.d.z;
+		t[size] = tMax;
+		rays[size] = ray;
+		hits[size] = null;
+		size++;
+	}
+
+	/**
+	 * Removes all rays from this packet.
+	 */
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			rays[i] = null;
+			hits[i] = null;
+		}
+		size = 0;
+	}
+
+	/**
+	 * Offers a hit of a ray of this packet. The hit is kept if it is closer than the closest hit of the ray found so
+	 * far.
+	 *
+	 * @param i		The index of the ray.
+	 * @param hit	The hit or <code>null</code>.
+	 * @return		<code>true</code> if the hit was kept.
+	 */
+	public boolean offer(final int i, final Hit hit) {
+		if (hit == null || hit.t >= t[i]) {
+			return false;
+		}
+		t[i] = hit.t;
+		hits[i] = hit;
+		return true;
+	}
+
+	/**
+	 * @return	The number of rays in this packet.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return	The maximum number of rays in this packet.
+	 */
+	public int capacity() {
+		return rays.length;
+	}
+
+	/**
+	 * @param i	The index of the ray.
+	 * @return	The ray.
+	 */
+	public Ray getRay(final int i) {
+		return rays[i];
+	}
+
+	/**
+	 * @param i	The index of the ray.
+	 * @return	The closest hit of the ray or <code>null</code>.
+	 */
+	public Hit getHit(final int i) {
+		return hits[i];
+	}
+}
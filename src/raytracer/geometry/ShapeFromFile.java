@@ -1,14 +1,17 @@
 package raytracer.geometry;
 
+import java.util.concurrent.Future;
+
+import raytracer.AssetLoader;
 import raytracer.Ray;
 import raytracer.material.Material;
-import raytracer.parser.ObjLoader;
 
 /**
  * This immutable class represents a geometry which is defined in an OBJ file. To be more specific, a 
  * <code>ShapeFromFile</code> object wraps a <code>TriangleMesh</code> as specified in the OBJ file.
  * <p>
- * Vertices, texture coordinates, normals and faces can be loaded.
+ * Vertices, texture coordinates, normals and faces can be loaded. The file is parsed in the background by the 
+ * <code>AssetLoader</code> from the construction on, the first hit or request of the bounds waits for it.
  * <p>
  * For further information on the OBJ format 
  * <a href="http://www.martinreddy.net/gfx/3d/OBJ.spec">check out the documentation</a>.
@@ -18,9 +21,13 @@ import raytracer.parser.ObjLoader;
  */
 public class ShapeFromFile extends Geometry {
 	/**
-	 * The geometry that was loaded from the file.
+	 * The future of the geometry that is loaded from the file.
+	 */
+	private final Future<TriangleMesh> pending;
+	/**
+	 * The geometry that was loaded from the file, <code>null</code> until it is used first.
 	 */
-	private final TriangleMesh mesh;
+	private volatile TriangleMesh mesh;
 
 	/**
 	 * Constructs a new <code>ShapeFromFile</code> object from the specified with the specified material.
@@ -30,19 +37,43 @@ public class ShapeFromFile extends Geometry {
 	 */
 	public ShapeFromFile(final String filename, final Material material) {
 		super(material);
-		mesh = new ObjLoader().load(filename, material);
+		pending = AssetLoader.mesh(filename, material);
+	}
+	
+	/**
+	 * Returns the geometry that was loaded from the file and waits for it on the first call.
+	 * 
+	 * @return	The geometry.
+	 */
+	private TriangleMesh mesh() {
+		TriangleMesh mesh = this.mesh;
+		if (mesh == null) {
+			mesh = AssetLoader.await(pending);
+			this.mesh = mesh;
+		}
+		return mesh;
 	}
 	
 	@Override
 	public Hit hit(final Ray ray) {
-		return mesh.hit(ray);
+		return mesh().hit(ray);
+	}
+	
+	@Override
+	public void hit(final RayPacket packet) {
+		mesh().hit(packet);
+	}
+
+	@Override
+	public Bounds getBounds() {
+		return mesh().getBounds();
 	}
 
 	@Override
 	public int hashCode() {
 		final int prime = 31;
 		int result = super.hashCode();
-		result = prime * result + ((mesh == null) ? 0 : mesh.hashCode());
+		result = prime * result + mesh().hashCode();
 		return result;
 	}
 
@@ -55,11 +86,6 @@ public class ShapeFromFile extends Geometry {
 		if (getClass() != obj.getClass())
 			return false;
 		final ShapeFromFile other = (ShapeFromFile) obj;
-		if (mesh == null) {
-			if (other.mesh != null)
-				return false;
-		} else if (!mesh.equals(other.mesh))
-			return false;
-		return true;
+		return mesh().equals(other.mesh());
 	}
 }
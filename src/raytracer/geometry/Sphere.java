@@ -5,6 +5,7 @@ import raytracer.Ray;
 import raytracer.material.Material;
 import raytracer.math.Normal3;
 import raytracer.math.Point3;
+import raytracer.metrics.RenderMetrics;
 import raytracer.texture.TexCoord2;
 
 /**
@@ -22,6 +23,11 @@ public class Sphere extends Geometry {
       * The standard radius 1 of all spheres.
       */
 	private static final double r = 1;
+	/**
+	 * The change of the texture coordinates per unit of length on the surface, the geometric mean of the change 
+	 * of u around the equator and the change of v from pole to pole.
+	 */
+	private static final double TEXTURE_SCALE = 1 / (Math.PI * r * Math.sqrt(2));
 	/**
 	 * Constructs a new <code>Sphere</code> with the specified material. This plane is centered around the origin 
 	 * (0, 0, 0) and has the standard radius 1.
@@ -37,6 +43,7 @@ public class Sphere extends Geometry {
 		if (ray == null) {
 			throw new IllegalArgumentException("The parameter 'ray' must not be null.");
 		}
+		RenderMetrics.counters().intersectionTest(RenderMetrics.SPHERE);
 		
 		/*
 		 * Formulas:
@@ -86,6 +93,13 @@ public class Sphere extends Geometry {
 		final double theta = Math.acos(p.y);
 		final double phi = Math.atan2(p.x, p.z);
 		
-		return new Hit(t, ray, this, normal, new TexCoord2( phi / (Math.PI * 2), -(theta / Math.PI)));
+		return new Hit(t, ray, this, normal, new TexCoord2( phi / (Math.PI * 2), -(theta / Math.PI)), 
+				footprint(ray, t, normal, TEXTURE_SCALE));
+	}
+
+	@Override
+	public Bounds getBounds() {
+		return new Bounds(new Point3(center.x - r, center.y - r, center.z - r), 
+				new Point3(center.x + r, center.y + r, center.z + r));
 	}
 }
@@ -7,6 +7,7 @@ import raytracer.math.Mat3x3;
 import raytracer.math.Normal3;
 import raytracer.math.Point3;
 import raytracer.math.Vector3;
+import raytracer.metrics.RenderMetrics;
 import raytracer.texture.TexCoord2;
 
 /**
@@ -92,6 +93,7 @@ public class Triangle extends Geometry {
 		if (ray == null) {
 			throw new IllegalArgumentException("The parameter 'ray' must not be null.");
 		}
+		RenderMetrics.counters().intersectionTest(RenderMetrics.TRIANGLE);
 		
 		/*
 		 * Formulas:
@@ -116,13 +118,47 @@ public class Triangle extends Geometry {
 		if (gamma < 0 || beta < 0 || beta + gamma > 1 || t < Constants.EPSILON) {
 			return null; // no hit
 		}
+		return hitAt(ray, t, beta, gamma);
+	}
+	
+	/**
+	 * Creates the hit of the specified ray with this triangle at the specified barycentric coordinates. The normal 
+	 * and the texture coordinates are interpolated between the vertices.
+	 * 
+	 * @param ray	The ray that hit the triangle.
+	 * @param t		The parameter of the hit point.
+	 * @param beta	The barycentric coordinate of the hit point towards vertex b.
+	 * @param gamma	The barycentric coordinate of the hit point towards vertex c.
+	 * @return		The hit.
+	 */
+	Hit hitAt(final Ray ray, final double t, final double beta, final double gamma) {
 		final double alpha = 1 - beta - gamma;
 		final Normal3 normal = na.mul(alpha).add(nb.mul(beta)).add(nc.mul(gamma)).asVector().normalized().asNormal(); // normalized normal
 		
 		// Calculation of texture coordinates
 		final double u = ta.u * alpha + tb.u * beta + tc.u * gamma;
 		final double v = ta.v * alpha + tb.v * beta + tc.v * gamma;
-		return new Hit(t, ray, this, normal, new TexCoord2(u, v));
+		if (ray.width == 0 && ray.spread == 0) {
+			return new Hit(t, ray, this, normal, new TexCoord2(u, v));
+		}
+		return new Hit(t, ray, this, normal, new TexCoord2(u, v), footprint(ray, t, normal, textureScale()));
+	}
+	
+	/**
+	 * Calculates the change of the texture coordinates per unit of length on this triangle, the square root of the 
+	 * ratio of its area in texture coordinates to its area in space.
+	 * 
+	 * @return	The change of the texture coordinates.
+	 */
+	private double textureScale() {
+		final double area = b.sub(a).x(c.sub(a)).magnitude;
+		final double textureArea = Math.abs((tb.u - ta.u) * (tc.v - ta.v) - (tc.u - ta.u) * (tb.v - ta.v));
+		return (area == 0) ? 0 : Math.sqrt(textureArea / area);
+	}
+
+	@Override
+	public Bounds getBounds() {
+		return Bounds.of(a, b, c);
 	}
 
 	@Override
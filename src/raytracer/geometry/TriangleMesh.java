@@ -2,10 +2,12 @@ package raytracer.geometry;
 
 import java.util.Arrays;
 
+import raytracer.Constants;
 import raytracer.Ray;
 import raytracer.material.Material;
 import raytracer.math.Normal3;
 import raytracer.math.Point3;
+import raytracer.metrics.RenderMetrics;
 import raytracer.texture.TexCoord2;
 
 /**
@@ -13,7 +15,7 @@ import raytracer.texture.TexCoord2;
  * defined through a number of shared vertices. The triangular faces are further defined through a number of normals 
  * and coordinates for their texture.
  * <p>
- * A triangle mesh is automatically placed inside a bounding box for faster rendering.
+ * The faces of a triangle mesh are automatically placed in a bounding volume hierarchy for faster rendering.
  * 
  * @author Sebastian Dass&ecaute;
  *
@@ -44,6 +46,23 @@ public class TriangleMesh extends Geometry {
 	 * </pre>
 	 */
 	private final int[][] faces;
+	/**
+	 * The first vertex and the two edges of all faces, nine values per face: a.x, a.y, a.z, (b - a).x, (b - a).y, 
+	 * (b - a).z, (c - a).x, (c - a).y, (c - a).z.
+	 */
+	private final double[] corners;
+	/**
+	 * The bounding volume hierarchy over the faces.
+	 */
+	private final BoundingVolumeHierarchy hierarchy;
+	/**
+	 * The minimum x, y, z coordinates of the vertices.
+	 */
+	private final Point3 mins;
+	/**
+	 * The maximum x, y, z coordinates of the vertices.
+	 */
+	private final Point3 maxs;
 	
 	/**
 	 * Constructs a new <code>TriangleMesh</code> with the specified material, vertices, texture coordinates, normals 
@@ -62,54 +81,260 @@ public class TriangleMesh extends Geometry {
 		this.textCoords = textCoords;
 		this.normals = normals;
 		this.faces = faces;
-		bbox = new AxisAlignedBoundingBox(getMins(), getMaxs());
+		mins = getMins();
+		maxs = getMaxs();
+		bbox = new AxisAlignedBoundingBox(mins, maxs);
+		corners = new double[faces.length * 9];
+		final double[] boxes = new double[faces.length * 6];
+		for (int f = 0; f < faces.length; f++) {
+			final Point3 a = vertices[ faces[f][0] ];
+			final Point3 b = vertices[ faces[f][3] ];
+			final Point3 c = vertices[ faces[f][6] ];
+			corners[f * 9] = a.x;
+			corners[f * 9 + 1] = a.y;
+			corners[f * 9 + 2] = a.z;
+			corners[f * 9 + 3] = b.x - a.x;
+			corners[f * 9 + 4] = b.y - a.y;
+			corners[f * 9 + 5] = b.z - a.z;
+			corners[f * 9 + 6] = c.x - a.x;
+			corners[f * 9 + 7] = c.y - a.y;
+			corners[f * 9 + 8] = c.z - a.z;
+			boxes[f * 6] = Math.min(a.x, Math.min(b.x, c.x));
+			boxes[f * 6 + 1] = Math.min(a.y, Math.min(b.y, c.y));
+			boxes[f * 6 + 2] = Math.min(a.z, Math.min(b.z, c.z));
+			boxes[f * 6 + 3] = Math.max(a.x, Math.max(b.x, c.x));
+			boxes[f * 6 + 4] = Math.max(a.y, Math.max(b.y, c.y));
+			boxes[f * 6 + 5] = Math.max(a.z, Math.max(b.z, c.z));
+		}
+		hierarchy = new BoundingVolumeHierarchy(boxes);
 	}
 
-	
+	/**
+	 * Intersects the ray with the faces in the leaves of the bounding volume hierarchy the ray reaches. Only the 
+	 * closest face is turned into a <code>Triangle</code> and a <code>Hit</code>.
+	 */
 	@Override
 	public Hit hit(final Ray ray) {
-		return bbox.isHit(ray) ? closestHit(ray) : null;
+		RenderMetrics.counters().intersectionTest(RenderMetrics.MESH);
+		return closestHit(ray, Double.POSITIVE_INFINITY);
+	}
+	
+	/**
+	 * Traces the rays of the packet through the bounding volume hierarchy together, limited by the closest hits the 
+	 * packet already knows. Every face of a leaf is tested against all rays which reach the leaf, only the closest 
+	 * face of each ray is turned into a <code>Triangle</code> and a <code>Hit</code>.
+	 */
+	@Override
+	public void hit(final RayPacket packet) {
+		final int size = packet.size();
+		RenderMetrics.counters().intersectionTests(RenderMetrics.MESH, size);
+		final PacketFaceIntersector intersector = new PacketFaceIntersector(packet);
+		hierarchy.traverse(packet, Constants.EPSILON, intersector.t, intersector);
+		RenderMetrics.counters().intersectionTests(RenderMetrics.TRIANGLE, intersector.tests);
+		for (int i = 0; i < size; i++) {
+			final int f = intersector.closestFaces[i];
+			if (f >= 0) {
+				packet.offer(i, triangle(faces[f]).hitAt(packet.getRay(i), intersector.t[i], intersector.beta[i], 
+						intersector.gamma[i]));
+			}
+		}
+	}
+	
+	/**
+	 * Finds the closest hit of the ray with the faces of this mesh.
+	 * 
+	 * @param ray	The ray.
+	 * @param tMax	The parameter of the closest hit known so far.
+	 * @return		The hit or <code>null</code> if there is no hit closer than <code>tMax</code>.
+	 */
+	private Hit closestHit(final Ray ray, final double tMax) {
+		final FaceIntersector intersector = new FaceIntersector(ray);
+		hierarchy.traverse(ray.o.x, ray.o.y, ray.o.z, ray.d.x, ray.d.y, ray.d.z, Constants.EPSILON, tMax, 
+				intersector);
+		RenderMetrics.counters().intersectionTests(RenderMetrics.TRIANGLE, intersector.tests);
+		if (intersector.face < 0) {
+			return null;
+		}
+		return triangle(faces[intersector.face]).hitAt(ray, intersector.t, intersector.beta, intersector.gamma);
 	}
 	
-	private Hit closestHit(final Ray ray) {
-		Hit closestHit = null;
-		double closestT = Double.POSITIVE_INFINITY;
-		for (int[] face : faces) {
-			final Point3 a = vertices[ face[0] ];
-			final Point3 b = vertices[ face[3] ];
-			final Point3 c = vertices[ face[6] ];
-			
-			final TexCoord2 at;
-			final TexCoord2 bt;
-			final TexCoord2 ct;
-			if (face[1] != 0) {
-				at = textCoords[ face[1] ];
-				bt = textCoords[ face[4] ];
-				ct = textCoords[ face[7] ];
-			} else {
-				at = bt = ct = new TexCoord2(0, 0);
+	/**
+	 * This class intersects a single ray with the faces of the mesh and keeps the closest hit.
+	 */
+	private class FaceIntersector implements BoundingVolumeHierarchy.Intersector {
+		private final double ox;
+		private final double oy;
+		private final double oz;
+		private final double dx;
+		private final double dy;
+		private final double dz;
+		private int face = -1;
+		private double t;
+		private double beta;
+		private double gamma;
+		private int tests;
+		
+		FaceIntersector(final Ray ray) {
+			ox = ray.o.x;
+			oy = ray.o.y;
+			oz = ray.o.z;
+			dx = ray.d.x;
+			dy = ray.d.y;
+			dz = ray.d.z;
+		}
+		
+		@Override
+		public double intersect(final int f, final double tMax) {
+			tests++;
+			// same solution as Triangle.hit, computed with scalar triple products (Moeller-Trumbore)
+			final int i = f * 9;
+			final double e1x = corners[i + 3];
+			final double e1y = corners[i + 4];
+			final double e1z = corners[i + 5];
+			final double e2x = corners[i + 6];
+			final double e2y = corners[i + 7];
+			final double e2z = corners[i + 8];
+			final double px = dy * e2z - dz * e2y;
+			final double py = dz * e2x - dx * e2z;
+			final double pz = dx * e2y - dy * e2x;
+			final double det = e1x * px + e1y * py + e1z * pz;
+			if (det == 0) {
+				return tMax;
+			}
+			final double inv = 1 / det;
+			final double sx = ox - corners[i];
+			final double sy = oy - corners[i + 1];
+			final double sz = oz - corners[i + 2];
+			final double b = (sx * px + sy * py + sz * pz) * inv;
+			if (b < 0 || b > 1) {
+				return tMax;
 			}
-			
-			final Normal3 an;
-			final Normal3 bn;
-			final Normal3 cn;
-			if (face[2] != 0) {
-				an = normals[ face[2] ];
-				bn = normals[ face[5] ];
-				cn = normals[ face[8] ];
-			} else {
-				an = bn = cn = b.sub(a).x(c.sub(a)).asNormal();
+			final double qx = sy * e1z - sz * e1y;
+			final double qy = sz * e1x - sx * e1z;
+			final double qz = sx * e1y - sy * e1x;
+			final double g = (dx * qx + dy * qy + dz * qz) * inv;
+			final double hitT = (e2x * qx + e2y * qy + e2z * qz) * inv;
+			if (g < 0 || b + g > 1 || hitT < Constants.EPSILON || hitT >= tMax) {
+				return tMax;
 			}
-			
-			final Triangle tri = new Triangle(a, b, c, an, bn, cn, material, at, bt, ct);
-			final Hit hit = tri.hit(ray);
-			
-			if (hit != null && hit.t < closestT) {
-				closestHit = hit;
-				closestT = hit.t;
+			face = f;
+			t = hitT;
+			beta = b;
+			gamma = g;
+			return hitT;
+		}
+	}
+	
+	/**
+	 * This class intersects the rays of a packet with the faces of the mesh and keeps the closest hit of each ray. 
+	 * The edges of a face are loaded once for all rays of a mask.
+	 */
+	private class PacketFaceIntersector implements BoundingVolumeHierarchy.PacketIntersector {
+		private final RayPacket packet;
+		private final int[] closestFaces;
+		private final double[] t;
+		private final double[] beta;
+		private final double[] gamma;
+		private int tests;
+		
+		PacketFaceIntersector(final RayPacket packet) {
+			this.packet = packet;
+			final int size = packet.size();
+			closestFaces = new int[size];
+			Arrays.fill(closestFaces, -1);
+			t = Arrays.copyOf(packet.t, size);
+			beta = new double[size];
+			gamma = new double[size];
+		}
+		
+		@Override
+		public void intersect(final int f, final int first, final long mask, final double[] tMax) {
+			tests += Long.bitCount(mask);
+			// the same solution as FaceIntersector, ray by ray
+			final int i = f * 9;
+			final double ax = corners[i];
+			final double ay = corners[i + 1];
+			final double az = corners[i + 2];
+			final double e1x = corners[i + 3];
+			final double e1y = corners[i + 4];
+			final double e1z = corners[i + 5];
+			final double e2x = corners[i + 6];
+			final double e2y = corners[i + 7];
+			final double e2z = corners[i + 8];
+			for (long m = mask; m != 0; m &= m - 1) {
+				final int r = first + Long.numberOfTrailingZeros(m);
+				final double dx = packet.dx[r];
+				final double dy = packet.dy[r];
+				final double dz = packet.dz[r];
+				final double px = dy * e2z - dz * e2y;
+				final double py = dz * e2x - dx * e2z;
+				final double pz = dx * e2y - dy * e2x;
+				final double det = e1x * px + e1y * py + e1z * pz;
+				if (det == 0) {
+					continue;
+				}
+				final double inv = 1 / det;
+				final double sx = packet.ox[r] - ax;
+				final double sy = packet.oy[r] - ay;
+				final double sz = packet.oz[r] - az;
+				final double b = (sx * px + sy * py + sz * pz) * inv;
+				if (b < 0 || b > 1) {
+					continue;
+				}
+				final double qx = sy * e1z - sz * e1y;
+				final double qy = sz * e1x - sx * e1z;
+				final double qz = sx * e1y - sy * e1x;
+				final double g = (dx * qx + dy * qy + dz * qz) * inv;
+				final double hitT = (e2x * qx + e2y * qy + e2z * qz) * inv;
+				if (g < 0 || b + g > 1 || hitT < Constants.EPSILON || hitT >= tMax[r]) {
+					continue;
+				}
+				closestFaces[r] = f;
+				tMax[r] = hitT;
+				beta[r] = b;
+				gamma[r] = g;
 			}
 		}
-		return closestHit;
+	}
+	
+	@Override
+	public Bounds getBounds() {
+		return new Bounds(mins, maxs);
+	}
+	
+	/**
+	 * Creates the triangle of the specified face.
+	 * 
+	 * @param face	The face data as described for <code>faces</code>.
+	 * @return		The triangle.
+	 */
+	private Triangle triangle(final int[] face) {
+		final Point3 a = vertices[ face[0] ];
+		final Point3 b = vertices[ face[3] ];
+		final Point3 c = vertices[ face[6] ];
+		
+		final TexCoord2 at;
+		final TexCoord2 bt;
+		final TexCoord2 ct;
+		if (face[1] != 0) {
+			at = textCoords[ face[1] ];
+			bt = textCoords[ face[4] ];
+			ct = textCoords[ face[7] ];
+		} else {
+			at = bt = ct = new TexCoord2(0, 0);
+		}
+		
+		final Normal3 an;
+		final Normal3 bn;
+		final Normal3 cn;
+		if (face[2] != 0) {
+			an = normals[ face[2] ];
+			bn = normals[ face[5] ];
+			cn = normals[ face[8] ];
+		} else {
+			an = bn = cn = b.sub(a).x(c.sub(a)).asNormal();
+		}
+		return new Triangle(a, b, c, an, bn, cn, material, at, bt, ct);
 	}
 	
 	// TODO -- for testing --> remove later
@@ -0,0 +1,20 @@
+package raytracer.image;
+
+/**
+ * This immutable class maps color components with a fit of the filmic curve of the Academy Color Encoding System
+ * (ACES) by Krzysztof Narkowicz. It raises the contrast of the mid tones and rolls the highlights off towards 1.
+ *
+ * @author Simon Lischka
+ *
+ */
+public class AcesToneMapper implements ToneMapper {
+	@Override
+	public float map(final float c) {
+		return (c * (2.51f * c + 0.03f)) / (c * (2.43f * c + 0.59f) + 0.14f);
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName();
+	}
+}
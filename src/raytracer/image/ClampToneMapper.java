@@ -0,0 +1,20 @@
+package raytracer.image;
+
+/**
+ * This immutable class maps color components by clamping them to 1. Components up to 1 are kept exactly, brighter
+ * ones lose their detail. This is the mapping of a <code>Color</code> written into a <code>BufferedImage</code>.
+ *
+ * @author Simon Lischka
+ *
+ */
+public class ClampToneMapper implements ToneMapper {
+	@Override
+	public float map(final float c) {
+		return (c > 1) ? 1 : c;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName();
+	}
+}
@@ -0,0 +1,51 @@
+package raytracer.image;
+
+/**
+ * This immutable class scales color components by an exposure before they are mapped by another
+ * <code>ToneMapper</code>. The exposure is given in stops, every stop doubles the brightness.
+ *
+ * @author Simon Lischka
+ *
+ */
+public class ExposureToneMapper implements ToneMapper {
+	/**
+	 * The exposure in stops.
+	 */
+	private final double stops;
+	/**
+	 * The factor of the components, <code>2^stops</code>.
+	 */
+	private final float scale;
+	/**
+	 * The mapper of the scaled components.
+	 */
+	private final ToneMapper mapper;
+
+	/**
+	 * Constructs a new <code>ExposureToneMapper</code> with the specified parameters.
+	 *
+	 * @param stops		The exposure in stops, negative values darken. Must not be Infinity or NaN.
+	 * @param mapper	The mapper of the scaled components. Must not be <code>null</code>.
+	 */
+	public ExposureToneMapper(final double stops, final ToneMapper mapper) {
+		if (mapper == null) {
+			throw new IllegalArgumentException("The parameter 'mapper' must not be null.");
+		}
+		if (Double.isNaN(stops) || Double.isInfinite(stops)) {
+			throw new IllegalArgumentException("The parameter 'stops' must not be Infinity or NaN.");
+		}
+		this.stops = stops;
+		this.scale = (float) Math.pow(2, stops);
+		this.mapper = mapper;
+	}
+
+	@Override
+	public float map(final float c) {
+		return mapper.map(c * scale);
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[stops = " + stops + ", mapper = " + mapper + "]";
+	}
+}
@@ -0,0 +1,250 @@
+package raytracer.image;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import raytracer.Color;
+
+/**
+ * This class holds the colors of a rectangular region of an image as single precision floats, one array per
+ * component. A renderer fills a buffer and copies it into a <code>BufferedImage</code> at once, so the pixels do not
+ * pass through the color model of the image one by one.
+ * <p>
+ * The components are stored unclamped, starting with the upper left pixel and proceeding row by row. So the buffer
+ * keeps the full range of a rendering: a <code>ToneMapper</code> maps it to an image, and it can be mapped again
+ * with another exposure or written to a floating point file without rendering again.
+ *
+ * @author Simon Lischka
+ *
+ */
+public final class FrameBuffer {
+	/**
+	 * The number of rows a task of the parallel mapping maps.
+	 */
+	private static final int BAND_HEIGHT = 16;
+
+	/**
+	 * The width of the buffer in pixels.
+	 */
+	public final int width;
+	/**
+	 * The height of the buffer in pixels.
+	 */
+	public final int height;
+	/**
+	 * The red components of the pixels.
+	 */
+	public final float[] red;
+	/**
+	 * The green components of the pixels.
+	 */
+	public final float[] green;
+	/**
+	 * The blue components of the pixels.
+	 */
+	public final float[] blue;
+
+	/**
+	 * Constructs a new black <code>FrameBuffer</code> of the specified size.
+	 *
+	 * @param width		The width in pixels. Must not be negative.
+	 * @param height	The height in pixels. Must not be negative.
+	 */
+	public FrameBuffer(final int width, final int height) {
+		if (width < 0 || height < 0) {
+			throw new IllegalArgumentException("The parameters must not be negative.");
+		}
+		this.width = width;
+		this.height = height;
+		red = new float[width * height];
+		green = new float[width * height];
+		blue = new float[width * height];
+	}
+
+	/**
+	 * Sets the color of a pixel.
+	 *
+	 * @param x	The column of the pixel, 0 is the left border.
+	 * @param y	The row of the pixel, 0 is the top border.
+	 * @param c	The color. Must not be <code>null</code>.
+	 */
+	public void set(final int x, final int y, final Color c) {
+		if (c == null) {
+			throw new IllegalArgumentException("The parameter 'c' must not be null.");
+		}
+		final int i = y * width + x;
+		red[i] = (float) c.r;
+		green[i] = (float) c.g;
+		blue[i] = (float) c.b;
+	}
+
+	/**
+	 * Adds the specified components to the color of a pixel.
+	 *
+	 * @param x	The column of the pixel, 0 is the left border.
+	 * @param y	The row of the pixel, 0 is the top border.
+	 * @param r	The red component.
+	 * @param g	The green component.
+	 * @param b	The blue component.
+	 */
+	public void add(final int x, final int y, final double r, final double g, final double b) {
+		final int i = y * width + x;
+		red[i] += r;
+		green[i] += g;
+		blue[i] += b;
+	}
+
+	/**
+	 * Returns the color of a pixel.
+	 *
+	 * @param x	The column of the pixel, 0 is the left border.
+	 * @param y	The row of the pixel, 0 is the top border.
+	 * @return	The color.
+	 */
+	public Color get(final int x, final int y) {
+		final int i = y * width + x;
+		return new Color(red[i], green[i], blue[i]);
+	}
+
+	/**
+	 * Returns the pixel value of a <code>TYPE_INT_RGB</code> image for a pixel.
+	 *
+	 * @param x			The column of the pixel, 0 is the left border.
+	 * @param y			The row of the pixel, 0 is the top border.
+	 * @param mapper	The tone mapper of the components. Must not be <code>null</code>.
+	 * @return			The pixel value.
+	 */
+	public int getRGB(final int x, final int y, final ToneMapper mapper) {
+		final int i = y * width + x;
+		return toRGB(mapper, red[i], green[i], blue[i]);
+	}
+
+	/**
+	 * Maps the rows from <code>yStart</code> to <code>yEnd</code> (excluding) and copies them into a
+	 * <code>TYPE_INT_RGB</code> image, the upper left pixel of the buffer to the specified position.
+	 *
+	 * @param image		The image. Must not be <code>null</code> and must be large enough for the buffer.
+	 * @param x			The column of the upper left pixel in the image.
+	 * @param y			The row of the upper left pixel in the image.
+	 * @param yStart	The first row of the buffer to be copied.
+	 * @param yEnd		The row of the buffer after the last one to be copied.
+	 * @param mapper	The tone mapper of the components. Must not be <code>null</code>.
+	 */
+	public void writeTo(final BufferedImage image, final int x, final int y, final int yStart, final int yEnd, 
+			final ToneMapper mapper) {
+		if (image == null || mapper == null) {
+			throw new IllegalArgumentException("The parameters must not be null.");
+		}
+		if (image.getType() != BufferedImage.TYPE_INT_RGB) {
+			throw new IllegalArgumentException("The parameter 'image' must be of TYPE_INT_RGB.");
+		}
+		final int[] row = new int[width];
+		for (int by = yStart; by < yEnd; by++) {
+			for (int bx = 0; bx < width; bx++) {
+				row[bx] = getRGB(bx, by, mapper);
+			}
+			image.getRaster().setDataElements(x, y + by, width, 1, row);
+		}
+	}
+
+	/**
+	 * Maps the buffer and copies it into a <code>TYPE_INT_RGB</code> image of the same size. The rows are mapped in
+	 * bands which run in parallel on the specified executor.
+	 *
+	 * @param image		The image. Must not be <code>null</code> and must have the size of the buffer.
+	 * @param mapper	The tone mapper of the components. Must not be <code>null</code>.
+	 * @param executor	The executor of the bands, <code>null</code> to map all rows in the calling thread.
+	 */
+	public void writeTo(final BufferedImage image, final ToneMapper mapper, final ExecutorService executor) {
+		if (image == null || mapper == null) {
+			throw new IllegalArgumentException("The parameters must not be null.");
+		}
+		if (image.getWidth() != width || image.getHeight() != height) {
+			throw new IllegalArgumentException("The size of the image must match the size of the buffer.");
+		}
+		if (executor == null) {
+			writeTo(image, 0, 0, 0, height, mapper);
+			return;
+		}
+		final List<Callable<Object>> bands = new ArrayList<Callable<Object>>();
+		for (int y = 0; y < height; y += BAND_HEIGHT) {
+			final int yStart = y;
+			bands.add(new Callable<Object>() {
+				@Override
+				public Object call() {
+					writeTo(image, 0, 0, yStart, Math.min(yStart + BAND_HEIGHT, height), mapper);
+					return null;
+				}
+			});
+		}
+		try {
+			for (Future<Object> band : executor.invokeAll(bands)) {
+				band.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while mapping the tones.", e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Mapping the tones failed.", e.getCause());
+		}
+	}
+
+	/**
+	 * Maps the buffer to a new <code>TYPE_INT_RGB</code> image.
+	 *
+	 * @param mapper	The tone mapper of the components. Must not be <code>null</code>.
+	 * @param executor	The executor of the bands of rows, <code>null</code> to map all rows in the calling thread.
+	 * @return			The image.
+	 */
+	public BufferedImage toImage(final ToneMapper mapper, final ExecutorService executor) {
+		final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		writeTo(image, mapper, executor);
+		return image;
+	}
+
+	/**
+	 * Returns the components interleaved, in the layout of the floating point images of <code>ImageFiles</code>.
+	 *
+	 * @return	The red, green and blue components of the pixels.
+	 */
+	public float[] toFloats() {
+		final float[] rgb = new float[red.length * 3];
+		for (int i = 0; i < red.length; i++) {
+			rgb[i * 3] = red[i];
+			rgb[i * 3 + 1] = green[i];
+			rgb[i * 3 + 2] = blue[i];
+		}
+		return rgb;
+	}
+
+	/**
+	 * Converts the specified components to a pixel value of a <code>TYPE_INT_RGB</code> image.
+	 *
+	 * @param mapper	The tone mapper of the components. Must not be <code>null</code>.
+	 * @param r			The red component.
+	 * @param g			The green component.
+	 * @param b			The blue component.
+	 * @return			The pixel value.
+	 */
+	public static int toRGB(final ToneMapper mapper, final double r, final double g, final double b) {
+		return toByte(mapper.map((float) r)) << 16 | toByte(mapper.map((float) g)) << 8 
+				| toByte(mapper.map((float) b));
+	}
+
+	/**
+	 * Converts a mapped component to a byte value.
+	 */
+	private static int toByte(final float c) {
+		return Math.round(((c > 1) ? 1 : (c < 0) ? 0 : c) * 255);
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[width = " + width + ", height = " + height + "]";
+	}
+}
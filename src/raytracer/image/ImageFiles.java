@@ -0,0 +1,267 @@
+package raytracer.image;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+
+import javax.imageio.ImageIO;
+
+/**
+ * This class writes images to files. Besides the formats supported by <code>ImageIO</code> it writes the floating 
+ * point formats PFM (portable float map) and OpenEXR, which keep the full range of the colors of a rendering. PNG 
+ * files are written by a <code>PngWriter</code>, which compresses bands of rows in parallel.
+ * <p>
+ * Floating point images are passed as arrays with three components (red, green, blue) per pixel, starting with the 
+ * upper left pixel and proceeding row by row.
+ * 
+ * @author Simon Lischka
+ *
+ */
+public final class ImageFiles {
+	/**
+	 * The magic number at the beginning of an OpenEXR file.
+	 */
+	private static final int EXR_MAGIC = 20000630;
+	/**
+	 * The version field of a single part scan line OpenEXR file.
+	 */
+	private static final int EXR_VERSION = 2;
+	/**
+	 * The OpenEXR pixel type for 32 bit floating point values.
+	 */
+	private static final int EXR_FLOAT = 2;
+	/**
+	 * The charset of the names in an OpenEXR header.
+	 */
+	private static final Charset ASCII = Charset.forName("US-ASCII");
+	
+	/**
+	 * This class is not meant to be instantiated.
+	 */
+	private ImageFiles() {
+	}
+	
+	/**
+	 * Writes the image to the file. The format is chosen by the extension of the file name, e.g. <code>.png</code>, 
+	 * <code>.pfm</code> or <code>.exr</code>.
+	 * 
+	 * @param image			The image to be written. Must not be <code>null</code>.
+	 * @param file			The file to write to. Must not be <code>null</code>.
+	 * @throws IOException	If the file can not be written or the format is not supported.
+	 */
+	public static void write(final BufferedImage image, final File file) throws IOException {
+		if (image == null || file == null) {
+			throw new IllegalArgumentException("The parameters must not be null.");
+		}
+		final String format = formatOf(file);
+		if (format.equals("png")) {
+			PngWriter.write(image, file);
+		} else if (format.equals("pfm")) {
+			writePFM(toFloats(image), image.getWidth(), image.getHeight(), file);
+		} else if (format.equals("exr")) {
+			writeEXR(toFloats(image), image.getWidth(), image.getHeight(), file);
+		} else if (!ImageIO.write(image, format, file)) {
+			throw new IOException("The format '" + format + "' is not supported.");
+		}
+	}
+	
+	/**
+	 * Writes a rendering to the file. Floating point formats get the full range of the colors from the frame buffer, 
+	 * any other format gets the tone mapped image.
+	 * 
+	 * @param image			The tone mapped image. Must not be <code>null</code>.
+	 * @param frame			The frame buffer of the image. Must not be <code>null</code>.
+	 * @param file			The file to write to. Must not be <code>null</code>.
+	 * @throws IOException	If the file can not be written or the format is not supported.
+	 */
+	public static void write(final BufferedImage image, final FrameBuffer frame, final File file) throws IOException {
+		if (image == null || frame == null || file == null) {
+			throw new IllegalArgumentException("The parameters must not be null.");
+		}
+		final String format = formatOf(file);
+		if (format.equals("pfm")) {
+			writePFM(frame.toFloats(), frame.width, frame.height, file);
+		} else if (format.equals("exr")) {
+			writeEXR(frame.toFloats(), frame.width, frame.height, file);
+		} else {
+			write(image, file);
+		}
+	}
+	
+	/**
+	 * Writes the floating point image to a PFM file.
+	 * 
+	 * @param rgb			The red, green and blue components of the pixels. Must not be <code>null</code>.
+	 * @param width			The width of the image.
+	 * @param height		The height of the image.
+	 * @param file			The file to write to. Must not be <code>null</code>.
+	 * @throws IOException	If the file can not be written.
+	 */
+	public static void writePFM(final float[] rgb, final int width, final int height, final File file) 
+			throws IOException {
+		checkFloats(rgb, width, height, file);
+		final OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+		try {
+			// a negative scale denotes little endian data
+			out.write(("PF\n" + width + " " + height + "\n-1.0\n").getBytes(ASCII));
+			final ByteBuffer line = ByteBuffer.allocate(width * 3 * 4).order(ByteOrder.LITTLE_ENDIAN);
+			// the rows of a PFM file are stored from bottom to top
+			for (int y = height - 1; y >= 0; y--) {
+				line.clear();
+				line.asFloatBuffer().put(rgb, y * width * 3, width * 3);
+				out.write(line.array());
+			}
+		} finally {
+			out.close();
+		}
+	}
+	
+	/**
+	 * Writes the floating point image to an uncompressed OpenEXR file with 32 bit floating point channels.
+	 * 
+	 * @param rgb			The red, green and blue components of the pixels. Must not be <code>null</code>.
+	 * @param width			The width of the image.
+	 * @param height		The height of the image.
+	 * @param file			The file to write to. Must not be <code>null</code>.
+	 * @throws IOException	If the file can not be written.
+	 */
+	public static void writeEXR(final float[] rgb, final int width, final int height, final File file) 
+			throws IOException {
+		checkFloats(rgb, width, height, file);
+		final ByteBuffer header = exrHeader(width, height);
+		final int lineSize = width * 3 * 4;
+		final OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+		try {
+			out.write(header.array(), 0, header.position());
+			// every scan line is a chunk of its own, the offset table points to each of them
+			final ByteBuffer offsets = ByteBuffer.allocate(height * 8).order(ByteOrder.LITTLE_ENDIAN);
+			long offset = header.position() + height * 8L;
+			for (int y = 0; y < height; y++) {
+				offsets.putLong(offset);
+				offset += 8 + lineSize;
+			}
+			out.write(offsets.array());
+			final ByteBuffer line = ByteBuffer.allocate(8 + lineSize).order(ByteOrder.LITTLE_ENDIAN);
+			for (int y = 0; y < height; y++) {
+				line.clear();
+				line.putInt(y).putInt(lineSize);
+				for (int c = 2; c >= 0; c--) {
+					for (int x = 0; x < width; x++) {
+						line.putFloat(rgb[(y * width + x) * 3 + c]);
+					}
+				}
+				out.write(line.array());
+			}
+		} finally {
+			out.close();
+		}
+	}
+	
+	/**
+	 * Converts the image to floating point components between 0 and 1.
+	 * 
+	 * @param image	The image. Must not be <code>null</code>.
+	 * @return		The red, green and blue components of the pixels.
+	 */
+	public static float[] toFloats(final BufferedImage image) {
+		if (image == null) {
+			throw new IllegalArgumentException("The parameter 'image' must not be null.");
+		}
+		final int width = image.getWidth();
+		final int height = image.getHeight();
+		final int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+		final float[] rgb = new float[pixels.length * 3];
+		for (int i = 0; i < pixels.length; i++) {
+			rgb[i * 3] = ((pixels[i] >> 16) & 0xff) / 255f;
+			rgb[i * 3 + 1] = ((pixels[i] >> 8) & 0xff) / 255f;
+			rgb[i * 3 + 2] = (pixels[i] & 0xff) / 255f;
+		}
+		return rgb;
+	}
+	
+	/**
+	 * Returns the format of the file, i.e. the lower case extension of its name.
+	 * 
+	 * @param file			The file.
+	 * @return				The format.
+	 * @throws IOException	If the file name has no extension.
+	 */
+	public static String formatOf(final File file) throws IOException {
+		final String name = file.getName();
+		final int dot = name.lastIndexOf('.');
+		if (dot < 0 || dot == name.length() - 1) {
+			throw new IOException("The file name '" + name + "' has no extension.");
+		}
+		return name.substring(dot + 1).toLowerCase();
+	}
+	
+	/**
+	 * Checks the parameters of a floating point image.
+	 */
+	private static void checkFloats(final float[] rgb, final int width, final int height, final File file) {
+		if (rgb == null || file == null) {
+			throw new IllegalArgumentException("The parameters must not be null.");
+		}
+		if (width <= 0 || height <= 0 || rgb.length != width * height * 3) {
+			throw new IllegalArgumentException("The size of the image does not match its components.");
+		}
+	}
+	
+	/**
+	 * Creates the header of an uncompressed OpenEXR file with 32 bit floating point channels R, G and B and one scan 
+	 * line per chunk. The header is followed by the offset table of the chunks.
+	 * 
+	 * @param width		The width of the image.
+	 * @param height	The height of the image.
+	 * @return			The header, its position at its end.
+	 */
+	static ByteBuffer exrHeader(final int width, final int height) {
+		final ByteBuffer header = ByteBuffer.allocate(512).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(EXR_MAGIC).putInt(EXR_VERSION);
+		putAttribute(header, "channels", "chlist", 3 * 18 + 1);
+		// the channels must be sorted by name
+		for (String channel : new String[] {"B", "G", "R"}) {
+			putName(header, channel);
+			header.putInt(EXR_FLOAT).put((byte) 0).put(new byte[3]).putInt(1).putInt(1);
+		}
+		header.put((byte) 0);
+		putAttribute(header, "compression", "compression", 1);
+		header.put((byte) 0);
+		putAttribute(header, "dataWindow", "box2i", 16);
+		header.putInt(0).putInt(0).putInt(width - 1).putInt(height - 1);
+		putAttribute(header, "displayWindow", "box2i", 16);
+		header.putInt(0).putInt(0).putInt(width - 1).putInt(height - 1);
+		putAttribute(header, "lineOrder", "lineOrder", 1);
+		header.put((byte) 0);
+		putAttribute(header, "pixelAspectRatio", "float", 4);
+		header.putFloat(1);
+		putAttribute(header, "screenWindowCenter", "v2f", 8);
+		header.putFloat(0).putFloat(0);
+		putAttribute(header, "screenWindowWidth", "float", 4);
+		header.putFloat(1);
+		header.put((byte) 0);
+		return header;
+	}
+	
+	/**
+	 * Puts the header of an OpenEXR attribute.
+	 */
+	private static void putAttribute(final ByteBuffer buffer, final String name, final String type, final int size) {
+		putName(buffer, name);
+		putName(buffer, type);
+		buffer.putInt(size);
+	}
+	
+	/**
+	 * Puts a zero terminated name.
+	 */
+	private static void putName(final ByteBuffer buffer, final String name) {
+		buffer.put(name.getBytes(ASCII)).put((byte) 0);
+	}
+}
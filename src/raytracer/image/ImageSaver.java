@@ -6,7 +6,6 @@ import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
 import java.io.IOException;
 
-import javax.imageio.ImageIO;
 import javax.swing.JFrame;
 import javax.swing.JMenu;
 import javax.swing.JMenuBar;
@@ -75,7 +74,7 @@ class ImageSaverMenuBar extends JMenuBar {
 		saveItem.addActionListener(new ActionListener() {
 			public void actionPerformed(ActionEvent e) {
 				try {
-					ImageIO.write(canvas.getImage(), "png", FileDialog.save());
+					PngWriter.write(canvas.getImage(), FileDialog.save());
 				} catch (IOException ie) {
 					System.err.println("An error occured during writing.");
 				}
@@ -0,0 +1,376 @@
+package raytracer.image;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * This class writes PNG files with 8 bit RGB pixels strip by strip. The rows of a strip are filtered when the strip is
+ * passed and then compressed in the background, so strips are compressed in parallel to each other and to the
+ * rendering of the following strips.
+ * <p>
+ * Every strip is compressed as a deflate block sequence of its own, which ends at a byte boundary, and the sequences
+ * are concatenated in order into one zlib stream. A strip is compressed with the last 32 kB of the strip before it as
+ * preset dictionary, so the compression hardly suffers from the split.
+ *
+ * @author Simon Lischka
+ *
+ */
+public final class PngWriter extends StripWriter {
+	/**
+	 * The number of compressing threads.
+	 */
+	public static final int THREADS = Runtime.getRuntime().availableProcessors();
+	/**
+	 * The number of rows of a strip when a whole <code>BufferedImage</code> is written.
+	 */
+	public static final int STRIP_HEIGHT = 32;
+
+	/**
+	 * The maximum number of strips being compressed or waiting to be written. Passing another strip waits for the
+	 * oldest one, so the memory of the writer is bounded.
+	 */
+	private static final int MAX_PENDING = THREADS * 2;
+	/**
+	 * The size of the window of deflate, which bounds the useful size of a dictionary.
+	 */
+	private static final int WINDOW_SIZE = 32768;
+	/**
+	 * The signature at the beginning of a PNG file.
+	 */
+	private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+	/**
+	 * The header of a zlib stream with a window of 32 kB and the default compression level.
+	 */
+	private static final byte[] ZLIB_HEADER = {0x78, (byte) 0x9c};
+	/**
+	 * The charset of the chunk types.
+	 */
+	private static final Charset ASCII = Charset.forName("US-ASCII");
+	/**
+	 * The pool of the compressing threads.
+	 */
+	private static final ExecutorService POOL = Executors.newFixedThreadPool(THREADS, new ThreadFactory() {
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(final Runnable r) {
+			final Thread thread = new Thread(r, "PNG compressor " + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	/**
+	 * The stream of the file.
+	 */
+	private final DataOutputStream out;
+	/**
+	 * The tone mapper of the strips.
+	 */
+	private final ToneMapper mapper;
+	/**
+	 * The checksum of all filtered rows, which ends the zlib stream.
+	 */
+	private final Adler32 adler = new Adler32();
+	/**
+	 * The compressed strips in the order of the image.
+	 */
+	private final ArrayDeque<Future<byte[]>> pending = new ArrayDeque<Future<byte[]>>();
+	/**
+	 * The pixel bytes of the last row passed so far, the previous row of the filters.
+	 */
+	private byte[] previousRow;
+	/**
+	 * The end of the filtered rows passed so far, the dictionary of the next strip.
+	 */
+	private byte[] dictionary;
+	/**
+	 * The number of rows passed so far.
+	 */
+	private int rows;
+	/**
+	 * Whether the zlib header has been written.
+	 */
+	private boolean started;
+
+	/**
+	 * Opens a writer of a PNG file.
+	 *
+	 * @param file			The file to write to. Must not be <code>null</code>.
+	 * @param width			The width of the image. Must be positive.
+	 * @param height		The height of the image. Must be positive.
+	 * @param mapper		The tone mapper of the strips. Must not be <code>null</code>.
+	 * @throws IOException	If the file can not be opened.
+	 */
+	public PngWriter(final File file, final int width, final int height, final ToneMapper mapper)
+			throws IOException {
+		super(width, height);
+		if (file == null || mapper == null) {
+			throw new IllegalArgumentException("The parameters must not be null.");
+		}
+		this.mapper = mapper;
+		previousRow = new byte[width * 3];
+		out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+		out.write(SIGNATURE);
+		final ByteArrayOutputStream header = new ByteArrayOutputStream();
+		final DataOutputStream data = new DataOutputStream(header);
+		data.writeInt(width);
+		data.writeInt(height);
+		// 8 bits per component, RGB, deflate, adaptive filtering, no interlacing
+		data.write(new byte[] {8, 2, 0, 0, 0});
+		writeChunk("IHDR", header.toByteArray(), 0, header.size());
+	}
+
+	/**
+	 * Writes an image to a PNG file. The image is passed to a writer in strips of <code>STRIP_HEIGHT</code> rows, so
+	 * they are compressed in parallel.
+	 *
+	 * @param image			The image. Must not be <code>null</code>.
+	 * @param file			The file to write to. Must not be <code>null</code>.
+	 * @throws IOException	If the file can not be written.
+	 */
+	public static void write(final BufferedImage image, final File file) throws IOException {
+		if (image == null || file == null) {
+			throw new IllegalArgumentException("The parameters must not be null.");
+		}
+		final int width = image.getWidth();
+		final PngWriter writer = new PngWriter(file, width, image.getHeight(), new ClampToneMapper());
+		try {
+			final int[] pixels = new int[width * STRIP_HEIGHT];
+			for (int y = 0; y < image.getHeight(); y += STRIP_HEIGHT) {
+				final int n = Math.min(STRIP_HEIGHT, image.getHeight() - y);
+				image.getRGB(0, y, width, n, pixels, 0, width);
+				writer.writePixels(pixels, n);
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	@Override
+	protected void writeRows(final FrameBuffer strip, final int y) throws IOException {
+		final int[] pixels = new int[width * strip.height];
+		for (int row = 0; row < strip.height; row++) {
+			for (int x = 0; x < width; x++) {
+				pixels[row * width + x] = strip.getRGB(x, row, mapper);
+			}
+		}
+		writePixels(pixels, strip.height);
+	}
+
+	/**
+	 * Filters the next rows and submits their compression.
+	 *
+	 * @param pixels	The packed pixels of the rows, starting with the left pixel of the first row.
+	 * @param count		The number of rows.
+	 */
+	private void writePixels(final int[] pixels, final int count) throws IOException {
+		final int rowSize = width * 3 + 1;
+		final byte[] filtered = new byte[rowSize * count];
+		final byte[] row = new byte[width * 3];
+		for (int r = 0; r < count; r++) {
+			for (int x = 0; x < width; x++) {
+				final int rgb = pixels[r * width + x];
+				row[x * 3] = (byte) (rgb >> 16);
+				row[x * 3 + 1] = (byte) (rgb >> 8);
+				row[x * 3 + 2] = (byte) rgb;
+			}
+			filter(row, previousRow, filtered, r * rowSize);
+			System.arraycopy(row, 0, previousRow, 0, row.length);
+		}
+		adler.update(filtered);
+		rows += count;
+
+		final byte[] preset = dictionary;
+		final boolean last = rows == height;
+		pending.addLast(POOL.submit(new Callable<byte[]>() {
+			@Override
+			public byte[] call() {
+				return compress(filtered, preset, last);
+			}
+		}));
+		final int keep = Math.min(WINDOW_SIZE, filtered.length);
+		dictionary = Arrays.copyOfRange(filtered, filtered.length - keep, filtered.length);
+		// strips which are already compressed are written at once, the oldest one is waited for if too many pend
+		while (!pending.isEmpty() && (pending.peekFirst().isDone() || pending.size() > MAX_PENDING)) {
+			writeNext();
+		}
+	}
+
+	/**
+	 * Filters a row with the filter which yields the smallest sum of absolute differences, the heuristic recommended
+	 * by the PNG specification.
+	 *
+	 * @param row		The pixel bytes of the row.
+	 * @param previous	The pixel bytes of the row above, zeros for the first row.
+	 * @param filtered	The array the filter type and the filtered bytes are stored in.
+	 * @param offset	The index of the filter type in <code>filtered</code>.
+	 */
+	private static void filter(final byte[] row, final byte[] previous, final byte[] filtered, final int offset) {
+		int best = 0;
+		long bestSum = Long.MAX_VALUE;
+		for (int type = 0; type < 5; type++) {
+			long sum = 0;
+			for (int i = 0; i < row.length && sum < bestSum; i++) {
+				sum += Math.abs((byte) filtered(type, row, previous, i));
+			}
+			if (sum < bestSum) {
+				bestSum = sum;
+				best = type;
+			}
+		}
+		filtered[offset] = (byte) best;
+		for (int i = 0; i < row.length; i++) {
+			filtered[offset + 1 + i] = (byte) filtered(best, row, previous, i);
+		}
+	}
+
+	/**
+	 * Returns a filtered byte of a row.
+	 */
+	private static int filtered(final int type, final byte[] row, final byte[] previous, final int i) {
+		final int x = row[i] & 0xff;
+		final int a = (i >= 3) ? row[i - 3] & 0xff : 0;
+		final int b = previous[i] & 0xff;
+		switch (type) {
+		case 0:
+			return x;
+		case 1:
+			return x - a;
+		case 2:
+			return x - b;
+		case 3:
+			return x - ((a + b) >> 1);
+		default:
+			final int c = (i >= 3) ? previous[i - 3] & 0xff : 0;
+			final int p = a + b - c;
+			final int pa = Math.abs(p - a);
+			final int pb = Math.abs(p - b);
+			final int pc = Math.abs(p - c);
+			return x - ((pa <= pb && pa <= pc) ? a : (pb <= pc) ? b : c);
+		}
+	}
+
+	/**
+	 * Compresses filtered rows to a deflate block sequence which ends at a byte boundary or, for the last rows, with
+	 * the final block.
+	 *
+	 * @param data			The filtered rows.
+	 * @param dictionary	The filtered rows before them, <code>null</code> for the first rows.
+	 * @param last			Whether these are the last rows of the image.
+	 * @return				The compressed rows.
+	 */
+	private static byte[] compress(final byte[] data, final byte[] dictionary, final boolean last) {
+		final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+		try {
+			if (dictionary != null) {
+				deflater.setDictionary(dictionary);
+			}
+			deflater.setInput(data);
+			if (last) {
+				deflater.finish();
+			}
+			final ByteArrayOutputStream compressed = new ByteArrayOutputStream(data.length / 4 + 64);
+			final byte[] buffer = new byte[1 << 16];
+			while (true) {
+				final int n = deflater.deflate(buffer, 0, buffer.length,
+						last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+				compressed.write(buffer, 0, n);
+				if (last ? deflater.finished() : n < buffer.length) {
+					break;
+				}
+			}
+			return compressed.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	/**
+	 * Waits for the oldest compressed strip and writes it as a chunk.
+	 */
+	private void writeNext() throws IOException {
+		final byte[] compressed;
+		try {
+			compressed = pending.pollFirst().get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while compressing.", e);
+		} catch (ExecutionException e) {
+			throw new IOException("Compressing failed.", e.getCause());
+		}
+		if (!started) {
+			// the zlib header starts the data of the first chunk
+			final byte[] data = new byte[ZLIB_HEADER.length + compressed.length];
+			System.arraycopy(ZLIB_HEADER, 0, data, 0, ZLIB_HEADER.length);
+			System.arraycopy(compressed, 0, data, ZLIB_HEADER.length, compressed.length);
+			writeChunk("IDAT", data, 0, data.length);
+			started = true;
+		} else {
+			writeChunk("IDAT", compressed, 0, compressed.length);
+		}
+	}
+
+	/**
+	 * Writes a chunk with its length and checksum.
+	 */
+	private void writeChunk(final String type, final byte[] data, final int offset, final int length)
+			throws IOException {
+		final byte[] typeBytes = type.getBytes(ASCII);
+		final CRC32 crc = new CRC32();
+		crc.update(typeBytes);
+		crc.update(data, offset, length);
+		out.writeInt(length);
+		out.write(typeBytes);
+		out.write(data, offset, length);
+		out.writeInt((int) crc.getValue());
+	}
+
+	/**
+	 * Counts the rows passed as strips as well as the rows of a whole <code>BufferedImage</code>, which do not pass
+	 * <code>write(FrameBuffer)</code>.
+	 */
+	@Override
+	public boolean isComplete() {
+		return rows == height;
+	}
+
+	/**
+	 * Waits for all strips to be compressed and completes the file. The file is only valid if all rows of the image
+	 * have been written.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			while (!pending.isEmpty()) {
+				writeNext();
+			}
+			if (isComplete()) {
+				final int checksum = (int) adler.getValue();
+				writeChunk("IDAT", new byte[] {(byte) (checksum >> 24), (byte) (checksum >> 16),
+						(byte) (checksum >> 8), (byte) checksum}, 0, 4);
+				writeChunk("IEND", new byte[0], 0, 0);
+			}
+		} finally {
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,20 @@
+package raytracer.image;
+
+/**
+ * This immutable class maps color components with the operator of Reinhard et al., <code>c / (1 + c)</code>, which
+ * compresses bright components smoothly towards 1 and keeps dark ones almost unchanged.
+ *
+ * @author Simon Lischka
+ *
+ */
+public class ReinhardToneMapper implements ToneMapper {
+	@Override
+	public float map(final float c) {
+		return c / (1 + c);
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName();
+	}
+}
@@ -0,0 +1,266 @@
+package raytracer.image;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * This class writes an image file strip by strip, so an image can be written while it is rendered and never has to
+ * be held in memory as a whole. A strip is a <code>FrameBuffer</code> with the width of the image and any number of
+ * rows. The strips are passed from the top to the bottom of the image.
+ * <p>
+ * Writers are opened with <code>open</code>, which chooses the format by the extension of the file name. Floating
+ * point formats get the full range of the colors, any other format gets them mapped by a <code>ToneMapper</code>.
+ *
+ * @author Simon Lischka
+ *
+ */
+public abstract class StripWriter implements Closeable {
+	/**
+	 * The charset of the headers.
+	 */
+	private static final Charset ASCII = Charset.forName("US-ASCII");
+
+	/**
+	 * The width of the image.
+	 */
+	protected final int width;
+	/**
+	 * The height of the image.
+	 */
+	protected final int height;
+	/**
+	 * The number of rows written so far.
+	 */
+	private int rows;
+
+	/**
+	 * Constructs a new <code>StripWriter</code> for an image of the specified size.
+	 *
+	 * @param width		The width of the image. Must be positive.
+	 * @param height	The height of the image. Must be positive.
+	 */
+	protected StripWriter(final int width, final int height) {
+		if (width <= 0 || height <= 0) {
+			throw new IllegalArgumentException("The size of the image must be positive.");
+		}
+		this.width = width;
+		this.height = height;
+	}
+
+	/**
+	 * Opens a writer of the file. The format is chosen by the extension of the file name: <code>.png</code>,
+	 * <code>.ppm</code> (binary portable pixmap), <code>.pfm</code> or <code>.exr</code>.
+	 *
+	 * @param file			The file to write to. Must not be <code>null</code>.
+	 * @param width			The width of the image. Must be positive.
+	 * @param height		The height of the image. Must be positive.
+	 * @param mapper		The tone mapper of formats with 8 bit components. Must not be <code>null</code>.
+	 * @return				The writer.
+	 * @throws IOException	If the file can not be opened or the format can not be written in strips.
+	 */
+	public static StripWriter open(final File file, final int width, final int height, final ToneMapper mapper)
+			throws IOException {
+		if (file == null || mapper == null) {
+			throw new IllegalArgumentException("The parameters must not be null.");
+		}
+		final String format = ImageFiles.formatOf(file);
+		if (format.equals("png")) {
+			return new PngWriter(file, width, height, mapper);
+		}
+		if (format.equals("ppm")) {
+			return new PpmWriter(file, width, height, mapper);
+		}
+		if (format.equals("pfm")) {
+			return new PfmWriter(file, width, height);
+		}
+		if (format.equals("exr")) {
+			return new ExrWriter(file, width, height);
+		}
+		throw new IOException("The format '" + format + "' can not be written in strips.");
+	}
+
+	/**
+	 * Writes the next strip of the image.
+	 *
+	 * @param strip			The strip. Must not be <code>null</code>, must have the width of the image and must not
+	 * 						reach below the bottom of the image.
+	 * @throws IOException	If the strip can not be written.
+	 */
+	public void write(final FrameBuffer strip) throws IOException {
+		if (strip == null) {
+			throw new IllegalArgumentException("The parameter 'strip' must not be null.");
+		}
+		if (strip.width != width || rows + strip.height > height) {
+			throw new IllegalArgumentException("The strip does not fit into the image.");
+		}
+		writeRows(strip, rows);
+		rows += strip.height;
+	}
+
+	/**
+	 * Writes the rows of a strip.
+	 *
+	 * @param strip			The strip.
+	 * @param y				The row of the image the first row of the strip belongs to.
+	 * @throws IOException	If the rows can not be written.
+	 */
+	protected abstract void writeRows(final FrameBuffer strip, final int y) throws IOException;
+
+	/**
+	 * @return	<code>true</code> if all rows of the image have been written.
+	 */
+	public boolean isComplete() {
+		return rows == height;
+	}
+
+	/**
+	 * Puts the components of a row of a strip as little endian floats, in the order red, green, blue per pixel.
+	 */
+	private static void putInterleaved(final ByteBuffer buffer, final FrameBuffer strip, final int row) {
+		for (int i = row * strip.width; i < (row + 1) * strip.width; i++) {
+			buffer.putFloat(strip.red[i]).putFloat(strip.green[i]).putFloat(strip.blue[i]);
+		}
+	}
+
+	/**
+	 * Writes a whole buffer to a position of a channel.
+	 */
+	private static void writeAt(final FileChannel channel, final ByteBuffer buffer, final long position)
+			throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer, position + buffer.position());
+		}
+	}
+
+	/**
+	 * This class writes binary portable pixmaps. Their rows are stored from top to bottom, so the file is written as
+	 * a stream.
+	 */
+	private static class PpmWriter extends StripWriter {
+		private final OutputStream out;
+		private final ToneMapper mapper;
+		private final byte[] line;
+
+		PpmWriter(final File file, final int width, final int height, final ToneMapper mapper) throws IOException {
+			super(width, height);
+			this.mapper = mapper;
+			line = new byte[width * 3];
+			out = new BufferedOutputStream(new FileOutputStream(file));
+			out.write(("P6\n" + width + " " + height + "\n255\n").getBytes(ASCII));
+		}
+
+		@Override
+		protected void writeRows(final FrameBuffer strip, final int y) throws IOException {
+			for (int row = 0; row < strip.height; row++) {
+				for (int x = 0; x < width; x++) {
+					final int rgb = strip.getRGB(x, row, mapper);
+					line[x * 3] = (byte) (rgb >> 16);
+					line[x * 3 + 1] = (byte) (rgb >> 8);
+					line[x * 3 + 2] = (byte) rgb;
+				}
+				out.write(line);
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			out.close();
+		}
+	}
+
+	/**
+	 * This class writes PFM files. Their rows are stored from bottom to top, so every row is written to its position
+	 * in the file.
+	 */
+	private static class PfmWriter extends StripWriter {
+		private final FileChannel channel;
+		private final long headerSize;
+		private final ByteBuffer line;
+
+		PfmWriter(final File file, final int width, final int height) throws IOException {
+			super(width, height);
+			final RandomAccessFile out = new RandomAccessFile(file, "rw");
+			out.setLength(0);
+			channel = out.getChannel();
+			// a negative scale denotes little endian data
+			final ByteBuffer header = ByteBuffer.wrap(("PF\n" + width + " " + height + "\n-1.0\n").getBytes(ASCII));
+			header.position(header.limit());
+			headerSize = header.limit();
+			writeAt(channel, header, 0);
+			line = ByteBuffer.allocate(width * 3 * 4).order(ByteOrder.LITTLE_ENDIAN);
+		}
+
+		@Override
+		protected void writeRows(final FrameBuffer strip, final int y) throws IOException {
+			for (int row = 0; row < strip.height; row++) {
+				line.clear();
+				putInterleaved(line, strip, row);
+				writeAt(channel, line, headerSize + (long) (height - 1 - y - row) * line.capacity());
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+
+	/**
+	 * This class writes uncompressed OpenEXR files. As every scan line has the same size, the offset table is
+	 * written with the header and the scan lines follow as a stream.
+	 */
+	private static class ExrWriter extends StripWriter {
+		private final OutputStream out;
+		private final ByteBuffer line;
+
+		ExrWriter(final File file, final int width, final int height) throws IOException {
+			super(width, height);
+			final int lineSize = width * 3 * 4;
+			final ByteBuffer header = ImageFiles.exrHeader(width, height);
+			out = new BufferedOutputStream(new FileOutputStream(file));
+			out.write(header.array(), 0, header.position());
+			final ByteBuffer offsets = ByteBuffer.allocate(8 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+			long offset = header.position() + height * 8L;
+			for (int y = 0; y < height; y++) {
+				if (!offsets.hasRemaining()) {
+					out.write(offsets.array());
+					offsets.clear();
+				}
+				offsets.putLong(offset);
+				offset += 8 + lineSize;
+			}
+			out.write(offsets.array(), 0, offsets.position());
+			line = ByteBuffer.allocate(8 + lineSize).order(ByteOrder.LITTLE_ENDIAN);
+		}
+
+		@Override
+		protected void writeRows(final FrameBuffer strip, final int y) throws IOException {
+			for (int row = 0; row < strip.height; row++) {
+				line.clear();
+				line.putInt(y + row).putInt(line.capacity() - 8);
+				// the channels are stored one after the other, sorted by name
+				for (float[] channel : new float[][] {strip.blue, strip.green, strip.red}) {
+					for (int i = row * width; i < (row + 1) * width; i++) {
+						line.putFloat(channel[i]);
+					}
+				}
+				out.write(line.array());
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,18 @@
+package raytracer.image;
+
+/**
+ * This interface is implemented by the operators which map the unbounded color components of a rendering, as kept
+ * by a <code>FrameBuffer</code>, to the range of an image file or screen. The components are mapped one by one.
+ *
+ * @author Simon Lischka
+ *
+ */
+public interface ToneMapper {
+	/**
+	 * Maps a color component.
+	 *
+	 * @param c	The component, not negative and possibly above 1.
+	 * @return	The mapped component. Results outside of the range [0, 1] are clamped.
+	 */
+	public float map(final float c);
+}
@@ -5,11 +5,10 @@ import java.awt.Graphics;
 import java.awt.image.BufferedImage;
 
 /**
- * TODO UPDATE DOK!
- * This class represents the canvas for a diagonal line on black background. It is initialized with size parameters. 
+ * This class represents the canvas for an image rendered by a raytracer. 
  * <p>
- * The class includes a paint method which is called to display the generated image.
- * It also includes methods to change its size and retrieve the embedded <code>BufferedImage</code> object.
+ * The class includes a paint method which is called to display the image. The image can be replaced while the canvas 
+ * is shown, e.g. by a renderer which renders the image progressively.
  * 
  * @author Simon Lischka
  */
@@ -17,13 +16,12 @@ public final class TracerCanvas extends Canvas {
 	/**
 	 *  Image object, contains generated image data.
 	 */
-	private BufferedImage image;
+	private volatile BufferedImage image;
 	
 	/**
-	 * Constructs a new <code>ImageCanvas</code> and initializes the <code>BufferedImage</code> object with the 
-	 * specified size. Sets the <code>ColorModel</code> to <code>TYPE_INT_RGB</code>.
+	 * Constructs a new <code>TracerCanvas</code> showing the specified image.
 	 * 
-	 * @param size	The specified size of the image in pixels.
+	 * @param image	The image to be shown.
 	 */
 	public TracerCanvas(BufferedImage image) {
 		this.image = image;
@@ -31,16 +29,34 @@ public final class TracerCanvas extends Canvas {
 
 
 	/**
-	 * @return	The <code>BufferedImage</code> of this <code>ImageCanvas</code>.
+	 * @return	The <code>BufferedImage</code> of this <code>TracerCanvas</code>.
 	 */
 	public BufferedImage getImage() {
 		return image;
 	}
-
+	
+	/**
+	 * Replaces the image of this canvas and repaints it. May be called from any thread.
+	 * 
+	 * @param image	The new image to be shown.
+	 */
+	public void setImage(final BufferedImage image) {
+		this.image = image;
+		repaint();
+	}
+	
+	/**
+	 * Paints the image without clearing the background first, so a progressively refined image does not flicker.
+	 * 
+	 * @param g	The specified Graphics context.
+	 */
+	@Override
+	public void update(final Graphics g) {
+		paint(g);
+	}
 
 	/**
-	 * Generates a black background and a red diagonal line. The data is written into the raster of the classes 
-	 * <code>BufferedImage</code> and then painted.
+	 * Paints the <code>BufferedImage</code> of this canvas.
 	 * 
 	 * @param g	The specified Graphics context.
 	 */
@@ -5,6 +5,7 @@ import raytracer.Ray;
 import raytracer.World;
 import raytracer.math.Point3;
 import raytracer.math.Vector3;
+import raytracer.metrics.RenderMetrics;
 
 /**
  * This immutable class represents a directional light (sunlight) in a three-dimensional scene. A directional light, as 
@@ -18,6 +19,10 @@ public class DirectionalLight extends Light {
 	 * The direction of this <code>DirectionalLight</code>.
 	 */
 	public final Vector3 direction;
+	/**
+	 * The normalized direction towards this <code>DirectionalLight</code>, the same from every point.
+	 */
+	private final Vector3 towards;
 	
 	/**
 	 * Constructs a new <code>DirectionalLight</code> object with the specified parameters.
@@ -32,6 +37,7 @@ public class DirectionalLight extends Light {
 			throw new IllegalArgumentException("The parameter 'direction' must not be null.");
 		}
 		this.direction = direction; 
+		towards = direction.mul(-1).normalized();
 	}
 	
 	public DirectionalLight(final Color color, final Vector3 direction) {
@@ -42,12 +48,13 @@ public class DirectionalLight extends Light {
 		if (!castsShadow) {
 			return true;
 		}
+		RenderMetrics.counters().shadowRay();
 		final Ray ray = new Ray(point, directionFrom(point));
 		return world.hit(ray) == null;
 	}
 	
 	@Override
 	public Vector3 directionFrom(final Point3 point) {
-		return direction.mul(-1).normalized();
+		return towards;
 	}
 }
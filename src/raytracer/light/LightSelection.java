@@ -0,0 +1,68 @@
+package raytracer.light;
+
+/**
+ * This immutable class represents the lights selected to shade a point. Every light has a weight, the factor its
+ * contribution is multiplied with so the sum over the selected lights estimates the sum over all lights of the world.
+ * A selection of all lights has no weights, all of them are 1.
+ *
+ * @author Simon Lischka
+ *
+ */
+public final class LightSelection {
+	/**
+	 * The selected lights. Only the first <code>count</code> elements are used.
+	 */
+	private final Light[] lights;
+	/**
+	 * The weights of the selected lights or <code>null</code> if all weights are 1.
+	 */
+	private final double[] weights;
+	/**
+	 * The number of selected lights.
+	 */
+	public final int count;
+
+	/**
+	 * Constructs a new <code>LightSelection</code> with the specified lights and weights.
+	 *
+	 * @param lights	The selected lights. Must not be <code>null</code>.
+	 * @param weights	The weights of the lights or <code>null</code> if all weights are 1.
+	 * @param count		The number of selected lights, which are the first elements of the arrays.
+	 */
+	public LightSelection(final Light[] lights, final double[] weights, final int count) {
+		if (lights == null) {
+			throw new IllegalArgumentException("The parameter 'lights' must not be null.");
+		}
+		if (count < 0 || count > lights.length || (weights != null && count > weights.length)) {
+			throw new IllegalArgumentException("The parameter 'count' must not exceed the length of the arrays.");
+		}
+		this.lights = lights;
+		this.weights = weights;
+		this.count = count;
+	}
+
+	/**
+	 * Constructs a new <code>LightSelection</code> of all specified lights with the weight 1.
+	 *
+	 * @param lights	The lights. Must not be <code>null</code>.
+	 */
+	public LightSelection(final Light[] lights) {
+		this(lights, null, (lights == null) ? 0 : lights.length);
+	}
+
+	/**
+	 * @param i	The index of the light, between 0 (including) and <code>count</code> (excluding).
+	 * @return	The light.
+	 */
+	public Light light(final int i) {
+		return lights[i];
+	}
+
+	/**
+	 * @param i	The index of the light, between 0 (including) and <code>count</code> (excluding).
+	 * @return	The weight of the light.
+	 */
+	public double weight(final int i) {
+		return (weights == null) ? 1 : weights[i];
+	}
+}
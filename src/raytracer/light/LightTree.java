@@ -0,0 +1,379 @@
+package raytracer.light;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import raytracer.Color;
+import raytracer.Tracer;
+import raytracer.math.Normal3;
+import raytracer.math.Point3;
+
+/**
+ * This immutable class is a bounding volume hierarchy over the point and spot lights of a world, which selects a few
+ * lights to shade a point instead of all of them.
+ * <p>
+ * Every node bounds the positions of its lights with a box and their directions of emission with a cone: an axis, the
+ * angle by which the axes of the lights deviate from it and the largest half opening angle of the lights. Point lights
+ * emit in all directions. From these bounds and the summed luminance of its lights the importance of a node for a
+ * point is estimated. A node whose box lies completely behind the surface of the point, or whose cone can not reach
+ * the point, has the importance 0 and is culled with all its lights.
+ * <p>
+ * A light is selected by descending from the root and choosing a child with a probability proportional to its
+ * importance. Each selected light is weighted with the inverse of its probability, so the weighted sum over the
+ * selected lights is an unbiased estimate of the sum over all lights which are not culled. Lights without a position,
+ * e.g. directional lights, are always selected.
+ *
+ * @author Simon Lischka
+ *
+ */
+public final class LightTree {
+	/**
+	 * The default number of lights selected per point.
+	 */
+	public static final int DEFAULT_SAMPLES = 8;
+
+	/**
+	 * The lights in the order of the leaves.
+	 */
+	private final Light[] lights;
+	/**
+	 * The lights which are always selected.
+	 */
+	private final Light[] global;
+	/**
+	 * The boxes of the nodes, minimum x, y, z and maximum x, y, z per node.
+	 */
+	private final double[] boxes;
+	/**
+	 * The summed luminance of the lights of the nodes.
+	 */
+	private final double[] power;
+	/**
+	 * The axes of the cones of the nodes, x, y, z per node.
+	 */
+	private final double[] axes;
+	/**
+	 * The angles by which the axes of the lights of the nodes deviate from the axes of the nodes, PI for nodes with
+	 * point lights.
+	 */
+	private final double[] spreads;
+	/**
+	 * The largest half opening angles of the lights of the nodes.
+	 */
+	private final double[] halfAngles;
+	/**
+	 * The indices of the right children of the inner nodes. The left child of a node follows the node.
+	 */
+	private final int[] rights;
+	/**
+	 * The index of the light of the leaves, -1 for inner nodes.
+	 */
+	private final int[] leaves;
+	/**
+	 * The number of nodes built so far.
+	 */
+	private int nodes;
+
+	/**
+	 * Builds a new <code>LightTree</code> over the specified lights.
+	 *
+	 * @param lights	The lights. Must not be <code>null</code>.
+	 */
+	public LightTree(final Light[] lights) {
+		if (lights == null) {
+			throw new IllegalArgumentException("The parameter 'lights' must not be null.");
+		}
+		final List<Light> positioned = new ArrayList<Light>();
+		final List<Light> others = new ArrayList<Light>();
+		for (Light light : lights) {
+			if (light instanceof PointLight || light instanceof SpotLight) {
+				positioned.add(light);
+			} else {
+				others.add(light);
+			}
+		}
+		this.lights = positioned.toArray(new Light[positioned.size()]);
+		global = others.toArray(new Light[others.size()]);
+		final int count = Math.max(0, this.lights.length * 2 - 1);
+		boxes = new double[count * 6];
+		power = new double[count];
+		axes = new double[count * 3];
+		spreads = new double[count];
+		halfAngles = new double[count];
+		rights = new int[count];
+		leaves = new int[count];
+		if (this.lights.length > 0) {
+			build(0, this.lights.length);
+		}
+	}
+
+	/**
+	 * Builds the node of the lights from <code>from</code> to <code>to</code> (excluding). The lights are split at the
+	 * median of the longest axis of the box of their positions.
+	 *
+	 * @return	The index of the node.
+	 */
+	private int build(final int from, final int to) {
+		final int node = nodes++;
+		if (to - from == 1) {
+			leaf(node, from);
+			return node;
+		}
+		double minX = Double.MAX_VALUE;
+		double minY = Double.MAX_VALUE;
+		double minZ = Double.MAX_VALUE;
+		double maxX = -Double.MAX_VALUE;
+		double maxY = -Double.MAX_VALUE;
+		double maxZ = -Double.MAX_VALUE;
+		for (int i = from; i < to; i++) {
+			final Point3 p = positionOf(lights[i]);
+			minX = Math.min(minX, p.x);
+			minY = Math.min(minY, p.y);
+			minZ = Math.min(minZ, p.z);
+			maxX = Math.max(maxX, p.x);
+			maxY = Math.max(maxY, p.y);
+			maxZ = Math.max(maxZ, p.z);
+		}
+		final double dx = maxX - minX;
+		final double dy = maxY - minY;
+		final double dz = maxZ - minZ;
+		final int axis = (dx >= dy && dx >= dz) ? 0 : (dy >= dz) ? 1 : 2;
+		Arrays.sort(lights, from, to, new Comparator<Light>() {
+			@Override
+			public int compare(final Light a, final Light b) {
+				return Double.compare(coordinate(positionOf(a), axis), coordinate(positionOf(b), axis));
+			}
+		});
+		final int mid = (from + to) / 2;
+		final int left = build(from, mid);
+		final int right = build(mid, to);
+		rights[node] = right;
+		leaves[node] = -1;
+		merge(node, left, right);
+		return node;
+	}
+
+	/**
+	 * Sets the bounds of a leaf to its light.
+	 */
+	private void leaf(final int node, final int light) {
+		final Light l = lights[light];
+		final Point3 p = positionOf(l);
+		boxes[node * 6] = boxes[node * 6 + 3] = p.x;
+		boxes[node * 6 + 1] = boxes[node * 6 + 4] = p.y;
+		boxes[node * 6 + 2] = boxes[node * 6 + 5] = p.z;
+		power[node] = luminance(l.color);
+		if (l instanceof SpotLight) {
+			final SpotLight spot = (SpotLight) l;
+			axes[node * 3] = spot.direction.x;
+			axes[node * 3 + 1] = spot.direction.y;
+			axes[node * 3 + 2] = spot.direction.z;
+			halfAngles[node] = spot.halfAngle;
+		} else {
+			spreads[node] = Math.PI;
+		}
+		leaves[node] = light;
+	}
+
+	/**
+	 * Sets the bounds of an inner node to the union of the bounds of its children.
+	 */
+	private void merge(final int node, final int left, final int right) {
+		for (int i = 0; i < 3; i++) {
+			boxes[node * 6 + i] = Math.min(boxes[left * 6 + i], boxes[right * 6 + i]);
+			boxes[node * 6 + 3 + i] = Math.max(boxes[left * 6 + 3 + i], boxes[right * 6 + 3 + i]);
+		}
+		power[node] = power[left] + power[right];
+		halfAngles[node] = Math.max(halfAngles[left], halfAngles[right]);
+		final double x = axes[left * 3] + axes[right * 3];
+		final double y = axes[left * 3 + 1] + axes[right * 3 + 1];
+		final double z = axes[left * 3 + 2] + axes[right * 3 + 2];
+		final double length = Math.sqrt(x * x + y * y + z * z);
+		if (spreads[left] >= Math.PI || spreads[right] >= Math.PI || length < 1e-9) {
+			spreads[node] = Math.PI;
+			return;
+		}
+		axes[node * 3] = x / length;
+		axes[node * 3 + 1] = y / length;
+		axes[node * 3 + 2] = z / length;
+		spreads[node] = Math.min(Math.PI, Math.max(angleTo(node, left) + spreads[left],
+				angleTo(node, right) + spreads[right]));
+	}
+
+	/**
+	 * @return	The angle between the axes of two nodes.
+	 */
+	private double angleTo(final int node, final int child) {
+		final double cos = axes[node * 3] * axes[child * 3] + axes[node * 3 + 1] * axes[child * 3 + 1]
+				+ axes[node * 3 + 2] * axes[child * 3 + 2];
+		return Math.acos(Math.max(-1, Math.min(1, cos)));
+	}
+
+	/**
+	 * Selects the lights to shade the specified point. The lights of the tree are selected <code>samples</code> times,
+	 * a light selected several times is returned once with the sum of the weights. If the tree has no more lights than
+	 * samples, all lights which are not culled are returned with the weight 1 instead.
+	 *
+	 * @param point		The point to be shaded. Must not be <code>null</code>.
+	 * @param normal	The normal of the surface at the point. Must not be <code>null</code>.
+	 * @param samples	The number of selections. Must be positive.
+	 * @param tracer	The tracer which provides the random numbers, <code>null</code> to use the random numbers of
+	 * 					the thread.
+	 * @return			The selected lights.
+	 */
+	public LightSelection select(final Point3 point, final Normal3 normal, final int samples, final Tracer tracer) {
+		if (point == null || normal == null) {
+			throw new IllegalArgumentException("The parameters must not be null.");
+		}
+		if (samples <= 0) {
+			throw new IllegalArgumentException("The parameter 'samples' must be positive.");
+		}
+		final Light[] selected = new Light[global.length + Math.min(samples, lights.length)];
+		final double[] weights = new double[selected.length];
+		int count = 0;
+		for (Light light : global) {
+			selected[count] = light;
+			weights[count++] = 1;
+		}
+		if (lights.length == 0) {
+			return new LightSelection(selected, weights, count);
+		}
+		final double length = Math.sqrt(normal.x * normal.x + normal.y * normal.y + normal.z * normal.z);
+		final double nx = normal.x / length;
+		final double ny = normal.y / length;
+		final double nz = normal.z / length;
+		if (lights.length <= samples) {
+			for (int node = 0; node < nodes; node++) {
+				if (leaves[node] >= 0 && importance(node, point, nx, ny, nz) > 0) {
+					selected[count] = lights[leaves[node]];
+					weights[count++] = 1;
+				}
+			}
+			return new LightSelection(selected, weights, count);
+		}
+		if (importance(0, point, nx, ny, nz) <= 0) {
+			return new LightSelection(selected, weights, count);
+		}
+		final int first = count;
+		for (int s = 0; s < samples; s++) {
+			int node = 0;
+			double probability = 1;
+			while (node >= 0 && leaves[node] < 0) {
+				final double left = importance(node + 1, point, nx, ny, nz);
+				final double right = importance(rights[node], point, nx, ny, nz);
+				if (left + right <= 0) {
+					node = -1;
+				} else if (random(tracer) * (left + right) < left) {
+					probability *= left / (left + right);
+					node = node + 1;
+				} else {
+					probability *= right / (left + right);
+					node = rights[node];
+				}
+			}
+			if (node < 0) {
+				continue;
+			}
+			final Light light = lights[leaves[node]];
+			final double weight = 1 / (samples * probability);
+			int i = first;
+			while (i < count && selected[i] != light) {
+				i++;
+			}
+			if (i == count) {
+				selected[count] = light;
+				weights[count++] = weight;
+			} else {
+				weights[i] += weight;
+			}
+		}
+		return new LightSelection(selected, weights, count);
+	}
+
+	/**
+	 * Estimates the importance of a node for a point with the specified normal. It is the summed luminance of the
+	 * lights times a bound of the cosine between the normal and the directions to the lights, or 0 if the lights can
+	 * not illuminate the point.
+	 */
+	private double importance(final int node, final Point3 point, final double nx, final double ny, final double nz) {
+		final int b = node * 6;
+		final double dx = (boxes[b] + boxes[b + 3]) * 0.5 - point.x;
+		final double dy = (boxes[b + 1] + boxes[b + 4]) * 0.5 - point.y;
+		final double dz = (boxes[b + 2] + boxes[b + 5]) * 0.5 - point.z;
+		final double ex = boxes[b + 3] - boxes[b];
+		final double ey = boxes[b + 4] - boxes[b + 1];
+		final double ez = boxes[b + 5] - boxes[b + 2];
+		final double radius2 = (ex * ex + ey * ey + ez * ez) * 0.25;
+		final double distance2 = dx * dx + dy * dy + dz * dz;
+		if (distance2 <= radius2) {
+			// the point is inside of the bounding sphere, every direction is possible
+			return power[node];
+		}
+		final double distance = Math.sqrt(distance2);
+		final double sinBox = Math.sqrt(radius2) / distance;
+		final double cosBox = Math.sqrt(1 - sinBox * sinBox);
+		final double cosNormal = (nx * dx + ny * dy + nz * dz) / distance;
+		double cosBound = 1;
+		if (cosNormal < cosBox) {
+			// the cosine of the angle between the normal and the closest direction into the bounding sphere
+			final double sinNormal = Math.sqrt(Math.max(0, 1 - cosNormal * cosNormal));
+			cosBound = cosNormal * cosBox + sinNormal * sinBox;
+			if (cosBound <= 0) {
+				return 0;
+			}
+		}
+		if (spreads[node] < Math.PI) {
+			final int a = node * 3;
+			final double cosAxis = -(axes[a] * dx + axes[a + 1] * dy + axes[a + 2] * dz) / distance;
+			final double angle = Math.acos(Math.max(-1, Math.min(1, cosAxis))) - spreads[node] - Math.asin(sinBox);
+			if (angle > halfAngles[node]) {
+				return 0;
+			}
+		}
+		return power[node] * cosBound;
+	}
+
+	/**
+	 * @return	The next random number of the tracer or the thread.
+	 */
+	private static double random(final Tracer tracer) {
+		return (tracer != null) ? tracer.nextRandom() : ThreadLocalRandom.current().nextDouble();
+	}
+
+	/**
+	 * @return	The luminance of a color.
+	 */
+	private static double luminance(final Color c) {
+		return c.r * 0.299 + c.g * 0.587 + c.b * 0.114;
+	}
+
+	/**
+	 * @return	The position of a point or spot light.
+	 */
+	private static Point3 positionOf(final Light light) {
+		return (light instanceof SpotLight) ? ((SpotLight) light).position : ((PointLight) light).position;
+	}
+
+	/**
+	 * @return	The coordinate of a point on an axis, 0 is x, 1 is y and 2 is z.
+	 */
+	private static double coordinate(final Point3 p, final int axis) {
+		return (axis == 0) ? p.x : (axis == 1) ? p.y : p.z;
+	}
+
+	/**
+	 * @return	The number of lights in the tree, without the lights which are always selected.
+	 */
+	public int size() {
+		return lights.length;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[lights = " + lights.length + ", global = " + global.length
+				+ ", nodes = " + nodes + "]";
+	}
+}
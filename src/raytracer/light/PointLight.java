@@ -6,6 +6,7 @@ import raytracer.World;
 import raytracer.geometry.Hit;
 import raytracer.math.Point3;
 import raytracer.math.Vector3;
+import raytracer.metrics.RenderMetrics;
 
 /**
  * This immutable class represents a point light in a three-dimensional scene. A point light has a position and spreads 
@@ -42,6 +43,7 @@ public class PointLight extends Light {
 		if (!castsShadow) {
 			return true;
 		}
+		RenderMetrics.counters().shadowRay();
 		final Ray ray = new Ray(point, directionFrom(point));
 		final Hit hit = world.hit(ray);
 		return hit == null || hit.t >= ray.tOf(position);
@@ -6,6 +6,7 @@ import raytracer.World;
 import raytracer.geometry.Hit;
 import raytracer.math.Point3;
 import raytracer.math.Vector3;
+import raytracer.metrics.RenderMetrics;
 
 /**
  * This immutable class represents a spot light in a three-dimensional scene. It has a position, a direction and an 
@@ -27,6 +28,10 @@ public class SpotLight extends Light {
 	 * The half opening angle of this <code>SpotLight</code> in radians.
 	 */
 	public final double halfAngle;
+	/**
+	 * The cosine of the half opening angle, computed once so the cone test needs no <code>acos</code>.
+	 */
+	private final double cosHalfAngle;
 	
 	/**
 	 * Constructs a new <code>SpotLight</code> object with the specified parameters.
@@ -48,6 +53,7 @@ public class SpotLight extends Light {
 		this.position = position;
 		this.direction = direction.normalized();
 		this.halfAngle = halfAngle;
+		cosHalfAngle = Math.cos(halfAngle);
 	}
 
 	public SpotLight(final Color color, final Point3 position, final Vector3 direction, final double halfAngle) {
@@ -61,12 +67,14 @@ public class SpotLight extends Light {
 	public boolean illuminates(final Point3 point, final World world) {
 		// Formula: cos(l, d) = <l, d>, with |l| = |d| = 1, l:= light direction, d: = vector from light position to point
 		final Vector3 from = directionFrom(point);
-		if (Math.acos(direction.normalized().dot(from.mul(-1))) > halfAngle){
+		// the direction is normalized by the constructor and the angle is compared by its cosine
+		if (-direction.dot(from) < cosHalfAngle){
 			return false;
 		}
 		if (!castsShadow) {
 			return true;
 		}
+		RenderMetrics.counters().shadowRay();
 		final Ray ray = new Ray(point, from);
 		final Hit hit = world.hit(ray);
 		return hit == null || hit.t >= ray.tOf(position);
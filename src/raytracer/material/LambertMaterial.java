@@ -5,6 +5,7 @@ import raytracer.Tracer;
 import raytracer.World;
 import raytracer.geometry.Hit;
 import raytracer.light.Light;
+import raytracer.light.LightSelection;
 import raytracer.math.Normal3;
 import raytracer.math.Point3;
 import raytracer.math.Vector3;
@@ -42,20 +43,28 @@ public class LambertMaterial extends Material {
 			throw new IllegalArgumentException("The parameters must not be null.");
 		}
 		// Formula: c = cd[ca  +  cl * max(0, <n, l>)]
-		final Color texcolor = texture.getColor(hit.texcoord);
-		Color c = texcolor.mul(world.ambientLight);
+		final Color texcolor = texture.getColor(hit.texcoord, hit.footprint);
+		// the sum is accumulated in components, a Color is only created for the result
+		double cr = texcolor.r * world.ambientLight.r;
+		double cg = texcolor.g * world.ambientLight.g;
+		double cb = texcolor.b * world.ambientLight.b;
 		final Normal3 n = hit.normal;
 		final Point3 p = hit.ray.at(hit.t);
-		final Light[] lights = world.getLights();
-		for (Light light : lights) {
+		// each light is weighted by the selection, the weight is 1 unless the world has many lights
+		final LightSelection lights = world.selectLights(p, n, tracer);
+		for (int i = 0; i < lights.count; i++) {
+			final Light light = lights.light(i);
 			if (light.illuminates(p, world)){
 				final Vector3 l = light.directionFrom(p);
 				final double f = Math.max(0, n.dot(l));
-				final Color temp = texcolor.mul(light.color.mul(f));
-				c = c.add(temp);
+				final double w = lights.weight(i);
+				final Color lc = light.color;
+				cr += texcolor.r * (lc.r * f * w);
+				cg += texcolor.g * (lc.g * f * w);
+				cb += texcolor.b * (lc.b * f * w);
 			}
 		}
-		return c;
+		return new Color(cr, cg, cb);
 	}
 
 	/* (non-Javadoc)
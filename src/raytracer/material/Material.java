@@ -20,4 +20,21 @@ public abstract class Material {
 	 * @return      	The color for a <code>Hit</code> object.
 	 */
 	abstract public Color colorFor(final Hit hit, final World world, final Tracer tracer);
+	
+	/**
+	 * Returns the color of a <code>Hit</code> object without the colors of secondary rays, e.g. reflections. 
+	 * Secondary rays are spawned at the tracer with <code>Tracer.spawn</code> instead, which traces them later 
+	 * without recursion.
+	 * <p>
+	 * By default this method returns the complete color as computed by <code>colorFor</code>, which is correct for 
+	 * materials without secondary rays and for materials which still trace their secondary rays themselves.
+	 * 
+	 * @param hit   	The <code>Hit</code> object. Must not be <code>null</code>.
+	 * @param world 	The world. Must not be <code>null</code>.
+	 * @param tracer	The <code>Tracer</code> which traces the secondary rays.
+	 * @return      	The color for a <code>Hit</code> object without secondary rays.
+	 */
+	public Color shade(final Hit hit, final World world, final Tracer tracer) {
+		return colorFor(hit, world, tracer);
+	}
 }
@@ -5,6 +5,7 @@ import raytracer.Tracer;
 import raytracer.World;
 import raytracer.geometry.Hit;
 import raytracer.light.Light;
+import raytracer.light.LightSelection;
 import raytracer.math.Normal3;
 import raytracer.math.Point3;
 import raytracer.math.Vector3;
@@ -59,22 +60,29 @@ public class PhongMaterial extends Material {
 		final Normal3 n = hit.normal;
 		final Point3 p = hit.ray.at(hit.t);
 		final Vector3 e = hit.ray.d.mul(-1).normalized();
-		final Color diffuseColor = diffuseTexture.getColor(hit.texcoord);
-		final Color specularColor = specularTexture.getColor(hit.texcoord);
-		Color c = diffuseColor.mul(world.ambientLight);
-		final Light[] lights = world.getLights();
-		for (Light light : lights) {
+		final Color diffuseColor = diffuseTexture.getColor(hit.texcoord, hit.footprint);
+		final Color specularColor = specularTexture.getColor(hit.texcoord, hit.footprint);
+		// the sum is accumulated in components, a Color is only created for the result
+		double cr = diffuseColor.r * world.ambientLight.r;
+		double cg = diffuseColor.g * world.ambientLight.g;
+		double cb = diffuseColor.b * world.ambientLight.b;
+		// each light is weighted by the selection, the weight is 1 unless the world has many lights
+		final LightSelection lights = world.selectLights(p, n, tracer);
+		for (int i = 0; i < lights.count; i++) {
+			final Light light = lights.light(i);
 			if (light.illuminates(p, world)) {
 				final Vector3 l = light.directionFrom(p);
 				final Vector3 r = l.reflectedOn(n);
 				final double f1 = Math.max(0, n.dot(l));
-				final double f2 = Math.max(0, e.dot(r));
-				final Color s1 = diffuseColor.mul(light.color).mul(f1);
-				final Color s2 = specularColor.mul(light.color).mul(Math.pow(f2, exponent));
-				c = c.add(s1).add(s2); 
+				final double f2 = Math.pow(Math.max(0, e.dot(r)), exponent);
+				final double w = lights.weight(i);
+				final Color lc = light.color;
+				cr = cr + diffuseColor.r * lc.r * f1 * w + specularColor.r * lc.r * f2 * w;
+				cg = cg + diffuseColor.g * lc.g * f1 * w + specularColor.g * lc.g * f2 * w;
+				cb = cb + diffuseColor.b * lc.b * f1 * w + specularColor.b * lc.b * f2 * w;
 			}
 		}
-		return c;
+		return new Color(cr, cg, cb);
 	}
 
 	@Override
@@ -6,9 +6,11 @@ import raytracer.Tracer;
 import raytracer.World;
 import raytracer.geometry.Hit;
 import raytracer.light.Light;
+import raytracer.light.LightSelection;
 import raytracer.math.Normal3;
 import raytracer.math.Point3;
 import raytracer.math.Vector3;
+import raytracer.metrics.RenderMetrics;
 import raytracer.texture.Texture;
 
 /**
@@ -53,31 +55,47 @@ public class ReflectiveMaterial extends Material{
 	
 	@Override
 	public Color colorFor(final Hit hit, final World world, final Tracer tracer) {
+		return tracer.shade(this, hit, world);
+	}
+	
+	@Override
+	public Color shade(final Hit hit, final World world, final Tracer tracer) {
 
 		// Formula: c = cd * ca  +  cd * cl * max(0, <n, l>)  +  cs * cl * pow(max(0, <e, rl>), p)  +  cr * fr[pr, rd]
 		final Normal3 n = hit.normal;
 		final Ray ray = hit.ray;
 		final Point3 p = ray.at(hit.t);
 		final Vector3 e = ray.d.mul(-1).normalized();
-		final Color diffuseColor = diffuseTexture.getColor(hit.texcoord);
-		final Color specularColor = specularTexture.getColor(hit.texcoord);
-		final Color reflectionColor = reflectionTexture.getColor(hit.texcoord);
-		Color c = diffuseColor.mul(world.ambientLight);
-		final Light[] lights = world.getLights();
-		for (Light light : lights) {
+		final Color diffuseColor = diffuseTexture.getColor(hit.texcoord, hit.footprint);
+		final Color specularColor = specularTexture.getColor(hit.texcoord, hit.footprint);
+		final Color reflectionColor = reflectionTexture.getColor(hit.texcoord, hit.footprint);
+		// the sum is accumulated in components, a Color is only created for the result
+		double cr = diffuseColor.r * world.ambientLight.r;
+		double cg = diffuseColor.g * world.ambientLight.g;
+		double cb = diffuseColor.b * world.ambientLight.b;
+		// each light is weighted by the selection, the weight is 1 unless the world has many lights
+		final LightSelection lights = world.selectLights(p, n, tracer);
+		for (int i = 0; i < lights.count; i++) {
+			final Light light = lights.light(i);
 			if (light.illuminates(p, world)) {
 				final Vector3 l = light.directionFrom(p);
 				final Vector3 rl = l.reflectedOn(n);
 				final double f1 = Math.max(0, n.dot(l));
-				final double f2 = Math.max(0, e.dot(rl));
-				final Color s1 = diffuseColor.mul(light.color).mul(f1);
-				final Color s2 = specularColor.mul(light.color).mul(Math.pow(f2, exponent));
-				c = c.add(s1).add(s2); 
+				final double f2 = Math.pow(Math.max(0, e.dot(rl)), exponent);
+				final double w = lights.weight(i);
+				final Color lc = light.color;
+				cr = cr + diffuseColor.r * lc.r * f1 * w + specularColor.r * lc.r * f2 * w;
+				cg = cg + diffuseColor.g * lc.g * f1 * w + specularColor.g * lc.g * f2 * w;
+				cb = cb + diffuseColor.b * lc.b * f1 * w + specularColor.b * lc.b * f2 * w;
+			}
+		}
+		if (tracer.contributes(reflectionColor)) {
+			final Vector3 rd = ray.d.mul(-1).reflectedOn(n);
+			if (tracer.spawn(ray.continued(hit.t, p, rd), reflectionColor)) {
+				RenderMetrics.counters().reflectionRay();
 			}
 		}
-		final Vector3 rd = ray.d.mul(-1).reflectedOn(n);
-		final Color s3 = reflectionColor.mul(tracer.trace(new Ray(p, rd), world));
-		return c.add(s3);
+		return new Color(cr, cg, cb);
 	}
 
 	@Override
@@ -31,7 +31,7 @@ public class SingleColorMaterial extends Material{
 
 	@Override
 	public Color colorFor(final Hit hit, final World world, final Tracer tracer) {
-		return texture.getColor(hit.texcoord);
+		return texture.getColor(hit.texcoord, hit.footprint);
 	}
 
 
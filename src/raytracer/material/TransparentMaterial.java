@@ -8,6 +8,8 @@ import raytracer.geometry.Hit;
 import raytracer.math.Normal3;
 import raytracer.math.Point3;
 import raytracer.math.Vector3;
+import raytracer.metrics.MetricCounters;
+import raytracer.metrics.RenderMetrics;
 
 /**
  * This immutable class implements the color of a transparent material.
@@ -31,6 +33,11 @@ public class TransparentMaterial extends Material{
 	
 	@Override
 	public Color colorFor(final Hit hit, final World world, final Tracer tracer) {
+		return tracer.shade(this, hit, world);
+	}
+	
+	@Override
+	public Color shade(final Hit hit, final World world, final Tracer tracer) {
 		/*
 		 * Formulas:
 		 * 		cos phi1 = <-d, n>
@@ -57,10 +64,11 @@ public class TransparentMaterial extends Material{
 		final double radikand = 1 - quotient * quotient * (1 - cosPhi1 * cosPhi1);
 		final Vector3 rd = d.add(n.mul(2 * cosPhi1)); // evtl. reflected on probieren TODO
 		if (radikand < 0) { // total inner reflection
-			return tracer.trace(new Ray(p, rd), world);
+			if (tracer.spawn(ray.continued(hit.t, p, rd), new Color(1, 1, 1))) {
+				RenderMetrics.counters().reflectionRay();
+			}
+			return new Color(0, 0, 0);
 		}
-		final double cosPhi2 = Math.sqrt(radikand);
-		final Vector3 rt = d.mul(quotient).sub(n.mul(cosPhi2 - quotient * cosPhi1));
 		final double r0 = Math.pow((eta1 - eta2) / (eta1 + eta2), 2);
 		final double r = r0 + (1 - r0) * Math.pow(1 - cosPhi1, 5);
 		final double t = 1 - r;
@@ -68,9 +76,23 @@ public class TransparentMaterial extends Material{
 			System.err.println(t);
 			return world.backgroundColor;
 		}
-		final Color cr = tracer.trace(new Ray(p, rd), world).mul(r);
-		final Color ct = tracer.trace(new Ray(p, rt), world).mul(t);
-		return cr.add(ct);
+		// the Fresnel weights are known before the rays are built, branches
+		// which do not contribute to the pixel, e.g. a reflection with r around 0.04
+		// deep inside a glass object, are skipped
+		final MetricCounters counters = RenderMetrics.counters();
+		final Color reflection = new Color(r, r, r);
+		if (tracer.contributes(reflection) && tracer.spawn(ray.continued(hit.t, p, rd), reflection)) {
+			counters.reflectionRay();
+		}
+		final Color transmission = new Color(t, t, t);
+		if (tracer.contributes(transmission)) {
+			final double cosPhi2 = Math.sqrt(radikand);
+			final Vector3 rt = d.mul(quotient).sub(n.mul(cosPhi2 - quotient * cosPhi1));
+			if (tracer.spawn(ray.continued(hit.t, p, rt), transmission)) {
+				counters.refractionRay();
+			}
+		}
+		return new Color(0, 0, 0);
 	}
 
 	@Override
@@ -156,6 +156,7 @@ public class Transform {
 	
 	/**
 	 * Transforms the specified <code>Ray</code> by multiplying its origin and direction with the inverse transformation matrix.
+	 * The cone of the ray is scaled as much as the direction.
 	 * 
 	 * @param ray	The <code>Ray</code> to be transformed. Must not be <code>null</code>.
 	 * @return		The transformed <code>Ray</code>.
@@ -164,7 +165,12 @@ public class Transform {
 		if (ray == null) {
 			throw new IllegalArgumentException("The parameter 'ray' must not be null.");
 		}
-		return new Ray(i.mul(ray.o), i.mul(ray.d));
+		final Vector3 d = i.mul(ray.d);
+		if (ray.width == 0 && ray.spread == 0) {
+			return new Ray(i.mul(ray.o), d);
+		}
+		final double scale = d.magnitude / ray.d.magnitude;
+		return new Ray(i.mul(ray.o), d, ray.width * scale, ray.spread * scale);
 	  }
 	
 	/**
@@ -0,0 +1,169 @@
+package raytracer.metrics;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import raytracer.image.ImageFiles;
+
+/**
+ * This class records the cost of each pixel of a rendering: the number of rays, the number of intersection tests and 
+ * the nanoseconds spent. The costs can be written as false color heat maps, which show the expensive parts of a 
+ * scene, e.g. transparent objects or deep chains of reflections.
+ * <p>
+ * The costs of a pixel are accumulated, so a pixel which is traced several times, e.g. in several passes of a 
+ * <code>ProgressiveRenderer</code>, shows its total cost. Different threads may record different pixels at the same 
+ * time.
+ * 
+ * @author Simon Lischka
+ *
+ */
+public class CostMap {
+	/**
+	 * The names of the recorded costs, used for the file names of the heat maps.
+	 */
+	public static final String[] COSTS = {"rays", "tests", "time"};
+	/**
+	 * The colors of the heat maps from cheap to expensive.
+	 */
+	private static final int[] PALETTE = {0x000000, 0x0000ff, 0x00ffff, 0x00ff00, 0xffff00, 0xff0000, 0xffffff};
+	/**
+	 * The percentile of the costs which is mapped to the cheapest color. Together with <code>HIGH_PERCENTILE</code> 
+	 * it keeps single outliers from flattening the rest of the heat map.
+	 */
+	private static final double LOW_PERCENTILE = 0.005;
+	/**
+	 * The percentile of the costs which is mapped to the most expensive color.
+	 */
+	private static final double HIGH_PERCENTILE = 0.995;
+	
+	/**
+	 * The width of the image.
+	 */
+	public final int width;
+	/**
+	 * The height of the image.
+	 */
+	public final int height;
+	/**
+	 * The costs of the pixels, indexed by the index of the cost in <code>COSTS</code> and the pixel.
+	 */
+	private final long[][] costs;
+	
+	/**
+	 * Constructs a new <code>CostMap</code> for an image of the specified size.
+	 * 
+	 * @param width		The width of the image.
+	 * @param height	The height of the image.
+	 */
+	public CostMap(final int width, final int height) {
+		if (width <= 0 || height <= 0) {
+			throw new IllegalArgumentException("The size must be positive.");
+		}
+		this.width = width;
+		this.height = height;
+		costs = new long[COSTS.length][width * height];
+	}
+	
+	/**
+	 * Returns a mark of the current costs of the calling thread, which is passed to <code>record</code> after the 
+	 * pixel has been traced.
+	 * 
+	 * @return	The mark.
+	 */
+	public static long[] mark() {
+		final MetricCounters counters = RenderMetrics.counters();
+		return new long[] {counters.getRays(), counters.getIntersectionTests(), System.nanoTime()};
+	}
+	
+	/**
+	 * Records the costs of the calling thread since the specified mark for the pixel with the specified coordinates. 
+	 * The coordinates start with the upper left pixel.
+	 * 
+	 * @param x		The x coordinate of the pixel.
+	 * @param y		The y coordinate of the pixel.
+	 * @param mark	The mark taken before the pixel has been traced. Must not be <code>null</code>.
+	 */
+	public void record(final int x, final int y, final long[] mark) {
+		final long[] now = mark();
+		final int i = y * width + x;
+		for (int c = 0; c < costs.length; c++) {
+			costs[c][i] += now[c] - mark[c];
+		}
+	}
+	
+	/**
+	 * Returns the recorded cost of the specified pixel.
+	 * 
+	 * @param cost	The index of the cost in <code>COSTS</code>.
+	 * @param x		The x coordinate of the pixel.
+	 * @param y		The y coordinate of the pixel.
+	 * @return		The cost.
+	 */
+	public long get(final int cost, final int x, final int y) {
+		return costs[cost][y * width + x];
+	}
+	
+	/**
+	 * Creates a false color heat map of the specified cost. The costs are scaled logarithmically from black for the 
+	 * cheapest pixels over blue, cyan, green, yellow and red to white for the most expensive pixels.
+	 * 
+	 * @param cost	The index of the cost in <code>COSTS</code>.
+	 * @return		The heat map.
+	 */
+	public BufferedImage toHeatmap(final int cost) {
+		final long[] values = costs[cost];
+		final long[] sorted = values.clone();
+		Arrays.sort(sorted);
+		final double min = Math.log1p(sorted[(int) ((sorted.length - 1) * LOW_PERCENTILE)]);
+		final double range = Math.log1p(sorted[(int) ((sorted.length - 1) * HIGH_PERCENTILE)]) - min;
+		final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				final double f = (range > 0) 
+						? Math.max(0, Math.min(1, (Math.log1p(values[y * width + x]) - min) / range)) : 0;
+				image.setRGB(x, y, color(f));
+			}
+		}
+		return image;
+	}
+	
+	/**
+	 * Writes the heat maps of all costs next to the specified image file. The heat maps are named after the file 
+	 * and the cost, e.g. <code>scene-rays.png</code> for <code>scene.exr</code>.
+	 * 
+	 * @param file			The image file. Must not be <code>null</code>.
+	 * @throws IOException	If a heat map can not be written.
+	 */
+	public void writeHeatmaps(final File file) throws IOException {
+		if (file == null) {
+			throw new IllegalArgumentException("The parameter 'file' must not be null.");
+		}
+		final String name = file.getName();
+		final int dot = name.lastIndexOf('.');
+		final String base = (dot > 0) ? name.substring(0, dot) : name;
+		for (int c = 0; c < COSTS.length; c++) {
+			ImageFiles.write(toHeatmap(c), new File(file.getParentFile(), base + "-" + COSTS[c] + ".png"));
+		}
+	}
+	
+	/**
+	 * Interpolates the color of the palette at the specified position.
+	 * 
+	 * @param f	The position between 0 and 1.
+	 * @return	The pixel value.
+	 */
+	private static int color(final double f) {
+		final double p = f * (PALETTE.length - 1);
+		final int i = Math.min((int) p, PALETTE.length - 2);
+		final double w = p - i;
+		int rgb = 0;
+		for (int shift = 16; shift >= 0; shift -= 8) {
+			final int a = (PALETTE[i] >> shift) & 0xff;
+			final int b = (PALETTE[i + 1] >> shift) & 0xff;
+			rgb |= ((int) Math.round(a + (b - a) * w)) << shift;
+		}
+		return rgb;
+	}
+}
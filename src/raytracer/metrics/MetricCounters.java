@@ -0,0 +1,201 @@
+package raytracer.metrics;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * This class holds the render counters of a single thread. Every render thread increments its own instance, which 
+ * it gets from <code>RenderMetrics.counters()</code>, so the counters need no synchronization. The instances of all 
+ * threads are summed up by <code>RenderMetrics.snapshot()</code>. The getters must only be called by the thread the 
+ * counters belong to.
+ * 
+ * @author Simon Lischka
+ *
+ */
+public final class MetricCounters {
+	/**
+	 * The number of primary rays, i.e. rays starting at the camera.
+	 */
+	long primaryRays;
+	/**
+	 * The number of shadow rays towards lights.
+	 */
+	long shadowRays;
+	/**
+	 * The number of reflected rays.
+	 */
+	long reflectionRays;
+	/**
+	 * The number of refracted rays.
+	 */
+	long refractionRays;
+	/**
+	 * The number of intersection tests, indexed by the geometry types of <code>RenderMetrics</code>.
+	 */
+	final long[] intersectionTests = new long[RenderMetrics.GEOMETRY_TYPES.length];
+	/**
+	 * The number of bounding volumes tested.
+	 */
+	long boundingVolumeTests;
+	/**
+	 * The number of lookups in image textures.
+	 */
+	long textureLookups;
+	/**
+	 * The number of rendered tiles.
+	 */
+	long tiles;
+	/**
+	 * The sum of the render times of all tiles in nanoseconds.
+	 */
+	long tileNanos;
+	/**
+	 * The longest render time of a single tile in nanoseconds.
+	 */
+	long maxTileNanos;
+	
+	/**
+	 * The thread which counts, weakly referenced so the counters do not keep a finished thread alive.
+	 */
+	private final WeakReference<Thread> owner;
+	
+	/**
+	 * Instances are created by <code>RenderMetrics</code> only.
+	 * 
+	 * @param owner	The thread which counts, <code>null</code> for the counters of the finished threads.
+	 */
+	MetricCounters(final Thread owner) {
+		this.owner = (owner != null) ? new WeakReference<Thread>(owner) : null;
+	}
+	
+	/**
+	 * @return	<code>true</code> if the thread of these counters has finished, so they do not change any more.
+	 */
+	boolean isRetired() {
+		if (owner == null) {
+			return false;
+		}
+		final Thread thread = owner.get();
+		return thread == null || !thread.isAlive();
+	}
+	
+	/**
+	 * Adds the specified counters to these counters.
+	 * 
+	 * @param c	The counters, which must not change any more.
+	 */
+	void add(final MetricCounters c) {
+		primaryRays += c.primaryRays;
+		shadowRays += c.shadowRays;
+		reflectionRays += c.reflectionRays;
+		refractionRays += c.refractionRays;
+		for (int i = 0; i < intersectionTests.length; i++) {
+			intersectionTests[i] += c.intersectionTests[i];
+		}
+		boundingVolumeTests += c.boundingVolumeTests;
+		textureLookups += c.textureLookups;
+		tiles += c.tiles;
+		tileNanos += c.tileNanos;
+		maxTileNanos = Math.max(maxTileNanos, c.maxTileNanos);
+	}
+	
+	/**
+	 * @return	The number of all rays counted by this thread.
+	 */
+	public long getRays() {
+		return primaryRays + shadowRays + reflectionRays + refractionRays;
+	}
+	
+	/**
+	 * @return	The number of all intersection tests counted by this thread.
+	 */
+	public long getIntersectionTests() {
+		long tests = 0;
+		for (long t : intersectionTests) {
+			tests += t;
+		}
+		return tests;
+	}
+	
+	/**
+	 * Counts a primary ray.
+	 */
+	public void primaryRay() {
+		primaryRays++;
+	}
+	
+	/**
+	 * Counts a shadow ray.
+	 */
+	public void shadowRay() {
+		shadowRays++;
+	}
+	
+	/**
+	 * Counts a reflected ray.
+	 */
+	public void reflectionRay() {
+		reflectionRays++;
+	}
+	
+	/**
+	 * Counts a refracted ray.
+	 */
+	public void refractionRay() {
+		refractionRays++;
+	}
+	
+	/**
+	 * Counts an intersection test with a geometry.
+	 * 
+	 * @param type	The geometry type, e.g. <code>RenderMetrics.SPHERE</code>.
+	 */
+	public void intersectionTest(final int type) {
+		intersectionTests[type]++;
+	}
+	
+	/**
+	 * Counts several intersection tests with a geometry, e.g. of a whole ray packet.
+	 * 
+	 * @param type	The geometry type, e.g. <code>RenderMetrics.TRIANGLE</code>.
+	 * @param count	The number of tests.
+	 */
+	public void intersectionTests(final int type, final int count) {
+		intersectionTests[type] += count;
+	}
+	
+	/**
+	 * Counts a test of a ray against a bounding volume.
+	 */
+	public void boundingVolumeTest() {
+		boundingVolumeTests++;
+	}
+	
+	/**
+	 * Counts several tests of rays against a bounding volume, e.g. of a whole ray packet.
+	 * 
+	 * @param count	The number of tests.
+	 */
+	public void boundingVolumeTests(final int count) {
+		boundingVolumeTests += count;
+	}
+	
+	/**
+	 * Counts a lookup in an image texture.
+	 */
+	public void textureLookup() {
+		textureLookups++;
+	}
+	
+	/**
+	 * Counts a rendered tile.
+	 * 
+	 * @param nanos	The render time of the tile in nanoseconds.
+	 */
+	public void tile(final long nanos) {
+		tiles++;
+		tileNanos += nanos;
+		if (nanos > maxTileNanos) {
+			maxTileNanos = nanos;
+		}
+	}
+}
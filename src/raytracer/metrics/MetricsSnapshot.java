@@ -0,0 +1,227 @@
+package raytracer.metrics;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This immutable class represents the render metrics at a point in time or, as difference of two snapshots, the 
+ * metrics of a time span such as a frame.
+ * 
+ * @author Simon Lischka
+ *
+ */
+public class MetricsSnapshot {
+	/**
+	 * A snapshot with all values 0.
+	 */
+	public static final MetricsSnapshot EMPTY = new MetricsSnapshot(0, 0, 0, 0, 
+			new long[RenderMetrics.GEOMETRY_TYPES.length], 0, 0, 0, 0, 0, 0);
+	
+	/**
+	 * The number of primary rays.
+	 */
+	public final long primaryRays;
+	/**
+	 * The number of shadow rays.
+	 */
+	public final long shadowRays;
+	/**
+	 * The number of reflected rays.
+	 */
+	public final long reflectionRays;
+	/**
+	 * The number of refracted rays.
+	 */
+	public final long refractionRays;
+	/**
+	 * The number of intersection tests, indexed by the geometry types of <code>RenderMetrics</code>.
+	 */
+	private final long[] intersectionTests;
+	/**
+	 * The number of bounding volumes tested.
+	 */
+	public final long boundingVolumeTests;
+	/**
+	 * The number of lookups in image textures.
+	 */
+	public final long textureLookups;
+	/**
+	 * The number of rendered tiles.
+	 */
+	public final long tiles;
+	/**
+	 * The sum of the render times of all tiles in nanoseconds.
+	 */
+	public final long tileNanos;
+	/**
+	 * The longest render time of a single tile in nanoseconds. For a time span it is the longest tile since the start 
+	 * of the program, if that tile ended within the time span, 0 otherwise.
+	 */
+	public final long maxTileNanos;
+	/**
+	 * The time of the snapshot in nanoseconds as returned by <code>System.nanoTime()</code>, or the length of the 
+	 * time span for the difference of two snapshots.
+	 */
+	public final long nanos;
+	
+	/**
+	 * Constructs a new <code>MetricsSnapshot</code> by summing up the specified counters.
+	 * 
+	 * @param counters	The counters of all threads.
+	 * @param nanos		The time of the snapshot in nanoseconds.
+	 */
+	MetricsSnapshot(final Collection<MetricCounters> counters, final long nanos) {
+		long primaryRays = 0;
+		long shadowRays = 0;
+		long reflectionRays = 0;
+		long refractionRays = 0;
+		final long[] intersectionTests = new long[RenderMetrics.GEOMETRY_TYPES.length];
+		long boundingVolumeTests = 0;
+		long textureLookups = 0;
+		long tiles = 0;
+		long tileNanos = 0;
+		long maxTileNanos = 0;
+		for (MetricCounters c : counters) {
+			primaryRays += c.primaryRays;
+			shadowRays += c.shadowRays;
+			reflectionRays += c.reflectionRays;
+			refractionRays += c.refractionRays;
+			for (int i = 0; i < intersectionTests.length; i++) {
+				intersectionTests[i] += c.intersectionTests[i];
+			}
+			boundingVolumeTests += c.boundingVolumeTests;
+			textureLookups += c.textureLookups;
+			tiles += c.tiles;
+			tileNanos += c.tileNanos;
+			maxTileNanos = Math.max(maxTileNanos, c.maxTileNanos);
+		}
+		this.primaryRays = primaryRays;
+		this.shadowRays = shadowRays;
+		this.reflectionRays = reflectionRays;
+		this.refractionRays = refractionRays;
+		this.intersectionTests = intersectionTests;
+		this.boundingVolumeTests = boundingVolumeTests;
+		this.textureLookups = textureLookups;
+		this.tiles = tiles;
+		this.tileNanos = tileNanos;
+		this.maxTileNanos = maxTileNanos;
+		this.nanos = nanos;
+	}
+	
+	/**
+	 * Constructs a new <code>MetricsSnapshot</code> with the specified values.
+	 */
+	private MetricsSnapshot(final long primaryRays, final long shadowRays, final long reflectionRays, 
+			final long refractionRays, final long[] intersectionTests, final long boundingVolumeTests, 
+			final long textureLookups, final long tiles, final long tileNanos, final long maxTileNanos, 
+			final long nanos) {
+		this.primaryRays = primaryRays;
+		this.shadowRays = shadowRays;
+		this.reflectionRays = reflectionRays;
+		this.refractionRays = refractionRays;
+		this.intersectionTests = intersectionTests;
+		this.boundingVolumeTests = boundingVolumeTests;
+		this.textureLookups = textureLookups;
+		this.tiles = tiles;
+		this.tileNanos = tileNanos;
+		this.maxTileNanos = maxTileNanos;
+		this.nanos = nanos;
+	}
+	
+	/**
+	 * Returns the metrics of the time span between the specified earlier snapshot and this snapshot.
+	 * 
+	 * @param start	The earlier snapshot. Must not be <code>null</code>.
+	 * @return		The metrics of the time span.
+	 */
+	public MetricsSnapshot sub(final MetricsSnapshot start) {
+		if (start == null) {
+			throw new IllegalArgumentException("The parameter 'start' must not be null.");
+		}
+		final long[] tests = new long[intersectionTests.length];
+		for (int i = 0; i < tests.length; i++) {
+			tests[i] = intersectionTests[i] - start.intersectionTests[i];
+		}
+		return new MetricsSnapshot(
+				primaryRays - start.primaryRays, 
+				shadowRays - start.shadowRays, 
+				reflectionRays - start.reflectionRays, 
+				refractionRays - start.refractionRays, 
+				tests, 
+				boundingVolumeTests - start.boundingVolumeTests, 
+				textureLookups - start.textureLookups, 
+				tiles - start.tiles, 
+				tileNanos - start.tileNanos, 
+				(maxTileNanos > start.maxTileNanos) ? maxTileNanos : 0, 
+				nanos - start.nanos);
+	}
+	
+	/**
+	 * @return	The number of all rays.
+	 */
+	public long getRays() {
+		return primaryRays + shadowRays + reflectionRays + refractionRays;
+	}
+	
+	/**
+	 * @return	The rays per second of the time span, 0 for an empty time span.
+	 */
+	public double getRaysPerSecond() {
+		return (nanos > 0) ? getRays() * 1e9 / nanos : 0;
+	}
+	
+	/**
+	 * Returns the number of intersection tests of the specified geometry type.
+	 * 
+	 * @param type	The geometry type, e.g. <code>RenderMetrics.SPHERE</code>.
+	 * @return		The number of intersection tests.
+	 */
+	public long getIntersectionTests(final int type) {
+		return intersectionTests[type];
+	}
+	
+	/**
+	 * @return	The number of intersection tests by the names of the geometry types.
+	 */
+	public Map<String, Long> getIntersectionTests() {
+		final Map<String, Long> tests = new LinkedHashMap<String, Long>();
+		for (int i = 0; i < intersectionTests.length; i++) {
+			tests.put(RenderMetrics.GEOMETRY_TYPES[i], intersectionTests[i]);
+		}
+		return tests;
+	}
+	
+	/**
+	 * @return	These metrics as JSON object.
+	 */
+	public String toJson() {
+		final StringBuilder json = new StringBuilder();
+		json.append("{\n");
+		json.append("  \"nanos\": ").append(nanos).append(",\n");
+		json.append("  \"rays\": {\"primary\": ").append(primaryRays)
+			.append(", \"shadow\": ").append(shadowRays)
+			.append(", \"reflection\": ").append(reflectionRays)
+			.append(", \"refraction\": ").append(refractionRays)
+			.append(", \"total\": ").append(getRays())
+			.append(", \"perSecond\": ").append(Math.round(getRaysPerSecond())).append("},\n");
+		json.append("  \"intersectionTests\": {");
+		for (int i = 0; i < intersectionTests.length; i++) {
+			json.append(i > 0 ? ", " : "").append('"').append(RenderMetrics.GEOMETRY_TYPES[i]).append("\": ")
+				.append(intersectionTests[i]);
+		}
+		json.append("},\n");
+		json.append("  \"boundingVolumeTests\": ").append(boundingVolumeTests).append(",\n");
+		json.append("  \"textureLookups\": ").append(textureLookups).append(",\n");
+		json.append("  \"tiles\": {\"count\": ").append(tiles)
+			.append(", \"totalNanos\": ").append(tileNanos)
+			.append(", \"maxNanos\": ").append(maxTileNanos).append("}\n");
+		json.append("}");
+		return json.toString();
+	}
+	
+	@Override
+	public String toString() {
+		return toJson();
+	}
+}
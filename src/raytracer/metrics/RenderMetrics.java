@@ -0,0 +1,159 @@
+package raytracer.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * This class collects the metrics of the render pipeline: rays by kind, intersection tests by geometry type, 
+ * bounding volume tests, texture lookups and tile times.
+ * <p>
+ * The counters are kept per thread, so counting costs a thread local lookup and an increment. They are summed up 
+ * at the end of each frame by the renderers, which report the frame with <code>frameFinished</code>. The totals and 
+ * the last frame are exposed over JMX as <code>raytracer:type=RenderMetrics</code> and can be written as JSON.
+ * 
+ * @author Simon Lischka
+ *
+ */
+public final class RenderMetrics {
+	/**
+	 * The geometry type of spheres.
+	 */
+	public static final int SPHERE = 0;
+	/**
+	 * The geometry type of planes.
+	 */
+	public static final int PLANE = 1;
+	/**
+	 * The geometry type of triangles.
+	 */
+	public static final int TRIANGLE = 2;
+	/**
+	 * The geometry type of axis aligned boxes.
+	 */
+	public static final int BOX = 3;
+	/**
+	 * The geometry type of triangle meshes.
+	 */
+	public static final int MESH = 4;
+	/**
+	 * The geometry type of nodes.
+	 */
+	public static final int NODE = 5;
+	/**
+	 * The names of the geometry types, indexed by the type.
+	 */
+	public static final String[] GEOMETRY_TYPES = {"sphere", "plane", "triangle", "box", "mesh", "node"};
+	/**
+	 * The name the metrics are registered with at the platform MBean server.
+	 */
+	public static final String OBJECT_NAME = "raytracer:type=RenderMetrics";
+	
+	/**
+	 * The counters of the threads which are still running, guarded by their own lock.
+	 */
+	private static final List<MetricCounters> ALL = new ArrayList<MetricCounters>();
+	/**
+	 * The sum of the counters of all finished threads, guarded by the lock of <code>ALL</code>. Render pools are 
+	 * created per frame, so the counters of their threads are folded in here instead of piling up.
+	 */
+	private static final MetricCounters RETIRED = new MetricCounters(null);
+	/**
+	 * The counters of the current thread.
+	 */
+	private static final ThreadLocal<MetricCounters> LOCAL = new ThreadLocal<MetricCounters>() {
+		@Override
+		protected MetricCounters initialValue() {
+			final MetricCounters counters = new MetricCounters(Thread.currentThread());
+			synchronized (ALL) {
+				retire();
+				ALL.add(counters);
+			}
+			return counters;
+		}
+	};
+	/**
+	 * The metrics of the last finished frame.
+	 */
+	private static volatile MetricsSnapshot lastFrame = MetricsSnapshot.EMPTY;
+	
+	static {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(new RenderMetricsBean(), 
+					new ObjectName(OBJECT_NAME));
+		} catch (JMException e) {
+			System.err.println("The render metrics could not be registered: " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * This class is not meant to be instantiated.
+	 */
+	private RenderMetrics() {
+	}
+	
+	/**
+	 * Returns the counters of the current thread.
+	 * 
+	 * @return	The counters of the current thread.
+	 */
+	public static MetricCounters counters() {
+		return LOCAL.get();
+	}
+	
+	/**
+	 * Sums up the counters of all threads. The counters of threads which are still rendering may be slightly 
+	 * outdated.
+	 * 
+	 * @return	The total metrics since the start of the program.
+	 */
+	public static MetricsSnapshot snapshot() {
+		synchronized (ALL) {
+			retire();
+			final List<MetricCounters> counters = new ArrayList<MetricCounters>(ALL);
+			counters.add(RETIRED);
+			return new MetricsSnapshot(counters, System.nanoTime());
+		}
+	}
+	
+	/**
+	 * Adds the counters of the finished threads to <code>RETIRED</code> and removes them. The caller must hold the 
+	 * lock of <code>ALL</code>.
+	 */
+	private static void retire() {
+		for (Iterator<MetricCounters> i = ALL.iterator(); i.hasNext();) {
+			final MetricCounters counters = i.next();
+			if (counters.isRetired()) {
+				RETIRED.add(counters);
+				i.remove();
+			}
+		}
+	}
+	
+	/**
+	 * Reports a finished frame. The metrics of the frame are the difference between the current totals and the 
+	 * specified totals taken at the start of the frame.
+	 * 
+	 * @param start	The totals taken at the start of the frame. Must not be <code>null</code>.
+	 * @return		The metrics of the frame.
+	 */
+	public static MetricsSnapshot frameFinished(final MetricsSnapshot start) {
+		if (start == null) {
+			throw new IllegalArgumentException("The parameter 'start' must not be null.");
+		}
+		final MetricsSnapshot frame = snapshot().sub(start);
+		lastFrame = frame;
+		return frame;
+	}
+	
+	/**
+	 * @return	The metrics of the last finished frame.
+	 */
+	public static MetricsSnapshot getLastFrame() {
+		return lastFrame;
+	}
+}
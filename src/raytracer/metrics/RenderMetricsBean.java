@@ -0,0 +1,61 @@
+package raytracer.metrics;
+
+import java.util.Map;
+
+/**
+ * This class implements the management interface of the render metrics.
+ * 
+ * @author Simon Lischka
+ *
+ */
+class RenderMetricsBean implements RenderMetricsMXBean {
+	@Override
+	public long getTotalRays() {
+		return RenderMetrics.snapshot().getRays();
+	}
+	
+	@Override
+	public long getTotalPrimaryRays() {
+		return RenderMetrics.snapshot().primaryRays;
+	}
+	
+	@Override
+	public long getTotalShadowRays() {
+		return RenderMetrics.snapshot().shadowRays;
+	}
+	
+	@Override
+	public long getTotalReflectionRays() {
+		return RenderMetrics.snapshot().reflectionRays;
+	}
+	
+	@Override
+	public long getTotalRefractionRays() {
+		return RenderMetrics.snapshot().refractionRays;
+	}
+	
+	@Override
+	public Map<String, Long> getTotalIntersectionTests() {
+		return RenderMetrics.snapshot().getIntersectionTests();
+	}
+	
+	@Override
+	public double getLastFrameMillis() {
+		return RenderMetrics.getLastFrame().nanos / 1e6;
+	}
+	
+	@Override
+	public double getLastFrameRaysPerSecond() {
+		return RenderMetrics.getLastFrame().getRaysPerSecond();
+	}
+	
+	@Override
+	public String getLastFrameJson() {
+		return RenderMetrics.getLastFrame().toJson();
+	}
+	
+	@Override
+	public String getTotalJson() {
+		return RenderMetrics.snapshot().toJson();
+	}
+}
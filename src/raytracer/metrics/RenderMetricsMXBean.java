@@ -0,0 +1,61 @@
+package raytracer.metrics;
+
+import java.util.Map;
+
+/**
+ * This interface describes the management interface of the render metrics.
+ * 
+ * @author Simon Lischka
+ *
+ */
+public interface RenderMetricsMXBean {
+	/**
+	 * @return	The number of all rays traced since the start of the program.
+	 */
+	public long getTotalRays();
+	
+	/**
+	 * @return	The number of primary rays traced since the start of the program.
+	 */
+	public long getTotalPrimaryRays();
+	
+	/**
+	 * @return	The number of shadow rays traced since the start of the program.
+	 */
+	public long getTotalShadowRays();
+	
+	/**
+	 * @return	The number of reflected rays traced since the start of the program.
+	 */
+	public long getTotalReflectionRays();
+	
+	/**
+	 * @return	The number of refracted rays traced since the start of the program.
+	 */
+	public long getTotalRefractionRays();
+	
+	/**
+	 * @return	The number of intersection tests by geometry type since the start of the program.
+	 */
+	public Map<String, Long> getTotalIntersectionTests();
+	
+	/**
+	 * @return	The wall time of the last frame in milliseconds.
+	 */
+	public double getLastFrameMillis();
+	
+	/**
+	 * @return	The rays per second of the last frame.
+	 */
+	public double getLastFrameRaysPerSecond();
+	
+	/**
+	 * @return	The metrics of the last frame as JSON.
+	 */
+	public String getLastFrameJson();
+	
+	/**
+	 * @return	The metrics since the start of the program as JSON.
+	 */
+	public String getTotalJson();
+}
@@ -1,10 +1,13 @@
 package raytracer.model;
 
 import java.awt.Dimension;
-import java.awt.image.BufferedImage;
 
+import raytracer.Color;
 import raytracer.World;
 import raytracer.camera.Camera;
+import raytracer.image.FrameBuffer;
+import raytracer.metrics.CostMap;
+import raytracer.sampling.Sampler;
 
 public class RenderTaskParameter {
 	public int yStartOffset;
@@ -12,17 +15,31 @@ public class RenderTaskParameter {
 	public Dimension screenSize;
 	public World world;
 	public Camera cam;
-	public BufferedImage image;
+	public FrameBuffer frame;
+	public int frameY;
 	public int recursion;
+	public Sampler sampler;
+	public CostMap costMap;
+	public Color[] topLine;
+	public Color[] bottomLine;
 
 	public RenderTaskParameter(int yStartOffset, int yEndOffset, Dimension screenSize,
-			World world, Camera cam, BufferedImage image, int recursion) {
+			World world, Camera cam, FrameBuffer frame, int recursion, Sampler sampler, CostMap costMap) {
 		this.yStartOffset = yStartOffset;
 		this.yEndOffset = yEndOffset;
 		this.screenSize = screenSize;
 		this.world = world;
 		this.cam = cam;
-		this.image = image;
+		this.frame = frame;
 		this.recursion = recursion;
+		this.sampler = sampler;
+		this.costMap = costMap;
+	}
+
+	public RenderTaskParameter(int yStartOffset, int yEndOffset, Dimension screenSize,
+			World world, Camera cam, FrameBuffer frame, int frameY, int recursion, Sampler sampler, 
+			CostMap costMap) {
+		this(yStartOffset, yEndOffset, screenSize, world, cam, frame, recursion, sampler, costMap);
+		this.frameY = frameY;
 	}
 }
\ No newline at end of file
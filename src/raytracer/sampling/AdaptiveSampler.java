@@ -0,0 +1,273 @@
+package raytracer.sampling;
+
+import raytracer.Color;
+import raytracer.Tracer;
+import raytracer.World;
+import raytracer.camera.Camera;
+
+/**
+ * This immutable class implements an adaptive supersampling <code>Sampler</code> for anti-aliasing. 
+ * <p>
+ * Each pixel is first sampled with a small number of rays. Only if those samples differ too much from each other 
+ * (contrast or variance of their luminance above a threshold) or if the pixel differs too much from its already 
+ * rendered neighbors, further samples are traced through the pixel. Thus only edges and other high frequency regions 
+ * pay for the additional rays, whereas flat regions are rendered with the initial samples only.
+ * <p>
+ * The positions of the samples are defined by a <code>SamplePattern</code>. The pattern is created once with the 
+ * maximum number of samples, so every pixel uses the same sample positions. The initial samples are the samples of 
+ * this pattern closest to a pattern of the initial count, the refinement samples are the remaining ones, so the 
+ * refinement fills the gaps between the initial samples instead of tracing their positions again.
+ * 
+ * @author Simon Lischka
+ *
+ */
+public class AdaptiveSampler implements Sampler {
+	/**
+	 * The default number of initial samples per pixel.
+	 */
+	public static final int DEFAULT_INITIAL_SAMPLES = 4;
+	/**
+	 * The default maximum number of samples per pixel.
+	 */
+	public static final int DEFAULT_MAX_SAMPLES = 20;
+	/**
+	 * The default contrast threshold.
+	 */
+	public static final double DEFAULT_CONTRAST_THRESHOLD = 0.2;
+	/**
+	 * The default variance threshold.
+	 */
+	public static final double DEFAULT_VARIANCE_THRESHOLD = 0.0025;
+	
+	/**
+	 * The pattern the sample positions are created with.
+	 */
+	private final SamplePattern pattern;
+	/**
+	 * The positions of the samples that are traced for every pixel.
+	 */
+	private final double[] initialSamples;
+	/**
+	 * The positions of the samples that are traced additionally for pixels that need refinement.
+	 */
+	private final double[] refinementSamples;
+	/**
+	 * The luminance contrast above which a pixel is refined.
+	 */
+	private final double contrastThreshold;
+	/**
+	 * The luminance variance above which a pixel is refined.
+	 */
+	private final double varianceThreshold;
+	
+	/**
+	 * Constructs a new <code>AdaptiveSampler</code> with the specified parameters.
+	 * 
+	 * @param pattern			The pattern of the sample positions. Must not be <code>null</code>.
+	 * @param initialCount		The number of samples traced for every pixel. Must be greater than 0.
+	 * @param maxCount			The maximum number of samples per pixel. Must not be smaller than 
+	 * 							<code>initialCount</code>.
+	 * @param contrastThreshold	The luminance contrast (max - min) / (max + min) above which a pixel is refined. 
+	 * 							Must not be negative.
+	 * @param varianceThreshold	The variance of the luminance above which a pixel is refined. Must not be negative.
+	 */
+	public AdaptiveSampler(final SamplePattern pattern, final int initialCount, final int maxCount, 
+			final double contrastThreshold, final double varianceThreshold) {
+		if (pattern == null) {
+			throw new IllegalArgumentException("The parameter 'pattern' must not be null.");
+		}
+		if (initialCount < 1 || maxCount < initialCount) {
+			throw new IllegalArgumentException("The sample counts must be greater than 0 and 'maxCount' must not be smaller than 'initialCount'.");
+		}
+		if (contrastThreshold < 0 || varianceThreshold < 0) {
+			throw new IllegalArgumentException("The thresholds must not be negative.");
+		}
+		this.pattern = pattern;
+		// patterns of grids may return more samples than requested, the largest pattern within the maximum is used
+		double[] samples = pattern.createSamples(maxCount);
+		for (int count = maxCount - 1; count >= initialCount && samples.length / 2 > maxCount; count--) {
+			samples = pattern.createSamples(count);
+		}
+		final double[] initial = pattern.createSamples(initialCount);
+		final int initialLength = Math.min(initial.length, samples.length) / 2;
+		final boolean[] taken = new boolean[samples.length / 2];
+		initialSamples = new double[initialLength * 2];
+		for (int i = 0; i < initialLength; i++) {
+			final int closest = closest(samples, taken, initial[i * 2], initial[i * 2 + 1]);
+			taken[closest] = true;
+			initialSamples[i * 2] = samples[closest * 2];
+			initialSamples[i * 2 + 1] = samples[closest * 2 + 1];
+		}
+		refinementSamples = new double[samples.length - initialSamples.length];
+		int r = 0;
+		for (int i = 0; i < taken.length; i++) {
+			if (!taken[i]) {
+				refinementSamples[r++] = samples[i * 2];
+				refinementSamples[r++] = samples[i * 2 + 1];
+			}
+		}
+		this.contrastThreshold = contrastThreshold;
+		this.varianceThreshold = varianceThreshold;
+	}
+	
+	/**
+	 * Constructs a new <code>AdaptiveSampler</code> with the specified pattern and the default sample counts and 
+	 * thresholds.
+	 * 
+	 * @param pattern	The pattern of the sample positions. Must not be <code>null</code>.
+	 */
+	public AdaptiveSampler(final SamplePattern pattern) {
+		this(pattern, DEFAULT_INITIAL_SAMPLES, DEFAULT_MAX_SAMPLES, DEFAULT_CONTRAST_THRESHOLD, 
+				DEFAULT_VARIANCE_THRESHOLD);
+	}
+	
+	/**
+	 * Returns the sample that is closest to a position and not yet taken.
+	 * 
+	 * @param samples	The samples as x, y pairs.
+	 * @param taken		Whether the samples are taken.
+	 * @param x			The x coordinate of the position.
+	 * @param y			The y coordinate of the position.
+	 * @return			The index of the sample.
+	 */
+	private static int closest(final double[] samples, final boolean[] taken, final double x, final double y) {
+		int closest = -1;
+		double min = Double.POSITIVE_INFINITY;
+		for (int i = 0; i < taken.length; i++) {
+			final double dx = samples[i * 2] - x;
+			final double dy = samples[i * 2 + 1] - y;
+			if (!taken[i] && dx * dx + dy * dy < min) {
+				min = dx * dx + dy * dy;
+				closest = i;
+			}
+		}
+		return closest;
+	}
+	
+	/**
+	 * @return	The positions of the samples traced for every pixel as x, y pairs.
+	 */
+	public double[] getInitialSamples() {
+		return initialSamples.clone();
+	}
+	
+	/**
+	 * @return	The positions of the samples traced additionally for pixels that need refinement as x, y pairs.
+	 */
+	public double[] getRefinementSamples() {
+		return refinementSamples.clone();
+	}
+	
+	@Override
+	public Color colorFor(final Camera cam, final World world, final Tracer tracer, final int width, final int height, 
+			final int x, final int y, final Color left, final Color top) {
+		final Accumulator acc = new Accumulator();
+		acc.trace(initialSamples, cam, world, tracer, width, height, x, y);
+		
+		boolean refine = acc.contrast() > contrastThreshold || acc.variance() > varianceThreshold;
+		if (!refine) {
+			final double l = acc.meanLuminance();
+			refine = (left != null && contrast(l, luminance(left)) > contrastThreshold) 
+					|| (top != null && contrast(l, luminance(top)) > contrastThreshold);
+		}
+		if (refine) {
+			acc.trace(refinementSamples, cam, world, tracer, width, height, x, y);
+		}
+		return acc.mean();
+	}
+	
+	/**
+	 * Calculates the luminance of the specified color.
+	 * 
+	 * @param c	The color.
+	 * @return	The luminance.
+	 */
+	private static double luminance(final Color c) {
+		return luminance(c.r, c.g, c.b);
+	}
+	
+	/**
+	 * Calculates the luminance of the specified color components.
+	 * 
+	 * @param r	The red component.
+	 * @param g	The green component.
+	 * @param b	The blue component.
+	 * @return	The luminance.
+	 */
+	private static double luminance(final double r, final double g, final double b) {
+		return r * 0.299 + g * 0.587 + b * 0.114;
+	}
+	
+	/**
+	 * Calculates the contrast (max - min) / (max + min) between the two specified luminance values.
+	 * 
+	 * @param a	The first luminance value.
+	 * @param b	The second luminance value.
+	 * @return	The contrast in the range [0, 1].
+	 */
+	private static double contrast(final double a, final double b) {
+		final double max = Math.max(a, b);
+		final double min = Math.min(a, b);
+		return (max + min == 0) ? 0 : (max - min) / (max + min);
+	}
+	
+	/**
+	 * This class sums up the samples of a single pixel.
+	 */
+	private static class Accumulator {
+		private double r;
+		private double g;
+		private double b;
+		private double luminanceSum;
+		private double luminanceSquareSum;
+		private double minLuminance = Double.POSITIVE_INFINITY;
+		private double maxLuminance = Double.NEGATIVE_INFINITY;
+		private int count;
+		
+		/**
+		 * Traces one ray for every sample position and adds the resulting colors.
+		 */
+		void trace(final double[] samples, final Camera cam, final World world, final Tracer tracer, final int width, 
+				final int height, final int x, final int y) {
+			for (int i = 0; i < samples.length; i += 2) {
+				final Color c = tracer.trace(
+						cam.rayFor(width, height, x + samples[i] - 0.5, y + samples[i + 1] - 0.5), world);
+				final double l = luminance(c.r, c.g, c.b);
+				r += c.r;
+				g += c.g;
+				b += c.b;
+				luminanceSum += l;
+				luminanceSquareSum += l * l;
+				minLuminance = Math.min(minLuminance, l);
+				maxLuminance = Math.max(maxLuminance, l);
+				count++;
+			}
+		}
+		
+		double meanLuminance() {
+			return luminanceSum / count;
+		}
+		
+		double variance() {
+			final double mean = meanLuminance();
+			return Math.max(0, luminanceSquareSum / count - mean * mean);
+		}
+		
+		double contrast() {
+			return AdaptiveSampler.contrast(minLuminance, maxLuminance);
+		}
+		
+		Color mean() {
+			return new Color(r / count, g / count, b / count);
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[pattern = " + pattern + ",\n"
+										  + "\tinitialSamples = " + initialSamples.length / 2 + ",\n"
+										  + "\trefinementSamples = " + refinementSamples.length / 2 + ",\n"
+										  + "\tcontrastThreshold = " + contrastThreshold + ",\n"
+										  + "\tvarianceThreshold = " + varianceThreshold + "]";
+	}
+}
@@ -0,0 +1,55 @@
+package raytracer.sampling;
+
+/**
+ * This immutable class represents a sample pattern built from the two-dimensional Halton sequence with the bases 2 
+ * and 3. The Halton sequence is a low discrepancy sequence, i.e. any number of samples is distributed evenly over the 
+ * pixel without forming a regular grid.
+ * 
+ * @author Simon Lischka
+ *
+ */
+public class HaltonPattern implements SamplePattern {
+	/**
+	 * The number of leading elements of the sequence that are skipped. The first elements of the sequence are 
+	 * correlated in both dimensions.
+	 */
+	private static final int SKIP = 20;
+	
+	@Override
+	public double[] createSamples(final int count) {
+		if (count < 1) {
+			throw new IllegalArgumentException("The parameter 'count' must be greater than 0.");
+		}
+		final double[] samples = new double[2 * count];
+		for (int i = 0; i < count; i++) {
+			samples[2 * i] = radicalInverse(i + SKIP, 2);
+			samples[2 * i + 1] = radicalInverse(i + SKIP, 3);
+		}
+		return samples;
+	}
+	
+	/**
+	 * Calculates the radical inverse of the specified index, i.e. the digits of the index in the specified base are 
+	 * mirrored at the decimal point.
+	 * 
+	 * @param index	The index of the element of the sequence.
+	 * @param base	The base of the sequence.
+	 * @return		The radical inverse in the range [0, 1).
+	 */
+	public static double radicalInverse(final int index, final int base) {
+		double result = 0;
+		double fraction = 1.0 / base;
+		int i = index;
+		while (i > 0) {
+			result += (i % base) * fraction;
+			i /= base;
+			fraction /= base;
+		}
+		return result;
+	}
+	
+	@Override
+	public String toString() {
+		return getClass().getSimpleName();
+	}
+}
@@ -0,0 +1,76 @@
+package raytracer.sampling;
+
+import raytracer.Color;
+import raytracer.Tracer;
+import raytracer.World;
+import raytracer.camera.Camera;
+import raytracer.geometry.RayPacket;
+
+/**
+ * This immutable class implements a <code>Sampler</code> which, like the <code>SingleSampler</code>, traces one ray
+ * through the center of each pixel. Renderers which know this sampler trace the primary rays of neighboring pixels
+ * of a line in packets with <code>colorsFor</code>, so geometries like triangle meshes can intersect the coherent
+ * rays together. Single pixels are traced like by the <code>SingleSampler</code>, so both samplers produce the same
+ * image.
+ *
+ * @author Simon Lischka
+ *
+ */
+public class PacketSampler extends SingleSampler {
+	/**
+	 * The number of rays in a packet.
+	 */
+	private final int width;
+
+	/**
+	 * Constructs a new <code>PacketSampler</code> with the specified number of rays in a packet.
+	 *
+	 * @param width	The number of rays in a packet. Must be positive.
+	 */
+	public PacketSampler(final int width) {
+		if (width < 1) {
+			throw new IllegalArgumentException("The parameter 'width' must be positive.");
+		}
+		this.width = width;
+	}
+
+	/**
+	 * Constructs a new <code>PacketSampler</code> with <code>RayPacket.DEFAULT_WIDTH</code> rays in a packet.
+	 */
+	public PacketSampler() {
+		this(RayPacket.DEFAULT_WIDTH);
+	}
+
+	/**
+	 * Computes the colors of a run of pixels of a line, tracing their rays in packets.
+	 *
+	 * @param cam		The camera that generates the rays. Must not be <code>null</code>.
+	 * @param world		The world the rays are traced in. Must not be <code>null</code>.
+	 * @param tracer	The tracer used for the rays. Must not be <code>null</code>.
+	 * @param screenWidth	The screen width in pixels.
+	 * @param screenHeight	The screen height in pixels.
+	 * @param x			The x coordinate of the first pixel in camera space.
+	 * @param y			The y coordinate of the line in camera space.
+	 * @param count		The number of pixels.
+	 * @param line		The colors of the line. The color of pixel x + i is stored at index x + i.
+	 */
+	public void colorsFor(final Camera cam, final World world, final Tracer tracer, final int screenWidth,
+			final int screenHeight, final int x, final int y, final int count, final Color[] line) {
+		final RayPacket packet = new RayPacket(width);
+		final Color[] colors = new Color[width];
+		for (int start = x; start < x + count; start += width) {
+			final int n = Math.min(width, x + count - start);
+			packet.clear();
+			for (int i = 0; i < n; i++) {
+				packet.add(cam.rayFor(screenWidth, screenHeight, start + i, y));
+			}
+			tracer.trace(packet, world, colors);
+			System.arraycopy(colors, 0, line, start, n);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[width = " + width + "]";
+	}
+}
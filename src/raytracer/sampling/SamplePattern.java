@@ -0,0 +1,23 @@
+package raytracer.sampling;
+
+/**
+ * This interface represents a pattern of sample positions inside a single pixel. The positions are used by a 
+ * <code>Sampler</code> to shoot more than one ray through a pixel.
+ * 
+ * @author Simon Lischka
+ *
+ */
+public interface SamplePattern {
+	
+	/**
+	 * Creates the sample positions of this pattern. The positions are stored in pairs, i.e. the x coordinate of the 
+	 * n-th sample is stored at index 2n and its y coordinate at index 2n + 1. All coordinates are in the range [0, 1).
+	 * <p>
+	 * Patterns which can only be built for specific sample counts (e.g. square grids) return the closest count they 
+	 * support, so the length of the returned array must be checked by the caller.
+	 * 
+	 * @param count	The requested number of samples. Must be greater than 0.
+	 * @return		The sample positions as x, y pairs.
+	 */
+	public double[] createSamples(final int count);
+}
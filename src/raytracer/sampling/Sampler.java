@@ -0,0 +1,34 @@
+package raytracer.sampling;
+
+import raytracer.Color;
+import raytracer.Tracer;
+import raytracer.World;
+import raytracer.camera.Camera;
+
+/**
+ * This interface represents the strategy with which the color of a single pixel is computed. Implementations decide 
+ * how many rays are traced through a pixel and where those rays are placed inside the pixel.
+ * 
+ * @author Simon Lischka
+ *
+ */
+public interface Sampler {
+	
+	/**
+	 * Computes the color of the specified pixel. The colors of the already rendered neighbors of the pixel can be 
+	 * used by an implementation to detect edges. They are <code>null</code> if the neighbor has not been rendered.
+	 * 
+	 * @param cam		The camera that generates the rays. Must not be <code>null</code>.
+	 * @param world		The world the rays are traced in. Must not be <code>null</code>.
+	 * @param tracer	The tracer used for the rays. Must not be <code>null</code>.
+	 * @param width		The screen width in pixels.
+	 * @param height	The screen height in pixels.
+	 * @param x			The x coordinate of the pixel in camera space.
+	 * @param y			The y coordinate of the pixel in camera space.
+	 * @param left		The color of the left neighbor or <code>null</code>.
+	 * @param top		The color of the upper neighbor or <code>null</code>.
+	 * @return			The color of the pixel.
+	 */
+	public Color colorFor(final Camera cam, final World world, final Tracer tracer, final int width, final int height, 
+			final int x, final int y, final Color left, final Color top);
+}
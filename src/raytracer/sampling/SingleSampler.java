@@ -0,0 +1,27 @@
+package raytracer.sampling;
+
+import raytracer.Color;
+import raytracer.Tracer;
+import raytracer.World;
+import raytracer.camera.Camera;
+
+/**
+ * This immutable class implements a <code>Sampler</code> which traces exactly one ray through the center of each 
+ * pixel. It does not perform any anti-aliasing and is the default sampler of the <code>Renderer</code>.
+ * 
+ * @author Simon Lischka
+ *
+ */
+public class SingleSampler implements Sampler {
+
+	@Override
+	public Color colorFor(final Camera cam, final World world, final Tracer tracer, final int width, final int height, 
+			final int x, final int y, final Color left, final Color top) {
+		return tracer.trace(cam.rayFor(width, height, x, y), world);
+	}
+	
+	@Override
+	public String toString() {
+		return getClass().getSimpleName();
+	}
+}
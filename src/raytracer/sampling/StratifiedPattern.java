@@ -0,0 +1,59 @@
+package raytracer.sampling;
+
+import java.util.Random;
+
+/**
+ * This immutable class represents a stratified (jittered) sample pattern. The pixel is divided into n x n cells of 
+ * equal size and one sample is placed at a random position inside each cell. The requested sample count is rounded 
+ * up to the next square number.
+ * <p>
+ * The random generator is seeded with a fixed value, so the same pattern is created for every render.
+ * 
+ * @author Simon Lischka
+ *
+ */
+public class StratifiedPattern implements SamplePattern {
+	/**
+	 * The seed for the jitter of the samples.
+	 */
+	private final long seed;
+	
+	/**
+	 * Constructs a new <code>StratifiedPattern</code> with the specified seed for the jitter of the samples.
+	 * 
+	 * @param seed	The seed for the jitter.
+	 */
+	public StratifiedPattern(final long seed) {
+		this.seed = seed;
+	}
+	
+	/**
+	 * Constructs a new <code>StratifiedPattern</code> with a default seed.
+	 */
+	public StratifiedPattern() {
+		this(0);
+	}
+	
+	@Override
+	public double[] createSamples(final int count) {
+		if (count < 1) {
+			throw new IllegalArgumentException("The parameter 'count' must be greater than 0.");
+		}
+		final int n = (int) Math.ceil(Math.sqrt(count));
+		final Random random = new Random(seed);
+		final double[] samples = new double[2 * n * n];
+		int i = 0;
+		for (int y = 0; y < n; y++) {
+			for (int x = 0; x < n; x++) {
+				samples[i++] = (x + random.nextDouble()) / n;
+				samples[i++] = (y + random.nextDouble()) / n;
+			}
+		}
+		return samples;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[seed = " + seed + "]";
+	}
+}
@@ -12,13 +12,17 @@ import junit.framework.TestSuite;
 public class AllTests {
 	
 	/**
-	 * Creates a new test suite with the <code>MathTests</code> class.
+	 * Creates a new test suite with all test classes of the raytracer.
 	 * 
 	 * @return A <code>Test</code> suite.
 	 */
 	public static Test suite() {
 		final TestSuite suite = new TestSuite();
 		suite.addTestSuite(MathTests.class);
+		suite.addTestSuite(SamplingTests.class);
+		suite.addTestSuite(GeometryTests.class);
+		suite.addTestSuite(ImageTests.class);
+		suite.addTestSuite(RendererTests.class);
 		return suite;
 	}
 	
@@ -0,0 +1,294 @@
+package raytracer.tests;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import raytracer.Color;
+import raytracer.Constants;
+import raytracer.Ray;
+import raytracer.World;
+import raytracer.geometry.BoundingVolumeHierarchy;
+import raytracer.geometry.Hit;
+import raytracer.geometry.Node;
+import raytracer.geometry.Plane;
+import raytracer.geometry.RayPacket;
+import raytracer.geometry.Sphere;
+import raytracer.material.LambertMaterial;
+import raytracer.material.Material;
+import raytracer.math.Point3;
+import raytracer.math.Transform;
+import raytracer.math.Vector3;
+import raytracer.texture.SingleColorTexture;
+
+/**
+ * JUnit Test class for the bounding volume hierarchies and the world built on them.
+ *
+ * @author Sebastian Dass&eacute;
+ */
+public class GeometryTests extends TestCase {
+	/**
+	 * The number of spheres of the hierarchies, enough for the parallel build.
+	 */
+	private static final int SPHERES = BoundingVolumeHierarchy.PARALLEL_THRESHOLD + 1000;
+	/**
+	 * The number of rays traced through each hierarchy.
+	 */
+	private static final int RAYS = 1000;
+
+	/**
+	 * The centers and radii of the spheres, four values per sphere.
+	 */
+	private double[] spheres;
+	/**
+	 * The generator of the random scenes and rays, with a fixed seed so failures can be reproduced.
+	 */
+	private Random random;
+
+	@Override
+	protected void setUp() {
+		random = new Random(42);
+		spheres = new double[SPHERES * 4];
+		for (int i = 0; i < SPHERES; i++) {
+			spheres[i * 4] = random.nextDouble() * 100 - 50;
+			spheres[i * 4 + 1] = random.nextDouble() * 100 - 50;
+			spheres[i * 4 + 2] = random.nextDouble() * 100 - 50;
+			spheres[i * 4 + 3] = 0.1 + random.nextDouble() * 2;
+		}
+	}
+
+	/**
+	 * Tests that the hierarchies of both build methods find the same closest hits as intersecting all spheres.
+	 */
+	public void testHierarchyFindsClosestHits() {
+		for (int method : new int[] {BoundingVolumeHierarchy.SAH, BoundingVolumeHierarchy.LBVH}) {
+			final BoundingVolumeHierarchy hierarchy = new BoundingVolumeHierarchy(boxes(), method);
+			Assert.assertEquals(SPHERES, hierarchy.size());
+			Assert.assertTrue(hierarchy.cost() > 1);
+			for (int i = 0; i < RAYS; i++) {
+				final double[] ray = randomRay();
+				Assert.assertEquals("Method " + method + ", ray " + i, closestHit(ray), traverse(hierarchy, ray), 0);
+			}
+		}
+	}
+
+	/**
+	 * Tests that a packet traversal finds the same closest hits as the traversal of the single rays, with coherent
+	 * and incoherent rays and more rays than fit into one mask.
+	 */
+	public void testPacketTraversal() {
+		for (int method : new int[] {BoundingVolumeHierarchy.SAH, BoundingVolumeHierarchy.LBVH}) {
+			final BoundingVolumeHierarchy hierarchy = new BoundingVolumeHierarchy(boxes(), method);
+			for (int p = 0; p < 20; p++) {
+				final int size = BoundingVolumeHierarchy.PACKET_WIDTH * 2 + 7;
+				final RayPacket packet = new RayPacket(size);
+				final double[][] rays = new double[size][];
+				final double[] origin = randomRay();
+				for (int i = 0; i < size; i++) {
+					// odd packets are incoherent, even packets share their origin and have similar directions
+					rays[i] = (p % 2 == 1) ? randomRay() : new double[] {origin[0], origin[1], origin[2],
+							origin[3] + random.nextDouble() * 0.2, origin[4] + random.nextDouble() * 0.2,
+							origin[5] + random.nextDouble() * 0.2};
+					packet.add(new Ray(new Point3(rays[i][0], rays[i][1], rays[i][2]),
+							new Vector3(rays[i][3], rays[i][4], rays[i][5])));
+				}
+				final double[] tMax = new double[size];
+				Arrays.fill(tMax, Double.POSITIVE_INFINITY);
+				hierarchy.traverse(packet, Constants.EPSILON, tMax, new BoundingVolumeHierarchy.PacketIntersector() {
+					@Override
+					public void intersect(final int primitive, final int first, final long mask,
+							final double[] tMax) {
+						for (long m = mask; m != 0; m &= m - 1) {
+							final int r = first + Long.numberOfTrailingZeros(m);
+							tMax[r] = GeometryTests.this.intersect(primitive, rays[r], tMax[r]);
+						}
+					}
+				});
+				for (int i = 0; i < size; i++) {
+					Assert.assertEquals("Packet " + p + ", ray " + i, traverse(hierarchy, rays[i]), tMax[i], 0);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Tests that a refitted hierarchy finds the same closest hits as a new hierarchy over the moved spheres and that
+	 * the original hierarchy still finds the hits of the spheres before they moved.
+	 */
+	public void testRefit() {
+		final BoundingVolumeHierarchy hierarchy = new BoundingVolumeHierarchy(boxes());
+		final double[] before = spheres.clone();
+		final int[] changed = new int[SPHERES / 10];
+		for (int i = 0; i < changed.length; i++) {
+			changed[i] = i * 10 + 3;
+			spheres[changed[i] * 4] += random.nextDouble() * 10 - 5;
+			spheres[changed[i] * 4 + 1] += random.nextDouble() * 10 - 5;
+			spheres[changed[i] * 4 + 3] *= 1.5;
+		}
+		final BoundingVolumeHierarchy refitted = hierarchy.refit(boxes(), changed);
+		final BoundingVolumeHierarchy built = new BoundingVolumeHierarchy(boxes());
+		Assert.assertTrue(refitted.cost() > 1);
+		final double[][] rays = new double[RAYS][];
+		for (int i = 0; i < RAYS; i++) {
+			rays[i] = randomRay();
+			final double expected = traverse(built, rays[i]);
+			Assert.assertEquals("Ray " + i, closestHit(rays[i]), expected, 0);
+			Assert.assertEquals("Ray " + i, expected, traverse(refitted, rays[i]), 0);
+		}
+		spheres = before;
+		for (int i = 0; i < RAYS; i++) {
+			Assert.assertEquals("Ray " + i, closestHit(rays[i]), traverse(hierarchy, rays[i]), 0);
+		}
+	}
+
+	/**
+	 * Tests that a world whose nodes are moved with <code>setTransform</code> finds the same hits as a new world
+	 * with the nodes at their new positions, once for small moves, which refit the hierarchy, and once for large
+	 * moves, which build it again. The hits of packets are compared with the hits of single rays.
+	 */
+	public void testWorldUpdate() {
+		final Material material = new LambertMaterial(new SingleColorTexture(new Color(1, 1, 1)));
+		final int count = 500;
+		final Node[] nodes = new Node[count];
+		final World world = new World(new Color(0, 0, 0), new Color(0, 0, 0), Constants.INDEX_OF_REFRACTION_VACUUM);
+		world.addElements(new Node(new Plane(material), new Transform().translate(0, -60, 0)));
+		for (int i = 0; i < count; i++) {
+			nodes[i] = new Node(new Sphere(material), transformOf(i));
+			world.addElements(nodes[i]);
+		}
+		assertSameHits(world, material, count);
+		for (double distance : new double[] {0.5, 40}) {
+			for (int i = 0; i < count; i += 7) {
+				spheres[i * 4] += random.nextDouble() * distance;
+				spheres[i * 4 + 2] -= random.nextDouble() * distance;
+				nodes[i].setTransform(transformOf(i));
+			}
+			assertSameHits(world, material, count);
+		}
+	}
+
+	/**
+	 * Asserts that the world finds the same hits as a new world built from the spheres, both for single rays and
+	 * for packets.
+	 */
+	private void assertSameHits(final World world, final Material material, final int count) {
+		final World expected = new World(new Color(0, 0, 0), new Color(0, 0, 0),
+				Constants.INDEX_OF_REFRACTION_VACUUM);
+		expected.addElements(new Node(new Plane(material), new Transform().translate(0, -60, 0)));
+		for (int i = 0; i < count; i++) {
+			expected.addElements(new Node(new Sphere(material), transformOf(i)));
+		}
+		final RayPacket packet = new RayPacket(BoundingVolumeHierarchy.PACKET_WIDTH + 5);
+		final Hit[] hits = new Hit[packet.capacity()];
+		for (int i = 0; i < RAYS; i++) {
+			final double[] r = randomRay();
+			final Ray ray = new Ray(new Point3(r[0], r[1], r[2]), new Vector3(r[3], r[4], r[5]));
+			final Hit hit = world.hit(ray);
+			final Hit expectedHit = expected.hit(ray);
+			Assert.assertEquals("Ray " + i, expectedHit == null, hit == null);
+			if (hit != null) {
+				Assert.assertEquals("Ray " + i, expectedHit.t, hit.t, 0);
+			}
+			hits[packet.size()] = hit;
+			packet.add(ray);
+			if (packet.size() == packet.capacity() || i == RAYS - 1) {
+				world.hit(packet);
+				for (int j = 0; j < packet.size(); j++) {
+					Assert.assertEquals("Ray " + j + " of a packet", hits[j] == null, packet.getHit(j) == null);
+					if (hits[j] != null) {
+						Assert.assertEquals("Ray " + j + " of a packet", hits[j].t, packet.getHit(j).t, 0);
+						Assert.assertTrue("Ray " + j + " of a packet", hits[j].geo == packet.getHit(j).geo);
+					}
+				}
+				packet.clear();
+			}
+		}
+	}
+
+	/**
+	 * Returns the transformation of a unit sphere to the specified sphere.
+	 */
+	private Transform transformOf(final int i) {
+		final double radius = spheres[i * 4 + 3];
+		return new Transform().translate(spheres[i * 4], spheres[i * 4 + 1], spheres[i * 4 + 2])
+				.scale(radius, radius, radius);
+	}
+
+	/**
+	 * Returns the bounds of the spheres, in the layout of the hierarchies.
+	 */
+	private double[] boxes() {
+		final double[] boxes = new double[SPHERES * 6];
+		for (int i = 0; i < SPHERES; i++) {
+			for (int k = 0; k < 3; k++) {
+				boxes[i * 6 + k] = spheres[i * 4 + k] - spheres[i * 4 + 3];
+				boxes[i * 6 + 3 + k] = spheres[i * 4 + k] + spheres[i * 4 + 3];
+			}
+		}
+		return boxes;
+	}
+
+	/**
+	 * Returns a random ray, its origin inside of the spheres' cube and its direction normalized, as the origin and
+	 * the direction.
+	 */
+	private double[] randomRay() {
+		final double dx = random.nextGaussian();
+		final double dy = random.nextGaussian();
+		final double dz = random.nextGaussian();
+		final double length = Math.sqrt(dx * dx + dy * dy + dz * dz);
+		return new double[] {random.nextDouble() * 120 - 60, random.nextDouble() * 120 - 60,
+				random.nextDouble() * 120 - 60, dx / length, dy / length, dz / length};
+	}
+
+	/**
+	 * Traverses the hierarchy with the ray.
+	 *
+	 * @return	The parameter of the closest hit, infinity if the ray hits nothing.
+	 */
+	private double traverse(final BoundingVolumeHierarchy hierarchy, final double[] ray) {
+		return hierarchy.traverse(ray[0], ray[1], ray[2], ray[3], ray[4], ray[5], Constants.EPSILON,
+				Double.POSITIVE_INFINITY, new BoundingVolumeHierarchy.Intersector() {
+					@Override
+					public double intersect(final int primitive, final double tMax) {
+						return GeometryTests.this.intersect(primitive, ray, tMax);
+					}
+				});
+	}
+
+	/**
+	 * Intersects the ray with all spheres.
+	 *
+	 * @return	The parameter of the closest hit, infinity if the ray hits nothing.
+	 */
+	private double closestHit(final double[] ray) {
+		double t = Double.POSITIVE_INFINITY;
+		for (int i = 0; i < SPHERES; i++) {
+			t = intersect(i, ray, t);
+		}
+		return t;
+	}
+
+	/**
+	 * Intersects the ray with a sphere.
+	 *
+	 * @return	The parameter of the hit if it is closer than <code>tMax</code>, otherwise <code>tMax</code>.
+	 */
+	private double intersect(final int sphere, final double[] ray, final double tMax) {
+		final double ox = ray[0] - spheres[sphere * 4];
+		final double oy = ray[1] - spheres[sphere * 4 + 1];
+		final double oz = ray[2] - spheres[sphere * 4 + 2];
+		final double r = spheres[sphere * 4 + 3];
+		final double b = ox * ray[3] + oy * ray[4] + oz * ray[5];
+		final double c = ox * ox + oy * oy + oz * oz - r * r;
+		final double d = b * b - c;
+		if (d < 0) {
+			return tMax;
+		}
+		final double root = Math.sqrt(d);
+		final double near = -b - root;
+		final double t = (near > Constants.EPSILON) ? near : -b + root;
+		return (t > Constants.EPSILON && t < tMax) ? t : tMax;
+	}
+}
@@ -0,0 +1,262 @@
+package raytracer.tests;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import javax.imageio.ImageIO;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import raytracer.image.ClampToneMapper;
+import raytracer.image.FrameBuffer;
+import raytracer.image.ImageFiles;
+import raytracer.image.PngWriter;
+import raytracer.image.StripWriter;
+
+/**
+ * JUnit Test class for the image files.
+ * 
+ * @author Simon Lischka
+ */
+public class ImageTests extends TestCase {
+	/**
+	 * The width of the test images, not a multiple of the strip height.
+	 */
+	private static final int WIDTH = 37;
+	/**
+	 * The height of the test images, spanning several strips.
+	 */
+	private static final int HEIGHT = PngWriter.STRIP_HEIGHT * 2 + 11;
+	
+	/**
+	 * Tests that a whole image written as PNG is read back with the same pixels.
+	 * 
+	 * @throws IOException	If the file can not be written or read.
+	 */
+	public void testPngRoundTrip() throws IOException {
+		final BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+		for (int y = 0; y < HEIGHT; y++) {
+			for (int x = 0; x < WIDTH; x++) {
+				image.setRGB(x, y, (x * 7) << 16 | (y * 3) << 8 | ((x * y) & 0xff));
+			}
+		}
+		final File file = File.createTempFile("roundtrip", ".png");
+		try {
+			PngWriter.write(image, file);
+			assertComplete(file);
+			assertSamePixels(image, ImageIO.read(file));
+		} finally {
+			file.delete();
+		}
+	}
+	
+	/**
+	 * Tests that an image written as PNG in strips is read back with the same pixels.
+	 * 
+	 * @throws IOException	If the file can not be written or read.
+	 */
+	public void testPngStrips() throws IOException {
+		final ClampToneMapper mapper = new ClampToneMapper();
+		final BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+		final File file = File.createTempFile("strips", ".png");
+		try {
+			final StripWriter writer = StripWriter.open(file, WIDTH, HEIGHT, mapper);
+			try {
+				for (int y = 0; y < HEIGHT; y += 10) {
+					final FrameBuffer strip = new FrameBuffer(WIDTH, Math.min(10, HEIGHT - y));
+					for (int i = 0; i < strip.red.length; i++) {
+						strip.red[i] = (i % WIDTH) / (float) WIDTH;
+						strip.green[i] = (y + i / WIDTH) / (float) HEIGHT;
+						strip.blue[i] = 0.5f;
+					}
+					strip.writeTo(image, 0, y, 0, strip.height, mapper);
+					writer.write(strip);
+				}
+				Assert.assertTrue(writer.isComplete());
+			} finally {
+				writer.close();
+			}
+			assertComplete(file);
+			assertSamePixels(image, ImageIO.read(file));
+		} finally {
+			file.delete();
+		}
+	}
+	
+	/**
+	 * Tests that a PFM file is read back with the same components, with its rows stored from bottom to top.
+	 * 
+	 * @throws IOException	If the file can not be written or read.
+	 */
+	public void testPfmRoundTrip() throws IOException {
+		final FrameBuffer frame = createFrame(0, HEIGHT);
+		final File file = File.createTempFile("roundtrip", ".pfm");
+		try {
+			ImageFiles.writePFM(frame.toFloats(), WIDTH, HEIGHT, file);
+			final ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+			final String header = "PF\n" + WIDTH + " " + HEIGHT + "\n-1.0\n";
+			Assert.assertEquals(header, new String(data.array(), 0, header.length(), Charset.forName("US-ASCII")));
+			Assert.assertEquals(header.length() + WIDTH * HEIGHT * 3 * 4, data.limit());
+			data.position(header.length());
+			for (int y = HEIGHT - 1; y >= 0; y--) {
+				for (int x = 0; x < WIDTH; x++) {
+					final int i = y * WIDTH + x;
+					Assert.assertEquals("Red " + x + ", " + y, frame.red[i], data.getFloat(), 0);
+					Assert.assertEquals("Green " + x + ", " + y, frame.green[i], data.getFloat(), 0);
+					Assert.assertEquals("Blue " + x + ", " + y, frame.blue[i], data.getFloat(), 0);
+				}
+			}
+		} finally {
+			file.delete();
+		}
+	}
+	
+	/**
+	 * Tests that a PFM file written in strips equals the file of the whole image.
+	 * 
+	 * @throws IOException	If the files can not be written or read.
+	 */
+	public void testPfmStrips() throws IOException {
+		assertSameStrips(".pfm");
+	}
+	
+	/**
+	 * Tests that an OpenEXR file written in strips equals the file of the whole image and that its offset table 
+	 * points to the scan lines.
+	 * 
+	 * @throws IOException	If the files can not be written or read.
+	 */
+	public void testExrStrips() throws IOException {
+		final File file = assertSameStrips(".exr");
+		try {
+			final ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+			Assert.assertEquals(20000630, data.getInt());
+			Assert.assertEquals(2, data.getInt());
+			final StringBuilder channels = new StringBuilder();
+			for (String name = readName(data); !name.isEmpty(); name = readName(data)) {
+				final String type = readName(data);
+				final int size = data.getInt();
+				if (name.equals("channels")) {
+					Assert.assertEquals("chlist", type);
+					for (String channel = readName(data); !channel.isEmpty(); channel = readName(data)) {
+						channels.append(channel);
+						Assert.assertEquals("The type of " + channel + " is not float.", 2, data.getInt());
+						data.position(data.position() + 12);
+					}
+				} else {
+					data.position(data.position() + size);
+				}
+			}
+			Assert.assertEquals("BGR", channels.toString());
+			final int lineSize = WIDTH * 3 * 4;
+			final int tableEnd = data.position() + HEIGHT * 8;
+			for (int y = 0; y < HEIGHT; y++) {
+				final long offset = data.getLong();
+				Assert.assertEquals(tableEnd + (long) y * (8 + lineSize), offset);
+				Assert.assertEquals(y, data.getInt((int) offset));
+				Assert.assertEquals(lineSize, data.getInt((int) offset + 4));
+			}
+			Assert.assertEquals(tableEnd + HEIGHT * (8 + lineSize), data.limit());
+		} finally {
+			file.delete();
+		}
+	}
+	
+	/**
+	 * Writes a floating point image as a whole with <code>ImageFiles</code> and in strips with 
+	 * <code>StripWriter</code> and asserts that both files are equal.
+	 * 
+	 * @param extension	The extension of the format.
+	 * @return			The file of the whole image, which the caller has to delete.
+	 */
+	private static File assertSameStrips(final String extension) throws IOException {
+		final File whole = File.createTempFile("whole", extension);
+		final File strips = File.createTempFile("strips", extension);
+		try {
+			final FrameBuffer frame = createFrame(0, HEIGHT);
+			if (extension.equals(".pfm")) {
+				ImageFiles.writePFM(frame.toFloats(), WIDTH, HEIGHT, whole);
+			} else {
+				ImageFiles.writeEXR(frame.toFloats(), WIDTH, HEIGHT, whole);
+			}
+			final StripWriter writer = StripWriter.open(strips, WIDTH, HEIGHT, new ClampToneMapper());
+			try {
+				for (int y = 0; y < HEIGHT; y += 10) {
+					writer.write(createFrame(y, Math.min(10, HEIGHT - y)));
+				}
+				Assert.assertTrue(writer.isComplete());
+			} finally {
+				writer.close();
+			}
+			Assert.assertTrue("The strips differ from the whole image.", 
+					Arrays.equals(Files.readAllBytes(whole.toPath()), Files.readAllBytes(strips.toPath())));
+			return whole;
+		} catch (IOException e) {
+			whole.delete();
+			throw e;
+		} finally {
+			strips.delete();
+		}
+	}
+	
+	/**
+	 * Creates the rows of a floating point test image, with components above 1 and differing in every pixel.
+	 * 
+	 * @param y			The first row.
+	 * @param height	The number of rows.
+	 * @return			The frame buffer of the rows.
+	 */
+	private static FrameBuffer createFrame(final int y, final int height) {
+		final FrameBuffer frame = new FrameBuffer(WIDTH, height);
+		for (int i = 0; i < frame.red.length; i++) {
+			frame.red[i] = (i % WIDTH) / 7f;
+			frame.green[i] = (y + i / WIDTH) / (float) HEIGHT;
+			frame.blue[i] = 0.5f + (y * WIDTH + i) * 1e-3f;
+		}
+		return frame;
+	}
+	
+	/**
+	 * Reads a zero terminated name of an OpenEXR header.
+	 */
+	private static String readName(final ByteBuffer data) {
+		final StringBuilder name = new StringBuilder();
+		for (byte b = data.get(); b != 0; b = data.get()) {
+			name.append((char) b);
+		}
+		return name.toString();
+	}
+	
+	/**
+	 * Asserts that a PNG file ends with the IEND chunk. Readers also decode a truncated stream, so reading the file
+	 * back does not reveal a missing end.
+	 */
+	private static void assertComplete(final File file) throws IOException {
+		final byte[] end = {0, 0, 0, 0, 'I', 'E', 'N', 'D', (byte) 0xae, 0x42, 0x60, (byte) 0x82};
+		final byte[] data = Files.readAllBytes(file.toPath());
+		Assert.assertTrue("The file is too short.", data.length > end.length);
+		for (int i = 0; i < end.length; i++) {
+			Assert.assertEquals("The file does not end with IEND.", end[i], data[data.length - end.length + i]);
+		}
+	}
+	
+	/**
+	 * Asserts that two images have the same size and pixels.
+	 */
+	private static void assertSamePixels(final BufferedImage expected, final BufferedImage actual) {
+		Assert.assertNotNull("The file can not be read.", actual);
+		Assert.assertEquals(expected.getWidth(), actual.getWidth());
+		Assert.assertEquals(expected.getHeight(), actual.getHeight());
+		for (int y = 0; y < expected.getHeight(); y++) {
+			for (int x = 0; x < expected.getWidth(); x++) {
+				Assert.assertEquals("Pixel " + x + ", " + y, expected.getRGB(x, y), actual.getRGB(x, y));
+			}
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package raytracer.tests;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import raytracer.ProgressiveRenderer;
+import raytracer.Renderer;
+import raytracer.cli.Scene;
+import raytracer.cli.ScenePresets;
+import raytracer.sampling.AdaptiveSampler;
+import raytracer.sampling.HaltonPattern;
+
+/**
+ * JUnit Test class for the renderers.
+ *
+ * @author Simon Lischka
+ */
+public class RendererTests extends TestCase {
+	/**
+	 * The size of the test images, not a multiple of the rows of a task.
+	 */
+	private static final Dimension SIZE = new Dimension(61, 47);
+	
+	/**
+	 * Tests that an image rendered in strips with the adaptive sampler equals the image rendered as a whole,
+	 * independent of the number of threads.
+	 * 
+	 * @throws IOException	If the file can not be written or read.
+	 */
+	public void testStripsEqualWholeImage() throws IOException {
+		final Scene scene = ScenePresets.create("spheres");
+		final Renderer renderer = new Renderer(scene.world, scene.camera, SIZE, 4,
+				new AdaptiveSampler(new HaltonPattern()));
+		renderer.setThreads(1);
+		final BufferedImage whole = renderer.render();
+		renderer.setThreads(3);
+		final File file = File.createTempFile("strips", ".png");
+		try {
+			renderer.render(5, file);
+			assertSamePixels(whole, ImageIO.read(file));
+		} finally {
+			file.delete();
+		}
+	}
+	
+	/**
+	 * Tests that the last pass of a progressive renderer with the adaptive sampler renders the same image as a 
+	 * renderer.
+	 */
+	public void testProgressiveEqualsRenderer() {
+		final Scene scene = ScenePresets.create("spheres");
+		final AdaptiveSampler sampler = new AdaptiveSampler(new HaltonPattern());
+		final BufferedImage expected = new Renderer(scene.world, scene.camera, SIZE, 4, sampler).render();
+		final ProgressiveRenderer renderer = new ProgressiveRenderer(scene.world, scene.camera, SIZE, 4, sampler);
+		assertSamePixels(expected, renderer.render());
+	}
+	
+	/**
+	 * Asserts that two images have the same size and pixels.
+	 * 
+	 * @param expected	The expected image.
+	 * @param actual	The actual image.
+	 */
+	private static void assertSamePixels(final BufferedImage expected, final BufferedImage actual) {
+		Assert.assertEquals(expected.getWidth(), actual.getWidth());
+		Assert.assertEquals(expected.getHeight(), actual.getHeight());
+		for (int y = 0; y < expected.getHeight(); y++) {
+			for (int x = 0; x < expected.getWidth(); x++) {
+				Assert.assertEquals("Pixel " + x + ", " + y, expected.getRGB(x, y), actual.getRGB(x, y));
+			}
+		}
+	}
+}
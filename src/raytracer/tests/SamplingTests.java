@@ -0,0 +1,90 @@
+package raytracer.tests;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import raytracer.sampling.AdaptiveSampler;
+import raytracer.sampling.HaltonPattern;
+import raytracer.sampling.RotatedGridPattern;
+import raytracer.sampling.SamplePattern;
+import raytracer.sampling.StratifiedPattern;
+
+/**
+ * JUnit Test class for the sample patterns.
+ * 
+ * @author Simon Lischka
+ */
+public class SamplingTests extends TestCase {
+	
+	/**
+	 * Tests that all patterns create samples inside the pixel.
+	 */
+	public void testSamplesInsidePixel() {
+		final SamplePattern[] patterns = new SamplePattern[] {
+				new StratifiedPattern(), 
+				new HaltonPattern(), 
+				new RotatedGridPattern()
+		};
+		for (SamplePattern pattern : patterns) {
+			for (int count = 1; count <= 20; count++) {
+				final double[] samples = pattern.createSamples(count);
+				Assert.assertTrue(samples.length >= 2 * count);
+				for (double d : samples) {
+					Assert.assertTrue(pattern + " creates a sample outside the pixel.", 0 <= d && d < 1);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Tests that the stratified pattern places one sample in each cell.
+	 */
+	public void testStratifiedPattern() {
+		final double[] samples = new StratifiedPattern().createSamples(16);
+		Assert.assertEquals(32, samples.length);
+		final boolean[] cells = new boolean[16];
+		for (int i = 0; i < samples.length; i += 2) {
+			cells[(int) (samples[i + 1] * 4) * 4 + (int) (samples[i] * 4)] = true;
+		}
+		for (boolean cell : cells) {
+			Assert.assertTrue(cell);
+		}
+	}
+	
+	/**
+	 * Tests the radical inverse of the Halton sequence.
+	 */
+	public void testRadicalInverse() {
+		Assert.assertEquals(0.5, HaltonPattern.radicalInverse(1, 2), 1e-12);
+		Assert.assertEquals(0.25, HaltonPattern.radicalInverse(2, 2), 1e-12);
+		Assert.assertEquals(0.75, HaltonPattern.radicalInverse(3, 2), 1e-12);
+		Assert.assertEquals(1.0 / 3.0, HaltonPattern.radicalInverse(1, 3), 1e-12);
+		Assert.assertEquals(1.0 / 9.0, HaltonPattern.radicalInverse(3, 3), 1e-12);
+	}
+	
+	/**
+	 * Tests that the refinement samples of the adaptive sampler lie at other positions than the initial samples.
+	 */
+	public void testRefinementSamplesDisjoint() {
+		final SamplePattern[] patterns = new SamplePattern[] {
+				new StratifiedPattern(), 
+				new HaltonPattern(), 
+				new RotatedGridPattern()
+		};
+		for (SamplePattern pattern : patterns) {
+			final AdaptiveSampler sampler = new AdaptiveSampler(pattern, AdaptiveSampler.DEFAULT_INITIAL_SAMPLES, 
+					AdaptiveSampler.DEFAULT_MAX_SAMPLES, AdaptiveSampler.DEFAULT_CONTRAST_THRESHOLD, 
+					AdaptiveSampler.DEFAULT_VARIANCE_THRESHOLD);
+			final double[] initial = sampler.getInitialSamples();
+			final double[] refinement = sampler.getRefinementSamples();
+			Assert.assertTrue(pattern + " has no refinement samples.", refinement.length > 0);
+			Assert.assertTrue(pattern + " has too many samples.", 
+					(initial.length + refinement.length) / 2 <= AdaptiveSampler.DEFAULT_MAX_SAMPLES);
+			for (int i = 0; i < initial.length; i += 2) {
+				for (int j = 0; j < refinement.length; j += 2) {
+					Assert.assertFalse(pattern + " refines at an initial position.", 
+							initial[i] == refinement[j] && initial[i + 1] == refinement[j + 1]);
+				}
+			}
+		}
+	}
+}
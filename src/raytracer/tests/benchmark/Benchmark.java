@@ -0,0 +1,60 @@
+package raytracer.tests.benchmark;
+
+/**
+ * This class represents a single benchmark of the <code>BenchmarkRunner</code>. A benchmark prepares its data in 
+ * <code>setUp()</code> and then measures one batch of work per call of <code>run()</code>.
+ * 
+ * @author Simon Lischka
+ *
+ */
+public abstract class Benchmark {
+	/**
+	 * The name of this benchmark.
+	 */
+	public final String name;
+	/**
+	 * Receives the results of the benchmarks, so the measured work can not be optimized away.
+	 */
+	static volatile double sink;
+	
+	/**
+	 * Constructs a new <code>Benchmark</code> with the specified name.
+	 * 
+	 * @param name	The name of the benchmark. Must not be <code>null</code>.
+	 */
+	public Benchmark(final String name) {
+		if (name == null) {
+			throw new IllegalArgumentException("The parameter 'name' must not be null.");
+		}
+		this.name = name;
+	}
+	
+	/**
+	 * Prepares the data of this benchmark, e.g. loads models and generates rays. This is not measured.
+	 */
+	public void setUp() {
+	}
+	
+	/**
+	 * Runs one batch of the measured work.
+	 * 
+	 * @return	The number of rays of the batch. For shading one shaded hit counts as one ray, for full frames one 
+	 * 			pixel counts as one ray.
+	 */
+	public abstract int run();
+	
+	/**
+	 * Releases the resources of this benchmark, e.g. its threads.
+	 */
+	public void tearDown() {
+	}
+	
+	/**
+	 * Consumes a result of the measured work, so it can not be optimized away.
+	 * 
+	 * @param value	The result.
+	 */
+	protected static void consume(final double value) {
+		sink += value;
+	}
+}
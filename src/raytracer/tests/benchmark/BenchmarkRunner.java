@@ -0,0 +1,170 @@
+package raytracer.tests.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * This class runs the benchmarks of the raytracer and reports their throughput in rays per second and their 
+ * allocation rate. Every benchmark is warmed up first, so the measurements are taken from compiled code, and then 
+ * measured in several iterations of fixed length.
+ * <p>
+ * Usage: <code>java raytracer.tests.benchmark.BenchmarkRunner [regex] [iterations] [iteration time in ms]</code>
+ * <p>
+ * Models and textures are loaded relative to the working directory, so the runner has to be started in the 
+ * project directory.
+ * 
+ * @author Simon Lischka
+ *
+ */
+public class BenchmarkRunner {
+	/**
+	 * The default number of measured iterations.
+	 */
+	public static final int DEFAULT_ITERATIONS = 5;
+	/**
+	 * The default length of an iteration in milliseconds.
+	 */
+	public static final long DEFAULT_ITERATION_TIME = 1000;
+	
+	/**
+	 * The number of measured iterations.
+	 */
+	private final int iterations;
+	/**
+	 * The length of an iteration in milliseconds.
+	 */
+	private final long iterationTime;
+	/**
+	 * The thread bean which measures the allocated bytes, <code>null</code> if the virtual machine does not support it.
+	 */
+	private final com.sun.management.ThreadMXBean threads;
+	
+	/**
+	 * Constructs a new <code>BenchmarkRunner</code>.
+	 * 
+	 * @param iterations	The number of measured iterations.
+	 * @param iterationTime	The length of an iteration in milliseconds.
+	 */
+	public BenchmarkRunner(final int iterations, final long iterationTime) {
+		if (iterations < 1 || iterationTime < 1) {
+			throw new IllegalArgumentException("The parameters must be positive.");
+		}
+		this.iterations = iterations;
+		this.iterationTime = iterationTime;
+		final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean 
+				&& ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+			threads = (com.sun.management.ThreadMXBean) bean;
+			threads.setThreadAllocatedMemoryEnabled(true);
+		} else {
+			threads = null;
+		}
+	}
+	
+	/**
+	 * Runs all benchmarks whose name matches the regular expression given as first argument.
+	 * 
+	 * @param args	The optional regular expression, number of iterations and length of an iteration in ms.
+	 */
+	public static void main(final String[] args) {
+		System.setProperty("java.awt.headless", "true");
+		final Pattern filter = Pattern.compile(args.length > 0 ? args[0] : ".*");
+		final int iterations = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_ITERATIONS;
+		final long iterationTime = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_ITERATION_TIME;
+		
+		final List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		benchmarks.addAll(GeometryBenchmarks.all());
+		benchmarks.addAll(MaterialBenchmarks.all());
+		benchmarks.addAll(TextureBenchmarks.all());
+		benchmarks.addAll(RenderBenchmarks.all());
+		
+		final BenchmarkRunner runner = new BenchmarkRunner(iterations, iterationTime);
+		System.out.printf("%-38s %14s %10s %12s %12s%n", "benchmark", "rays/s", "error %", "bytes/ray", "MB/s");
+		for (Benchmark benchmark : benchmarks) {
+			if (filter.matcher(benchmark.name).find()) {
+				runner.run(benchmark);
+			}
+		}
+	}
+	
+	/**
+	 * Warms up and measures the specified benchmark and prints the result.
+	 * 
+	 * @param benchmark	The benchmark. Must not be <code>null</code>.
+	 */
+	public void run(final Benchmark benchmark) {
+		if (benchmark == null) {
+			throw new IllegalArgumentException("The parameter 'benchmark' must not be null.");
+		}
+		benchmark.setUp();
+		try {
+			for (int i = 0; i < iterations; i++) {
+				iteration(benchmark);
+			}
+			final double[] raysPerSecond = new double[iterations];
+			long rays = 0;
+			long bytes = 0;
+			long nanos = 0;
+			for (int i = 0; i < iterations; i++) {
+				final long[] result = iteration(benchmark);
+				rays += result[0];
+				nanos += result[1];
+				bytes += result[2];
+				raysPerSecond[i] = result[0] * 1e9 / result[1];
+			}
+			final double mean = rays * 1e9 / nanos;
+			double variance = 0;
+			for (double r : raysPerSecond) {
+				variance += (r - mean) * (r - mean);
+			}
+			final double error = Math.sqrt(variance / iterations) / mean * 100;
+			if (threads != null) {
+				System.out.printf("%-38s %14.0f %10.1f %12.1f %12.1f%n", benchmark.name, mean, error, 
+						(double) bytes / rays, bytes * 1e9 / nanos / (1024 * 1024));
+			} else {
+				System.out.printf("%-38s %14.0f %10.1f %12s %12s%n", benchmark.name, mean, error, "n/a", "n/a");
+			}
+		} finally {
+			benchmark.tearDown();
+		}
+	}
+	
+	/**
+	 * Runs the benchmark for the length of one iteration.
+	 * 
+	 * @param benchmark	The benchmark.
+	 * @return			The number of rays, the nanoseconds and the allocated bytes of the iteration.
+	 */
+	private long[] iteration(final Benchmark benchmark) {
+		final long bytesBefore = allocatedBytes();
+		final long start = System.nanoTime();
+		final long end = start + iterationTime * 1000000;
+		long rays = 0;
+		long now;
+		do {
+			rays += benchmark.run();
+			now = System.nanoTime();
+		} while (now < end);
+		return new long[] {rays, now - start, allocatedBytes() - bytesBefore};
+	}
+	
+	/**
+	 * Returns the bytes allocated so far by all live threads, including the worker threads of full frame benchmarks.
+	 * 
+	 * @return	The allocated bytes, 0 if the virtual machine can not measure them.
+	 */
+	private long allocatedBytes() {
+		if (threads == null) {
+			return 0;
+		}
+		long bytes = 0;
+		for (long b : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+			if (b > 0) {
+				bytes += b;
+			}
+		}
+		return bytes;
+	}
+}
@@ -0,0 +1,265 @@
+package raytracer.tests.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import raytracer.Color;
+import raytracer.Ray;
+import raytracer.World;
+import raytracer.camera.Camera;
+import raytracer.cli.Scene;
+import raytracer.cli.ScenePresets;
+import raytracer.geometry.AxisAlignedBoundingBox;
+import raytracer.geometry.Geometry;
+import raytracer.geometry.Hit;
+import raytracer.geometry.Node;
+import raytracer.geometry.RayPacket;
+import raytracer.geometry.Sphere;
+import raytracer.geometry.Triangle;
+import raytracer.geometry.TriangleMesh;
+import raytracer.material.Material;
+import raytracer.material.SingleColorMaterial;
+import raytracer.math.Normal3;
+import raytracer.math.Point3;
+import raytracer.math.Transform;
+import raytracer.math.Vector3;
+import raytracer.parser.ObjLoader;
+import raytracer.texture.SingleColorTexture;
+import raytracer.texture.TexCoord2;
+
+/**
+ * This class creates the benchmarks of the intersection tests, from single geometries up to whole worlds.
+ * 
+ * @author Simon Lischka
+ *
+ */
+public final class GeometryBenchmarks {
+	/**
+	 * The number of rays each batch of a benchmark traces.
+	 */
+	public static final int RAYS = 4096;
+	/**
+	 * The number of rays each batch of a mesh benchmark traces. A mesh ray costs several node and face tests, so a 
+	 * batch is kept smaller to stay within the length of an iteration.
+	 */
+	public static final int MESH_RAYS = 1024;
+	/**
+	 * The seed of the generated rays, so every run traces the same rays.
+	 */
+	public static final long SEED = 42;
+	/**
+	 * The material of the geometries.
+	 */
+	private static final Material MATERIAL = new SingleColorMaterial(new SingleColorTexture(new Color(1, 1, 1)));
+	
+	/**
+	 * This class is not meant to be instantiated.
+	 */
+	private GeometryBenchmarks() {
+	}
+	
+	/**
+	 * Creates all intersection benchmarks.
+	 * 
+	 * @return	The benchmarks.
+	 */
+	public static List<Benchmark> all() {
+		final List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		benchmarks.add(new HitBenchmark("Sphere.hit", RAYS) {
+			@Override
+			protected Geometry createGeometry() {
+				return new Sphere(MATERIAL);
+			}
+		});
+		benchmarks.add(new HitBenchmark("Triangle.hit", RAYS) {
+			@Override
+			protected Geometry createGeometry() {
+				final Normal3 n = new Normal3(0, 0, 1);
+				final TexCoord2 t = new TexCoord2(0, 0);
+				return new Triangle(new Point3(-1, -1, 0), new Point3(1, -1, 0), new Point3(0, 1, 0), n, n, n, 
+						MATERIAL, t, t, t);
+			}
+		});
+		benchmarks.add(new Benchmark("AxisAlignedBoundingBox.isHit") {
+			private AxisAlignedBoundingBox bbox;
+			private Ray[] rays;
+			
+			@Override
+			public void setUp() {
+				bbox = new AxisAlignedBoundingBox(new Point3(-1, -1, -1), new Point3(1, 1, 1));
+				rays = rays(new Point3(-1, -1, -1), new Point3(1, 1, 1), RAYS);
+			}
+			
+			@Override
+			public int run() {
+				int hits = 0;
+				for (Ray ray : rays) {
+					if (bbox.isHit(ray)) {
+						hits++;
+					}
+				}
+				consume(hits);
+				return rays.length;
+			}
+		});
+		benchmarks.add(new HitBenchmark("Node.hit", RAYS) {
+			@Override
+			protected Geometry createGeometry() {
+				return new Node(new Sphere(MATERIAL), 
+						new Transform().translate(0.2, 0, 0).rotateY(0.5).scale(1, 0.5, 1));
+			}
+		});
+		benchmarks.add(new HitBenchmark("TriangleMesh.hit bunny", MESH_RAYS) {
+			@Override
+			protected Geometry createGeometry() {
+				return new ObjLoader().load("models/bunny.obj", MATERIAL);
+			}
+		});
+		benchmarks.add(new HitBenchmark("TriangleMesh.hit teddy", MESH_RAYS) {
+			@Override
+			protected Geometry createGeometry() {
+				return new ObjLoader().load("models/teddy.obj", MATERIAL);
+			}
+		});
+		for (final String preset : new String[] {"spheres", "showcase", "teddy"}) {
+			benchmarks.add(new Benchmark("World.hit " + preset) {
+				private World world;
+				private Ray[] rays;
+				
+				@Override
+				public void setUp() {
+					final Scene scene = ScenePresets.create(preset);
+					world = scene.world;
+					rays = cameraRays(scene.camera, 64, 64);
+				}
+				
+				@Override
+				public int run() {
+					for (Ray ray : rays) {
+						final Hit hit = world.hit(ray);
+						if (hit != null) {
+							consume(hit.t);
+						}
+					}
+					return rays.length;
+				}
+			});
+			benchmarks.add(new Benchmark("World.hit packets " + preset) {
+				private World world;
+				private Ray[] rays;
+				private RayPacket packet;
+				
+				@Override
+				public void setUp() {
+					final Scene scene = ScenePresets.create(preset);
+					world = scene.world;
+					rays = cameraRays(scene.camera, 64, 64);
+					packet = new RayPacket(RayPacket.DEFAULT_WIDTH);
+				}
+				
+				@Override
+				public int run() {
+					for (int start = 0; start < rays.length; start += packet.capacity()) {
+						packet.clear();
+						for (int i = start; i < start + packet.capacity() && i < rays.length; i++) {
+							packet.add(rays[i]);
+						}
+						world.hit(packet);
+						for (int i = 0; i < packet.size(); i++) {
+							consume(packet.t[i]);
+						}
+					}
+					return rays.length;
+				}
+			});
+		}
+		return benchmarks;
+	}
+	
+	/**
+	 * Generates rays which start outside of the specified box and aim at random points inside of it, so most of 
+	 * them hit the geometries inside of the box.
+	 * 
+	 * @param min	The minimum corner of the box.
+	 * @param max	The maximum corner of the box.
+	 * @param count	The number of rays.
+	 * @return		The rays.
+	 */
+	public static Ray[] rays(final Point3 min, final Point3 max, final int count) {
+		final Random random = new Random(SEED);
+		final Vector3 diagonal = max.sub(min);
+		final Point3 center = min.add(diagonal.mul(0.5));
+		final Ray[] rays = new Ray[count];
+		for (int i = 0; i < rays.length; i++) {
+			final Vector3 direction = new Vector3(random.nextGaussian(), random.nextGaussian(), 
+					random.nextGaussian()).normalized();
+			final Point3 origin = center.add(direction.mul(diagonal.magnitude * 2));
+			final Point3 target = new Point3(
+					min.x + random.nextDouble() * diagonal.x, 
+					min.y + random.nextDouble() * diagonal.y, 
+					min.z + random.nextDouble() * diagonal.z);
+			rays[i] = new Ray(origin, target.sub(origin).normalized());
+		}
+		return rays;
+	}
+	
+	/**
+	 * Generates the primary rays of the camera for an image of the specified size.
+	 * 
+	 * @param camera	The camera.
+	 * @param width		The width of the image.
+	 * @param height	The height of the image.
+	 * @return			The rays.
+	 */
+	public static Ray[] cameraRays(final Camera camera, final int width, final int height) {
+		final Ray[] rays = new Ray[width * height];
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				rays[y * width + x] = camera.rayFor(width, height, x, y);
+			}
+		}
+		return rays;
+	}
+	
+	/**
+	 * This class measures the <code>hit</code> method of a single geometry.
+	 */
+	private abstract static class HitBenchmark extends Benchmark {
+		private final int count;
+		private Geometry geometry;
+		private Ray[] rays;
+		
+		public HitBenchmark(final String name, final int count) {
+			super(name);
+			this.count = count;
+		}
+		
+		/**
+		 * @return	The geometry to be measured.
+		 */
+		protected abstract Geometry createGeometry();
+		
+		@Override
+		public void setUp() {
+			geometry = createGeometry();
+			if (geometry instanceof TriangleMesh) {
+				final TriangleMesh mesh = (TriangleMesh) geometry;
+				rays = rays(mesh.getMins(), mesh.getMaxs(), count);
+			} else {
+				rays = rays(new Point3(-1, -1, -1), new Point3(1, 1, 1), count);
+			}
+		}
+		
+		@Override
+		public int run() {
+			for (Ray ray : rays) {
+				final Hit hit = geometry.hit(ray);
+				if (hit != null) {
+					consume(hit.t);
+				}
+			}
+			return rays.length;
+		}
+	}
+}
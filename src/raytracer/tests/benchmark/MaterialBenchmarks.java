@@ -0,0 +1,154 @@
+package raytracer.tests.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import raytracer.Color;
+import raytracer.Constants;
+import raytracer.Ray;
+import raytracer.Tracer;
+import raytracer.World;
+import raytracer.cli.ScenePresets;
+import raytracer.geometry.Hit;
+import raytracer.geometry.Node;
+import raytracer.geometry.Plane;
+import raytracer.geometry.Sphere;
+import raytracer.light.LightTree;
+import raytracer.material.CrossfadeDayAndNightMaterial;
+import raytracer.material.DayAndNightMaterial;
+import raytracer.material.LambertMaterial;
+import raytracer.material.Material;
+import raytracer.material.PhongMaterial;
+import raytracer.material.ReflectiveMaterial;
+import raytracer.material.SingleColorMaterial;
+import raytracer.material.TransparentMaterial;
+import raytracer.math.Point3;
+import raytracer.math.Transform;
+import raytracer.texture.SingleColorTexture;
+
+/**
+ * This class creates the benchmarks of the materials. Each benchmark shades precomputed hits on a sphere with 
+ * the material inside the world of the <code>spheres</code> scene, so lights, shadows and secondary rays are 
+ * included.
+ * 
+ * @author Simon Lischka
+ *
+ */
+public final class MaterialBenchmarks {
+	/**
+	 * The depth of recursion of the tracer used for shading.
+	 */
+	public static final int RECURSION = 4;
+	
+	/**
+	 * This class is not meant to be instantiated.
+	 */
+	private MaterialBenchmarks() {
+	}
+	
+	/**
+	 * Creates all material benchmarks.
+	 * 
+	 * @return	The benchmarks.
+	 */
+	public static List<Benchmark> all() {
+		final Material lambert = new LambertMaterial(new SingleColorTexture(new Color(1, 0, 0)));
+		final Material phong = new PhongMaterial(
+				new SingleColorTexture(new Color(1, 0, 0)), new SingleColorTexture(new Color(1, 1, 1)), 64);
+		final Material[] materials = {
+				new SingleColorMaterial(new SingleColorTexture(new Color(1, 0, 0))), 
+				lambert, 
+				phong, 
+				new ReflectiveMaterial(
+						new SingleColorTexture(new Color(0, 0, 1)), 
+						new SingleColorTexture(new Color(1, 1, 1)), 
+						10, 
+						new SingleColorTexture(new Color(0.5, 0.5, 0.5))), 
+				new TransparentMaterial(Constants.INDEX_OF_REFRACTION_GLASS), 
+				new DayAndNightMaterial(lambert, phong), 
+				new CrossfadeDayAndNightMaterial(lambert, phong)
+		};
+		final List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		for (final Material material : materials) {
+			benchmarks.add(new Benchmark(material.getClass().getSimpleName() + ".colorFor") {
+				private World world;
+				private Tracer tracer;
+				private Hit[] hits;
+				
+				@Override
+				public void setUp() {
+					world = ScenePresets.create("spheres").world;
+					tracer = new Tracer(RECURSION);
+					// the sphere floats above the plane of the scene, so it is lit and casts shadows
+					final Node sphere = new Node(new Sphere(material), new Transform().translate(0, 3, 0));
+					final List<Hit> list = new ArrayList<Hit>();
+					final Ray[] rays = GeometryBenchmarks.rays(new Point3(-1, 2, -1), new Point3(1, 4, 1), 
+							GeometryBenchmarks.RAYS);
+					for (Ray ray : rays) {
+						final Hit hit = sphere.hit(ray);
+						if (hit != null) {
+							list.add(hit);
+						}
+					}
+					hits = list.toArray(new Hit[list.size()]);
+				}
+				
+				@Override
+				public int run() {
+					for (Hit hit : hits) {
+						final Color color = material.colorFor(hit, world, tracer);
+						consume(color.r);
+					}
+					return hits.length;
+				}
+			});
+		}
+		benchmarks.add(manyLights("PhongMaterial.colorFor.allLights", phong, Integer.MAX_VALUE));
+		benchmarks.add(manyLights("PhongMaterial.colorFor.selectedLights", phong, LightTree.DEFAULT_SAMPLES));
+		return benchmarks;
+	}
+	
+	/**
+	 * Creates a benchmark which shades hits on the floor of the <code>lights</code> scene, shading each hit with the 
+	 * specified number of its 402 lights.
+	 * 
+	 * @param name		The name of the benchmark.
+	 * @param material	The material of the hits.
+	 * @param samples	The number of lights selected per hit, at least the number of lights to shade with all.
+	 * @return			The benchmark.
+	 */
+	private static Benchmark manyLights(final String name, final Material material, final int samples) {
+		return new Benchmark(name) {
+			private World world;
+			private Tracer tracer;
+			private Hit[] hits;
+			
+			@Override
+			public void setUp() {
+				world = ScenePresets.create("lights").world;
+				world.setLightSamples(samples);
+				tracer = new Tracer(RECURSION);
+				final Plane floor = new Plane(material);
+				final List<Hit> list = new ArrayList<Hit>();
+				final Ray[] rays = GeometryBenchmarks.rays(new Point3(-15, -1, -15), new Point3(15, 1, 15), 
+						GeometryBenchmarks.RAYS);
+				for (Ray ray : rays) {
+					final Hit hit = floor.hit(ray);
+					if (hit != null) {
+						list.add(hit);
+					}
+				}
+				hits = list.toArray(new Hit[list.size()]);
+			}
+			
+			@Override
+			public int run() {
+				for (Hit hit : hits) {
+					final Color color = material.colorFor(hit, world, tracer);
+					consume(color.r);
+				}
+				return hits.length;
+			}
+		};
+	}
+}
@@ -0,0 +1,72 @@
+package raytracer.tests.benchmark;
+
+import java.awt.Dimension;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import raytracer.ProgressiveRenderer;
+import raytracer.cli.Scene;
+import raytracer.cli.ScenePresets;
+import raytracer.sampling.SingleSampler;
+
+/**
+ * This class creates the full frame benchmarks, which render the predefined scenes of the command line renderer 
+ * with all processors.
+ * 
+ * @author Simon Lischka
+ *
+ */
+public final class RenderBenchmarks {
+	/**
+	 * The size of the rendered frames.
+	 */
+	public static final Dimension SIZE = new Dimension(160, 120);
+	/**
+	 * The depth of recursion.
+	 */
+	public static final int RECURSION = 4;
+	
+	/**
+	 * This class is not meant to be instantiated.
+	 */
+	private RenderBenchmarks() {
+	}
+	
+	/**
+	 * Creates all full frame benchmarks.
+	 * 
+	 * @return	The benchmarks.
+	 */
+	public static List<Benchmark> all() {
+		final List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		for (final String preset : ScenePresets.NAMES) {
+			benchmarks.add(new Benchmark("render " + preset) {
+				private Scene scene;
+				private ExecutorService executor;
+				
+				@Override
+				public void setUp() {
+					scene = ScenePresets.create(preset);
+					executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+				}
+				
+				@Override
+				public int run() {
+					final ProgressiveRenderer renderer = new ProgressiveRenderer(scene.world, scene.camera, SIZE, 
+							RECURSION, new SingleSampler(), 1);
+					renderer.setExecutor(executor);
+					consume(renderer.render().getRGB(SIZE.width / 2, SIZE.height / 2));
+					return SIZE.width * SIZE.height;
+				}
+				
+				@Override
+				public void tearDown() {
+					executor.shutdown();
+				}
+			});
+		}
+		return benchmarks;
+	}
+}
@@ -0,0 +1,103 @@
+package raytracer.tests.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import raytracer.Color;
+import raytracer.texture.ImageTexture;
+import raytracer.texture.InterpolatedImageTexture;
+import raytracer.texture.TexCoord2;
+import raytracer.texture.Texture;
+
+/**
+ * This class creates the benchmarks of the image textures. Each benchmark looks up the colors of random texture 
+ * coordinates of the globe texture of the <code>earth</code> scene. The rays per second are lookups per second. The 
+ * minified benchmarks look up with a footprint of <code>MINIFIED_FOOTPRINT</code>, like a distant textured surface.
+ * 
+ * @author Simon Lischka
+ *
+ */
+public final class TextureBenchmarks {
+	/**
+	 * The number of lookups each batch of a benchmark performs.
+	 */
+	public static final int LOOKUPS = 65536;
+	/**
+	 * The image of the textures.
+	 */
+	public static final String PATH = "textures/earthDay.jpg";
+	/**
+	 * The footprint of the lookups of the minified benchmarks in texture coordinates.
+	 */
+	public static final double MINIFIED_FOOTPRINT = 1.0 / 128;
+	
+	/**
+	 * This class is not meant to be instantiated.
+	 */
+	private TextureBenchmarks() {
+	}
+	
+	/**
+	 * Creates all texture benchmarks.
+	 * 
+	 * @return	The benchmarks.
+	 */
+	public static List<Benchmark> all() {
+		final List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		for (final double footprint : new double[] {0, MINIFIED_FOOTPRINT}) {
+			final String suffix = (footprint == 0) ? "" : " minified";
+			benchmarks.add(new LookupBenchmark("ImageTexture.getColor" + suffix, footprint) {
+				@Override
+				protected Texture createTexture() {
+					return new ImageTexture(PATH);
+				}
+			});
+			benchmarks.add(new LookupBenchmark("InterpolatedImageTexture.getColor" + suffix, footprint) {
+				@Override
+				protected Texture createTexture() {
+					return new InterpolatedImageTexture(PATH);
+				}
+			});
+		}
+		return benchmarks;
+	}
+	
+	/**
+	 * This class measures the lookups of a single texture.
+	 */
+	private abstract static class LookupBenchmark extends Benchmark {
+		private final double footprint;
+		private Texture texture;
+		private TexCoord2[] coordinates;
+		
+		public LookupBenchmark(final String name, final double footprint) {
+			super(name);
+			this.footprint = footprint;
+		}
+		
+		/**
+		 * @return	The texture to be measured.
+		 */
+		protected abstract Texture createTexture();
+		
+		@Override
+		public void setUp() {
+			texture = createTexture();
+			final Random random = new Random(GeometryBenchmarks.SEED);
+			coordinates = new TexCoord2[LOOKUPS];
+			for (int i = 0; i < coordinates.length; i++) {
+				coordinates[i] = new TexCoord2(random.nextDouble(), random.nextDouble());
+			}
+		}
+		
+		@Override
+		public int run() {
+			for (TexCoord2 texcoord : coordinates) {
+				final Color color = texture.getColor(texcoord, footprint);
+				consume(color.r);
+			}
+			return LOOKUPS;
+		}
+	}
+}
@@ -1,15 +1,23 @@
 package raytracer.texture;
 
-import java.awt.image.BufferedImage;
-import java.awt.image.Raster;
 import java.io.File;
-import java.io.IOException;
-
-import javax.imageio.ImageIO;
+import java.util.concurrent.Future;
 
+import raytracer.AssetLoader;
 import raytracer.Color;
 /**
  * This abstract immutable class represents an image texture. The image is loaded from a user specified file.
+ * <p>
+ * The texels are held by a <code>TiledImage</code> of the <code>TextureManager</code>, so textures of the same file 
+ * share them and only the tiles which are looked up occupy memory. A lookup is an index computation and an array 
+ * access instead of a call through the <code>Raster</code> and its <code>SampleModel</code>.
+ * <p>
+ * The image is decoded in the background from the construction of the texture on, only the first lookup waits for 
+ * it. A texture which is never looked up, e.g. on a geometry outside of the view, never delays the rendering.
+ * <p>
+ * The image has a mipmap pyramid: every level halves the width and height of the level above by averaging 2 x 2 
+ * texels, down to a single texel. A lookup with a footprint reads the level whose texels are about as large as the 
+ * footprint, which reads fewer texels of a distant surface, keeps them in the cache and avoids aliasing.
  * 
  * @author Simon Lischka
  * @author Sebastian Dass&eacute;
@@ -17,24 +25,17 @@ import raytracer.Color;
  */
 public abstract class AbstractImageTexture implements Texture {
 	/**
-	 * The BufferedImage that contains the pixel data of this texture.
-	 */
-	private final BufferedImage image;
-	/**
-	 * The raster extracted from the BufferedImage.
+	 * The future of the texels of all levels of this texture.
 	 */
-	protected final Raster imageRaster;
+	private final Future<TiledImage> pending;
 	/**
-	 * The width of this texture in suitable form for looping arrays.
+	 * The texels of all levels of this texture, <code>null</code> until the first lookup.
 	 */
-	protected final int widthMinus1;
-	/**
-	 * The height of this texture in suitable form for looping arrays.
-	 */
-	protected final int heightMinus1;
+	private volatile TiledImage image;
 	
 	/**
-	 * Constructs an <code>AbstractImageTexture</code>. Loads the specified image file when instantiated.
+	 * Constructs an <code>AbstractImageTexture</code>. Starts to load the specified image file when instantiated, 
+	 * unless another texture of the same file was constructed before.
 	 * 
 	 * @param path	The path of the image. Must not be <code>null</code>.
 	 */
@@ -42,15 +43,107 @@ public abstract class AbstractImageTexture implements Texture {
 		if (path == null) {
 			throw new IllegalArgumentException("The parameters must not be null.");
 		}
-		try {
-			image = ImageIO.read(new File(path));
-		} catch (IOException e) {
+		if (!new File(path).isFile()) {
 			System.err.println("Problem reading file.");
 			throw new RuntimeException("Could not construct image texture from '" + path + "'.");
 		}
-		imageRaster = image.getData();
-		heightMinus1 = imageRaster.getHeight() - 1;
-		widthMinus1 = image.getWidth() - 1;
+		pending = TextureManager.request(path);
+	}
+	
+	/**
+	 * Returns the texels of this texture and waits for them on the first call.
+	 * 
+	 * @return	The texels of all levels.
+	 */
+	private TiledImage image() {
+		TiledImage image = this.image;
+		if (image == null) {
+			image = AssetLoader.await(pending);
+			this.image = image;
+		}
+		return image;
+	}
+	
+	/**
+	 * Returns the packed texel of the image at the specified position. Positions outside of the image are clamped to 
+	 * its border.
+	 * 
+	 * @param x	The column of the texel, 0 is the left border.
+	 * @param y	The row of the texel, 0 is the top border.
+	 * @return	The texel packed as <code>0xRRGGBB</code>.
+	 */
+	protected final int texel(final int x, final int y) {
+		return image().texel(0, x, y);
+	}
+	
+	/**
+	 * Returns the packed texel of the specified level at the specified position. Positions outside of the level are 
+	 * clamped to its border.
+	 * 
+	 * @param level	The level, 0 is the image.
+	 * @param x		The column of the texel, 0 is the left border.
+	 * @param y		The row of the texel, 0 is the top border.
+	 * @return		The texel packed as <code>0xRRGGBB</code>.
+	 */
+	protected final int texel(final int level, final int x, final int y) {
+		return image().texel(level, x, y);
+	}
+	
+	/**
+	 * @param level	The level, 0 is the image.
+	 * @return		The width of the level minus 1.
+	 */
+	protected final int widthMinus1(final int level) {
+		return image().getWidth(level) - 1;
+	}
+	
+	/**
+	 * @param level	The level, 0 is the image.
+	 * @return		The height of the level minus 1.
+	 */
+	protected final int heightMinus1(final int level) {
+		return image().getHeight(level) - 1;
+	}
+	
+	/**
+	 * Calculates the level of detail for a footprint: the binary logarithm of the number of texels of the image the 
+	 * footprint covers in each direction, limited to the levels of this texture.
+	 * 
+	 * @param footprint	The width of the footprint in texture coordinates.
+	 * @return			The level of detail between 0 and the last level, fractional between two levels.
+	 */
+	protected final double levelOf(final double footprint) {
+		if (!(footprint > 0)) {
+			return 0;
+		}
+		final TiledImage image = image();
+		final double lod = Math.log(footprint * Math.sqrt((double) image.getWidth(0) * image.getHeight(0))) 
+				/ Math.log(2);
+		return Math.max(0, Math.min(image.getLevels() - 1, lod));
+	}
+	
+	/**
+	 * @param texel	A packed texel.
+	 * @return		The red component of the texel between 0 and 255.
+	 */
+	protected static int red(final int texel) {
+		return (texel >> 16) & 0xff;
+	}
+	
+	/**
+	 * @param texel	A packed texel.
+	 * @return		The green component of the texel between 0 and 255.
+	 */
+	protected static int green(final int texel) {
+		return (texel >> 8) & 0xff;
+	}
+	
+	/**
+	 * @param texel	A packed texel.
+	 * @return		The blue component of the texel between 0 and 255.
+	 */
+	protected static int blue(final int texel) {
+		return texel & 0xff;
 	}
 	
 	@Override
@@ -58,4 +151,7 @@ public abstract class AbstractImageTexture implements Texture {
 
 	@Override
 	public abstract Color getColor(TexCoord2 texcoord);
+
+	@Override
+	public abstract Color getColor(TexCoord2 texcoord, double footprint);
 }
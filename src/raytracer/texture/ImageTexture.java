@@ -1,8 +1,10 @@
 package raytracer.texture;
 
 import raytracer.Color;
+import raytracer.metrics.RenderMetrics;
 /**
- * This immutable class represents an image texture. The image is loaded from a user specified file.
+ * This immutable class represents an image texture. The image is loaded from a user specified file. A lookup with a 
+ * footprint reads the nearest texel of the nearest mipmap level.
  * 
  * @author Simon Lischka
  */
@@ -19,15 +21,33 @@ public class ImageTexture extends AbstractImageTexture {
 	
 	@Override
 	public Color getColor(final double u, final double v) {
-		final int x = (int) (u * widthMinus1);
-	    final int y = heightMinus1 - (int) (v * heightMinus1);
-	    
-	    final double[] RGBValues = imageRaster.getPixel(x, y, new double[3]);
-	    return new Color(RGBValues[0]/255, RGBValues[1]/255, RGBValues[2]/255);
+		return getColor(0, u, v);
 	}
 	
 	@Override
 	public Color getColor(final TexCoord2 textcoord) {
 		return getColor(textcoord.u, textcoord.v);
 	}
+	
+	@Override
+	public Color getColor(final TexCoord2 texcoord, final double footprint) {
+		return getColor((int) Math.round(levelOf(footprint)), texcoord.u, texcoord.v);
+	}
+	
+	/**
+	 * Looks up the nearest texel of the specified level.
+	 * 
+	 * @param level	The level, 0 is the image.
+	 * @param u		The u coordinate of the texture.
+	 * @param v		The v coordinate of the texture.
+	 * @return		The color of the texel.
+	 */
+	private Color getColor(final int level, final double u, final double v) {
+		RenderMetrics.counters().textureLookup();
+		final int x = (int) (u * widthMinus1(level));
+	    final int y = heightMinus1(level) - (int) (v * heightMinus1(level));
+	    
+	    final int texel = texel(level, x, y);
+	    return new Color(red(texel) / 255.0, green(texel) / 255.0, blue(texel) / 255.0);
+	}
 }
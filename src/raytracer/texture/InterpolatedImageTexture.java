@@ -1,9 +1,11 @@
 package raytracer.texture;
 
 import raytracer.Color;
+import raytracer.metrics.RenderMetrics;
 /**
  * This immutable class represents an image texture which is interpolated using bilinear interpolation for improved 
- * quality. The image is loaded from a user specified file.
+ * quality. The image is loaded from a user specified file. A lookup with a footprint interpolates bilinearly in the 
+ * two mipmap levels next to the level of detail and linearly between them (trilinear filtering).
  * 
  * @author Maxim Novichkov
  * @author Sebastian Dass&eacute;
@@ -20,35 +22,74 @@ public class InterpolatedImageTexture extends AbstractImageTexture {
 	
 	@Override
 	public Color getColor(final double u, final double v) {
-
-		final double x = u * widthMinus1;
-	    final double y = heightMinus1 - v * heightMinus1;
-	    
-	    final int x1 = (int) Math.floor(x);
-	    final int x2 = (int) Math.ceil(x);
-	    final int y1 = (int) Math.floor(y);
-	    final int y2 = (int) Math.ceil(y);
-	    
-	    /*
-	     * Formulas:
-	     * 		nx = x - x1
-	     * 		ny = y - y1
-	     * 		a = I(x1, y1)(1 - nx) + I(x2, y1)nx
-	     * 		b = I(x2, y1)(1 - nx) + I(x2, y2)nx
-	     * 		c = a(1 - nx) + b ny
-	     */
-	    double nx = x - x1;
-	    double ny = y - y1;
-	    
-	    Color x1y1 = new Color(imageRaster.getPixel(x1, y1, new double[3]));
-	    Color x2y1 = new Color(imageRaster.getPixel(x2, y1, new double[3]));
-	    Color x1y2 = new Color(imageRaster.getPixel(x1, y2, new double[3]));
-	    Color x2y2 = new Color(imageRaster.getPixel(x2, y2, new double[3]));
-	    
-	    final Color a = x1y1.mul(1.0 - nx).add(x2y1.mul(nx));
-	    final Color b = x1y2.mul(1.0 - nx).add(x2y2.mul(nx));
-	    
-	    return a.mul(1.0 - ny).add(b.mul(ny)).mul(1.0 / 255);
+		return getColor(0, u, v);
+	}
+	
+	@Override
+	public Color getColor(final TexCoord2 texcoord, final double footprint) {
+		return getColor(levelOf(footprint), texcoord.u, texcoord.v);
+	}
+	
+	/**
+	 * Interpolates the texels of the levels next to the specified level of detail.
+	 * 
+	 * @param lod	The level of detail, fractional between two levels.
+	 * @param u		The u coordinate of the texture.
+	 * @param v		The v coordinate of the texture.
+	 * @return		The interpolated color.
+	 */
+	private Color getColor(final double lod, final double u, final double v) {
+		RenderMetrics.counters().textureLookup();
+		final int first = (int) lod;
+		double r = 0;
+		double g = 0;
+		double b = 0;
+		for (int level = first; level <= first + 1; level++) {
+			final double weight = (level == first) ? 1 - (lod - first) : lod - first;
+			if (weight == 0) {
+				continue;
+			}
+			final double x = u * widthMinus1(level);
+		    final double y = heightMinus1(level) - v * heightMinus1(level);
+		    
+		    final int x1 = (int) Math.floor(x);
+		    final int x2 = (int) Math.ceil(x);
+		    final int y1 = (int) Math.floor(y);
+		    final int y2 = (int) Math.ceil(y);
+		    
+		    /*
+		     * Formulas:
+		     * 		nx = x - x1
+		     * 		ny = y - y1
+		     * 		a = I(x1, y1)(1 - nx) + I(x2, y1)nx
+		     * 		b = I(x2, y1)(1 - nx) + I(x2, y2)nx
+		     * 		c = a(1 - nx) + b ny
+		     */
+		    final double nx = x - x1;
+		    final double ny = y - y1;
+		    
+		    final int x1y1 = texel(level, x1, y1);
+		    final int x2y1 = texel(level, x2, y1);
+		    final int x1y2 = texel(level, x1, y2);
+		    final int x2y2 = texel(level, x2, y2);
+		    
+		    r += weight * interpolate(red(x1y1), red(x2y1), red(x1y2), red(x2y2), nx, ny);
+		    g += weight * interpolate(green(x1y1), green(x2y1), green(x1y2), green(x2y2), nx, ny);
+		    b += weight * interpolate(blue(x1y1), blue(x2y1), blue(x1y2), blue(x2y2), nx, ny);
+		}
+		return new Color(r, g, b);
+	}
+	
+	/**
+	 * Interpolates one component of four neighboring texels.
+	 * 
+	 * @return	The interpolated component between 0 and 1.
+	 */
+	private static double interpolate(final int x1y1, final int x2y1, final int x1y2, final int x2y2, 
+			final double nx, final double ny) {
+		final double a = x1y1 * (1.0 - nx) + x2y1 * nx;
+		final double b = x1y2 * (1.0 - nx) + x2y2 * nx;
+		return (a * (1.0 - ny) + b * ny) * (1.0 / 255);
 	}
 	
 	@Override
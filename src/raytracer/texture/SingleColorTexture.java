@@ -33,5 +33,10 @@ public class SingleColorTexture implements Texture{
 	public Color getColor(TexCoord2 texcoord) {
 		return color;
 	}
+	
+	@Override
+	public Color getColor(final TexCoord2 texcoord, final double footprint) {
+		return color;
+	}
 
 }
@@ -27,4 +27,14 @@ public interface Texture {
 	 * @return			The <code>Color</code>.
 	 */
 	public Color getColor(final TexCoord2 texcoord);
+	
+	/**
+	 * Calculates the color for the specified <code>TexCoord2</code> averaged over a footprint, e.g. the footprint of 
+	 * the ray cone of a <code>Hit</code>.
+	 * 
+	 * @param texcoord	The texture coordinates as <code>TexCoord2</code>.
+	 * @param footprint	The width of the footprint in texture coordinates, 0 for a single point.
+	 * @return			The <code>Color</code>.
+	 */
+	public Color getColor(final TexCoord2 texcoord, final double footprint);
 }
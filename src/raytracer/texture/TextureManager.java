@@ -0,0 +1,303 @@
+package raytracer.texture;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import raytracer.AssetLoader;
+
+/**
+ * This class manages the images of all textures of the process. Every image file is decoded once, however many
+ * textures use it, and its tiles share a single memory budget. Images are decoded by the <code>AssetLoader</code>,
+ * so several images are decoded concurrently while the scene is still being constructed.
+ * <p>
+ * Tiles are read on their first lookup. When the tiles in memory exceed the budget, tiles are evicted with the
+ * clock algorithm, an approximation of least recently used: the resident tiles form a ring, a tile which was looked
+ * up since the hand last passed it gets a second chance, any other tile is evicted. Lookups only set a flag, so they
+ * need no lock. Tiles are read from disk outside of the lock, only putting them into memory and evicting others is
+ * done under it, so threads missing different tiles read them in parallel.
+ * <p>
+ * An image keeps its temporary tile file open until it is released with <code>release</code> or
+ * <code>releaseAll</code>.
+ *
+ * @author Simon Lischka
+ *
+ */
+public final class TextureManager {
+	/**
+	 * The default memory budget of the tiles in bytes.
+	 */
+	public static final long DEFAULT_BUDGET = 256L << 20;
+
+	/**
+	 * The images by the canonical paths of their files.
+	 */
+	private static final Map<String, Future<TiledImage>> IMAGES = new HashMap<String, Future<TiledImage>>();
+	/**
+	 * The ring of the tiles in memory, the hand of the clock at its head.
+	 */
+	private static final ArrayDeque<Resident> RESIDENTS = new ArrayDeque<Resident>();
+	/**
+	 * The memory budget of the tiles in bytes.
+	 */
+	private static long budget = DEFAULT_BUDGET;
+	/**
+	 * The number of bytes of the tiles in memory.
+	 */
+	private static long residentBytes;
+	/**
+	 * The number of tiles read so far.
+	 */
+	private static long reads;
+
+	/**
+	 * This class is not meant to be instantiated.
+	 */
+	private TextureManager() {
+	}
+
+	/**
+	 * Returns the future of the image of the specified file. The decoding of the image is submitted to the
+	 * <code>AssetLoader</code> if the file is not known yet.
+	 *
+	 * @param path	The path of the image file. Must not be <code>null</code>.
+	 * @return		The future of the image.
+	 */
+	public static synchronized Future<TiledImage> request(final String path) {
+		if (path == null) {
+			throw new IllegalArgumentException("The parameter 'path' must not be null.");
+		}
+		final File file = new File(path);
+		final String key = keyOf(file);
+		Future<TiledImage> image = IMAGES.get(key);
+		if (image == null || failed(image)) {
+			// a failed decoding is not cached, so the file is decoded again, e.g. after it was fixed
+			image = AssetLoader.submit(new Callable<TiledImage>() {
+				@Override
+				public TiledImage call() {
+					try {
+						return new TiledImage(file);
+					} catch (IOException e) {
+						throw new RuntimeException("Could not decode the image '" + path + "'.", e);
+					}
+				}
+			});
+			IMAGES.put(key, image);
+		}
+		return image;
+	}
+
+	/**
+	 * @return	The key of a file in <code>IMAGES</code>, its canonical path if it can be determined.
+	 */
+	private static String keyOf(final File file) {
+		try {
+			return file.getCanonicalPath();
+		} catch (IOException e) {
+			return file.getAbsolutePath();
+		}
+	}
+
+	/**
+	 * Returns the image of the specified file and waits until it is decoded.
+	 *
+	 * @param path	The path of the image file. Must not be <code>null</code>.
+	 * @return		The image.
+	 */
+	public static TiledImage get(final String path) {
+		return AssetLoader.await(request(path));
+	}
+
+	/**
+	 * @return	<code>true</code> if the future has finished with an exception or was cancelled.
+	 */
+	private static boolean failed(final Future<TiledImage> image) {
+		if (!image.isDone()) {
+			return false;
+		}
+		try {
+			image.get();
+			return false;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		} catch (ExecutionException e) {
+			return true;
+		} catch (CancellationException e) {
+			return true;
+		}
+	}
+
+	/**
+	 * Releases the image of the specified file: its tiles are removed from memory, its tile file is closed and
+	 * deleted and the file is decoded again when it is requested the next time. Textures which still use the image
+	 * must not be looked up any more. Waits until the image is decoded if it is still being decoded.
+	 *
+	 * @param path	The path of the image file. Must not be <code>null</code>.
+	 */
+	public static void release(final String path) {
+		if (path == null) {
+			throw new IllegalArgumentException("The parameter 'path' must not be null.");
+		}
+		final String key = keyOf(new File(path));
+		final Future<TiledImage> image;
+		synchronized (TextureManager.class) {
+			image = IMAGES.remove(key);
+		}
+		if (image != null) {
+			close(image);
+		}
+	}
+
+	/**
+	 * Releases the images of all files, e.g. after the last frame was rendered, as <code>release</code> does.
+	 */
+	public static void releaseAll() {
+		final List<Future<TiledImage>> images;
+		synchronized (TextureManager.class) {
+			images = new ArrayList<Future<TiledImage>>(IMAGES.values());
+			IMAGES.clear();
+		}
+		for (Future<TiledImage> image : images) {
+			close(image);
+		}
+	}
+
+	/**
+	 * Waits for an image, removes its tiles from memory and closes it. Images which failed to decode have nothing
+	 * to close.
+	 */
+	private static void close(final Future<TiledImage> future) {
+		if (failed(future)) {
+			return;
+		}
+		final TiledImage image;
+		try {
+			image = AssetLoader.await(future);
+		} catch (RuntimeException e) {
+			return;
+		}
+		synchronized (TextureManager.class) {
+			for (Iterator<Resident> i = RESIDENTS.iterator(); i.hasNext();) {
+				final Resident resident = i.next();
+				if (resident.image == image) {
+					resident.image.setTile(resident.tile, null);
+					residentBytes -= TiledImage.TILE_BYTES;
+					i.remove();
+				}
+			}
+			image.close();
+		}
+	}
+
+	/**
+	 * Reads a tile of an image into memory and evicts other tiles if the budget is exceeded. The tile is read
+	 * without holding the lock, so two threads missing the same tile at once may both read it, the first one puts
+	 * it into memory.
+	 *
+	 * @param image	The image.
+	 * @param tile	The index of the tile.
+	 * @return		The texels of the tile.
+	 */
+	static int[] load(final TiledImage image, final int tile) {
+		final int[] texels = image.read(tile);
+		return publish(image, tile, texels);
+	}
+
+	/**
+	 * Puts a tile that was read into memory unless another thread put it there in the meantime, and evicts other
+	 * tiles if the budget is exceeded.
+	 *
+	 * @return	The texels of the tile in memory.
+	 */
+	private static synchronized int[] publish(final TiledImage image, final int tile, final int[] texels) {
+		final int[] resident = image.getTile(tile);
+		if (resident != null) {
+			// another thread read it in the meantime
+			return resident;
+		}
+		if (image.isClosed()) {
+			return texels;
+		}
+		image.setTile(tile, texels);
+		image.referenced[tile] = 1;
+		RESIDENTS.addLast(new Resident(image, tile));
+		residentBytes += TiledImage.TILE_BYTES;
+		reads++;
+		evict();
+		return texels;
+	}
+
+	/**
+	 * Evicts tiles until the tiles in memory fit into the budget. The last tile is never evicted, so a lookup always
+	 * finds its tile.
+	 */
+	private static void evict() {
+		while (residentBytes > budget && RESIDENTS.size() > 1) {
+			final Resident resident = RESIDENTS.pollFirst();
+			if (resident.image.referenced[resident.tile] != 0) {
+				resident.image.referenced[resident.tile] = 0;
+				RESIDENTS.addLast(resident);
+			} else {
+				resident.image.setTile(resident.tile, null);
+				residentBytes -= TiledImage.TILE_BYTES;
+			}
+		}
+	}
+
+	/**
+	 * Sets the memory budget of the tiles. Tiles are evicted at once if they exceed the new budget.
+	 *
+	 * @param bytes	The budget in bytes. Must be positive.
+	 */
+	public static synchronized void setBudget(final long bytes) {
+		if (bytes <= 0) {
+			throw new IllegalArgumentException("The parameter 'bytes' must be positive.");
+		}
+		budget = bytes;
+		evict();
+	}
+
+	/**
+	 * @return	The memory budget of the tiles in bytes.
+	 */
+	public static synchronized long getBudget() {
+		return budget;
+	}
+
+	/**
+	 * @return	The number of bytes of the tiles in memory.
+	 */
+	public static synchronized long getResidentBytes() {
+		return residentBytes;
+	}
+
+	/**
+	 * @return	The number of tiles read so far, including tiles read again after they were evicted.
+	 */
+	public static synchronized long getReads() {
+		return reads;
+	}
+
+	/**
+	 * This class identifies a tile in memory.
+	 */
+	private static class Resident {
+		private final TiledImage image;
+		private final int tile;
+
+		Resident(final TiledImage image, final int tile) {
+			this.image = image;
+			this.tile = tile;
+		}
+	}
+}
@@ -0,0 +1,363 @@
+package raytracer.texture;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.imageio.ImageIO;
+
+/**
+ * This class holds the decoded texels of an image file and its mipmap pyramid, shared by all textures of the file.
+ * Every level halves the width and height of the level above by averaging 2 x 2 texels, down to a single texel.
+ * <p>
+ * The levels are cut into square tiles of <code>TILE_SIZE</code> texels. When the image is opened it is decoded
+ * once and all tiles are written to a temporary file. Tiles are read from this file on their first lookup and kept
+ * in memory until the <code>TextureManager</code> evicts them to stay within its memory budget, so only the tiles
+ * that rays actually touch occupy the heap.
+ * <p>
+ * Instances are obtained from <code>TextureManager.get</code>.
+ *
+ * @author Simon Lischka
+ *
+ */
+public final class TiledImage {
+	/**
+	 * The width and height of a tile in texels.
+	 */
+	public static final int TILE_SIZE = 64;
+	/**
+	 * The binary logarithm of <code>TILE_SIZE</code>.
+	 */
+	private static final int TILE_SHIFT = 6;
+	/**
+	 * The mask of the position of a texel inside of its tile.
+	 */
+	private static final int TILE_MASK = TILE_SIZE - 1;
+	/**
+	 * The number of bytes of a tile in memory and in the file.
+	 */
+	static final int TILE_BYTES = TILE_SIZE * TILE_SIZE * 4;
+	/**
+	 * The linear intensities of the 8-bit sRGB values.
+	 */
+	private static final float[] LINEAR = new float[256];
+	/**
+	 * The linear intensities half way between two 8-bit sRGB values, to round an intensity to the closest value.
+	 */
+	private static final float[] THRESHOLDS = new float[255];
+
+	static {
+		for (int i = 0; i < LINEAR.length; i++) {
+			LINEAR[i] = (float) toLinear(i / 255.0);
+		}
+		for (int i = 0; i < THRESHOLDS.length; i++) {
+			THRESHOLDS[i] = (float) toLinear((i + 0.5) / 255.0);
+		}
+	}
+
+	/**
+	 * The path of the image file.
+	 */
+	private final String path;
+	/**
+	 * The widths of all levels.
+	 */
+	private final int[] widths;
+	/**
+	 * The heights of all levels.
+	 */
+	private final int[] heights;
+	/**
+	 * The number of tiles per row of all levels.
+	 */
+	private final int[] tilesPerRow;
+	/**
+	 * The index of the first tile of all levels. The tiles of a level are numbered row by row.
+	 */
+	private final int[] firstTiles;
+	/**
+	 * The tiles in memory, <code>null</code> for tiles which were not read yet or were evicted.
+	 */
+	private final AtomicReferenceArray<int[]> tiles;
+	/**
+	 * Whether each tile was looked up since the <code>TextureManager</code> looked at it last.
+	 */
+	final byte[] referenced;
+	/**
+	 * The temporary file holding all tiles.
+	 */
+	private final File tileFile;
+	/**
+	 * The channel of the file holding all tiles.
+	 */
+	private final FileChannel channel;
+	/**
+	 * Whether the image was released and its tile file is closed.
+	 */
+	private volatile boolean closed;
+
+	/**
+	 * Decodes the specified image file, builds its mipmap pyramid and writes the tiles to a temporary file.
+	 *
+	 * @param file	The image file.
+	 * @throws IOException	If the image can not be read or the tiles can not be written.
+	 */
+	TiledImage(final File file) throws IOException {
+		path = file.getPath();
+		final BufferedImage image = ImageIO.read(file);
+		if (image == null) {
+			throw new IOException("The format of '" + path + "' is not supported.");
+		}
+		final int count = 32 - Integer.numberOfLeadingZeros(Math.max(image.getWidth(), image.getHeight()));
+		widths = new int[count];
+		heights = new int[count];
+		tilesPerRow = new int[count];
+		firstTiles = new int[count + 1];
+		for (int level = 0; level < count; level++) {
+			widths[level] = Math.max(1, image.getWidth() >> level);
+			heights[level] = Math.max(1, image.getHeight() >> level);
+			tilesPerRow[level] = (widths[level] + TILE_MASK) >> TILE_SHIFT;
+			final int rows = (heights[level] + TILE_MASK) >> TILE_SHIFT;
+			firstTiles[level + 1] = firstTiles[level] + tilesPerRow[level] * rows;
+		}
+		tiles = new AtomicReferenceArray<int[]>(firstTiles[count]);
+		referenced = new byte[firstTiles[count]];
+
+		tileFile = File.createTempFile("texture", ".tiles");
+		tileFile.deleteOnExit();
+		try {
+			channel = new RandomAccessFile(tileFile, "rw").getChannel();
+		} catch (IOException e) {
+			tileFile.delete();
+			throw e;
+		}
+		try {
+			int[] texels = image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+			for (int level = 0; level < count; level++) {
+				if (level > 0) {
+					texels = downsample(texels, widths[level - 1], heights[level - 1], widths[level], heights[level]);
+				}
+				write(level, texels);
+			}
+		} catch (Throwable e) {
+			// a failed image is never released, so its file is closed and deleted here
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Builds a level from the level above by averaging 2 x 2 texels. The last row or column of a level with an odd
+	 * height or width is averaged into the row or column before it. The texels are averaged as linear intensities, 
+	 * as averaging the sRGB values would darken the contrasts of the image at a distance.
+	 *
+	 * @return	The texels of the new level.
+	 */
+	private static int[] downsample(final int[] above, final int aboveWidth, final int aboveHeight, final int w,
+			final int h) {
+		final int[] texels = new int[w * h];
+		for (int y = 0; y < h; y++) {
+			final int y0 = y * 2;
+			final int y1 = (y == h - 1) ? aboveHeight : Math.min(y0 + 2, aboveHeight);
+			for (int x = 0; x < w; x++) {
+				final int x0 = x * 2;
+				final int x1 = (x == w - 1) ? aboveWidth : Math.min(x0 + 2, aboveWidth);
+				float r = 0;
+				float g = 0;
+				float b = 0;
+				for (int sy = y0; sy < y1; sy++) {
+					for (int sx = x0; sx < x1; sx++) {
+						final int texel = above[sy * aboveWidth + sx];
+						r += LINEAR[(texel >> 16) & 0xff];
+						g += LINEAR[(texel >> 8) & 0xff];
+						b += LINEAR[texel & 0xff];
+					}
+				}
+				final int n = (y1 - y0) * (x1 - x0);
+				texels[y * w + x] = toSrgb(r / n) << 16 | toSrgb(g / n) << 8 | toSrgb(b / n);
+			}
+		}
+		return texels;
+	}
+
+	/**
+	 * Converts an sRGB value to its linear intensity.
+	 *
+	 * @param c	The sRGB value in the range [0, 1].
+	 * @return	The linear intensity in the range [0, 1].
+	 */
+	private static double toLinear(final double c) {
+		return (c <= 0.04045) ? c / 12.92 : Math.pow((c + 0.055) / 1.055, 2.4);
+	}
+
+	/**
+	 * Rounds a linear intensity to the closest 8-bit sRGB value.
+	 *
+	 * @param linear	The linear intensity in the range [0, 1].
+	 * @return			The sRGB value in the range [0, 255].
+	 */
+	private static int toSrgb(final float linear) {
+		// the number of thresholds below the intensity, found by a binary search
+		int low = 0;
+		int high = THRESHOLDS.length;
+		while (low < high) {
+			final int middle = (low + high) >>> 1;
+			if (THRESHOLDS[middle] <= linear) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Writes the tiles of a level to the file. Tiles at the right and bottom borders are padded to full size.
+	 */
+	private void write(final int level, final int[] texels) throws IOException {
+		final int w = widths[level];
+		final int h = heights[level];
+		final ByteBuffer buffer = ByteBuffer.allocate(TILE_BYTES);
+		final IntBuffer ints = buffer.asIntBuffer();
+		for (int tile = firstTiles[level]; tile < firstTiles[level + 1]; tile++) {
+			final int index = tile - firstTiles[level];
+			final int left = (index % tilesPerRow[level]) << TILE_SHIFT;
+			final int top = (index / tilesPerRow[level]) << TILE_SHIFT;
+			ints.clear();
+			for (int y = top; y < top + TILE_SIZE; y++) {
+				for (int x = left; x < left + TILE_SIZE; x++) {
+					ints.put((x < w && y < h) ? texels[y * w + x] : 0);
+				}
+			}
+			buffer.clear();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer, (long) tile * TILE_BYTES + buffer.position());
+			}
+		}
+	}
+
+	/**
+	 * Reads a tile from the file.
+	 *
+	 * @param tile	The index of the tile.
+	 * @return		The texels of the tile.
+	 */
+	int[] read(final int tile) {
+		if (closed) {
+			throw new IllegalStateException("The image '" + path + "' has been released.");
+		}
+		final ByteBuffer buffer = ByteBuffer.allocate(TILE_BYTES);
+		try {
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, (long) tile * TILE_BYTES + buffer.position()) < 0) {
+					throw new IOException("The tile file ended early.");
+				}
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("Could not read a tile of '" + path + "'.", e);
+		}
+		buffer.flip();
+		final int[] texels = new int[TILE_SIZE * TILE_SIZE];
+		buffer.asIntBuffer().get(texels);
+		return texels;
+	}
+
+	/**
+	 * Closes and deletes the tile file. Tiles which are not in memory can not be read any more.
+	 */
+	void close() {
+		closed = true;
+		try {
+			channel.close();
+		} catch (IOException e) {
+			// the file is deleted anyway
+		}
+		tileFile.delete();
+	}
+
+	/**
+	 * @return	<code>true</code> if the tile file is closed.
+	 */
+	boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * Puts a tile into or, with <code>null</code>, removes it from memory.
+	 */
+	void setTile(final int tile, final int[] texels) {
+		tiles.set(tile, texels);
+	}
+
+	/**
+	 * @return	The tile in memory or <code>null</code>.
+	 */
+	int[] getTile(final int tile) {
+		return tiles.get(tile);
+	}
+
+	/**
+	 * Returns the packed texel of the specified level at the specified position. Positions outside of the level are
+	 * clamped to its border. The tile of the texel is read if it is not in memory.
+	 *
+	 * @param level	The level, 0 is the image.
+	 * @param x		The column of the texel, 0 is the left border.
+	 * @param y		The row of the texel, 0 is the top border.
+	 * @return		The texel packed as <code>0xRRGGBB</code>.
+	 */
+	public int texel(final int level, final int x, final int y) {
+		final int w = widths[level];
+		final int cx = (x < 0) ? 0 : (x >= w) ? w - 1 : x;
+		final int cy = (y < 0) ? 0 : (y >= heights[level]) ? heights[level] - 1 : y;
+		final int tile = firstTiles[level] + (cy >> TILE_SHIFT) * tilesPerRow[level] + (cx >> TILE_SHIFT);
+		int[] texels = tiles.get(tile);
+		if (texels == null) {
+			texels = TextureManager.load(this, tile);
+		}
+		if (referenced[tile] == 0) {
+			referenced[tile] = 1;
+		}
+		return texels[((cy & TILE_MASK) << TILE_SHIFT) | (cx & TILE_MASK)];
+	}
+
+	/**
+	 * @return	The number of levels.
+	 */
+	public int getLevels() {
+		return widths.length;
+	}
+
+	/**
+	 * @param level	The level, 0 is the image.
+	 * @return		The width of the level.
+	 */
+	public int getWidth(final int level) {
+		return widths[level];
+	}
+
+	/**
+	 * @param level	The level, 0 is the image.
+	 * @return		The height of the level.
+	 */
+	public int getHeight(final int level) {
+		return heights[level];
+	}
+
+	/**
+	 * @return	The number of tiles of all levels.
+	 */
+	public int getTiles() {
+		return referenced.length;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[path = " + path + ", width = " + widths[0] + ", height = " + heights[0]
+				+ ", tiles = " + referenced.length + "]";
+	}
+}
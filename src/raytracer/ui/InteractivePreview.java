@@ -0,0 +1,175 @@
+package raytracer.ui;
+
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.awt.image.BufferedImage;
+
+import javax.swing.JFrame;
+
+import raytracer.InteractiveSession;
+import raytracer.RenderListener;
+import raytracer.camera.PerspectiveCamera;
+import raytracer.image.TracerCanvas;
+import raytracer.math.Point3;
+import raytracer.math.Vector3;
+
+/**
+ * Class to preview a world interactively. The window shows the frames of an <code>InteractiveSession</code> and 
+ * moves a perspective camera on key strokes:
+ * <ul>
+ * <li>Left and right arrow keys orbit the camera around its target.</li>
+ * <li>Up and down arrow keys tilt the camera around its target.</li>
+ * <li>W and S move the camera towards and away from its target.</li>
+ * </ul>
+ * 
+ * @author Simon Lischka
+ *
+ */
+public final class InteractivePreview {
+	/**
+	 * The angle the camera is moved by per key stroke in radians.
+	 */
+	public static final double STEP_ANGLE = Math.PI / 36.0;
+	/**
+	 * The factor the distance to the target is changed by per key stroke.
+	 */
+	public static final double STEP_ZOOM = 1.1;
+	
+	/**
+	 * The session which renders the frames.
+	 */
+	private final InteractiveSession session;
+	/**
+	 * The point the camera looks at.
+	 */
+	private final Point3 target;
+	/**
+	 * The opening angle of the camera in radians.
+	 */
+	private final double angle;
+	/**
+	 * The horizontal angle of the camera around the target in radians.
+	 */
+	private double azimuth;
+	/**
+	 * The vertical angle of the camera above the target in radians.
+	 */
+	private double elevation;
+	/**
+	 * The distance of the camera to the target.
+	 */
+	private double distance;
+	
+	/**
+	 * Constructs a new <code>InteractivePreview</code>.
+	 * 
+	 * @param session	The session rendering the frames.
+	 * @param eye		The initial eye position of the camera.
+	 * @param target	The point the camera looks at.
+	 * @param angle		The opening angle of the camera in radians.
+	 */
+	private InteractivePreview(final InteractiveSession session, final Point3 eye, final Point3 target, 
+			final double angle) {
+		this.session = session;
+		this.target = target;
+		this.angle = angle;
+		final Vector3 offset = eye.sub(target);
+		distance = offset.magnitude;
+		azimuth = Math.atan2(offset.x, offset.z);
+		elevation = Math.asin(offset.y / distance);
+	}
+	
+	/**
+	 * Opens a preview window for the specified session and renders the first frame.
+	 * 
+	 * @param session	The session rendering the frames. Must not be <code>null</code>.
+	 * @param eye		The initial eye position of the camera. Must not be <code>null</code>.
+	 * @param target	The point the camera looks at. Must not be <code>null</code> or equal to the eye position.
+	 * @param angle		The opening angle of the camera in radians.
+	 */
+	public static void show(final InteractiveSession session, final Point3 eye, final Point3 target, 
+			final double angle) {
+		if (session == null || eye == null || target == null) {
+			throw new IllegalArgumentException("The parameters must not be null.");
+		}
+		if (eye.equals(target)) {
+			throw new IllegalArgumentException("The eye position must not be equal to the target.");
+		}
+		final InteractivePreview preview = new InteractivePreview(session, eye, target, angle);
+		final TracerCanvas mainCanvas = new TracerCanvas(null);
+		final JFrame frame = new JFrame();
+		frame.getContentPane().add(mainCanvas);
+		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+		frame.setSize(session.getSize().width, session.getSize().height);
+		frame.addWindowListener(new WindowAdapter() {
+			@Override
+			public void windowClosing(final WindowEvent e) {
+				session.close();
+			}
+		});
+		mainCanvas.addKeyListener(new KeyAdapter() {
+			@Override
+			public void keyPressed(final KeyEvent e) {
+				preview.keyPressed(e.getKeyCode());
+			}
+		});
+		session.addRenderListener(new RenderListener() {
+			@Override
+			public void passCompleted(final BufferedImage image, final int pass, final int blockSize) {
+				mainCanvas.setImage(image);
+			}
+			
+			@Override
+			public void renderFinished(final BufferedImage image, final boolean complete) {
+				mainCanvas.setImage(image);
+			}
+		});
+		frame.setVisible(true);
+		mainCanvas.requestFocus();
+		preview.updateCamera();
+	}
+	
+	/**
+	 * Moves the camera according to the specified key.
+	 * 
+	 * @param keyCode	The code of the pressed key.
+	 */
+	private void keyPressed(final int keyCode) {
+		switch (keyCode) {
+		case KeyEvent.VK_LEFT:
+			azimuth -= STEP_ANGLE;
+			break;
+		case KeyEvent.VK_RIGHT:
+			azimuth += STEP_ANGLE;
+			break;
+		case KeyEvent.VK_UP:
+			elevation = Math.min(elevation + STEP_ANGLE, Math.PI / 2.0 - STEP_ANGLE);
+			break;
+		case KeyEvent.VK_DOWN:
+			elevation = Math.max(elevation - STEP_ANGLE, -Math.PI / 2.0 + STEP_ANGLE);
+			break;
+		case KeyEvent.VK_W:
+			distance /= STEP_ZOOM;
+			break;
+		case KeyEvent.VK_S:
+			distance *= STEP_ZOOM;
+			break;
+		default:
+			return;
+		}
+		updateCamera();
+	}
+	
+	/**
+	 * Sets a new camera for the current position to the session.
+	 */
+	private void updateCamera() {
+		final Vector3 offset = new Vector3(
+				distance * Math.cos(elevation) * Math.sin(azimuth), 
+				distance * Math.sin(elevation), 
+				distance * Math.cos(elevation) * Math.cos(azimuth));
+		session.setCamera(new PerspectiveCamera(target.add(offset), offset.mul(-1), new Vector3(0, 1, 0), angle));
+	}
+}
@@ -1,7 +1,11 @@
 package raytracer.ui;
 
+import java.awt.image.BufferedImage;
+
 import javax.swing.JFrame;
 
+import raytracer.ProgressiveRenderer;
+import raytracer.RenderListener;
 import raytracer.Renderer;
 import raytracer.image.TracerCanvas;
 
@@ -42,4 +46,50 @@ public final class ShowImage {
 	public static void from(final Renderer raytracer) {
 		from(raytracer, 0, 0);
 	}
+	
+	/**
+	 * Opens a window immediately and renders the image progressively in a background thread. The window shows the 
+	 * image after each pass of the renderer.
+	 * 
+	 * @param raytracer Progressive raytracer to be displayed
+	 * @param x Horizontal coordinate of the window location
+	 * @param y Vertical coordinate of the window location
+	 */
+	public static void from(final ProgressiveRenderer raytracer, final int x, final int y) {
+		final TracerCanvas mainCanvas = new TracerCanvas(null);
+		final JFrame frame = new JFrame();
+		frame.getContentPane().add(mainCanvas);
+		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+		frame.setSize(raytracer.getSize().width, raytracer.getSize().height);
+		frame.setLocation(x, y);
+		frame.setVisible(true);
+		raytracer.addRenderListener(new RenderListener() {
+			@Override
+			public void passCompleted(final BufferedImage image, final int pass, final int blockSize) {
+				mainCanvas.setImage(image);
+			}
+			
+			@Override
+			public void renderFinished(final BufferedImage image, final boolean complete) {
+				mainCanvas.setImage(image);
+			}
+		});
+		final Thread renderThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				raytracer.render();
+			}
+		}, "ProgressiveRenderer");
+		renderThread.setDaemon(true);
+		renderThread.start();
+	}
+	
+	/**
+	 * Renders the image progressively and displays it in a window in the top left corner of the screen.
+	 * 
+	 * @param raytracer Progressive raytracer to be displayed
+	 */
+	public static void from(final ProgressiveRenderer raytracer) {
+		from(raytracer, 0, 0);
+	}
 }